@@ -6,6 +6,14 @@ import org.reflections.scanners.Scanners;
 import org.reflections.util.ConfigurationBuilder;
 
 /**
+ * Holds the {@link Reflections} scan that metadata used to be
+ * bootstrapped from, which has been replaced by the {@link ClassIndex}
+ * of {@link FusionBootstrap}.
+ * <p>
+ * Nothing else is kept in this class, so that the classpath is only
+ * scanned once {@link #REFLECTIONS} is first accessed, rather than
+ * whenever metadata is bootstrapped.
+ *
  * @since June 23, 2022
  * @author Andavin
  */
@@ -14,16 +22,30 @@ public final class Bootstrap {
     /**
      * The {@link Reflections} instance that holds all the
      * metadata that has been scanned.
+     * <p>
+     * The classpath is scanned when this is first accessed.
+     *
+     * @deprecated Use {@link FusionBootstrap#getSubTypesOf(Class)}, which
+     *             reads the {@link ClassIndex} instead of scanning.
      */
+    @Deprecated
     public static final Reflections REFLECTIONS = new Reflections("com.projecki", Scanners.values());
 
     /**
-     * Bootstrap all metadata using {@link Reflections} on the
-     * specified {@link ClassLoader} for the package {@code com.projecki}.
+     * Bootstrap all metadata from the {@link ClassIndex} and using {@link Reflections}
+     * on the specified {@link ClassLoader} for the package {@code com.projecki}.
      *
      * @param classLoaders The {@link ClassLoader class loaders} to search URLs for.
+     * @deprecated Use {@link FusionBootstrap#bootstrap(ClassLoader...)}, which
+     *             only scans if {@link FusionBootstrap#SCAN_PROPERTY scanning} is enabled.
      */
+    @Deprecated
     public static void bootstrap(ClassLoader... classLoaders) {
+        FusionBootstrap.INDEX.load(classLoaders);
+        scan(classLoaders);
+    }
+
+    static void scan(ClassLoader... classLoaders) {
         Configuration config = new ConfigurationBuilder()
                 .forPackage("com.projecki", classLoaders)
                 .addClassLoaders(classLoaders)
@@ -0,0 +1,104 @@
+package com.projecki.fusion;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The index of subtypes that is generated at compile time by the
+ * {@code fusion-processor} and packaged into the jar of every module
+ * that depends on it.
+ * <p>
+ * Loading the index only reads one small file per jar, so it
+ * replaces scanning every class on the classpath on startup.
+ */
+public final class ClassIndex {
+
+    /**
+     * The path of the index inside each jar.
+     */
+    public static final String INDEX_FILE = "META-INF/fusion/class.index";
+
+    // supertype -> subtype -> the class loader that the subtype was indexed by
+    private final Map<String, Map<String, ClassLoader>> subTypes = new ConcurrentHashMap<>();
+    private final Set<String> loaded = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Load every index that is visible to the given {@link ClassLoader class loaders}.
+     * Indexes that were already loaded are skipped.
+     *
+     * @param classLoaders The class loaders to load the indexes from.
+     */
+    public void load(ClassLoader... classLoaders) {
+
+        for (ClassLoader classLoader : classLoaders) {
+
+            try {
+                Enumeration<URL> resources = classLoader.getResources(INDEX_FILE);
+                while (resources.hasMoreElements()) {
+
+                    URL resource = resources.nextElement();
+                    if (loaded.add(resource.toString())) {
+                        this.read(resource, classLoader);
+                    }
+                }
+            } catch (IOException e) {
+                FusionCore.LOGGER.error("Failed to load class index from " + classLoader, e);
+            }
+        }
+    }
+
+    /**
+     * Get every indexed type that is a subtype of the given type.
+     * The type itself is not included.
+     *
+     * @param type The type to get the subtypes of.
+     * @return The loaded subtypes.
+     * @param <T> The type to get the subtypes of.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Set<Class<? extends T>> getSubTypesOf(Class<T> type) {
+
+        Map<String, ClassLoader> names = subTypes.get(type.getName());
+        if (names == null) {
+            return Set.of();
+        }
+
+        Set<Class<? extends T>> types = new LinkedHashSet<>();
+        names.forEach((name, classLoader) -> {
+
+            try {
+                Class<?> subType = Class.forName(name, false, classLoader);
+                if (type.isAssignableFrom(subType)) { // may be a different version of the type
+                    types.add((Class<? extends T>) subType);
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                FusionCore.LOGGER.debug("Indexed class {} could not be loaded", name);
+            }
+        });
+
+        return types;
+    }
+
+    private void read(URL resource, ClassLoader classLoader) throws IOException {
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.openStream(), StandardCharsets.UTF_8))) {
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+
+                String[] names = line.trim().split(" ");
+                for (int i = 1; i < names.length; i++) {
+                    subTypes.computeIfAbsent(names[i], n -> new ConcurrentHashMap<>()).putIfAbsent(names[0], classLoader);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.projecki.fusion;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Bootstraps the metadata of every module from the {@link ClassIndex}
+ * that the {@code fusion-processor} writes into each jar.
+ * <p>
+ * The classpath is only scanned with {@link Bootstrap#REFLECTIONS}
+ * when {@link #SCAN_PROPERTY scanning} is enabled.
+ */
+public final class FusionBootstrap {
+
+    /**
+     * The system property that enables scanning the classpath with
+     * {@link Bootstrap#REFLECTIONS} as well as using the {@link ClassIndex}.
+     * This is only needed for classes that were compiled without
+     * the {@code fusion-processor}.
+     */
+    public static final String SCAN_PROPERTY = "fusion.bootstrap.scan";
+
+    /**
+     * The {@link ClassIndex} that holds all the
+     * metadata that has been indexed.
+     */
+    public static final ClassIndex INDEX = new ClassIndex();
+
+    private static final boolean SCAN = Boolean.getBoolean(SCAN_PROPERTY);
+
+    static {
+        INDEX.load(FusionBootstrap.class.getClassLoader());
+    }
+
+    private FusionBootstrap() {
+    }
+
+    /**
+     * Bootstrap all metadata from the {@link ClassIndex} of every
+     * jar that is visible to the specified {@link ClassLoader class loaders}.
+     * <p>
+     * If {@link #SCAN_PROPERTY scanning} is enabled, all metadata is also
+     * scanned into {@link Bootstrap#REFLECTIONS} for the package {@code com.projecki}.
+     *
+     * @param classLoaders The {@link ClassLoader class loaders} to search URLs for.
+     */
+    public static void bootstrap(ClassLoader... classLoaders) {
+        INDEX.load(classLoaders);
+        if (SCAN) {
+            Bootstrap.scan(classLoaders);
+        }
+    }
+
+    /**
+     * Get every type that is a subtype of the given type, not including the type itself.
+     *
+     * @param type The type to get the subtypes of.
+     * @return The subtypes that were indexed, or scanned if scanning is enabled.
+     * @param <T> The type to get the subtypes of.
+     */
+    public static <T> Set<Class<? extends T>> getSubTypesOf(Class<T> type) {
+
+        if (!SCAN) {
+            return INDEX.getSubTypesOf(type);
+        }
+
+        Set<Class<? extends T>> subTypes = new LinkedHashSet<>(INDEX.getSubTypesOf(type));
+        subTypes.addAll(Bootstrap.REFLECTIONS.getSubTypesOf(type));
+        return subTypes;
+    }
+}
@@ -4,8 +4,11 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.projecki.fusion.gson.IsoFormatInstantTypeAdapter;
 import com.projecki.fusion.gson.RecordTypeAdapterFactory;
+import com.projecki.fusion.metrics.MetricRegistry;
 import com.projecki.fusion.party.Parties;
 import com.projecki.fusion.redis.CommonRedisKeys;
+import com.projecki.fusion.util.concurrent.ExecutorConfig;
+import com.projecki.fusion.util.concurrent.ExecutorRegistry;
 import io.lettuce.core.api.async.RedisAsyncCommands;
 import net.kyori.adventure.text.serializer.gson.GsonComponentSerializer;
 import org.slf4j.Logger;
@@ -18,9 +21,13 @@ import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 
+import static com.google.common.base.Preconditions.checkState;
+
 public final class FusionCore {
 
     private static Supplier<Parties<?>> parties;
+    private static volatile ExecutorRegistry executors;
+    private static final MetricRegistry metrics = new MetricRegistry();
     public static final Logger LOGGER = LoggerFactory.getLogger("Fusion");
 
     // project wide serializer for components and other modifications
@@ -42,6 +49,7 @@ public final class FusionCore {
         }
 
         GSON = builder.create();
+        metrics.registerMBean("com.projecki.fusion:type=Metrics");
     }
 
     /**
@@ -89,4 +97,56 @@ public final class FusionCore {
     static void setParties(Supplier<Parties<?>> parties) {
         FusionCore.parties = parties;
     }
+
+    /**
+     * Get the {@link MetricRegistry} that every executor and service
+     * records its metrics to. It is disabled unless the
+     * {@link MetricRegistry#ENABLED_PROPERTY} system property is set.
+     *
+     * @return The {@link MetricRegistry}.
+     */
+    public static MetricRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get the {@link ExecutorRegistry} with the shared thread pools.
+     * If the platform has not set one, such as outside a server,
+     * then one with the default {@link ExecutorConfig} is created
+     * and kept for good.
+     *
+     * @return The {@link ExecutorRegistry}.
+     */
+    public static ExecutorRegistry getExecutors() {
+
+        ExecutorRegistry executors = FusionCore.executors;
+        if (executors == null) {
+
+            synchronized (FusionCore.class) {
+
+                executors = FusionCore.executors;
+                if (executors == null) {
+                    executors = FusionCore.executors = new ExecutorRegistry(new ExecutorConfig());
+                }
+            }
+        }
+
+        return executors;
+    }
+
+    /**
+     * Set the {@link ExecutorRegistry} for this platform. This must
+     * be done once, before anything {@link #getExecutors() gets} the
+     * registry, as whatever got it would hold on to its pools.
+     *
+     * @param executors The {@link ExecutorRegistry}.
+     * @throws IllegalStateException If a registry was already set or used.
+     */
+    static void setExecutors(ExecutorRegistry executors) throws IllegalStateException {
+
+        synchronized (FusionCore.class) {
+            checkState(FusionCore.executors == null, "executors were already set or used");
+            FusionCore.executors = executors;
+        }
+    }
 }
@@ -0,0 +1,124 @@
+package com.projecki.fusion.command;
+
+import co.aikar.commands.annotation.CommandAlias;
+import co.aikar.commands.annotation.CommandPermission;
+import co.aikar.commands.annotation.Default;
+import co.aikar.commands.annotation.Description;
+import co.aikar.commands.annotation.Optional;
+import co.aikar.commands.annotation.Subcommand;
+import com.projecki.fusion.metrics.Counter;
+import com.projecki.fusion.metrics.Gauge;
+import com.projecki.fusion.metrics.Histogram;
+import com.projecki.fusion.metrics.Metric;
+import com.projecki.fusion.metrics.MetricRegistry;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.TextComponent;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.format.TextColor;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Shows the metrics of a {@link MetricRegistry} in game or on the proxy.
+ * Histograms are shown as nanoseconds, as they are used for latencies.
+ * <p>
+ * This command is shared by every platform, so it expects the
+ * {@link CommandIssuer} context to already be registered by one
+ * of the platform's base commands.
+ */
+@CommandAlias("fusionmetrics|fmetrics")
+@CommandPermission("fusion.metrics")
+public class MetricsCommand extends CommonBaseCommand {
+
+    private final MetricRegistry registry;
+
+    public MetricsCommand(MetricRegistry registry) {
+        super(TextColor.color(0xCCE5FF), TextColor.color(0x4DA6FF));
+        this.registry = registry;
+    }
+
+    @Default
+    @Subcommand("list")
+    @Description("Show every metric, or only those that start with a filter")
+    public void onList(CommandIssuer sender, @Optional String filter) {
+
+        TextComponent.Builder message = Component.text()
+                .append(getHeaderFooter())
+                .append(Component.newline())
+                .append(getTitle("Metrics (" + (registry.isEnabled() ? "enabled" : "disabled") + ")"));
+        int shown = 0;
+        for (Map.Entry<String, Metric> entry : registry.getMetrics().entrySet()) {
+
+            if (filter != null && !entry.getKey().startsWith(filter)) {
+                continue;
+            }
+
+            shown++;
+            message.append(Component.newline())
+                    .append(Component.text(" - ", secondaryColor))
+                    .append(Component.text(entry.getKey() + ": ", primaryColor))
+                    .append(Component.text(describe(entry.getValue()), NamedTextColor.GRAY));
+        }
+
+        if (shown == 0) {
+            message.append(Component.newline()).append(offsetMessage(Component.text("No metrics found", NamedTextColor.GRAY)));
+        }
+
+        message.append(Component.newline()).append(getHeaderFooter());
+        sender.sendMessage(message.build());
+    }
+
+    @Subcommand("enable")
+    @Description("Start recording metrics")
+    public void onEnable(CommandIssuer sender) {
+        registry.setEnabled(true);
+        sender.sendMessage(prefix.append(Component.text("Metrics are now being recorded.", primaryColor)));
+    }
+
+    @Subcommand("disable")
+    @Description("Stop recording metrics")
+    public void onDisable(CommandIssuer sender) {
+        registry.setEnabled(false);
+        sender.sendMessage(prefix.append(Component.text("Metrics are no longer being recorded.", primaryColor)));
+    }
+
+    @Subcommand("reset")
+    @Description("Reset every counter and histogram")
+    public void onReset(CommandIssuer sender) {
+        registry.reset();
+        sender.sendMessage(prefix.append(Component.text("Metrics have been reset.", primaryColor)));
+    }
+
+    private static String describe(Metric metric) {
+
+        if (metric instanceof Counter counter) {
+            return String.valueOf(counter.get());
+        }
+
+        if (metric instanceof Gauge gauge) {
+            return String.valueOf(gauge.get());
+        }
+
+        if (metric instanceof Histogram histogram) {
+            Histogram.Snapshot snapshot = histogram.snapshot();
+            return snapshot.count() + " @ p50 " + formatNanos(snapshot.p50()) + ", p99 " +
+                    formatNanos(snapshot.p99()) + ", max " + formatNanos(snapshot.max());
+        }
+
+        return metric.toString();
+    }
+
+    private static String formatNanos(long nanos) {
+
+        if (nanos < 1000) {
+            return nanos + "ns";
+        }
+
+        if (nanos < 1000000) {
+            return String.format(Locale.ROOT, "%.1fµs", nanos / 1000D);
+        }
+
+        return String.format(Locale.ROOT, "%.1fms", nanos / 1000000D);
+    }
+}
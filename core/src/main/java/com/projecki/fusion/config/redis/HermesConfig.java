@@ -49,11 +49,7 @@ public class HermesConfig<T> implements Config<T> {
         this.commands = commands;
         this.messageClient = messageClient;
         this.messageClient.subscribe(configChannel);
-        messageClient.registerMessageListener(HermesConfig.UpdateMessage.class, (s, u) -> {
-            // ignore messages coming from other subscribed channels
-            if (!s.equalsIgnoreCase(this.configChannel)) {
-                return;
-            }
+        messageClient.registerMessageListener(HermesConfig.UpdateMessage.class, configChannel, (s, u) -> {
             if (u.getSerializedConfig() != null) {
                 try {
                     T casted = u.deserialize(deserializer).orElse(null);
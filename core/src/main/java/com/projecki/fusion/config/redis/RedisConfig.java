@@ -37,11 +37,7 @@ public class RedisConfig<T> implements Config<T> {
         this.commands = commands;
         this.messageClient = messageClient;
         this.messageClient.subscribe(configChannel);
-        messageClient.registerMessageListener(UpdateMessage.class, (s, u) -> {
-            // ignore messages coming from other subscribed channels
-            if (!s.equalsIgnoreCase(this.configChannel)) {
-                return;
-            }
+        messageClient.registerMessageListener(UpdateMessage.class, configChannel, (s, u) -> {
             if (u.getSerializedConfig() != null) {
                 T casted = null;
                 try {
@@ -19,8 +19,9 @@ public class ControlMessageHandler {
      * @param serverName    name of this server
      */
     public ControlMessageHandler(MessageClient messageClient, String serverName) {
-        messageClient.subscribe(ControlMessage.getServerChannel(serverName));
-        messageClient.registerMessageListener(ControlMessage.class, this::processMessage);
+        String channel = ControlMessage.getServerChannel(serverName);
+        messageClient.subscribe(channel);
+        messageClient.registerMessageListener(ControlMessage.class, channel, this::processMessage);
     }
 
     private void processMessage(String channel, ControlMessage message) {
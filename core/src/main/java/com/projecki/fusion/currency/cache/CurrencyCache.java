@@ -3,16 +3,37 @@ package com.projecki.fusion.currency.cache;
 import com.projecki.fusion.currency.Currency;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Caches the balances of users, safe to use from any thread.
+ * <p>
+ * Every currency is given a dense index the first time it is used, and each
+ * user has an array of balances indexed by it, so reading a balance is a
+ * lookup of the user followed by an array access without boxing or locks.
+ * <p>
+ * Every update carries a version from {@link #nextVersion()}, and a balance
+ * is only replaced by an update with a higher version than the one that set
+ * it. Loading a balance takes its version before the balance is requested, so
+ * a slow load can never overwrite a balance that was loaded after it started.
+ */
 public class CurrencyCache {
 
-    private final Map<Currency, Map<UUID, Long>> balances = new HashMap<>();
+    // balances are never negative, so this marks a balance that is not cached
+    private static final long ABSENT = Long.MIN_VALUE;
 
+    private final Map<UUID, Balances> balances = new ConcurrentHashMap<>();
+    private final Map<String, Integer> indexes = new ConcurrentHashMap<>();
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private final AtomicLong version = new AtomicLong();
 
     /**
      * Get the cached balance for the specified {@link UUID}.
@@ -23,21 +44,33 @@ public class CurrencyCache {
      * @return the cached balance wrapped in an optional
      */
     public Optional<Long> getCachedBalance(@NotNull Currency currency, @NotNull UUID uuid) {
-
-        // make sure cache exists for currency
-        assertCacheExists(currency);
-
-        return Optional.ofNullable(balances.get(currency).get(uuid));
+        long balance = this.getCachedBalance(currency, uuid, ABSENT);
+        return balance == ABSENT ? Optional.empty() : Optional.of(balance);
     }
 
+    /**
+     * Get the cached balance for the specified {@link UUID}, without boxing it.
+     *
+     * @param currency the currency type to get
+     * @param uuid         the uuid to get the balance for
+     * @param defaultValue the value to return if the balance is not cached
+     *
+     * @return the cached balance, or the default value
+     */
+    public long getCachedBalance(@NotNull Currency currency, @NotNull UUID uuid, long defaultValue) {
+        Balances user = balances.get(uuid);
+        long balance = user == null ? ABSENT : user.get(this.index(currency));
+        return balance == ABSENT ? defaultValue : balance;
+    }
 
     /**
-     * Remove the cached balance for the specified {@link UUID}, if cached
+     * Remove the cached balance for the specified {@link UUID}, if cached.
+     * Balances that are still loading when it is removed are not cached.
      *
      * @param uuid the uuid to clear the cached balance for
      */
     public void clear(@NotNull UUID uuid) {
-        balances.values().forEach(cache -> cache.remove(uuid));
+        balances.remove(uuid);
     }
 
     /**
@@ -50,13 +83,15 @@ public class CurrencyCache {
      */
     public CompletableFuture<Void> updateBalance(@NotNull Currency currency, @NotNull UUID uuid) {
 
-        // make sure cache exists for currency
-        assertCacheExists(currency);
+        int index = this.index(currency);
+        // taken before the request, so a request that completes late cannot overwrite a newer balance
+        Balances user = balances.computeIfAbsent(uuid, k -> new Balances());
+        long version = this.nextVersion();
 
         return currency.getBalance(uuid)
                 .thenApply(balance -> {
-                    if (balance != null) {
-                        setCacheBalance(currency, uuid, balance);
+                    if (balance != null && balance >= 0) {
+                        user.set(index, balance, version);
                     }
                     return null;
                 });
@@ -76,24 +111,97 @@ public class CurrencyCache {
     }
 
     /**
-     * Set the cached balance for a specific uuid
+     * Get a new version for an update, higher than every version before it.
+     * Take the version before reading the balance that is being cached.
+     *
+     * @return the new version
+     */
+    public final long nextVersion() {
+        return version.incrementAndGet();
+    }
+
+    /**
+     * Set the cached balance for a specific uuid, replacing any cached balance
      *
      * @param currency the currency type to set the cache balance for
      * @param uuid         the uuid to set the balance for
      * @param balance      the cached balance
      */
     protected void setCacheBalance(@NotNull Currency currency, @NotNull UUID uuid, long balance) {
-        assertCacheExists(currency);
+        this.setCacheBalance(currency, uuid, balance, this.nextVersion());
+    }
+
+    /**
+     * Set the cached balance for a specific uuid, unless it was already set by
+     * a newer update
+     *
+     * @param currency the currency type to set the cache balance for
+     * @param uuid         the uuid to set the balance for
+     * @param balance      the cached balance
+     * @param version      the version of the update, from {@link #nextVersion()}
+     *
+     * @return if the balance was set, or false if it is negative or a newer update set it
+     */
+    protected boolean setCacheBalance(@NotNull Currency currency, @NotNull UUID uuid, long balance, long version) {
 
         // prevent negative balances
-        if (balance < 0) return;
+        if (balance < 0) return false;
 
-        balances.get(currency).put(uuid, balance);
+        int index = this.index(currency);
+        return balances.computeIfAbsent(uuid, k -> new Balances()).set(index, balance, version);
     }
 
+    /**
+     * Make sure the currency has an index in this cache. Every method of this cache
+     * does this itself, so there is no need to call it first.
+     *
+     * @param currency the currency
+     */
     protected final void assertCacheExists(@NotNull Currency currency) {
-        if (!balances.containsKey(currency)) {
-            balances.put(currency, new HashMap<>());
+        this.index(currency);
+    }
+
+    private int index(Currency currency) {
+        return indexes.computeIfAbsent(currency.id(), k -> nextIndex.getAndIncrement());
+    }
+
+    // the balances of one user, by the index of their currency
+    private static final class Balances {
+
+        private volatile AtomicLongArray values = new AtomicLongArray(0);
+        // only used while holding the lock
+        private long[] versions = new long[0];
+
+        long get(int index) {
+            AtomicLongArray values = this.values;
+            return index < values.length() ? values.get(index) : ABSENT;
+        }
+
+        synchronized boolean set(int index, long balance, long version) {
+
+            if (index >= versions.length) {
+                this.grow(index + 1);
+            }
+
+            if (version <= versions[index]) {
+                return false;
+            }
+
+            versions[index] = version;
+            values.set(index, balance);
+            return true;
+        }
+
+        // copied, so readers never see a partly filled array
+        private void grow(int size) {
+            AtomicLongArray old = this.values;
+            AtomicLongArray copy = new AtomicLongArray(size);
+            for (int i = 0; i < size; i++) {
+                copy.set(i, i < old.length() ? old.get(i) : ABSENT);
+            }
+
+            this.versions = Arrays.copyOf(versions, size);
+            this.values = copy;
         }
     }
 }
@@ -1,8 +1,10 @@
 package com.projecki.fusion.currency.storage;
 
+import com.projecki.fusion.FusionCore;
 import com.projecki.fusion.currency.Currency;
 import com.projecki.fusion.currency.CurrencyPair;
 import com.projecki.fusion.sql.SqlConnectionPool;
+import com.projecki.fusion.util.concurrent.ExecutorRegistry;
 import org.jetbrains.annotations.NotNull;
 
 import java.sql.Connection;
@@ -18,25 +20,35 @@ import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 public class SqlCurrencyStorage implements CurrencyStorage {
 
     private final SqlConnectionPool sqlConnectionPool;
     private final ExecutorService executor;
+    private final boolean ownsExecutor;
     private final String tableName;
 
     public SqlCurrencyStorage(@NotNull String tableName, @NotNull SqlConnectionPool sqlConnectionPool, @NotNull ExecutorService executor) {
-        this.tableName = tableName;
-        this.sqlConnectionPool = sqlConnectionPool;
-        this.executor = executor;
+        this(tableName, sqlConnectionPool, executor, true);
     }
 
+    /**
+     * Create a storage that runs its queries on the shared
+     * {@link ExecutorRegistry#io() IO pool}.
+     *
+     * @param tableName The name of the table balances are stored in.
+     * @param sqlConnectionPool The {@link SqlConnectionPool} to get connections from.
+     */
     public SqlCurrencyStorage(@NotNull String tableName, @NotNull SqlConnectionPool sqlConnectionPool) {
-        this(tableName, sqlConnectionPool, new ThreadPoolExecutor(1, 4, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>()));
+        this(tableName, sqlConnectionPool, FusionCore.getExecutors().io(), false);
+    }
+
+    private SqlCurrencyStorage(String tableName, SqlConnectionPool sqlConnectionPool, ExecutorService executor, boolean ownsExecutor) {
+        this.tableName = tableName;
+        this.sqlConnectionPool = sqlConnectionPool;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
     }
 
 
@@ -207,7 +219,10 @@ public class SqlCurrencyStorage implements CurrencyStorage {
 
     @Override
     public void close() {
+
         sqlConnectionPool.shutdown();
-        executor.shutdown();
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
     }
 }
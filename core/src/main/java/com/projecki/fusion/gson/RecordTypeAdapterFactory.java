@@ -1,94 +1,212 @@
 package com.projecki.fusion.gson;
 
+import com.google.common.reflect.TypeResolver;
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import com.google.gson.TypeAdapter;
 import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.SerializedName;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * A {@link TypeAdapterFactory} that deserializes records through
+ * their canonical constructor. Records are serialized by the
+ * delegate adapter.
+ * <p>
+ * Everything that can be computed from the record type alone, such as
+ * the components and the constructor, is computed once per type and
+ * shared by every {@link Gson} instance. Records whose constructor cannot
+ * be turned into a {@link MethodHandle} are constructed through reflection.
+ */
 public class RecordTypeAdapterFactory implements TypeAdapterFactory {
 
+    private static final ClassValue<RecordSchema> SCHEMAS = new ClassValue<>() {
 
-    private Map<TypeToken<?>, TypeAdapter<?>> typeAdapters = new HashMap<>();
+        @Override
+        protected RecordSchema computeValue(@NotNull Class<?> type) {
+            return RecordSchema.of(type);
+        }
+    };
 
-    private <T> TypeAdapter<T> createTypeAdapter(@NotNull Gson gson, @NotNull TypeToken<T> type) {
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
 
-        @SuppressWarnings("unchecked")
-        Class<T> clazz = (Class<T>) type.getRawType();
+        Class<? super T> clazz = type.getRawType();
         if (!clazz.isRecord()) {
             return null;
         }
-        TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
 
-        return new TypeAdapter<T>() {
-            @Override
-            public void write(JsonWriter out, T value) throws IOException {
-                delegate.write(out, value);
-            }
+        RecordSchema schema = SCHEMAS.get(clazz);
+        return schema != null ? new RecordTypeAdapter<>(gson, gson.getDelegateAdapter(this, type), type, schema) : null;
+    }
 
-            @Override
-            public T read(JsonReader reader) throws IOException {
-                if (reader.peek() == JsonToken.NULL) {
-                    reader.nextNull();
-                    return null;
-                } else {
-                    var recordComponents = clazz.getRecordComponents();
-                    var typeMap = new HashMap<String, TypeToken<?>>();
-                    for (java.lang.reflect.RecordComponent recordComponent : recordComponents) {
-                        typeMap.put(recordComponent.getName(), TypeToken.get(recordComponent.getGenericType()));
-                    }
-                    var argsMap = new HashMap<String, Object>();
-                    reader.beginObject();
-                    while (reader.hasNext()) {
-                        String name = reader.nextName();
-                        argsMap.put(name, gson.getAdapter(typeMap.get(name)).read(reader));
-                    }
-                    reader.endObject();
-
-                    var argTypes = new Class<?>[recordComponents.length];
-                    var args = new Object[recordComponents.length];
-                    for (int i = 0; i < recordComponents.length; i++) {
-                        argTypes[i] = recordComponents[i].getType();
-                        args[i] = argsMap.get(recordComponents[i].getName());
-                    }
-                    Constructor<T> constructor;
-                    try {
-                        constructor = clazz.getDeclaredConstructor(argTypes);
-                        constructor.setAccessible(true);
-                        return constructor.newInstance(args);
-                    } catch (NoSuchMethodException | InstantiationException | SecurityException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-                        throw new RuntimeException(e);
-                    }
+    /**
+     * The components and canonical constructor of a record type.
+     *
+     * @param components The components of the record in declaration order.
+     * @param defaults The value to use for each component that is missing from the JSON.
+     * @param constructor The canonical constructor.
+     * @param handle The canonical constructor taking an {@code Object[]} of arguments,
+     *               or {@code null} to call the constructor through reflection.
+     */
+    private record RecordSchema(RecordComponent[] components, Object[] defaults,
+                                Constructor<?> constructor, @Nullable MethodHandle handle) {
+
+        @Nullable
+        static RecordSchema of(Class<?> type) {
+
+            RecordComponent[] components = type.getRecordComponents();
+            Class<?>[] parameterTypes = new Class<?>[components.length];
+            Object[] defaults = new Object[components.length];
+            for (int i = 0; i < components.length; i++) {
+                parameterTypes[i] = components[i].getType();
+                if (parameterTypes[i].isPrimitive()) { // zero, false, etc.
+                    defaults[i] = Array.get(Array.newInstance(parameterTypes[i], 1), 0);
                 }
             }
-        };
+
+            Constructor<?> constructor;
+            try {
+                constructor = type.getDeclaredConstructor(parameterTypes);
+            } catch (NoSuchMethodException e) {
+                return null; // left to the default adapter
+            }
+
+            MethodHandle handle;
+            try {
+                constructor.setAccessible(true);
+                handle = MethodHandles.lookup().unreflectConstructor(constructor)
+                        .asSpreader(Object[].class, components.length)
+                        .asType(MethodType.methodType(Object.class, Object[].class));
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                handle = null; // such as a record in a module that is not open to this one
+            }
+
+            return new RecordSchema(components, defaults, constructor, handle);
+        }
+
+        Object newInstance(Object[] args) throws Throwable {
+
+            if (handle != null) {
+                return handle.invokeExact(args);
+            }
+
+            try {
+                return constructor.newInstance(args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
     }
 
-    @Override
-    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+    private static final class RecordTypeAdapter<T> extends TypeAdapter<T> {
 
-        @SuppressWarnings("unchecked")
-        Class<T> clazz = (Class<T>) type.getRawType();
-        if (!clazz.isRecord()) {
-            return null;
+        private final TypeAdapter<T> delegate;
+        private final RecordSchema schema;
+        private final TypeAdapter<?>[] adapters;
+        private final Map<String, Integer> indices;
+
+        RecordTypeAdapter(Gson gson, TypeAdapter<T> delegate, TypeToken<T> type, RecordSchema schema) {
+            this.delegate = delegate;
+            this.schema = schema;
+            RecordComponent[] components = schema.components();
+            this.adapters = new TypeAdapter<?>[components.length];
+            this.indices = new HashMap<>(components.length * 2);
+            TypeResolver resolver = resolver(type.getType());
+            for (int i = 0; i < components.length; i++) {
+                Type componentType = resolver.resolveType(components[i].getGenericType());
+                adapters[i] = gson.getAdapter(TypeToken.get(componentType));
+                indices.put(name(gson, components[i]), i);
+            }
         }
 
-        if (!typeAdapters.containsKey(type)) {
-            typeAdapters.put(type, createTypeAdapter(gson, type));
+        @Override
+        public void write(JsonWriter out, T value) throws IOException {
+            delegate.write(out, value);
         }
 
+        @Override
         @SuppressWarnings("unchecked")
-        TypeAdapter<T> adapter = (TypeAdapter<T>) typeAdapters.get(type);
+        public T read(JsonReader reader) throws IOException {
+
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                return null;
+            }
+
+            Object[] args = schema.defaults().clone();
+            reader.beginObject();
+            while (reader.hasNext()) {
+
+                Integer index = indices.get(reader.nextName());
+                if (index == null) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                Object value = adapters[index].read(reader);
+                if (value != null || args[index] == null) { // keep the default for a null primitive
+                    args[index] = value;
+                }
+            }
+
+            reader.endObject();
+            try {
+                return (T) schema.newInstance(args);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new JsonParseException(e);
+            }
+        }
+
+        // resolves type variables of generic records, like T in Box<T>, against the actual type
+        // records are static, so only their own type variables can appear in their components
+        private static TypeResolver resolver(Type type) {
+
+            TypeResolver resolver = new TypeResolver();
+            if (type instanceof ParameterizedType parameterized) {
+
+                TypeVariable<?>[] variables = ((Class<?>) parameterized.getRawType()).getTypeParameters();
+                Type[] arguments = parameterized.getActualTypeArguments();
+                for (int i = 0; i < variables.length; i++) {
+                    resolver = resolver.where(variables[i], arguments[i]);
+                }
+            }
+
+            return resolver;
+        }
 
-        return adapter;
+        // the same name the delegate writes the component's field with
+        private static String name(Gson gson, RecordComponent component) {
+
+            try {
+                Field field = component.getDeclaringRecord().getDeclaredField(component.getName());
+                SerializedName serializedName = field.getAnnotation(SerializedName.class);
+                return serializedName != null ? serializedName.value() : gson.fieldNamingStrategy().translateName(field);
+            } catch (NoSuchFieldException e) {
+                return component.getName();
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,77 @@
+package com.projecki.fusion.message;
+
+import com.projecki.fusion.message.MessageClient.Message;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+
+/**
+ * Creates direct invokers for {@link MessageClient.MessageListener} methods
+ * so that delivering a message does not go through {@link Method#invoke}.
+ * <p>
+ * Where possible a {@link BiConsumer} implementation is spun with the
+ * {@link LambdaMetafactory} so the call is a plain interface call that
+ * the JIT can inline. If the listener class cannot be accessed with full
+ * privileges (for example, it is loaded by a different plugin class loader)
+ * a bound {@link MethodHandle} is used instead.
+ */
+final class ListenerInvokers {
+
+    private static final MethodType CONSUMER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private ListenerInvokers() {
+    }
+
+    /**
+     * Create an invoker that calls the given listener method.
+     *
+     * @param listener The object to call the method on. Ignored for static methods.
+     * @param method The listener method taking a channel and a {@link Message}.
+     * @return The invoker for the method.
+     * @throws IllegalAccessException If the method cannot be accessed.
+     */
+    @SuppressWarnings("unchecked")
+    static BiConsumer<String, Message> create(Object listener, Method method) throws IllegalAccessException {
+
+        MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup());
+        MethodHandle handle = lookup.unreflect(method);
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+        if (lookup.hasFullPrivilegeAccess()) {
+
+            MethodType factoryType = isStatic ?
+                    MethodType.methodType(BiConsumer.class) :
+                    MethodType.methodType(BiConsumer.class, method.getDeclaringClass());
+            MethodType instantiatedType = MethodType.methodType(void.class, method.getParameterTypes());
+            try {
+                CallSite site = LambdaMetafactory.metafactory(lookup, "accept", factoryType,
+                        CONSUMER_TYPE, handle, instantiatedType);
+                return (BiConsumer<String, Message>) (isStatic ?
+                        site.getTarget().invoke() :
+                        site.getTarget().invoke(listener));
+            } catch (LambdaConversionException ignored) {
+                // fall back to the method handle below
+            } catch (Throwable e) {
+                throw new IllegalStateException("Failed to create invoker for " + method, e);
+            }
+        }
+
+        MethodHandle bound = (isStatic ? handle : handle.bindTo(listener))
+                .asType(MethodType.methodType(void.class, String.class, Message.class));
+        return (channel, message) -> {
+            try {
+                bound.invokeExact(channel, message);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+}
@@ -1,17 +1,31 @@
 package com.projecki.fusion.message;
 
-import com.projecki.fusion.Bootstrap;
+import com.projecki.fusion.FusionBootstrap;
+import com.projecki.fusion.message.codec.BinaryMessageCodec;
+import com.projecki.fusion.message.codec.CodecAdvertisement;
+import com.projecki.fusion.message.codec.FrameCompressor;
+import com.projecki.fusion.message.codec.GsonMessageCodec;
+import com.projecki.fusion.message.codec.MessageCodec;
+import com.projecki.fusion.util.concurrent.StripedExecutor;
+import org.jetbrains.annotations.Nullable;
 
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiConsumer;
 
 /**
@@ -21,11 +35,43 @@ public abstract class MessageClient {
 
     public static final String DEFAULT_CHANNEL = "inter-server-messages";
 
-    private final Map<String, Class<? extends Message>> messageTypes = new HashMap<>();
-    private final List<ListenerContainer<? extends Message>> listenerContainers = new ArrayList<>();
+    /**
+     * The channel that clients send each other a {@link CodecAdvertisement} on,
+     * once the {@link #setBinaryCodec(boolean) binary codec} is configured.
+     */
+    public static final String CODEC_CHANNEL = "fusion-codecs";
+
+    /**
+     * The first byte of a frame that was {@link #setLoopback(boolean) delivered locally}
+     * when it was sent, followed by the nonce of the sending client and the frame itself.
+     */
+    public static final byte LOOPBACK_MAGIC = 0x03;
+    private static final int LOOPBACK_HEADER = 1 + Long.BYTES;
+
+    private final Map<String, Class<? extends Message>> messageTypes = new ConcurrentHashMap<>();
+    private final List<ListenerContainer<? extends Message>> listenerContainers = new CopyOnWriteArrayList<>();
+    // resolved listeners keyed by channel and concrete message type, filled in lazily on first dispatch
+    private final Map<DispatchKey, List<ListenerContainer<?>>> dispatchTable = new ConcurrentHashMap<>();
+
+    private final MessageCodec fallbackCodec = new GsonMessageCodec(messageTypes::get);
+    private final BinaryMessageCodec binaryCodec = new BinaryMessageCodec();
+    private final List<MessageCodec> codecs = new CopyOnWriteArrayList<>(List.of(binaryCodec));
+    private volatile MessageCodec outboundCodec = fallbackCodec;
+    private final FrameCompressor compressor = new FrameCompressor(messageTypes::get);
+    @Nullable
+    private volatile StripedExecutor dispatchExecutor;
+    private final LongAdder skippedDecodes = new LongAdder();
+
+    private final Set<String> subscriptions = ConcurrentHashMap.newKeySet();
+    // identifies the frames that this client delivered locally when they come back
+    private final long nonce = ThreadLocalRandom.current().nextLong();
+    private volatile boolean loopback;
+    private final LongAdder loopbacks = new LongAdder();
+    private final AtomicBoolean advertising = new AtomicBoolean();
 
     public MessageClient() {
-        Bootstrap.REFLECTIONS.getSubTypesOf(HandledMessage.class).forEach(this::registerMessage);
+        FusionBootstrap.getSubTypesOf(HandledMessage.class).forEach(this::registerMessage);
+        this.registerMessageListener(CodecAdvertisement.class, CODEC_CHANNEL, (c, m) -> this.advertised(m));
     }
 
     /**
@@ -55,12 +101,8 @@ public abstract class MessageClient {
             return;
         }
 
-        this.registerMessageListener(target, (c, m) -> {
-
-            if (channel.equals(c)) {
-                m.handle(c);
-            }
-        });
+        this.registerType(target);
+        this.addListener(new ListenerContainer<>(target, channel, (c, m) -> m.handle(c)));
     }
 
     /**
@@ -72,8 +114,25 @@ public abstract class MessageClient {
      * @param <T> The type of message to listen for
      */
     public final <T extends Message> void registerMessageListener(Class<T> target, BiConsumer<String, T> function) {
-        this.messageTypes.put(target.getName(), target); // register message type
-        this.listenerContainers.add(new ListenerContainer<>(target, function));
+        this.registerType(target);
+        this.addListener(new ListenerContainer<>(target, function));
+    }
+
+    /**
+     * Registers a message listener for catching messages that are received
+     * on a specific channel. Messages of the target type that are received on
+     * any other channel are not passed to the function and, if no other listener
+     * wants them, are not decoded at all.
+     *
+     * @param target The type of message to listen for
+     * @param channel The channel the message must be received on
+     * @param function The function to run when the message is received. String being the channel the message was received
+     *                 on and the object being the message received.
+     * @param <T> The type of message to listen for
+     */
+    public final <T extends Message> void registerMessageListener(Class<T> target, String channel, BiConsumer<String, T> function) {
+        this.registerType(target);
+        this.addListener(new ListenerContainer<>(target, channel, function));
     }
 
     /**
@@ -81,7 +140,9 @@ public abstract class MessageClient {
      * In this object, you can have multiple methods that will handle an incoming message with 2 parameters: the first
      * being a string (the channel), and the message you will be receiving of type {@code Message}
      * <p>
-     * This method must be annotated with {@link MessageListener} to be registered.
+     * This method must be annotated with {@link MessageListener} to be registered. The
+     * {@link MessageListener#channels() channels} of the annotation can be used to only
+     * receive messages from specific channels.
      * <p>
      * Example:
      * <pre>
@@ -110,14 +171,33 @@ public abstract class MessageClient {
             var params = method.getParameterTypes();
             if (params[0].isAssignableFrom(String.class) && Message.class.isAssignableFrom(params[1])) {
                 Class<? extends Message> param = (Class<? extends Message>) params[1]; // fuck you, I know what I'm doing
-                this.messageTypes.put(param.getName(), param); // register message type
-                this.listenerContainers.add(new ListenerContainer<>(param, (s, t) -> {
+                this.registerType(param);
+                BiConsumer<String, Message> invoker;
+                try {
+                    invoker = ListenerInvokers.create(listener, method);
+                } catch (IllegalAccessException e) {
+                    e.printStackTrace();
+                    continue;
+                }
+
+                BiConsumer<String, Message> function = (s, t) -> {
                     try {
-                        method.invoke(listener, s, t);
-                    } catch (IllegalAccessException | InvocationTargetException e) {
+                        invoker.accept(s, t);
+                    } catch (Throwable e) {
                         e.printStackTrace();
                     }
-                }));
+                };
+
+                Class<Message> type = (Class<Message>) param;
+                String[] channels = method.getAnnotation(MessageListener.class).channels();
+                if (channels.length == 0) {
+                    this.addListener(new ListenerContainer<>(type, function));
+                } else {
+
+                    for (String channel : channels) {
+                        this.addListener(new ListenerContainer<>(type, channel, function));
+                    }
+                }
             }
         }
     }
@@ -127,7 +207,388 @@ public abstract class MessageClient {
     }
 
     public List<ListenerContainer<?>> getListenerContainers() {
-        return listenerContainers;
+        return Collections.unmodifiableList(listenerContainers);
+    }
+
+    /**
+     * Get the {@link ListenerContainer listeners} that should receive
+     * a message of the given type that was received on the given channel.
+     * <p>
+     * Supertypes of the message type are resolved once, the first time a
+     * type is seen on a channel, and the result is kept up to date as new
+     * listeners are registered.
+     *
+     * @param channel The channel the message was received on.
+     * @param type The concrete type of the message.
+     * @return The listeners that accept the message, in registration order.
+     */
+    public final List<ListenerContainer<?>> getListeners(String channel, Class<? extends Message> type) {
+
+        DispatchKey key = new DispatchKey(channel, type);
+        List<ListenerContainer<?>> listeners = dispatchTable.get(key);
+        if (listeners != null) {
+            return listeners;
+        }
+
+        synchronized (this) { // resolve under the same lock as registration so no listener is missed
+            return dispatchTable.computeIfAbsent(key, this::resolveListeners);
+        }
+    }
+
+    /**
+     * Dispatch a received {@link Message} to every listener
+     * that is registered for its type and channel.
+     *
+     * @param channel The channel the message was received on.
+     * @param message The message that was received.
+     */
+    public final void dispatch(String channel, Message message) {
+        for (ListenerContainer<?> container : this.getListeners(channel, message.getClass())) {
+            container.accept(channel, message);
+        }
+    }
+
+    /**
+     * Add a {@link MessageCodec} that received messages can be decoded with.
+     * Codecs are tried in the order they were added, and the original
+     * {@link GsonMessageCodec} is always tried last.
+     *
+     * @param codec The codec to add.
+     */
+    public final void addCodec(MessageCodec codec) {
+        this.messageTypes.values().forEach(codec::registerType);
+        this.codecs.add(codec);
+    }
+
+    /**
+     * Set the {@link MessageCodec} that messages are sent with. If the codec
+     * cannot encode a message the {@link GsonMessageCodec} is used instead.
+     * <p>
+     * Every codec that has been {@link #addCodec(MessageCodec) added} is always
+     * used to decode, so servers on different versions can run side by side
+     * as long as every server can decode the codec that is sent with.
+     *
+     * @param codec The codec to send messages with.
+     */
+    public final void setOutboundCodec(MessageCodec codec) {
+
+        if (codec != fallbackCodec && !codecs.contains(codec)) {
+            this.addCodec(codec);
+        }
+
+        this.outboundCodec = codec;
+    }
+
+    /**
+     * Set whether messages should be sent with the compact {@link BinaryMessageCodec}
+     * instead of JSON. Binary frames are always decoded, but this should only be
+     * enabled once every server on the network understands them.
+     * <p>
+     * Either way, the first call subscribes to the {@link #CODEC_CHANNEL} and
+     * advertises the fingerprints of the message types of this client, so that
+     * types that this client has different fields for are sent to it as JSON.
+     *
+     * @param binary If messages should be sent in binary.
+     */
+    public final void setBinaryCodec(boolean binary) {
+        this.setOutboundCodec(binary ? binaryCodec : fallbackCodec);
+        if (advertising.compareAndSet(false, true)) {
+            this.subscribe(CODEC_CHANNEL);
+            this.advertise(false, binaryCodec.getFingerprints());
+        }
+    }
+
+    /**
+     * Set the size, in bytes, that an encoded message must reach to be
+     * compressed before it is sent. Compressed frames are always decompressed,
+     * but this should only be enabled once every server on the network
+     * understands them.
+     *
+     * @param threshold The threshold or {@link FrameCompressor#DISABLED} to not compress.
+     * @param dictionary The dictionary to compress with, which must be the same
+     *                   on every server, or {@code null} to not use one.
+     */
+    public final void setCompression(int threshold, @Nullable byte[] dictionary) {
+        this.compressor.setDictionary(dictionary);
+        this.compressor.setThreshold(threshold);
+    }
+
+    /**
+     * Get the compression statistics for every type of message
+     * that has been compressed or decompressed.
+     *
+     * @return The {@link FrameCompressor.Stats} keyed by the identifier of the message.
+     */
+    public final Map<String, FrameCompressor.Stats> getCompressionStats() {
+        return compressor.getStats();
+    }
+
+    /**
+     * Encode a {@link Message} to a frame with the {@link #setOutboundCodec(MessageCodec) outbound codec},
+     * compressing it if it is larger than the {@link #setCompression(int, byte[]) compression threshold}.
+     *
+     * @param message The message to encode.
+     * @return The encoded frame.
+     */
+    public final byte[] encode(Message message) {
+        byte[] frame = outboundCodec.encode(message);
+        return compressor.compress(message, frame != null ? frame : fallbackCodec.encode(message));
+    }
+
+    /**
+     * Decode a frame that was received with the first codec that accepts it.
+     *
+     * @param frame The received frame.
+     * @return The decoded message or {@code null} if the type of message is not registered.
+     */
+    @Nullable
+    public final Message decode(byte[] frame) {
+
+        if (FrameCompressor.isCompressed(frame)) {
+            frame = compressor.decompress(frame);
+        }
+
+        for (MessageCodec codec : codecs) {
+
+            if (codec.accepts(frame)) {
+                return codec.decode(frame);
+            }
+        }
+
+        return fallbackCodec.decode(frame);
+    }
+
+    /**
+     * Set the {@link StripedExecutor} that received messages are decoded and
+     * dispatched on. Messages are striped by channel, so messages on the same
+     * channel are still handled in the order they were received.
+     * <p>
+     * If no executor is set messages are handled on the thread that received them.
+     *
+     * @param executor The executor to dispatch on or {@code null} to dispatch on the receiving thread.
+     */
+    public final void setDispatchExecutor(@Nullable StripedExecutor executor) {
+        this.dispatchExecutor = executor;
+    }
+
+    /**
+     * Get the {@link StripedExecutor} that received messages are dispatched on.
+     *
+     * @return The executor or {@code null} if messages are dispatched on the receiving thread.
+     */
+    @Nullable
+    public final StripedExecutor getDispatchExecutor() {
+        return dispatchExecutor;
+    }
+
+    /**
+     * Handle a frame that was received on the given channel by decoding
+     * it and {@link #dispatch(String, Message) dispatching} the message
+     * on the {@link #setDispatchExecutor(StripedExecutor) dispatch executor}.
+     *
+     * @param channel The channel the frame was received on.
+     * @param frame The received frame.
+     */
+    public final void receive(String channel, byte[] frame) {
+
+        if (frame.length >= LOOPBACK_HEADER && frame[0] == LOOPBACK_MAGIC) {
+
+            if (ByteBuffer.wrap(frame, 1, Long.BYTES).getLong() == nonce) {
+                return; // already delivered locally when it was sent
+            }
+
+            frame = Arrays.copyOfRange(frame, LOOPBACK_HEADER, frame.length);
+        }
+
+        byte[] received = frame;
+        StripedExecutor executor = this.dispatchExecutor;
+        if (executor != null) {
+            executor.execute(channel, () -> this.decodeAndDispatch(channel, received));
+        } else {
+            this.decodeAndDispatch(channel, received);
+        }
+    }
+
+    /**
+     * Set whether messages sent on a channel that this client is subscribed
+     * to should be delivered to the local listeners straight from the sent
+     * object, instead of after a round trip through the network. This is
+     * disabled by default.
+     * <p>
+     * Frames that were delivered locally are sent with a header that marks
+     * them as sent by this client, which versions before loopback cannot read,
+     * so only enable this once every server and proxy is on a version that does.
+     * <p>
+     * Local listeners receive the same instance that was sent rather than a
+     * decoded copy, so a message should not be modified after it is sent.
+     * Without a {@link #setDispatchExecutor(StripedExecutor) dispatch executor},
+     * they are also called right away on the thread that sends the message,
+     * such as the main thread, before {@code send} returns.
+     *
+     * @param loopback If messages should be delivered locally.
+     */
+    public final void setLoopback(boolean loopback) {
+        this.loopback = loopback;
+    }
+
+    /**
+     * Get the amount of sent messages that were delivered locally
+     * without being decoded.
+     *
+     * @return The amount of messages delivered locally.
+     */
+    public final long getLoopbacks() {
+        return loopbacks.sum();
+    }
+
+    /**
+     * Mark a channel as subscribed to or unsubscribed from. This must be
+     * called by implementations whenever they subscribe or unsubscribe
+     * so that messages can be {@link #setLoopback(boolean) delivered locally}.
+     *
+     * @param channel The channel.
+     * @param subscribed If the channel is now subscribed to.
+     */
+    protected final void setSubscribed(String channel, boolean subscribed) {
+
+        if (subscribed) {
+            subscriptions.add(channel);
+        } else {
+            subscriptions.remove(channel);
+        }
+    }
+
+    /**
+     * Deliver a message that is being sent to the local listeners if this client
+     * is subscribed to the channel and {@link #setLoopback(boolean) loopback} is enabled.
+     * <p>
+     * This must be called by implementations before the frame is sent, and the
+     * returned frame must be sent in its place. A frame that was delivered locally
+     * is marked with the nonce of this client, so when it is {@link #receive(String, byte[]) received}
+     * back from the network it is dropped and the message is only handled once.
+     *
+     * @param channel The channel the message is being sent on.
+     * @param message The message that is being sent.
+     * @param frame The {@link #encode(Message) encoded} message.
+     * @return The frame to send.
+     */
+    protected final byte[] loopback(String channel, Message message, byte[] frame) {
+
+        if (!loopback || !subscriptions.contains(channel) || channel.equals(CODEC_CHANNEL)) {
+            return frame;
+        }
+
+        loopbacks.increment();
+
+        StripedExecutor executor = this.dispatchExecutor;
+        if (executor != null) {
+            executor.execute(channel, () -> this.dispatch(channel, message));
+        } else {
+            this.dispatch(channel, message);
+        }
+
+        return ByteBuffer.allocate(LOOPBACK_HEADER + frame.length)
+                .put(LOOPBACK_MAGIC)
+                .putLong(nonce)
+                .put(frame)
+                .array();
+    }
+
+    private void decodeAndDispatch(String channel, byte[] frame) {
+
+        Class<? extends Message> type = this.peekType(frame);
+        if (type != null && this.getListeners(channel, type).isEmpty()) {
+            this.skippedDecodes.increment(); // nothing wants it on this channel
+            return;
+        }
+
+        Message message = this.decode(frame);
+        if (message != null) {
+            this.dispatch(channel, message);
+        }
+    }
+
+    @Nullable
+    private Class<? extends Message> peekType(byte[] frame) {
+
+        if (FrameCompressor.isCompressed(frame)) {
+            return compressor.peekType(frame);
+        }
+
+        for (MessageCodec codec : codecs) {
+
+            if (codec.accepts(frame)) {
+                return codec.peekType(frame);
+            }
+        }
+
+        return fallbackCodec.peekType(frame);
+    }
+
+    /**
+     * Get the amount of received messages that were not decoded
+     * because no listener wanted their type on their channel.
+     *
+     * @return The amount of skipped messages.
+     */
+    public final long getSkippedDecodes() {
+        return skippedDecodes.sum();
+    }
+
+    private void registerType(Class<? extends Message> type) {
+
+        if (this.messageTypes.put(type.getName(), type) == null) {
+            this.codecs.forEach(codec -> codec.registerType(type));
+            if (advertising.get()) { // registered after the first advertisement
+                binaryCodec.getFingerprint(type).ifPresent(fingerprint ->
+                        this.advertise(true, Map.of(type.getName(), fingerprint)));
+            }
+        }
+    }
+
+    private void advertise(boolean reply, Map<String, Integer> fingerprints) {
+        this.send(CODEC_CHANNEL, new CodecAdvertisement(nonce, reply, fingerprints));
+    }
+
+    private void advertised(CodecAdvertisement advertisement) {
+
+        if (advertisement.getSender() == nonce) {
+            return; // sent by this client
+        }
+
+        binaryCodec.advertised(advertisement.getFingerprints());
+        if (!advertisement.isReply()) { // a client that has just started
+            this.advertise(true, binaryCodec.getFingerprints());
+        }
+    }
+
+    private synchronized void addListener(ListenerContainer<?> container) {
+        this.listenerContainers.add(container);
+        // append to the lists that were already resolved rather than throwing them away
+        this.dispatchTable.replaceAll((key, listeners) -> {
+
+            if (!container.matches(key.channel(), key.type())) {
+                return listeners;
+            }
+
+            List<ListenerContainer<?>> updated = new ArrayList<>(listeners.size() + 1);
+            updated.addAll(listeners);
+            updated.add(container);
+            return List.copyOf(updated);
+        });
+    }
+
+    private List<ListenerContainer<?>> resolveListeners(DispatchKey key) {
+
+        List<ListenerContainer<?>> listeners = new ArrayList<>();
+        for (ListenerContainer<?> container : listenerContainers) {
+
+            if (container.matches(key.channel(), key.type())) {
+                listeners.add(container);
+            }
+        }
+
+        return List.copyOf(listeners);
     }
 
     /**
@@ -147,6 +608,22 @@ public abstract class MessageClient {
      */
     public abstract void send(String channel, Message message);
 
+    /**
+     * Release any resources held by this client, such as publishing
+     * any messages that are still waiting to be sent and closing the
+     * {@link #setDispatchExecutor(StripedExecutor) dispatch executor}
+     * and the compressor.
+     */
+    public void shutdown() {
+
+        StripedExecutor executor = this.dispatchExecutor;
+        if (executor != null) {
+            executor.close();
+        }
+
+        this.compressor.close();
+    }
+
     /**
      * Subscribe the messaging client to listen to messages on the specified channel
      *
@@ -162,14 +639,53 @@ public abstract class MessageClient {
      */
     public abstract void unsubscribe(String channel);
 
-    public record ListenerContainer<T extends Message>(Class<T> type, BiConsumer<String, T> function) {
+    /**
+     * A listener for a type of {@link Message}.
+     *
+     * @param type The type of message that is listened for, including subtypes.
+     * @param channel The channel the message must be received on, or {@code null} for any channel.
+     * @param function The function to run when a matching message is received.
+     * @param <T> The type of message to listen for.
+     */
+    public record ListenerContainer<T extends Message>(Class<T> type, String channel, BiConsumer<String, T> function) {
+
+        public ListenerContainer(Class<T> type, BiConsumer<String, T> function) {
+            this(type, null, function);
+        }
+
+        /**
+         * Check whether this listener should receive messages
+         * of the given type that are received on the given channel.
+         *
+         * @param channel The channel the message was received on.
+         * @param type The concrete type of the message.
+         * @return If this listener accepts the message.
+         */
+        public boolean matches(String channel, Class<?> type) {
+            return this.type.isAssignableFrom(type) && (this.channel == null || this.channel.equals(channel));
+        }
 
         public void handle(String channel, Message message) {
 
-            if (type.isInstance(message)) {
-                function.accept(channel, (T) message);
+            if (this.matches(channel, message.getClass())) {
+                this.accept(channel, message);
             }
         }
+
+        /**
+         * Pass a message to this listener without checking that it
+         * {@link #matches(String, Class) matches}.
+         *
+         * @param channel The channel the message was received on.
+         * @param message The message that was received.
+         */
+        @SuppressWarnings("unchecked")
+        void accept(String channel, Message message) {
+            function.accept(channel, (T) message);
+        }
+    }
+
+    private record DispatchKey(String channel, Class<?> type) {
     }
 
     /**
@@ -201,5 +717,13 @@ public abstract class MessageClient {
     @Retention(RetentionPolicy.RUNTIME)
     @Target(ElementType.METHOD)
     public @interface MessageListener {
+
+        /**
+         * The channels that messages must be received on to be passed
+         * to the method. If empty, messages from every channel are passed.
+         *
+         * @return The channels to listen on.
+         */
+        String[] channels() default {};
     }
 }
@@ -0,0 +1,234 @@
+package com.projecki.fusion.message.codec;
+
+import com.projecki.fusion.FusionCore;
+import com.projecki.fusion.message.MessageClient;
+import com.projecki.fusion.message.MessageClient.Message;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A compact, schema based {@link MessageCodec}.
+ * <p>
+ * Frames start with {@link #MAGIC}, a byte that can never start
+ * a {@link GsonMessageCodec} frame, followed by the numeric id of
+ * the message type, the fingerprint of its schema and then each
+ * field of the message without its name (see {@link MessageSchema}).
+ * <p>
+ * Type ids are the {@link String#hashCode() hash} of the class name, so that
+ * every server agrees on them without coordinating. They are not numbered
+ * from the scan of {@link MessageClient.HandledMessage HandledMessages},
+ * because that scan finds different types on servers with different plugins,
+ * and types that are only registered as listeners are not part of it.
+ * Types whose ids collide, or that cannot be constructed without a JSON codec,
+ * are not encoded by this codec and fall back to the {@link GsonMessageCodec}.
+ * <p>
+ * Since a frame does not hold the names of its fields, it cannot be decoded
+ * by a server with other fields for its type. Servers tell each other the
+ * fingerprints of their types with a {@link CodecAdvertisement}, and a type
+ * that any other server has {@link #advertised(Map) advertised} a different
+ * fingerprint for is encoded by the {@link GsonMessageCodec} instead. Frames
+ * that still arrive with a fingerprint that does not match the local schema
+ * of their type, such as those sent before the advertisement was received,
+ * are {@link #getRejected() rejected} with a warning instead of being decoded
+ * into the wrong fields, and their type is no longer sent in binary either.
+ */
+public final class BinaryMessageCodec implements MessageCodec {
+
+    /**
+     * The first byte of every frame written by this codec.
+     */
+    public static final byte MAGIC = 0x01;
+
+    private final Map<Integer, Class<? extends Message>> types = new ConcurrentHashMap<>();
+    // the types that share each colliding id
+    private final Map<Integer, Set<Class<? extends Message>>> collisions = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Optional<MessageSchema>> schemas = new ConcurrentHashMap<>();
+    // the fingerprints that other servers have for each type, by the name of the type
+    private final Map<String, Set<Integer>> peerFingerprints = new ConcurrentHashMap<>();
+    // the types that a mismatched frame was received for, so that each is only warned about once
+    private final Set<Class<?>> mismatched = ConcurrentHashMap.newKeySet();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Get the id that identifies the given type in a binary frame.
+     *
+     * @param type The type of message.
+     * @return The id for the type.
+     */
+    public static int typeId(Class<?> type) {
+        return type.getName().hashCode();
+    }
+
+    @Override
+    public void registerType(Class<? extends Message> type) {
+
+        int id = typeId(type);
+        Class<? extends Message> existing = types.putIfAbsent(id, type);
+        if (existing != null && existing != type) {
+
+            Set<Class<? extends Message>> colliding = collisions.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet());
+            colliding.add(existing);
+            if (colliding.add(type)) {
+                FusionCore.LOGGER.warn("Message types {} and {} have the same binary id, falling back to JSON",
+                        existing.getName(), type.getName());
+            }
+        }
+    }
+
+    @Override
+    public boolean accepts(byte[] frame) {
+        return frame.length > 0 && frame[0] == MAGIC;
+    }
+
+    @Nullable
+    @Override
+    public byte[] encode(Message message) {
+
+        Class<?> type = message.getClass();
+        int id = typeId(type);
+        if (collisions.containsKey(id) || type == CodecAdvertisement.class) {
+            return null;
+        }
+
+        MessageSchema schema = this.getSchema(type);
+        if (schema == null || this.isDisputed(type, schema)) {
+            return null;
+        }
+
+        FrameOutput out = new FrameOutput(64);
+        out.writeByte(MAGIC);
+        out.writeVarInt(id);
+        out.writeInt(schema.fingerprint());
+        schema.write(message, out);
+        return out.toByteArray();
+    }
+
+    @Nullable
+    @Override
+    public Class<? extends Message> peekType(byte[] frame) {
+        int id = new FrameInput(frame, 1).readVarInt();
+        return collisions.containsKey(id) ? null : types.get(id);
+    }
+
+    @Nullable
+    @Override
+    public Message decode(byte[] frame) {
+
+        FrameInput in = new FrameInput(frame, 1);
+        int id = in.readVarInt();
+        int fingerprint = in.readInt();
+        Class<? extends Message> type = this.resolve(id, fingerprint);
+        if (type == null) {
+            return null;
+        }
+
+        MessageSchema schema = this.getSchema(type);
+        if (schema == null) {
+            return null;
+        }
+
+        if (fingerprint != schema.fingerprint()) {
+
+            rejected.increment();
+            this.seen(type.getName(), fingerprint);
+            if (mismatched.add(type)) {
+                FusionCore.LOGGER.warn("Rejected a binary {} with different fields than this server has, "
+                        + "it was sent by a server running another version of it and is now sent as JSON", type.getName());
+            }
+            return null;
+        }
+
+        return type.cast(schema.read(in));
+    }
+
+    /**
+     * Get the fingerprints of every registered type that can be encoded
+     * by this codec, to {@link CodecAdvertisement advertise} to other servers.
+     *
+     * @return The fingerprints by the name of each type.
+     */
+    public Map<String, Integer> getFingerprints() {
+
+        Map<String, Integer> fingerprints = new HashMap<>();
+        for (Class<? extends Message> type : types.values()) {
+
+            if (type != CodecAdvertisement.class) {
+                this.getFingerprint(type).ifPresent(fingerprint -> fingerprints.put(type.getName(), fingerprint));
+            }
+        }
+
+        return fingerprints;
+    }
+
+    /**
+     * Get the fingerprint of a type that can be encoded by this codec.
+     *
+     * @param type The type of message.
+     * @return The fingerprint or empty if the type cannot be encoded.
+     */
+    public OptionalInt getFingerprint(Class<? extends Message> type) {
+        MessageSchema schema = this.getSchema(type);
+        return schema != null ? OptionalInt.of(schema.fingerprint()) : OptionalInt.empty();
+    }
+
+    /**
+     * Record the fingerprints that another server has for its types. Types
+     * that it has a different fingerprint for are no longer encoded by this
+     * codec, so that the other server can still decode them.
+     *
+     * @param fingerprints The fingerprints by the name of each type.
+     */
+    public void advertised(Map<String, Integer> fingerprints) {
+        fingerprints.forEach(this::seen);
+    }
+
+    /**
+     * Get the amount of received frames that were not decoded because the
+     * fields of their type differ between the sender and this server.
+     *
+     * @return The amount of rejected frames.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    // the type with the id, or the one of the types sharing it that has the fingerprint
+    @Nullable
+    private Class<? extends Message> resolve(int id, int fingerprint) {
+
+        Set<Class<? extends Message>> colliding = collisions.get(id);
+        if (colliding != null) {
+
+            for (Class<? extends Message> type : colliding) {
+                MessageSchema schema = this.getSchema(type);
+                if (schema != null && schema.fingerprint() == fingerprint) {
+                    return type;
+                }
+            }
+        }
+
+        return types.get(id);
+    }
+
+    private void seen(String type, int fingerprint) {
+        peerFingerprints.computeIfAbsent(type, k -> ConcurrentHashMap.newKeySet()).add(fingerprint);
+    }
+
+    // whether another server has different fields for the type
+    private boolean isDisputed(Class<?> type, MessageSchema schema) {
+        Set<Integer> fingerprints = peerFingerprints.get(type.getName());
+        return fingerprints != null && (fingerprints.size() > 1 || !fingerprints.contains(schema.fingerprint()));
+    }
+
+    @Nullable
+    private MessageSchema getSchema(Class<?> type) {
+        return schemas.computeIfAbsent(type, t -> Optional.ofNullable(MessageSchema.of(t))).orElse(null);
+    }
+}
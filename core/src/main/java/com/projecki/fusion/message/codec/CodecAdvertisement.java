@@ -0,0 +1,48 @@
+package com.projecki.fusion.message.codec;
+
+import com.projecki.fusion.message.MessageClient;
+import com.projecki.fusion.message.MessageClient.Message;
+
+import java.util.Map;
+
+/**
+ * The {@link BinaryMessageCodec#getFingerprints() fingerprints} of the message
+ * types of a {@link MessageClient}, which clients send each other on the
+ * {@link MessageClient#CODEC_CHANNEL} so that a type is only sent in binary
+ * while no other server has different fields for it.
+ * <p>
+ * This is always sent as JSON, so that every version can read it.
+ */
+public final class CodecAdvertisement implements Message {
+
+    private long sender;
+    private boolean reply;
+    private Map<String, Integer> fingerprints;
+
+    CodecAdvertisement() {
+    }
+
+    /**
+     * @param sender The nonce of the client that sends this advertisement.
+     * @param reply If this answers the advertisement of another client,
+     *              so that it should not be answered in turn.
+     * @param fingerprints The fingerprints by the name of each type.
+     */
+    public CodecAdvertisement(long sender, boolean reply, Map<String, Integer> fingerprints) {
+        this.sender = sender;
+        this.reply = reply;
+        this.fingerprints = fingerprints;
+    }
+
+    public long getSender() {
+        return sender;
+    }
+
+    public boolean isReply() {
+        return reply;
+    }
+
+    public Map<String, Integer> getFingerprints() {
+        return fingerprints != null ? fingerprints : Map.of();
+    }
+}
@@ -0,0 +1,371 @@
+package com.projecki.fusion.message.codec;
+
+import com.projecki.fusion.FusionCore;
+import com.projecki.fusion.message.MessageClient.Message;
+import com.projecki.fusion.metrics.Gauge;
+import com.projecki.fusion.metrics.Histogram;
+import com.projecki.fusion.metrics.MetricRegistry;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Compresses frames produced by a {@link MessageCodec} once they
+ * reach a size threshold.
+ * <p>
+ * Compressed frames start with {@link #MAGIC}, a byte that no codec
+ * starts its frames with, followed by the {@link Message#getIdentifier()
+ * identifier} of the message, the length of the original frame and the
+ * original frame compressed with Deflate. The identifier is not compressed
+ * so that the type of message can be read without decompressing it.
+ * <p>
+ * A shared dictionary of content that is common in messages, such as
+ * JSON keys, can be used to improve compression of smaller frames. Every
+ * server must use the same dictionary to decompress those frames.
+ * <p>
+ * The statistics of each type of message are also recorded as metrics
+ * named {@code message.compression.<identifier>.<metric>}:
+ * <ul>
+ *     <li>{@code compressed} and {@code decompressed} - {@link Gauge Gauges}
+ *     of the amount of messages that were compressed and decompressed.</li>
+ *     <li>{@code uncompressed-bytes} and {@code compressed-bytes} - {@link Gauge Gauges}
+ *     of the total size of the compressed messages before and after compression.</li>
+ *     <li>{@code compress} and {@code decompress} - {@link Histogram Histograms}
+ *     of the nanoseconds each message took to compress and decompress.</li>
+ * </ul>
+ * The gauges are removed once the compressor is {@link #close() closed}.
+ */
+public final class FrameCompressor implements AutoCloseable {
+
+    /**
+     * The first byte of every compressed frame.
+     */
+    public static final byte MAGIC = 0x02;
+
+    /**
+     * The threshold that disables compression.
+     */
+    public static final int DISABLED = Integer.MAX_VALUE;
+
+    /**
+     * The largest frame that will be decompressed.
+     */
+    public static final int MAX_LENGTH = 16 * 1024 * 1024;
+
+    private final Function<String, Class<? extends Message>> typeLookup;
+    // pooled instead of thread local so that the native memory of each is released on close
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+    private volatile int threshold = DISABLED;
+    @Nullable
+    private volatile Dictionary dictionary;
+
+    /**
+     * @param typeLookup The function to get the type of message for an identifier.
+     */
+    public FrameCompressor(Function<String, Class<? extends Message>> typeLookup) {
+        this.typeLookup = typeLookup;
+    }
+
+    /**
+     * Set the size, in bytes, that a frame must reach to be compressed.
+     *
+     * @param threshold The threshold or {@link #DISABLED} to not compress any frame.
+     */
+    public void setThreshold(int threshold) {
+        checkArgument(threshold > 0, "invalid threshold: %s", threshold);
+        this.threshold = threshold;
+    }
+
+    /**
+     * Set the dictionary to compress and decompress with.
+     *
+     * @param dictionary The dictionary or {@code null} to not use one.
+     */
+    public void setDictionary(@Nullable byte[] dictionary) {
+        this.dictionary = dictionary != null ? new Dictionary(dictionary) : null;
+    }
+
+    /**
+     * Check whether the given frame was compressed by a {@link FrameCompressor}.
+     *
+     * @param frame The frame to check.
+     * @return If the frame is compressed.
+     */
+    public static boolean isCompressed(byte[] frame) {
+        return frame.length > 0 && frame[0] == MAGIC;
+    }
+
+    /**
+     * Compress a frame if it is at least the {@link #setThreshold(int) threshold}
+     * and compressing it makes it smaller.
+     *
+     * @param message The message that was encoded to the frame.
+     * @param frame The encoded frame.
+     * @return The compressed frame or the given frame if it was not compressed.
+     */
+    public byte[] compress(Message message, byte[] frame) {
+
+        if (frame.length < threshold) {
+            return frame;
+        }
+
+        long start = System.nanoTime();
+        String identifier = message.getIdentifier();
+        FrameOutput out = new FrameOutput(frame.length / 2 + identifier.length() + 8);
+        out.writeByte(MAGIC);
+        out.writeString(identifier);
+        out.writeVarInt(frame.length);
+
+        Deflater deflater = this.acquire(deflaters, Deflater::new);
+        try {
+
+            Dictionary dictionary = this.dictionary;
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary.bytes());
+            }
+
+            deflater.setInput(frame);
+            deflater.finish();
+            byte[] buffer = new byte[Math.min(frame.length, 8192)];
+            while (!deflater.finished()) {
+                out.writeBytes(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.reset();
+            this.release(deflaters, deflater, Deflater::end);
+        }
+
+        byte[] compressed = out.toByteArray();
+        if (compressed.length >= frame.length) {
+            return frame; // not worth decompressing
+        }
+
+        this.counters(identifier).compressed(frame.length, compressed.length, System.nanoTime() - start);
+        return compressed;
+    }
+
+    /**
+     * Read the type of message in a {@link #isCompressed(byte[]) compressed}
+     * frame without decompressing it.
+     *
+     * @param frame The compressed frame.
+     * @return The type of message or {@code null} if it is unknown.
+     */
+    @Nullable
+    public Class<? extends Message> peekType(byte[] frame) {
+        return typeLookup.apply(new FrameInput(frame, 1).readString());
+    }
+
+    /**
+     * Decompress a {@link #isCompressed(byte[]) compressed} frame.
+     *
+     * @param frame The compressed frame.
+     * @return The original frame.
+     * @throws IllegalArgumentException If the frame is corrupt or was
+     *                                  compressed with a different dictionary.
+     */
+    public byte[] decompress(byte[] frame) {
+
+        long start = System.nanoTime();
+        FrameInput in = new FrameInput(frame, 1);
+        String identifier = in.readString();
+        int length = in.readVarInt();
+        checkArgument(length >= 0 && length <= MAX_LENGTH, "invalid frame length: %s", length);
+
+        Inflater inflater = this.acquire(inflaters, Inflater::new);
+        inflater.setInput(frame, in.position(), frame.length - in.position());
+        byte[] decompressed = new byte[length];
+        try {
+            int read = 0;
+            while (read < length) {
+
+                int count = inflater.inflate(decompressed, read, length - read);
+                if (count == 0) {
+
+                    if (inflater.needsDictionary()) {
+                        Dictionary dictionary = this.dictionary;
+                        checkArgument(dictionary != null && dictionary.id() == inflater.getAdler(),
+                                "Frame was compressed with an unknown dictionary");
+                        inflater.setDictionary(dictionary.bytes());
+                    } else {
+                        throw new IllegalArgumentException("Frame is truncated");
+                    }
+                }
+
+                read += count;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Frame is corrupt", e);
+        } finally {
+            inflater.reset();
+            this.release(inflaters, inflater, Inflater::end);
+        }
+
+        this.counters(identifier).decompressed(System.nanoTime() - start);
+        return decompressed;
+    }
+
+    /**
+     * Get the compression statistics for every type of message
+     * that has been compressed or decompressed.
+     *
+     * @return The {@link Stats} keyed by the identifier of the message.
+     */
+    public Map<String, Stats> getStats() {
+        return counters.entrySet().stream().collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, e -> e.getValue().stats()));
+    }
+
+    /**
+     * Release the native memory of every pooled {@link Deflater} and {@link Inflater}
+     * and remove the gauges of this compressor. Frames that are compressed or
+     * decompressed after closing still work, but nothing is pooled anymore.
+     */
+    @Override
+    public void close() {
+
+        this.closed = true;
+        this.drain(deflaters, Deflater::end);
+        this.drain(inflaters, Inflater::end);
+        this.counters.values().forEach(Counters::close);
+    }
+
+    private <T> T acquire(Queue<T> pool, Supplier<T> factory) {
+        T value = pool.poll();
+        return value != null ? value : factory.get();
+    }
+
+    private <T> void release(Queue<T> pool, T value, Consumer<T> end) {
+
+        if (closed) {
+            end.accept(value);
+            return;
+        }
+
+        pool.add(value);
+        // closed meanwhile, so it may have been added after the pool was drained
+        if (closed && pool.remove(value)) {
+            end.accept(value);
+        }
+    }
+
+    private <T> void drain(Queue<T> pool, Consumer<T> end) {
+
+        T value;
+        while ((value = pool.poll()) != null) {
+            end.accept(value);
+        }
+    }
+
+    private Counters counters(String identifier) {
+        Counters counters = this.counters.get(identifier);
+        return counters != null ? counters : this.counters.computeIfAbsent(identifier, Counters::new);
+    }
+
+    /**
+     * The compression statistics for a type of message.
+     *
+     * @param compressed The amount of messages that were compressed.
+     * @param decompressed The amount of messages that were decompressed.
+     * @param uncompressedBytes The total size of the compressed messages before compression.
+     * @param compressedBytes The total size of the compressed messages after compression.
+     * @param averageCompressTime The average time it took to compress a message.
+     * @param averageDecompressTime The average time it took to decompress a message.
+     */
+    public record Stats(long compressed, long decompressed, long uncompressedBytes, long compressedBytes,
+                        Duration averageCompressTime, Duration averageDecompressTime) {
+
+        /**
+         * Get the ratio of the compressed size to the original size.
+         *
+         * @return The compression ratio, lower being better.
+         */
+        public double ratio() {
+            return uncompressedBytes == 0 ? 1 : (double) compressedBytes / uncompressedBytes;
+        }
+    }
+
+    private record Dictionary(byte[] bytes, long id) {
+
+        Dictionary(byte[] bytes) {
+            this(Arrays.copyOf(bytes, bytes.length), adler(bytes));
+        }
+
+        private static long adler(byte[] bytes) {
+            Adler32 adler = new Adler32();
+            adler.update(bytes);
+            return adler.getValue();
+        }
+    }
+
+    private static final class Counters {
+
+        private final LongAdder compressed = new LongAdder();
+        private final LongAdder decompressed = new LongAdder();
+        private final LongAdder uncompressedBytes = new LongAdder();
+        private final LongAdder compressedBytes = new LongAdder();
+        private final LongAdder compressTime = new LongAdder();
+        private final LongAdder decompressTime = new LongAdder();
+        private final Histogram compressHistogram, decompressHistogram;
+        private final List<Gauge> gauges;
+
+        Counters(String identifier) {
+            MetricRegistry metrics = FusionCore.getMetrics();
+            String prefix = "message.compression." + identifier + '.';
+            this.compressHistogram = metrics.histogram(prefix + "compress");
+            this.decompressHistogram = metrics.histogram(prefix + "decompress");
+            this.gauges = List.of(
+                    metrics.gauge(prefix + "compressed", compressed::sum),
+                    metrics.gauge(prefix + "decompressed", decompressed::sum),
+                    metrics.gauge(prefix + "uncompressed-bytes", uncompressedBytes::sum),
+                    metrics.gauge(prefix + "compressed-bytes", compressedBytes::sum)
+            );
+        }
+
+        void compressed(int from, int to, long nanos) {
+            compressed.increment();
+            uncompressedBytes.add(from);
+            compressedBytes.add(to);
+            compressTime.add(nanos);
+            compressHistogram.record(nanos);
+        }
+
+        void decompressed(long nanos) {
+            decompressed.increment();
+            decompressTime.add(nanos);
+            decompressHistogram.record(nanos);
+        }
+
+        void close() {
+            gauges.forEach(FusionCore.getMetrics()::remove);
+        }
+
+        Stats stats() {
+            long compressed = this.compressed.sum();
+            long decompressed = this.decompressed.sum();
+            return new Stats(compressed, decompressed, uncompressedBytes.sum(), compressedBytes.sum(),
+                    Duration.ofNanos(compressed == 0 ? 0 : compressTime.sum() / compressed),
+                    Duration.ofNanos(decompressed == 0 ? 0 : decompressTime.sum() / decompressed));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.projecki.fusion.message.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Reads the values written by a {@link FrameOutput}.
+ */
+final class FrameInput {
+
+    private final byte[] buffer;
+    private int position;
+
+    FrameInput(byte[] buffer, int position) {
+        this.buffer = buffer;
+        this.position = position;
+    }
+
+    int position() {
+        return position;
+    }
+
+    int readByte() {
+        this.require(1);
+        return buffer[position++];
+    }
+
+    int readVarInt() {
+
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+
+            int b = this.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IllegalArgumentException("VarInt is too long");
+    }
+
+    long readVarLong() {
+
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+
+            int b = this.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new IllegalArgumentException("VarLong is too long");
+    }
+
+    long readSignedVarLong() {
+        long value = this.readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    int readInt() {
+        this.require(4);
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | (buffer[position++] & 0xFF);
+        }
+
+        return value;
+    }
+
+    long readLong() {
+        this.require(8);
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (buffer[position++] & 0xFF);
+        }
+
+        return value;
+    }
+
+    String readString() {
+        int length = this.readVarInt();
+        this.require(length);
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    UUID readUuid() {
+        return new UUID(this.readLong(), this.readLong());
+    }
+
+    private void require(int length) {
+
+        if (length < 0 || position + length > buffer.length) {
+            throw new IllegalArgumentException("Frame is truncated");
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.projecki.fusion.message.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * A growable byte buffer for writing binary frames.
+ */
+final class FrameOutput {
+
+    private byte[] buffer;
+    private int position;
+
+    FrameOutput(int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    void writeByte(int b) {
+        this.ensureCapacity(1);
+        buffer[position++] = (byte) b;
+    }
+
+    void writeBytes(byte[] bytes) {
+        this.writeBytes(bytes, 0, bytes.length);
+    }
+
+    void writeBytes(byte[] bytes, int offset, int length) {
+        this.ensureCapacity(length);
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+    }
+
+    /**
+     * Write an unsigned variable length int using 7 bits per byte.
+     *
+     * @param value The value to write.
+     */
+    void writeVarInt(int value) {
+        this.ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Write an unsigned variable length long using 7 bits per byte.
+     *
+     * @param value The value to write.
+     */
+    void writeVarLong(long value) {
+        this.ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        buffer[position++] = (byte) value;
+    }
+
+    /**
+     * Write a signed long as a zig-zag encoded variable length
+     * long so that small negative values stay small.
+     *
+     * @param value The value to write.
+     */
+    void writeSignedVarLong(long value) {
+        this.writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void writeInt(int value) {
+        this.ensureCapacity(4);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            buffer[position++] = (byte) (value >>> shift);
+        }
+    }
+
+    void writeLong(long value) {
+        this.ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[position++] = (byte) (value >>> shift);
+        }
+    }
+
+    void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        this.writeVarInt(bytes.length);
+        this.writeBytes(bytes);
+    }
+
+    void writeUuid(UUID uuid) {
+        this.writeLong(uuid.getMostSignificantBits());
+        this.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensureCapacity(int length) {
+
+        if (position + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, position + length));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.projecki.fusion.message.codec;
+
+import com.projecki.fusion.FusionCore;
+import com.projecki.fusion.message.MessageClient.Message;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+/**
+ * The original {@link MessageCodec} that frames a message as its
+ * {@link Message#getIdentifier() identifier} followed by a colon
+ * and the message serialized to JSON with {@link FusionCore#GSON}.
+ * <p>
+ * This codec can encode any message and accepts any frame that
+ * was not claimed by another codec, so it is always used as the
+ * fallback.
+ */
+public final class GsonMessageCodec implements MessageCodec {
+
+    private final Function<String, Class<? extends Message>> typeLookup;
+
+    /**
+     * @param typeLookup The function to get the type of message for an identifier.
+     */
+    public GsonMessageCodec(Function<String, Class<? extends Message>> typeLookup) {
+        this.typeLookup = typeLookup;
+    }
+
+    @Override
+    public boolean accepts(byte[] frame) {
+        return true;
+    }
+
+    @Override
+    public byte[] encode(Message message) {
+        return (message.getIdentifier() + ':' + FusionCore.GSON.toJson(message)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Nullable
+    @Override
+    public Class<? extends Message> peekType(byte[] frame) {
+        int separator = indexOf(frame, (byte) ':');
+        return separator != -1 ? typeLookup.apply(new String(frame, 0, separator, StandardCharsets.UTF_8)) : null;
+    }
+
+    @Nullable
+    @Override
+    public Message decode(byte[] frame) {
+
+        Class<? extends Message> type = this.peekType(frame);
+        if (type == null) {
+            return null;
+        }
+
+        int start = indexOf(frame, (byte) ':') + 1;
+        return FusionCore.GSON.fromJson(new String(frame, start, frame.length - start, StandardCharsets.UTF_8), type);
+    }
+
+    private static int indexOf(byte[] frame, byte b) {
+
+        for (int i = 0; i < frame.length; i++) {
+
+            if (frame[i] == b) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
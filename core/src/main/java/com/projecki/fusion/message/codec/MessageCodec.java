@@ -0,0 +1,67 @@
+package com.projecki.fusion.message.codec;
+
+import com.projecki.fusion.message.MessageClient;
+import com.projecki.fusion.message.MessageClient.Message;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Converts {@link Message messages} to and from the frames that
+ * are sent between servers by a {@link MessageClient}.
+ * <p>
+ * A {@link MessageClient} can decode with several codecs at once, so
+ * every codec must be able to recognise its own frames through
+ * {@link #accepts(byte[])}. This is what allows servers running
+ * different versions to keep talking to each other while the
+ * network is switched from one codec to another.
+ */
+public interface MessageCodec {
+
+    /**
+     * Register a type of {@link Message} that this codec
+     * may need to encode or decode.
+     *
+     * @param type The type of message.
+     */
+    default void registerType(Class<? extends Message> type) {
+    }
+
+    /**
+     * Check whether the given frame was produced by this codec.
+     *
+     * @param frame The frame that was received.
+     * @return If this codec can decode the frame.
+     */
+    boolean accepts(byte[] frame);
+
+    /**
+     * Read the type of message in a frame that this codec {@link #accepts(byte[]) accepts}
+     * without decoding the rest of it.
+     *
+     * @param frame The frame to read the type from.
+     * @return The type of message or {@code null} if it is unknown.
+     */
+    @Nullable
+    default Class<? extends Message> peekType(byte[] frame) {
+        return null;
+    }
+
+    /**
+     * Encode a {@link Message} to a frame.
+     *
+     * @param message The message to encode.
+     * @return The encoded frame or {@code null} if this codec
+     *         cannot encode messages of the given type.
+     */
+    @Nullable
+    byte[] encode(Message message);
+
+    /**
+     * Decode a frame that this codec {@link #accepts(byte[]) accepts}.
+     *
+     * @param frame The frame to decode.
+     * @return The decoded message or {@code null} if the type
+     *         of the message is not known to this codec.
+     */
+    @Nullable
+    Message decode(byte[] frame);
+}
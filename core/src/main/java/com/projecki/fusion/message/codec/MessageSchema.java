@@ -0,0 +1,372 @@
+package com.projecki.fusion.message.codec;
+
+import com.projecki.fusion.FusionCore;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The binary layout of a single message type. Fields are written
+ * in declaration order with no names, primitives as variable length
+ * numbers, {@link UUID UUIDs} as 16 bytes and anything without a
+ * dedicated encoding as JSON through {@link FusionCore#GSON}.
+ * <p>
+ * Since fields are written without names, both sides must agree on
+ * them. The {@link #fingerprint() fingerprint} changes whenever the name
+ * of the type or the name, type or order of its fields changes, so that
+ * frames written by another version of the type can be recognised.
+ */
+final class MessageSchema {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final FieldSchema[] fields;
+    private final MethodHandle factory;
+    private final boolean record;
+    private final int fingerprint;
+
+    private MessageSchema(Class<?> type, FieldSchema[] fields, MethodHandle factory, boolean record) {
+        this.fields = fields;
+        this.factory = factory;
+        this.record = record;
+
+        int fingerprint = type.getName().hashCode();
+        for (FieldSchema field : fields) {
+            fingerprint = 31 * fingerprint + field.name().hashCode();
+            fingerprint = 31 * fingerprint + field.genericType().getTypeName().hashCode();
+        }
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Create the schema for the given type.
+     *
+     * @param type The type to create the schema for.
+     * @return The schema or {@code null} if the type cannot be
+     *         constructed without a JSON codec (i.e. it is not
+     *         a record and has no no-args constructor).
+     */
+    @Nullable
+    static MessageSchema of(Class<?> type) {
+
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            return null;
+        }
+
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            return type.isRecord() ? ofRecord(lookup, type) : ofClass(lookup, type);
+        } catch (IllegalAccessException | NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static MessageSchema ofRecord(MethodHandles.Lookup lookup, Class<?> type)
+            throws IllegalAccessException, NoSuchMethodException {
+
+        RecordComponent[] components = type.getRecordComponents();
+        FieldSchema[] fields = new FieldSchema[components.length];
+        Class<?>[] parameterTypes = new Class<?>[components.length];
+        for (int i = 0; i < components.length; i++) {
+            RecordComponent component = components[i];
+            parameterTypes[i] = component.getType();
+            fields[i] = new FieldSchema(component.getName(), FieldKind.of(component.getType()), component.getType(),
+                    component.getGenericType(), lookup.unreflect(component.getAccessor()).asType(GETTER_TYPE), null);
+        }
+
+        MethodHandle constructor = lookup.findConstructor(type, MethodType.methodType(void.class, parameterTypes));
+        MethodHandle factory = constructor.asSpreader(Object[].class, components.length)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+        return new MessageSchema(type, fields, factory, true);
+    }
+
+    private static MessageSchema ofClass(MethodHandles.Lookup lookup, Class<?> type)
+            throws IllegalAccessException, NoSuchMethodException {
+
+        List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            hierarchy.add(0, current); // superclass fields first
+        }
+
+        List<FieldSchema> fields = new ArrayList<>();
+        for (Class<?> declaring : hierarchy) {
+
+            MethodHandles.Lookup declaringLookup = declaring == type ? lookup :
+                    MethodHandles.privateLookupIn(declaring, MethodHandles.lookup());
+            for (Field field : declaring.getDeclaredFields()) {
+
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+
+                field.setAccessible(true); // allow the setter for final fields
+                fields.add(new FieldSchema(field.getName(), FieldKind.of(field.getType()), field.getType(), field.getGenericType(),
+                        declaringLookup.unreflectGetter(field).asType(GETTER_TYPE),
+                        declaringLookup.unreflectSetter(field).asType(SETTER_TYPE)));
+            }
+        }
+
+        MethodHandle factory = lookup.findConstructor(type, MethodType.methodType(void.class))
+                .asType(MethodType.methodType(Object.class));
+        return new MessageSchema(type, fields.toArray(FieldSchema[]::new), factory, false);
+    }
+
+    /**
+     * Get the hash of the name of the type and the names
+     * and types of its fields, in the order they are written.
+     *
+     * @return The fingerprint.
+     */
+    int fingerprint() {
+        return fingerprint;
+    }
+
+    void write(Object message, FrameOutput out) {
+
+        try {
+            for (FieldSchema field : fields) {
+                field.write(out, (Object) field.getter.invokeExact(message));
+            }
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to encode " + message.getClass().getName(), e);
+        }
+    }
+
+    Object read(FrameInput in) {
+
+        try {
+
+            if (record) {
+
+                Object[] args = new Object[fields.length];
+                for (int i = 0; i < fields.length; i++) {
+                    args[i] = fields[i].read(in);
+                }
+
+                return (Object) factory.invokeExact(args);
+            }
+
+            Object message = (Object) factory.invokeExact();
+            for (FieldSchema field : fields) {
+                field.setter.invokeExact(message, field.read(in));
+            }
+
+            return message;
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to decode message", e);
+        }
+    }
+
+    private record FieldSchema(String name, FieldKind kind, Class<?> type, Type genericType,
+                               MethodHandle getter, @Nullable MethodHandle setter) {
+
+        void write(FrameOutput out, @Nullable Object value) {
+
+            if (!type.isPrimitive()) {
+
+                if (value == null) {
+                    out.writeByte(0);
+                    return;
+                }
+
+                out.writeByte(1);
+            }
+
+            kind.write(out, value, genericType);
+        }
+
+        @Nullable
+        Object read(FrameInput in) {
+
+            if (!type.isPrimitive() && in.readByte() == 0) {
+                return null;
+            }
+
+            return kind.read(in, type, genericType);
+        }
+    }
+
+    private enum FieldKind {
+
+        BOOLEAN {
+            @Override
+            void write(FrameOutput out, Object value, Type type) {
+                out.writeByte((Boolean) value ? 1 : 0);
+            }
+
+            @Override
+            Object read(FrameInput in, Class<?> type, Type genericType) {
+                return in.readByte() != 0;
+            }
+        },
+        BYTE {
+            @Override
+            void write(FrameOutput out, Object value, Type type) {
+                out.writeByte((Byte) value);
+            }
+
+            @Override
+            Object read(FrameInput in, Class<?> type, Type genericType) {
+                return (byte) in.readByte();
+            }
+        },
+        CHAR {
+            @Override
+            void write(FrameOutput out, Object value, Type type) {
+                out.writeVarInt((Character) value);
+            }
+
+            @Override
+            Object read(FrameInput in, Class<?> type, Type genericType) {
+                return (char) in.readVarInt();
+            }
+        },
+        SHORT {
+            @Override
+            void write(FrameOutput out, Object value, Type type) {
+                out.writeSignedVarLong((Short) value);
+            }
+
+            @Override
+            Object read(FrameInput in, Class<?> type, Type genericType) {
+                return (short) in.readSignedVarLong();
+            }
+        },
+        INT {
+            @Override
+            void write(FrameOutput out, Object value, Type type) {
+                out.writeSignedVarLong((Integer) value);
+            }
+
+            @Override
+            Object read(FrameInput in, Class<?> type, Type genericType) {
+                return (int) in.readSignedVarLong();
+            }
+        },
+        LONG {
+            @Override
+            void write(FrameOutput out, Object value, Type type) {
+                out.writeSignedVarLong((Long) value);
+            }
+
+            @Override
+            Object read(FrameInput in, Class<?> type, Type genericType) {
+                return in.readSignedVarLong();
+            }
+        },
+        FLOAT {
+            @Override
+            void write(FrameOutput out, Object value, Type type) {
+                out.writeInt(Float.floatToIntBits((Float) value));
+            }
+
+            @Override
+            Object read(FrameInput in, Class<?> type, Type genericType) {
+                return Float.intBitsToFloat(in.readInt());
+            }
+        },
+        DOUBLE {
+            @Override
+            void write(FrameOutput out, Object value, Type type) {
+                out.writeLong(Double.doubleToLongBits((Double) value));
+            }
+
+            @Override
+            Object read(FrameInput in, Class<?> type, Type genericType) {
+                return Double.longBitsToDouble(in.readLong());
+            }
+        },
+        STRING {
+            @Override
+            void write(FrameOutput out, Object value, Type type) {
+                out.writeString((String) value);
+            }
+
+            @Override
+            Object read(FrameInput in, Class<?> type, Type genericType) {
+                return in.readString();
+            }
+        },
+        UUID {
+            @Override
+            void write(FrameOutput out, Object value, Type type) {
+                out.writeUuid((java.util.UUID) value);
+            }
+
+            @Override
+            Object read(FrameInput in, Class<?> type, Type genericType) {
+                return in.readUuid();
+            }
+        },
+        ENUM {
+            @Override
+            void write(FrameOutput out, Object value, Type type) {
+                // by name so that reordering constants does not break other versions
+                out.writeString(((Enum<?>) value).name());
+            }
+
+            @Override
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            Object read(FrameInput in, Class<?> type, Type genericType) {
+                return Enum.valueOf((Class) type, in.readString());
+            }
+        },
+        JSON {
+            @Override
+            void write(FrameOutput out, Object value, Type type) {
+                out.writeString(FusionCore.GSON.toJson(value, type));
+            }
+
+            @Override
+            Object read(FrameInput in, Class<?> type, Type genericType) {
+                return FusionCore.GSON.fromJson(in.readString(), genericType);
+            }
+        };
+
+        abstract void write(FrameOutput out, Object value, Type type);
+
+        abstract Object read(FrameInput in, Class<?> type, Type genericType);
+
+        static FieldKind of(Class<?> type) {
+
+            if (type == boolean.class || type == Boolean.class) {
+                return BOOLEAN;
+            } else if (type == byte.class || type == Byte.class) {
+                return BYTE;
+            } else if (type == char.class || type == Character.class) {
+                return CHAR;
+            } else if (type == short.class || type == Short.class) {
+                return SHORT;
+            } else if (type == int.class || type == Integer.class) {
+                return INT;
+            } else if (type == long.class || type == Long.class) {
+                return LONG;
+            } else if (type == float.class || type == Float.class) {
+                return FLOAT;
+            } else if (type == double.class || type == Double.class) {
+                return DOUBLE;
+            } else if (type == String.class) {
+                return STRING;
+            } else if (type == java.util.UUID.class) {
+                return UUID;
+            } else if (type.isEnum()) {
+                return ENUM;
+            }
+
+            return JSON;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.projecki.fusion.message.memory;
+
+import com.projecki.fusion.message.MessageClient;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * A {@link MessageClient} that sends messages to the other clients in the
+ * same {@link Cluster} without leaving the JVM. This can be used to simulate
+ * a network of servers in tests and benchmarks.
+ * <p>
+ * Messages are still encoded and decoded, exactly as they would be by
+ * a networked client, and are received by every client subscribed to the
+ * channel, including the client that sent the message.
+ */
+public class InMemoryMessageClient extends MessageClient {
+
+    private final Cluster cluster;
+
+    /**
+     * Create a new client that joins the given {@link Cluster}.
+     *
+     * @param cluster The cluster to send and receive messages in.
+     */
+    public InMemoryMessageClient(Cluster cluster) {
+        this.cluster = cluster;
+        this.subscribe(DEFAULT_CHANNEL);
+    }
+
+    /**
+     * Get the {@link Cluster} that this client sends and receives messages in.
+     *
+     * @return The cluster.
+     */
+    public Cluster getCluster() {
+        return cluster;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The message is received by every subscribed client before this method returns,
+     * or is queued on their {@link #setDispatchExecutor dispatch executors} if they have one.
+     *
+     * @param channel The channel to send the message on
+     * @param message The message to send
+     */
+    @Override
+    public void send(String channel, Message message) {
+        byte[] frame = this.loopback(channel, message, this.encode(message));
+        cluster.publish(channel, frame);
+    }
+
+    @Override
+    public void subscribe(String channel) {
+        this.setSubscribed(channel, true);
+        cluster.subscribe(channel, this);
+    }
+
+    @Override
+    public void unsubscribe(String channel) {
+        this.setSubscribed(channel, false);
+        cluster.unsubscribe(channel, this);
+    }
+
+    @Override
+    public void shutdown() {
+        cluster.leave(this);
+        super.shutdown();
+    }
+
+    /**
+     * A group of {@link InMemoryMessageClient clients} that
+     * can send messages to each other.
+     */
+    public static final class Cluster {
+
+        private final Map<String, Set<InMemoryMessageClient>> subscribers = new ConcurrentHashMap<>();
+
+        /**
+         * Publish a frame to every client that is subscribed to the channel.
+         *
+         * @param channel The channel to publish on.
+         * @param frame The frame to publish.
+         */
+        public void publish(String channel, byte[] frame) {
+
+            Set<InMemoryMessageClient> clients = subscribers.get(channel);
+            if (clients != null) {
+                clients.forEach(client -> client.receive(channel, frame));
+            }
+        }
+
+        void subscribe(String channel, InMemoryMessageClient client) {
+            subscribers.computeIfAbsent(channel, c -> new CopyOnWriteArraySet<>()).add(client);
+        }
+
+        void unsubscribe(String channel, InMemoryMessageClient client) {
+
+            Set<InMemoryMessageClient> clients = subscribers.get(channel);
+            if (clients != null) {
+                clients.remove(client);
+            }
+        }
+
+        void leave(InMemoryMessageClient client) {
+            subscribers.values().forEach(clients -> clients.remove(client));
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.projecki.fusion.message.redis;
+
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Publishes messages on a dedicated connection in pipelined batches.
+ * <p>
+ * Auto-flushing is disabled on the connection, so a publish only
+ * writes the command to the connection's buffer. A single flusher
+ * thread flushes the buffer, in one write, once either the maximum
+ * batch size is reached or the oldest pending message has waited
+ * for the maximum latency.
+ * <p>
+ * Messages are published in the order they were submitted, so the
+ * order of messages on any one channel is preserved.
+ * <p>
+ * Once the publisher is {@link #close() closed}, messages are flushed
+ * by the thread that publishes them instead of the flusher.
+ */
+public class BatchingPublisher implements AutoCloseable {
+
+    private final StatefulRedisConnection<String, byte[]> connection;
+    private final RedisAsyncCommands<String, byte[]> commands;
+    private final int maxBatchSize;
+    private final long maxLatency;
+
+    private final Queue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAccumulator largestBatch = new LongAccumulator(Math::max, 0);
+    private final LongAdder acknowledged = new LongAdder();
+    private final LongAdder totalLatency = new LongAdder();
+    private final LongAccumulator maxLatencyObserved = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Create a new publisher and start its flusher thread.
+     *
+     * @param connection The connection to publish on. This connection must
+     *                   not be shared, as auto-flushing is disabled on it.
+     * @param maxBatchSize The amount of pending messages that will cause an
+     *                     immediate flush.
+     * @param maxLatency The longest time a message can wait to be flushed.
+     */
+    public BatchingPublisher(StatefulRedisConnection<String, byte[]> connection, int maxBatchSize, Duration maxLatency) {
+        checkArgument(maxBatchSize > 0, "invalid batch size: %s", maxBatchSize);
+        checkArgument(!maxLatency.isNegative() && !maxLatency.isZero(), "invalid latency: %s", maxLatency);
+        this.connection = connection;
+        this.commands = connection.async();
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatency = maxLatency.toNanos();
+        connection.setAutoFlushCommands(false);
+        this.flusher = new Thread(this::run, "Message Publisher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Queue a message to be published.
+     *
+     * @param channel The channel to publish the message on.
+     * @param message The encoded message.
+     */
+    public void publish(String channel, byte[] message) {
+        queue.add(new Pending(channel, message, System.nanoTime()));
+        int size = pending.incrementAndGet();
+        if (!running) { // checked after queueing, as the flusher may have stopped before it was queued
+            this.drain();
+        } else if (size == 1 || size >= maxBatchSize) {
+            LockSupport.unpark(flusher); // start the deadline or flush now
+        }
+    }
+
+    /**
+     * Get the statistics of this publisher since it was created.
+     *
+     * @return The {@link Stats}.
+     */
+    public Stats getStats() {
+        long batches = this.batches.sum();
+        long messages = this.messages.sum();
+        long acknowledged = this.acknowledged.sum();
+        return new Stats(messages, batches,
+                batches == 0 ? 0 : (double) messages / batches,
+                largestBatch.get(),
+                acknowledged == 0 ? Duration.ZERO : Duration.ofNanos(totalLatency.sum() / acknowledged),
+                Duration.ofNanos(maxLatencyObserved.get()));
+    }
+
+    /**
+     * Stop the flusher thread after flushing every pending message.
+     */
+    @Override
+    public void close() {
+        this.running = false;
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+
+        while (running) {
+
+            Pending oldest = queue.peek();
+            if (oldest == null) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            long wait = oldest.queued() + maxLatency - System.nanoTime();
+            if (wait > 0 && pending.get() < maxBatchSize) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+
+            this.flush();
+        }
+
+        this.drain();
+    }
+
+    private void drain() {
+        while (!queue.isEmpty()) {
+            this.flush();
+        }
+    }
+
+    // only contended after closing, when publishing threads flush too
+    private synchronized void flush() {
+
+        int count = 0;
+        Pending next;
+        while (count < maxBatchSize && (next = queue.poll()) != null) {
+
+            Pending message = next;
+            commands.publish(message.channel(), message.message()).thenRun(() -> {
+                long latency = System.nanoTime() - message.queued();
+                acknowledged.increment();
+                totalLatency.add(latency);
+                maxLatencyObserved.accumulate(latency);
+            });
+            count++;
+        }
+
+        if (count == 0) {
+            return;
+        }
+
+        pending.addAndGet(-count);
+        connection.flushCommands();
+        messages.add(count);
+        batches.increment();
+        largestBatch.accumulate(count);
+    }
+
+    /**
+     * The statistics for a {@link BatchingPublisher}.
+     *
+     * @param messages The total amount of messages published.
+     * @param batches The total amount of batches flushed.
+     * @param averageBatchSize The average amount of messages in a batch.
+     * @param largestBatchSize The most messages flushed in a single batch.
+     * @param averageLatency The average time from a message being queued to
+     *                       Redis acknowledging that it was published.
+     * @param maxLatency The longest time from a message being queued to
+     *                   Redis acknowledging that it was published.
+     */
+    public record Stats(long messages, long batches, double averageBatchSize, long largestBatchSize,
+                        Duration averageLatency, Duration maxLatency) {
+    }
+
+    private record Pending(String channel, byte[] message, long queued) {
+    }
+}
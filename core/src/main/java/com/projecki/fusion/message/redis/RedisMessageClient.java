@@ -1,18 +1,94 @@
 package com.projecki.fusion.message.redis;
 
-import com.projecki.fusion.FusionCore;
 import com.projecki.fusion.message.MessageClient;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
 import io.lettuce.core.pubsub.api.async.RedisPubSubAsyncCommands;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Optional;
 
 public class RedisMessageClient extends MessageClient {
 
-    private final RedisAsyncCommands<String, String> commands;
-    private final RedisPubSubAsyncCommands<String, String> pubsubConn;
+    /**
+     * The codec for messaging connections. Channels are strings and
+     * messages are the raw frames produced by the message codecs.
+     */
+    public static final RedisCodec<String, byte[]> CODEC = RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE);
+
+    /**
+     * The default amount of pending messages that causes an immediate flush.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    /**
+     * The default longest time a message will wait to be published.
+     */
+    public static final Duration DEFAULT_MAX_LATENCY = Duration.ofNanos(500_000);
+
+    private final RedisAsyncCommands<String, byte[]> commands;
+    private final RedisPubSubAsyncCommands<String, byte[]> pubsubConn;
+    @Nullable
+    private final BatchingPublisher publisher;
+    private final boolean ownsConnections;
+
+    /**
+     * Create a new client that opens its own connections with the {@link #CODEC}
+     * on the given {@link RedisClient} and publishes in batches using the
+     * {@link #DEFAULT_BATCH_SIZE} and {@link #DEFAULT_MAX_LATENCY}.
+     * The connections are closed when this client is {@link #shutdown() shutdown}.
+     *
+     * @param redisClient The client to connect with.
+     */
+    public RedisMessageClient(RedisClient redisClient) {
+        this(redisClient, DEFAULT_BATCH_SIZE, DEFAULT_MAX_LATENCY);
+    }
+
+    /**
+     * Create a new client that opens its own connections with the
+     * {@link #CODEC} on the given {@link RedisClient}. The connections
+     * are closed when this client is {@link #shutdown() shutdown}.
+     *
+     * @param redisClient The client to connect with.
+     * @param maxBatchSize The amount of pending messages that causes an immediate flush.
+     * @param maxLatency The longest time a message will wait to be published,
+     *                   or {@link Duration#ZERO} to publish every message immediately.
+     */
+    public RedisMessageClient(RedisClient redisClient, int maxBatchSize, Duration maxLatency) {
+        this(redisClient.connect(CODEC), redisClient.connectPubSub(CODEC), maxBatchSize, maxLatency);
+    }
+
+    private RedisMessageClient(StatefulRedisConnection<String, byte[]> connection,
+                               StatefulRedisPubSubConnection<String, byte[]> pubsubConn,
+                               int maxBatchSize, Duration maxLatency) {
+        this(connection.async(), pubsubConn.async(), maxLatency.isZero() ? null :
+                new BatchingPublisher(connection, maxBatchSize, maxLatency), true);
+    }
+
+    /**
+     * Create a new client that publishes every message immediately on the given connection.
+     * The connections are left open when this client is {@link #shutdown() shutdown}.
+     *
+     * @param commands The commands to publish with.
+     * @param pubsubConn The connection to subscribe with.
+     */
+    public RedisMessageClient(RedisAsyncCommands<String, byte[]> commands, RedisPubSubAsyncCommands<String, byte[]> pubsubConn) {
+        this(commands, pubsubConn, null, false);
+    }
 
-    public RedisMessageClient(RedisAsyncCommands<String, String> commands, RedisPubSubAsyncCommands<String, String> pubsubConn) {
+    private RedisMessageClient(RedisAsyncCommands<String, byte[]> commands,
+                               RedisPubSubAsyncCommands<String, byte[]> pubsubConn,
+                               @Nullable BatchingPublisher publisher, boolean ownsConnections) {
         this.commands = commands;
         this.pubsubConn = pubsubConn;
+        this.publisher = publisher;
+        this.ownsConnections = ownsConnections;
         this.subscribe(DEFAULT_CHANNEL);
         pubsubConn.getStatefulConnection().addListener(new RedisMessageIntakeDelegator(this));
     }
@@ -26,20 +102,47 @@ public class RedisMessageClient extends MessageClient {
     @Override
     public void send(String channel, Message message) {
 
-        String id = message.getIdentifier();
-        String json = FusionCore.GSON.toJson(message);
-        String toSend = id + ":" + json;
+        byte[] frame = this.loopback(channel, message, this.encode(message));
+        if (publisher != null) {
+            publisher.publish(channel, frame);
+        } else {
+            this.commands.publish(channel, frame);
+        }
+    }
+
+    /**
+     * Get the statistics of the {@link BatchingPublisher} if messages are published in batches.
+     *
+     * @return The statistics or empty if every message is published immediately.
+     */
+    public Optional<BatchingPublisher.Stats> getPublisherStats() {
+        return Optional.ofNullable(publisher).map(BatchingPublisher::getStats);
+    }
+
+    @Override
+    public void shutdown() {
+
+        if (publisher != null) {
+            publisher.close();
+        }
 
-        this.commands.publish(channel, toSend);
+        super.shutdown();
+        // only the connections opened by this client, as others may still be in use
+        if (ownsConnections) {
+            pubsubConn.getStatefulConnection().close();
+            commands.getStatefulConnection().close();
+        }
     }
 
     @Override
     public void subscribe(String channel) {
+        this.setSubscribed(channel, true);
         this.pubsubConn.subscribe(channel);
     }
 
     @Override
     public void unsubscribe(String channel) {
+        this.setSubscribed(channel, false);
         pubsubConn.unsubscribe(channel);
     }
 }
@@ -1,10 +1,9 @@
 package com.projecki.fusion.message.redis;
 
-import com.projecki.fusion.FusionCore;
 import com.projecki.fusion.message.MessageClient;
 import io.lettuce.core.pubsub.RedisPubSubListener;
 
-public class RedisMessageIntakeDelegator implements RedisPubSubListener<String, String> {
+public class RedisMessageIntakeDelegator implements RedisPubSubListener<String, byte[]> {
 
     private final MessageClient messageClient;
 
@@ -13,27 +12,12 @@ public class RedisMessageIntakeDelegator implements RedisPubSubListener<String,
     }
 
     @Override
-    public void message(String channel, String message) {
-
-        String[] parts = message.split(":", 2);
-        if (parts.length != 2) {
-            return;
-        }
-
-        String id = parts[0];
-        String json = parts[1];
-
-        Class<? extends MessageClient.Message> type = messageClient.getMessageTypes().get(id);
-        if (type == null) {
-            return;
-        }
-
-        MessageClient.Message msg = FusionCore.GSON.fromJson(json, type);
-        messageClient.getListenerContainers().forEach(l -> l.handle(channel, msg));
+    public void message(String channel, byte[] message) {
+        messageClient.receive(channel, message);
     }
 
     @Override
-    public void message(String pattern, String channel, String message) {
+    public void message(String pattern, String channel, byte[] message) {
 
     }
 
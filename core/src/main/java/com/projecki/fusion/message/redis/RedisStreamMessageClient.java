@@ -0,0 +1,332 @@
+package com.projecki.fusion.message.redis;
+
+import com.projecki.fusion.FusionCore;
+import com.projecki.fusion.message.MessageClient;
+import io.lettuce.core.Consumer;
+import io.lettuce.core.RedisBusyException;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.StreamMessage;
+import io.lettuce.core.XAddArgs;
+import io.lettuce.core.XGroupCreateArgs;
+import io.lettuce.core.XReadArgs;
+import io.lettuce.core.XReadArgs.StreamOffset;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.api.sync.RedisCommands;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A {@link MessageClient} that sends messages through Redis Streams
+ * instead of pub/sub, so that messages sent while a server is stalled
+ * or disconnected are delivered once it catches up.
+ * <p>
+ * Every channel is stored in the stream {@link #STREAM_PREFIX}{@code + channel},
+ * which is capped to roughly the maximum length on every send. Each server
+ * reads through its own consumer group, so every server receives every
+ * message, and the group remembers the last message delivered to it.
+ * <p>
+ * Messages are read in batches on a dedicated connection and acknowledged
+ * in bulk once they are handed to the {@link #receive(String, byte[]) intake}.
+ * A message that cannot be received, such as one that cannot be decoded or
+ * whose listener throws, is logged and acknowledged anyway, so it does not
+ * stop the messages after it. Messages that were delivered but never
+ * acknowledged, for example because the server stopped, are replayed before
+ * any new message is read.
+ */
+public class RedisStreamMessageClient extends MessageClient {
+
+    /**
+     * The prefix of the key of the stream for each channel.
+     */
+    public static final String STREAM_PREFIX = "fusion:stream:";
+
+    /**
+     * The default amount of messages to read at once.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    /**
+     * The default amount of messages that each stream is capped to.
+     */
+    public static final long DEFAULT_MAX_LENGTH = 10_000;
+
+    private static final String FIELD = "m";
+    private static final Duration BLOCK = Duration.ofSeconds(1);
+    private static final Duration CREATE_TIMEOUT = Duration.ofSeconds(5);
+
+    private final StatefulRedisConnection<String, byte[]> readConnection;
+    private final RedisAsyncCommands<String, byte[]> commands;
+    private final String group;
+    private final int batchSize;
+    private final long maxLength;
+
+    // completes once the consumer group of the channel exists, by subscribed channel
+    private final Map<String, CompletableFuture<Void>> subscriptions = new ConcurrentHashMap<>();
+    // the channels that are read from
+    private final Set<String> channels = new CopyOnWriteArraySet<>();
+    private final Thread reader;
+    private volatile boolean running = true;
+
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Create a new client that opens its own connections on the given {@link RedisClient}
+     * and reads using the {@link #DEFAULT_BATCH_SIZE} and {@link #DEFAULT_MAX_LENGTH}.
+     *
+     * @param redisClient The client to connect with.
+     * @param serverName The unique name of this server, used as its consumer group.
+     */
+    public RedisStreamMessageClient(RedisClient redisClient, String serverName) {
+        this(redisClient, serverName, DEFAULT_BATCH_SIZE, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * Create a new client that opens its own connections on the given {@link RedisClient}.
+     *
+     * @param redisClient The client to connect with.
+     * @param serverName The unique name of this server, used as its consumer group.
+     * @param batchSize The most messages to read at once.
+     * @param maxLength The amount of messages that each stream is capped to.
+     */
+    public RedisStreamMessageClient(RedisClient redisClient, String serverName, int batchSize, long maxLength) {
+        checkArgument(batchSize > 0, "invalid batch size: %s", batchSize);
+        checkArgument(maxLength > 0, "invalid max length: %s", maxLength);
+        this.readConnection = redisClient.connect(RedisMessageClient.CODEC);
+        this.commands = redisClient.connect(RedisMessageClient.CODEC).async();
+        this.group = serverName;
+        this.batchSize = batchSize;
+        this.maxLength = maxLength;
+        this.reader = new Thread(this::run, "Message Stream Reader");
+        this.reader.setDaemon(true);
+        this.subscribe(DEFAULT_CHANNEL);
+        this.reader.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param channel The channel to send the message on
+     * @param message The message to send
+     */
+    @Override
+    public void send(String channel, Message message) {
+        byte[] frame = this.loopback(channel, message, this.encode(message));
+        XAddArgs args = new XAddArgs().maxlen(maxLength).approximateTrimming();
+        this.commands.xadd(STREAM_PREFIX + channel, args, Map.of(FIELD, frame));
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If this server has read from the channel before, every message
+     * sent since it last read is received. Otherwise, messages are
+     * received once the consumer group of this server is created, which
+     * happens without blocking the calling thread. See {@link #ready(String)}.
+     *
+     * @param channel The channel to subscribe to
+     */
+    @Override
+    public void subscribe(String channel) {
+
+        CompletableFuture<Void> created = new CompletableFuture<>();
+        if (subscriptions.putIfAbsent(channel, created) != null) {
+            return;
+        }
+
+        this.setSubscribed(channel, true);
+        this.createGroup(channel).thenRun(() -> {
+            if (subscriptions.get(channel) == created) { // not unsubscribed in the meantime
+                channels.add(channel);
+                LockSupport.unpark(reader);
+            }
+            created.complete(null);
+        });
+    }
+
+    /**
+     * Get a future that completes once every message sent on a subscribed
+     * channel from now on is received.
+     *
+     * @param channel The subscribed channel.
+     * @return The future.
+     * @throws IllegalArgumentException If the channel is not subscribed to.
+     */
+    public CompletableFuture<Void> ready(String channel) {
+        CompletableFuture<Void> created = subscriptions.get(channel);
+        checkArgument(created != null, "not subscribed to %s", channel);
+        return created.copy();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The consumer group for this server is kept, so subscribing
+     * again will receive the messages that were sent in between.
+     *
+     * @param channel The channel to unsubscribe from
+     */
+    @Override
+    public void unsubscribe(String channel) {
+        this.setSubscribed(channel, false);
+        subscriptions.remove(channel);
+        channels.remove(channel);
+    }
+
+    /**
+     * Get the statistics of this client since it was created.
+     *
+     * @return The {@link Stats}.
+     */
+    public Stats getStats() {
+        long batches = this.batches.sum();
+        long messages = this.messages.sum();
+        return new Stats(messages, batches, batches == 0 ? 0 : (double) messages / batches, replayed.sum(), failed.sum());
+    }
+
+    @Override
+    public void shutdown() {
+        this.running = false;
+        LockSupport.unpark(reader);
+        try {
+            reader.join(BLOCK.plus(CREATE_TIMEOUT).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        readConnection.close();
+        commands.getStatefulConnection().close();
+        super.shutdown();
+    }
+
+    // never completes exceptionally, as a group that could not be created is created again after a failed read
+    private CompletableFuture<Void> createGroup(String channel) {
+
+        return commands.xgroupCreate(StreamOffset.latest(STREAM_PREFIX + channel), group, XGroupCreateArgs.Builder.mkstream())
+                .toCompletableFuture()
+                .orTimeout(CREATE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)
+                .handle((r, e) -> {
+                    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                    if (cause instanceof TimeoutException) {
+                        FusionCore.LOGGER.warn("Timed out creating consumer group for {}", channel);
+                    } else if (cause != null && !(cause instanceof RedisBusyException)) { // busy if the group already exists
+                        FusionCore.LOGGER.warn("Failed to create consumer group for {}: {}", channel, cause.getMessage());
+                    }
+                    return null;
+                });
+    }
+
+    private void run() {
+
+        RedisCommands<String, byte[]> sync = readConnection.sync();
+        Consumer<String> consumer = Consumer.from(group, group);
+        boolean replaying = true; // read the messages that were never acknowledged first
+        while (running) {
+
+            List<String> channels = List.copyOf(this.channels);
+            if (channels.isEmpty()) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            StreamOffset<String>[] offsets = this.offsets(channels, replaying);
+            try {
+                List<StreamMessage<String, byte[]>> read = replaying ?
+                        sync.xreadgroup(consumer, XReadArgs.Builder.count(batchSize), offsets) :
+                        sync.xreadgroup(consumer, XReadArgs.Builder.count(batchSize).block(BLOCK), offsets);
+                if (read.isEmpty()) {
+                    replaying = false;
+                    continue;
+                }
+
+                this.handle(sync, read);
+                if (replaying) {
+                    replayed.add(read.size());
+                }
+            } catch (RedisException e) {
+
+                if (!running) {
+                    break;
+                }
+
+                FusionCore.LOGGER.warn("Failed to read message streams: {}", e.getMessage());
+                LockSupport.parkNanos(this, BLOCK.toNanos());
+                channels.forEach(channel -> this.createGroup(channel).join()); // in case the streams were lost
+                replaying = true;
+            } catch (RuntimeException e) { // never stop reading
+                FusionCore.LOGGER.error("Unexpected error reading message streams", e);
+                LockSupport.parkNanos(this, BLOCK.toNanos());
+                replaying = true;
+            }
+        }
+    }
+
+    private void handle(RedisCommands<String, byte[]> sync, List<StreamMessage<String, byte[]>> read) {
+
+        Map<String, List<String>> acknowledge = new HashMap<>();
+        for (StreamMessage<String, byte[]> message : read) {
+
+            String stream = message.getStream();
+            acknowledge.computeIfAbsent(stream, s -> new ArrayList<>()).add(message.getId());
+            byte[] frame = message.getBody() != null ? message.getBody().get(FIELD) : null;
+            if (frame == null) { // pending messages that were trimmed have no body
+                continue;
+            }
+
+            try {
+                this.receive(stream.substring(STREAM_PREFIX.length()), frame);
+            } catch (RuntimeException e) { // still acknowledged, as it would fail again if replayed
+                failed.increment();
+                FusionCore.LOGGER.error("Failed to receive message {} from {}", message.getId(), stream, e);
+            }
+        }
+
+        acknowledge.forEach((stream, ids) -> sync.xack(stream, group, ids.toArray(String[]::new)));
+        messages.add(read.size());
+        batches.increment();
+    }
+
+    @SuppressWarnings("unchecked")
+    private StreamOffset<String>[] offsets(List<String> channels, boolean replaying) {
+
+        StreamOffset<String>[] offsets = new StreamOffset[channels.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            String stream = STREAM_PREFIX + channels.get(i);
+            offsets[i] = replaying ? StreamOffset.from(stream, "0") : StreamOffset.lastConsumed(stream);
+        }
+
+        return offsets;
+    }
+
+    /**
+     * The statistics for a {@link RedisStreamMessageClient}.
+     *
+     * @param messages The total amount of messages read.
+     * @param batches The total amount of non-empty reads.
+     * @param averageBatchSize The average amount of messages in a read.
+     * @param replayed The amount of messages that were read again
+     *                 because they were never acknowledged.
+     * @param failed The amount of messages that were read but could not be received.
+     */
+    public record Stats(long messages, long batches, double averageBatchSize, long replayed, long failed) {
+    }
+}
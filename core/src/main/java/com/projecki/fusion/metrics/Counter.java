@@ -0,0 +1,57 @@
+package com.projecki.fusion.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link Metric} that counts up. Counting does
+ * nothing while its registry is disabled.
+ */
+public final class Counter implements Metric {
+
+    private final String name;
+    private final MetricRegistry registry;
+    private final LongAdder count = new LongAdder();
+
+    Counter(String name, MetricRegistry registry) {
+        this.name = name;
+        this.registry = registry;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Add one to this counter.
+     */
+    public void increment() {
+        if (registry.enabled) {
+            count.increment();
+        }
+    }
+
+    /**
+     * Add an amount to this counter.
+     *
+     * @param amount The amount to add.
+     */
+    public void add(long amount) {
+        if (registry.enabled) {
+            count.add(amount);
+        }
+    }
+
+    /**
+     * Get the current count.
+     *
+     * @return The count.
+     */
+    public long get() {
+        return count.sum();
+    }
+
+    void reset() {
+        count.reset();
+    }
+}
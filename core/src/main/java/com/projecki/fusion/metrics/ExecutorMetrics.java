@@ -0,0 +1,133 @@
+package com.projecki.fusion.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * The standard metrics of an executor, all named
+ * {@code executor.<name>.<metric>}:
+ * <ul>
+ *     <li>{@code queued} - a {@link Gauge} of the tasks waiting to run.</li>
+ *     <li>{@code wait} - a {@link Histogram} of the nanoseconds from
+ *     submitting a task until it starts to run.</li>
+ *     <li>{@code run} - a {@link Histogram} of the nanoseconds each task runs for.</li>
+ *     <li>{@code rejected} - a {@link Counter} of tasks that were not run.</li>
+ * </ul>
+ * Executors {@link #wrap(Runnable) wrap} each submitted task to time it.
+ * While the registry is disabled, tasks are not wrapped at all.
+ */
+public final class ExecutorMetrics {
+
+    private final String prefix;
+    private final MetricRegistry registry;
+    private final Histogram wait, run;
+    private final Counter rejected;
+    private final List<Gauge> gauges = new ArrayList<>();
+
+    /**
+     * Create the metrics for an executor.
+     *
+     * @param registry The {@link MetricRegistry} to register with.
+     * @param name The name of the executor, such as {@code GUI Actions}.
+     * @param queued The amount of tasks waiting to run.
+     */
+    public ExecutorMetrics(MetricRegistry registry, String name, LongSupplier queued) {
+        this.registry = registry;
+        this.prefix = "executor." + name.toLowerCase(Locale.ROOT).replace(' ', '-') + '.';
+        this.wait = registry.histogram(prefix + "wait");
+        this.run = registry.histogram(prefix + "run");
+        this.rejected = registry.counter(prefix + "rejected");
+        this.gauge("queued", queued);
+    }
+
+    /**
+     * Register another {@link Gauge} for the executor, which
+     * is removed along with the others on {@link #close()}.
+     *
+     * @param name The name of the gauge after the executor's prefix.
+     * @param source The source of the gauge's value.
+     */
+    public void gauge(String name, LongSupplier source) {
+        this.gauges.add(registry.gauge(prefix + name, source));
+    }
+
+    /**
+     * Get the {@link Histogram} of the time tasks wait before they run.
+     *
+     * @return The histogram.
+     */
+    public Histogram waitTime() {
+        return wait;
+    }
+
+    /**
+     * Get the {@link Histogram} of the time tasks run for.
+     *
+     * @return The histogram.
+     */
+    public Histogram runTime() {
+        return run;
+    }
+
+    /**
+     * Get the {@link Counter} of tasks that were not run.
+     *
+     * @return The counter.
+     */
+    public Counter rejected() {
+        return rejected;
+    }
+
+    /**
+     * Wrap a task that is about to be submitted so that its wait
+     * and run time are recorded when it runs.
+     *
+     * @param task The task to wrap.
+     * @return The wrapped task, or the task itself if metrics are disabled.
+     */
+    public Runnable wrap(@NotNull Runnable task) {
+        long submitted = wait.start();
+        return submitted == 0 ? task : new TimedTask(task, submitted);
+    }
+
+    /**
+     * Remove the gauges of this executor, as they would otherwise
+     * keep it from being garbage collected. The counters and
+     * histograms are kept in case the executor is created again.
+     */
+    public void close() {
+        this.gauges.forEach(registry::remove);
+    }
+
+    private final class TimedTask implements Runnable {
+
+        private final Runnable task;
+        private final long submitted;
+
+        TimedTask(Runnable task, long submitted) {
+            this.task = task;
+            this.submitted = submitted;
+        }
+
+        @Override
+        public void run() {
+
+            long start = System.nanoTime();
+            wait.record(start - submitted);
+            try {
+                task.run();
+            } finally {
+                run.record(System.nanoTime() - start);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.projecki.fusion.metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A {@link Metric} whose value is read from its source when it
+ * is requested, so it costs nothing until it is looked at.
+ *
+ * @param name The name.
+ * @param source The source of the current value.
+ */
+public record Gauge(String name, LongSupplier source) implements Metric {
+
+    /**
+     * Get the current value.
+     *
+     * @return The value.
+     */
+    public long get() {
+        return source.getAsLong();
+    }
+}
@@ -0,0 +1,179 @@
+package com.projecki.fusion.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A {@link Metric} for the distribution of values, usually
+ * latencies in nanoseconds, that can be recorded from many
+ * threads without locking.
+ * <p>
+ * Like an HdrHistogram, values are counted in buckets whose width
+ * grows with the value: every power of two is split into 32 buckets,
+ * so a percentile is never off by more than about 3% of its value
+ * while the whole range of {@code long} fits in a fixed 1888 buckets.
+ * <p>
+ * Recording does nothing while its registry is disabled, and
+ * {@link #start()} does not even read the clock.
+ */
+public final class Histogram implements Metric {
+
+    private static final int SUB_BITS = 5, SUB_COUNT = 1 << SUB_BITS, SUB_MASK = SUB_COUNT - 1;
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS) * SUB_COUNT;
+
+    private final String name;
+    private final MetricRegistry registry;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE), max = new AtomicLong();
+
+    Histogram(String name, MetricRegistry registry) {
+        this.name = name;
+        this.registry = registry;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Record a value. Negative values are recorded as zero.
+     *
+     * @param value The value to record.
+     */
+    public void record(long value) {
+
+        if (!registry.enabled) {
+            return;
+        }
+
+        value = Math.max(value, 0);
+        buckets.incrementAndGet(bucket(value));
+        total.add(value);
+        if (value < min.get()) {
+            min.accumulateAndGet(value, Math::min);
+        }
+
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Get the start time of something to time with {@link #recordSince(long)}.
+     *
+     * @return The current time (in {@link System#nanoTime() nanoseconds}),
+     *         or {@code 0} if the registry is disabled.
+     */
+    public long start() {
+        return registry.enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the nanoseconds that have elapsed since the given start time.
+     *
+     * @param start The time returned by {@link #start()}.
+     */
+    public void recordSince(long start) {
+        if (start != 0) {
+            this.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Get a {@link Snapshot} of the values recorded so far.
+     *
+     * @return The snapshot.
+     */
+    public Snapshot snapshot() {
+
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+
+        if (count == 0) {
+            return new Snapshot(0, 0, 0, 0, 0, 0, 0, 0);
+        }
+
+        long min = this.min.get(), max = this.max.get();
+        // the bucket midpoints are clamped so that no percentile is outside what was recorded
+        return new Snapshot(count, min, max, (double) total.sum() / count,
+                clamp(valueAt(counts, count, 0.5), min, max),
+                clamp(valueAt(counts, count, 0.9), min, max),
+                clamp(valueAt(counts, count, 0.99), min, max),
+                clamp(valueAt(counts, count, 0.999), min, max));
+    }
+
+    void reset() {
+
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+
+        total.reset();
+        min.set(Long.MAX_VALUE);
+        max.set(0);
+    }
+
+    static int bucket(long value) {
+
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1 << SUB_BITS) + (int) (value >>> shift & SUB_MASK);
+    }
+
+    static long lowerBound(int bucket) {
+
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+
+        int shift = (bucket >>> SUB_BITS) - 1;
+        return (long) (SUB_COUNT + (bucket & SUB_MASK)) << shift;
+    }
+
+    private static long valueAt(long[] counts, long count, double percentile) {
+
+        checkArgument(percentile > 0 && percentile <= 1, "invalid percentile: %s", percentile);
+        long rank = (long) Math.ceil(percentile * count), seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+
+            seen += counts[i];
+            if (seen >= rank) {
+                int shift = i < SUB_COUNT ? 0 : (i >>> SUB_BITS) - 1;
+                return lowerBound(i) + ((1L << shift) - 1 >>> 1);
+            }
+        }
+
+        return lowerBound(counts.length - 1);
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(value, max));
+    }
+
+    /**
+     * The distribution of a {@link Histogram} at one point in time.
+     *
+     * @param count The amount of values recorded.
+     * @param min The smallest value recorded.
+     * @param max The largest value recorded.
+     * @param mean The average of every value recorded.
+     * @param p50 The median value.
+     * @param p90 The 90th percentile value.
+     * @param p99 The 99th percentile value.
+     * @param p999 The 99.9th percentile value.
+     */
+    public record Snapshot(long count, long min, long max, double mean, long p50, long p90, long p99, long p999) {
+    }
+}
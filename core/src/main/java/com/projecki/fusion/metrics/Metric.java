@@ -0,0 +1,15 @@
+package com.projecki.fusion.metrics;
+
+/**
+ * A named value that is tracked by a {@link MetricRegistry}.
+ */
+public interface Metric {
+
+    /**
+     * Get the name of this metric. Names are dot separated
+     * and lower case, such as {@code executor.fusion-io.wait}.
+     *
+     * @return The name.
+     */
+    String name();
+}
@@ -0,0 +1,178 @@
+package com.projecki.fusion.metrics;
+
+import com.projecki.fusion.FusionCore;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A registry of {@link Counter Counters}, {@link Gauge Gauges}
+ * and {@link Histogram Histograms} by their name.
+ * <p>
+ * Metrics are always registered, but while the registry is
+ * {@link #setEnabled(boolean) disabled} recording to them does
+ * nothing more than read a {@code volatile} flag. Gauges are
+ * only read when they are requested.
+ * <p>
+ * Every metric can be read over JMX once the registry has been
+ * {@link #registerMBean(String) registered}.
+ */
+public final class MetricRegistry {
+
+    /**
+     * The system property that enables the metrics on startup.
+     */
+    public static final String ENABLED_PROPERTY = "fusion.metrics";
+
+    volatile boolean enabled;
+    private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new registry that is enabled if the
+     * {@link #ENABLED_PROPERTY} system property is {@code true}.
+     */
+    public MetricRegistry() {
+        this(Boolean.getBoolean(ENABLED_PROPERTY));
+    }
+
+    /**
+     * Create a new registry.
+     *
+     * @param enabled If metrics should be recorded.
+     */
+    public MetricRegistry(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Determine whether metrics are being recorded.
+     *
+     * @return If this registry is enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Set whether metrics should be recorded. Values that
+     * were recorded before are kept while disabled.
+     *
+     * @param enabled If metrics should be recorded.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Get the {@link Counter} with the given name,
+     * creating it if it does not exist yet.
+     *
+     * @param name The name of the counter.
+     * @return The counter.
+     * @throws IllegalArgumentException If another type of metric has the name.
+     */
+    public Counter counter(String name) {
+        return this.get(name, Counter.class, () -> new Counter(name, this));
+    }
+
+    /**
+     * Get the {@link Histogram} with the given name,
+     * creating it if it does not exist yet.
+     *
+     * @param name The name of the histogram.
+     * @return The histogram.
+     * @throws IllegalArgumentException If another type of metric has the name.
+     */
+    public Histogram histogram(String name) {
+        return this.get(name, Histogram.class, () -> new Histogram(name, this));
+    }
+
+    /**
+     * Register a {@link Gauge} with the given name, replacing
+     * any gauge that was registered with it before.
+     *
+     * @param name The name of the gauge.
+     * @param source The source of the gauge's value.
+     * @return The gauge.
+     * @throws IllegalArgumentException If another type of metric has the name.
+     */
+    public Gauge gauge(String name, LongSupplier source) {
+
+        Gauge gauge = new Gauge(name, source);
+        this.metrics.compute(name, (n, previous) -> {
+            checkArgument(previous == null || previous instanceof Gauge, "metric %s is not a Gauge", name);
+            return gauge;
+        });
+
+        return gauge;
+    }
+
+    /**
+     * Remove a metric if it is still registered.
+     *
+     * @param metric The metric to remove.
+     */
+    public void remove(Metric metric) {
+        this.metrics.remove(metric.name(), metric);
+    }
+
+    /**
+     * Get every registered metric sorted by name.
+     *
+     * @return The metrics by name.
+     */
+    public SortedMap<String, Metric> getMetrics() {
+        return new TreeMap<>(metrics);
+    }
+
+    /**
+     * Reset every {@link Counter} and {@link Histogram} to zero.
+     */
+    public void reset() {
+
+        for (Metric metric : metrics.values()) {
+
+            if (metric instanceof Counter counter) {
+                counter.reset();
+            } else if (metric instanceof Histogram histogram) {
+                histogram.reset();
+            }
+        }
+    }
+
+    /**
+     * Register this registry with the platform MBean server so that
+     * every metric can be read over JMX. If a registry is already
+     * registered with the name, it is left as it is.
+     *
+     * @param name The {@link ObjectName} to register with,
+     *             such as {@code com.projecki.fusion:type=Metrics}.
+     */
+    public void registerMBean(String name) {
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(this), new ObjectName(name));
+        } catch (InstanceAlreadyExistsException e) {
+            FusionCore.LOGGER.debug("Metrics are already registered as " + name);
+        } catch (JMException e) {
+            FusionCore.LOGGER.warn("Could not register the metrics with JMX", e);
+        }
+    }
+
+    private <T extends Metric> T get(String name, Class<T> type, Supplier<T> factory) {
+
+        Metric metric = metrics.computeIfAbsent(name, n -> factory.get());
+        checkArgument(type.isInstance(metric), "metric %s is not a %s", name, type.getSimpleName());
+        return type.cast(metric);
+    }
+}
@@ -0,0 +1,151 @@
+package com.projecki.fusion.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InvalidAttributeValueException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ReflectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exposes a {@link MetricRegistry} over JMX. The attributes are read
+ * from the registry every time, so metrics that are registered later
+ * show up without registering this again.
+ * <p>
+ * Each {@link Counter} and {@link Gauge} is an attribute of its name,
+ * and each {@link Histogram} is split into one attribute for each value
+ * of its {@link Histogram.Snapshot}, such as {@code executor.fusion-io.wait.p99}.
+ */
+final class MetricsMBean implements DynamicMBean {
+
+    private static final String ENABLED = "Enabled";
+    private static final List<String> HISTOGRAM_VALUES = List.of("count", "min", "max", "mean", "p50", "p90", "p99", "p999");
+
+    private final MetricRegistry registry;
+
+    MetricsMBean(MetricRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+
+        if (attribute.equals(ENABLED)) {
+            return registry.isEnabled();
+        }
+
+        Map<String, Metric> metrics = registry.getMetrics();
+        Metric metric = metrics.get(attribute);
+        if (metric instanceof Counter counter) {
+            return counter.get();
+        }
+
+        if (metric instanceof Gauge gauge) {
+            return gauge.get();
+        }
+
+        int split = attribute.lastIndexOf('.');
+        if (split != -1 && metrics.get(attribute.substring(0, split)) instanceof Histogram histogram) {
+
+            Histogram.Snapshot snapshot = histogram.snapshot();
+            switch (attribute.substring(split + 1)) {
+                case "count": return snapshot.count();
+                case "min": return snapshot.min();
+                case "max": return snapshot.max();
+                case "mean": return snapshot.mean();
+                case "p50": return snapshot.p50();
+                case "p90": return snapshot.p90();
+                case "p99": return snapshot.p99();
+                case "p999": return snapshot.p999();
+            }
+        }
+
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException, InvalidAttributeValueException {
+
+        if (!attribute.getName().equals(ENABLED)) {
+            throw new AttributeNotFoundException(attribute.getName() + " is read only");
+        }
+
+        if (!(attribute.getValue() instanceof Boolean enabled)) {
+            throw new InvalidAttributeValueException(String.valueOf(attribute.getValue()));
+        }
+
+        registry.setEnabled(enabled);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, this.getAttribute(attribute)));
+            } catch (AttributeNotFoundException ignored) {
+                // the metric was removed since the attributes were listed
+            }
+        }
+
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+
+        AttributeList set = new AttributeList();
+        for (Attribute attribute : attributes.asList()) {
+            try {
+                this.setAttribute(attribute);
+                set.add(attribute);
+            } catch (AttributeNotFoundException | InvalidAttributeValueException ignored) {
+            }
+        }
+
+        return set;
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+
+        if (!actionName.equals("reset")) {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        registry.reset();
+        return null;
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        attributes.add(new MBeanAttributeInfo(ENABLED, "boolean", "If metrics are recorded", true, true, true));
+        registry.getMetrics().forEach((name, metric) -> {
+
+            if (metric instanceof Histogram) {
+
+                for (String value : HISTOGRAM_VALUES) {
+                    String type = value.equals("mean") ? "double" : "long";
+                    attributes.add(new MBeanAttributeInfo(name + '.' + value, type, "The " + value + " of " + name, true, false, false));
+                }
+            } else {
+                attributes.add(new MBeanAttributeInfo(name, "long", name, true, false, false));
+            }
+        });
+
+        MBeanOperationInfo reset = new MBeanOperationInfo("reset", "Reset every counter and histogram",
+                new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION);
+        return new MBeanInfo(MetricsMBean.class.getName(), "Fusion metrics",
+                attributes.toArray(MBeanAttributeInfo[]::new), null, new MBeanOperationInfo[] { reset }, null);
+    }
+}
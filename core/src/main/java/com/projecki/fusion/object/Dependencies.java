@@ -1,6 +1,6 @@
 package com.projecki.fusion.object;
 
-import com.projecki.fusion.Bootstrap;
+import com.projecki.fusion.FusionBootstrap;
 import com.projecki.fusion.FusionCore;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -105,7 +105,7 @@ public class Dependencies {
             DependsOnAll[] allDepends = annotatedType.getDeclaredAnnotationsByType(DependsOnAll.class);
             for (DependsOnAll allDepend : allDepends) {
 
-                Set<Class<? extends Module>> subTypes = (Set) Bootstrap.REFLECTIONS.getSubTypesOf(allDepend.value());
+                Set<Class<? extends Module>> subTypes = (Set) FusionBootstrap.getSubTypesOf(allDepend.value());
                 for (Class<? extends Module> subType : subTypes) {
                     dependencies.add(new Dependency(true, subType));
                     dependencies.addAll(findDependencies(subType));
@@ -38,6 +38,7 @@ public abstract class ModularObject<T extends Module> {
 
     private final List<T> modules;
     private final Map<Class<?>, List<T>> moduleHierarchy;
+    private final List<ModuleListener<? super T>> listeners = new ArrayList<>(1);
 
     protected ModularObject() {
         this.modules = Dependencies.collectDependencies(this.getClass()).stream()
@@ -72,7 +73,7 @@ public abstract class ModularObject<T extends Module> {
             case SETUP -> {
                 this.initialized.add(InitializationStep.SETUP);
                 this.onSetup();
-                this.modules.forEach(Module::onAdd);
+                this.modules.forEach(this::added);
             }
             case CREATE -> {
                 this.initialized.add(InitializationStep.CREATE);
@@ -106,7 +107,7 @@ public abstract class ModularObject<T extends Module> {
         this.onDisable();
         this.modules.forEach(Module::disable);
         this.onDestroy();
-        this.modules.forEach(Module::onRemove);
+        this.modules.forEach(this::removed);
         this.modules.clear();
         this.moduleHierarchy.clear();
     }
@@ -135,6 +136,22 @@ public abstract class ModularObject<T extends Module> {
         return true;
     }
 
+    /**
+     * Add a {@link ModuleListener} that is notified whenever a
+     * {@link Module} is added to or removed from this object.
+     * <p>
+     *     Unlike the {@code on} methods of this object, listeners are
+     *     notified regardless of how those methods are overridden, so
+     *     they should be added from the constructor of the class that
+     *     depends on them.
+     * </p>
+     *
+     * @param listener The {@link ModuleListener} to add.
+     */
+    protected final void addModuleListener(ModuleListener<? super T> listener) {
+        this.listeners.add(listener);
+    }
+
     /**
      * The method called when this object is being first
      * initialized before anything else.
@@ -259,7 +276,7 @@ public abstract class ModularObject<T extends Module> {
                 .filter(this::validate)
                 .toList();
         this.modules.addAll(modules);
-        modules.forEach(Module::onAdd);
+        modules.forEach(this::added);
         for (T module : modules) {
 
             addHierarchy(moduleHierarchy, module);
@@ -272,7 +289,7 @@ public abstract class ModularObject<T extends Module> {
         if (this.validate(module)) {
 
             this.modules.add(module);
-            module.onAdd();
+            this.added(module);
             addHierarchy(moduleHierarchy, module);
             if (!module.getClass().isAnnotationPresent(DisableByDefault.class)) {
                 module.enable();
@@ -296,7 +313,7 @@ public abstract class ModularObject<T extends Module> {
 
             if (type.isInstance(m)) {
                 m.disable();
-                m.onRemove();
+                this.removed(m);
                 return true;
             }
 
@@ -405,6 +422,16 @@ public abstract class ModularObject<T extends Module> {
     @Override
     public abstract String toString();
 
+    private void added(T module) {
+        module.onAdd();
+        this.listeners.forEach(l -> l.onAdd(module));
+    }
+
+    private void removed(T module) {
+        module.onRemove();
+        this.listeners.forEach(l -> l.onRemove(module));
+    }
+
     private static <T extends Module> Map<Class<?>, List<T>> computeHierarchy(List<T> modules) {
         Map<Class<?>, List<T>> hierarchy = new HashMap<>();
         modules.forEach(m -> addHierarchy(hierarchy, m));
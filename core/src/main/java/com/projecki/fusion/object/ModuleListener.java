@@ -0,0 +1,27 @@
+package com.projecki.fusion.object;
+
+/**
+ * A listener that is notified whenever a {@link Module} is
+ * added to or removed from a {@link ModularObject}.
+ *
+ * @param <T> The type of {@link Module} to listen to.
+ * @see ModularObject#addModuleListener(ModuleListener)
+ */
+public interface ModuleListener<T extends Module> {
+
+    /**
+     * Called after a {@link Module} is added to an object,
+     * including the {@link Module modules} it is created with.
+     *
+     * @param module The {@link Module} that was added.
+     */
+    void onAdd(T module);
+
+    /**
+     * Called after a {@link Module} is removed from an object,
+     * including when the object is destroyed.
+     *
+     * @param module The {@link Module} that was removed.
+     */
+    void onRemove(T module);
+}
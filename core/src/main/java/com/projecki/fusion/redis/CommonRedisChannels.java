@@ -4,7 +4,8 @@ public enum CommonRedisChannels {
 
     SERVER_LOOKUP_CHANNEL("procommon-serverlookup"),
     PLAYER_SEND_CHANNEL("network-send"),
-    PLAYER_NETWORK_EVENT_CHANNEL("player-network-event");
+    PLAYER_NETWORK_EVENT_CHANNEL("player-network-event"),
+    PLAYER_SETTINGS_CHANNEL("player-settings");
 
     private final String channel;
 
@@ -9,6 +9,7 @@ public enum CommonRedisKeys {
     SERVER_LOOKUP("procommon:serverlookup"),
     PLAYER_CACHE("player-cache"),
     SERVER_CHAT_AND_API("fusion-server-chat-and-api"),
+    PLAYER_SETTINGS("player-settings"),
     ;
 
     private final String key;
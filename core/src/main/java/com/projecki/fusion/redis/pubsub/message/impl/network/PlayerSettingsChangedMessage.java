@@ -0,0 +1,36 @@
+package com.projecki.fusion.redis.pubsub.message.impl.network;
+
+import com.projecki.fusion.message.MessageClient;
+
+import java.util.UUID;
+
+/**
+ * Sent when the settings of a player are saved, so that other servers
+ * holding the player's settings load them again.
+ */
+public class PlayerSettingsChangedMessage implements MessageClient.Message {
+
+    private UUID playerUuid;
+    private UUID origin;
+
+    public PlayerSettingsChangedMessage() {
+    }
+
+    public PlayerSettingsChangedMessage(UUID playerUuid, UUID origin) {
+        this.playerUuid = playerUuid;
+        this.origin = origin;
+    }
+
+    public UUID getPlayerUuid() {
+        return playerUuid;
+    }
+
+    /**
+     * Get the id of the loader that saved the settings.
+     *
+     * @return The id of the loader.
+     */
+    public UUID getOrigin() {
+        return origin;
+    }
+}
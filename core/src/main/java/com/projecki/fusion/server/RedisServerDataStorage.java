@@ -55,6 +55,27 @@ public class RedisServerDataStorage implements ServerDataStorage {
                 .toCompletableFuture();
     }
 
+    /**
+     * {@inheritDoc}<p>
+     * Every {@code HGETALL} is sent before any reply is read, so all the
+     * servers are retrieved in a single round trip to redis.
+     */
+    @Override
+    public <T extends ServerData> CompletableFuture<Map<String, Optional<T>>> getInfo(Collection<String> serverNames, Class<T> clazz) {
+        List<CompletableFuture<RawServerData>> futures = new ArrayList<>(serverNames.size());
+        serverNames.forEach(name -> futures.add(getServerData(name)));
+
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(v -> {
+                    Map<String, Optional<T>> result = new HashMap<>();
+                    futures.forEach(future -> {
+                        RawServerData raw = future.join();
+                        result.put(raw.serverName(), createObject(clazz, raw));
+                    });
+                    return result;
+                });
+    }
+
     private CompletableFuture<RawServerData> getServerData(String serverName) {
         return commands.hgetall(getServerKey(serverName))
                 .thenApply(map -> new RawServerData(serverName, map))
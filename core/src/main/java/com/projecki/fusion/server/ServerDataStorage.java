@@ -1,5 +1,8 @@
 package com.projecki.fusion.server;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
@@ -30,6 +33,28 @@ public interface ServerDataStorage {
      */
     <T extends ServerData> CompletableFuture<Optional<T>> getInfo(String serverName, Class<T> clazz);
 
+    /**
+     * Get the stored {@link ServerData} of a specified type for many servers at once.
+     * Every requested server name is present in the returned map, with an empty
+     * {@link Optional} if no data for that server exists.
+     *
+     * @param serverNames names of the servers
+     * @param clazz class of {@link T} type
+     * @param <T> type that is a super of {@link ServerData}
+     * @return future that completes once the data of every server is retrieved
+     */
+    default <T extends ServerData> CompletableFuture<Map<String, Optional<T>>> getInfo(Collection<String> serverNames, Class<T> clazz) {
+        Map<String, CompletableFuture<Optional<T>>> futures = new HashMap<>();
+        serverNames.forEach(name -> futures.put(name, getInfo(name, clazz)));
+
+        return CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new))
+                .thenApply(v -> {
+                    Map<String, Optional<T>> result = new HashMap<>();
+                    futures.forEach((name, future) -> result.put(name, future.join()));
+                    return result;
+                });
+    }
+
     /**
      * Delete info for the specified server from storage
      *
@@ -0,0 +1,201 @@
+package com.projecki.fusion.setting;
+
+import com.projecki.fusion.FusionCore;
+import com.projecki.fusion.message.MessageClient;
+import com.projecki.fusion.redis.CommonRedisChannels;
+import com.projecki.fusion.redis.CommonRedisKeys;
+import com.projecki.fusion.redis.pubsub.message.impl.network.PlayerSettingsChangedMessage;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A {@link SettingLoader} that keeps the settings of players that recently
+ * left a server in redis, in front of another loader such as a {@link SqlSettingLoader}.
+ * <p>
+ * When a player leaves a server, {@link #handOff(UUID)} saves their settings
+ * and caches all of them in a redis hash that expires after a short time. The
+ * server the player joins next loads the settings from that hash instead of
+ * the other loader. Settings that are not cached are loaded from the other loader.
+ * <p>
+ * Saving settings removes the hash, so it is never older than the other loader,
+ * and tells every other server through the {@link MessageClient} to load the
+ * settings again if it holds them.
+ */
+public class RedisSettingLoader extends SettingLoader {
+
+    private static final String KEY_PREFIX = CommonRedisKeys.PLAYER_SETTINGS.getKey() + ':';
+    private static final String CHANNEL = CommonRedisChannels.PLAYER_SETTINGS_CHANNEL.getChannel();
+    // stored with the settings, so that a player without settings is still cached
+    private static final String PRESENT = "#";
+    // replaces the cached settings and sets them to expire at once, so they are never cached without expiring
+    private static final String HAND_OFF_SCRIPT = "redis.call('DEL', KEYS[1]) " +
+            "redis.call('HSET', KEYS[1], unpack(ARGV, 2)) " +
+            "return redis.call('PEXPIRE', KEYS[1], ARGV[1])";
+
+    private final SettingLoader backing;
+    private final RedisAsyncCommands<String, String> commands;
+    private final MessageClient messageClient;
+    private final long ttlMillis;
+    private final UUID id = UUID.randomUUID();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a new {@link RedisSettingLoader}.
+     *
+     * @param backing The loader that settings are saved to, and loaded from when they are not cached
+     * @param commands The redis connection to cache settings in
+     * @param messageClient The client to tell other servers that settings were saved with
+     * @param ttl How long settings stay cached after a player leaves a server, such as 30 seconds
+     */
+    public RedisSettingLoader(SettingLoader backing, RedisAsyncCommands<String, String> commands,
+                              MessageClient messageClient, Duration ttl) {
+        checkArgument(ttl.toMillis() > 0, "invalid ttl: %s", ttl);
+        this.backing = backing;
+        this.commands = commands;
+        this.messageClient = messageClient;
+        this.ttlMillis = ttl.toMillis();
+
+        messageClient.subscribe(CHANNEL);
+        messageClient.registerMessageListener(PlayerSettingsChangedMessage.class, CHANNEL, (c, m) -> {
+            if (!id.equals(m.getOrigin())) {
+                this.reload(m.getPlayerUuid());
+            }
+        });
+    }
+
+    /**
+     * Save the settings of a player that is leaving this server, then cache all of them
+     * for the server they join next and remove them from the local table. If saving
+     * fails, the settings are kept in the local table.
+     *
+     * @param parentId The parent id to hand off the settings of
+     * @return A future that completes once the settings have been saved and cached
+     */
+    public CompletableFuture<Void> handOff(UUID parentId) {
+        return this.save(parentId).thenCompose(v -> {
+            Map<String, String> settings = new HashMap<>(this.snapshot(parentId));
+            settings.put(PRESENT, "");
+            this.unload(parentId);
+
+            List<String> args = new ArrayList<>(1 + settings.size() * 2);
+            args.add(Long.toString(ttlMillis));
+            settings.forEach((namespace, setting) -> {
+                args.add(namespace);
+                args.add(setting);
+            });
+
+            return commands.<Long>eval(HAND_OFF_SCRIPT, ScriptOutputType.INTEGER, new String[] { key(parentId) },
+                    args.toArray(String[]::new)).toCompletableFuture().<Void>thenApply(r -> null);
+        });
+    }
+
+    /**
+     * Get the {@link CacheStats} of the loads of this loader.
+     *
+     * @return The stats.
+     */
+    public CacheStats getCacheStats() {
+        return new CacheStats(hits.sum(), misses.sum());
+    }
+
+    @Override
+    protected CompletableFuture<Map<String, String>> loadImpl(UUID parentId) {
+        return this.getCached(parentId).thenCompose(cached -> {
+            if (cached.isEmpty()) {
+                misses.increment();
+                return backing.loadImpl(parentId);
+            }
+
+            hits.increment();
+            cached.remove(PRESENT);
+            return CompletableFuture.completedFuture(cached);
+        });
+    }
+
+    /**
+     * {@inheritDoc}<p>
+     * Every {@code HGETALL} is sent before any reply is read, and the
+     * settings that are not cached are loaded from the other loader at once.
+     */
+    @Override
+    protected CompletableFuture<Map<UUID, Map<String, String>>> loadImpl(Collection<UUID> parentIds) {
+        Map<UUID, CompletableFuture<Map<String, String>>> futures = new HashMap<>();
+        parentIds.forEach(parentId -> futures.put(parentId, this.getCached(parentId)));
+
+        return CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).thenCompose(v -> {
+            Map<UUID, Map<String, String>> loaded = new HashMap<>();
+            futures.forEach((parentId, future) -> {
+                Map<String, String> cached = future.join();
+                if (cached.remove(PRESENT) != null) {
+                    loaded.put(parentId, cached);
+                }
+            });
+
+            List<UUID> missing = parentIds.stream().filter(parentId -> !loaded.containsKey(parentId)).toList();
+            hits.add(loaded.size());
+            misses.add(missing.size());
+            if (missing.isEmpty()) {
+                return CompletableFuture.completedFuture(loaded);
+            }
+
+            return backing.loadImpl(missing).thenApply(found -> {
+                loaded.putAll(found);
+                return loaded;
+            });
+        });
+    }
+
+    /**
+     * {@inheritDoc}<p>
+     * The settings are saved to the other loader, then the cached settings
+     * are removed and every other server is told to load them again.
+     */
+    @Override
+    protected CompletableFuture<Void> saveImpl(UUID parentId, Map<String, String> toSave) {
+        return backing.saveImpl(parentId, toSave).thenCompose(v -> commands.del(key(parentId)).toCompletableFuture()
+                .handle((r, e) -> {
+                    if (e != null) {
+                        FusionCore.LOGGER.warn("Could not remove the cached settings of {}, they may be stale for {}ms", parentId, ttlMillis, e);
+                    }
+                    messageClient.send(CHANNEL, new PlayerSettingsChangedMessage(parentId, id));
+                    return null;
+                }));
+    }
+
+    // an empty map if not cached, or if redis could not be reached
+    private CompletableFuture<Map<String, String>> getCached(UUID parentId) {
+        return commands.hgetall(key(parentId)).toCompletableFuture()
+                .<Map<String, String>>thenApply(HashMap::new)
+                .exceptionally(e -> {
+                    FusionCore.LOGGER.warn("Could not get the cached settings of {}", parentId, e);
+                    return new HashMap<>();
+                });
+    }
+
+    private static String key(UUID parentId) {
+        return KEY_PREFIX + parentId;
+    }
+
+    /**
+     * The stats of the loads of a {@link RedisSettingLoader}.
+     *
+     * @param hits The amount of players whose settings were loaded from redis.
+     * @param misses The amount of players whose settings were loaded from the other loader.
+     */
+    public record CacheStats(long hits, long misses) {
+    }
+}
@@ -1,12 +1,16 @@
 package com.projecki.fusion.setting;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
+import com.projecki.fusion.FusionCore;
+import com.projecki.fusion.metrics.Histogram;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Represents a main loader class for settings in a given instantiation. Load, set, save, check
@@ -14,9 +18,17 @@ import java.util.concurrent.CompletableFuture;
  */
 public abstract class SettingLoader {
 
-    private final Table<UUID, Class<? extends Setting>, Setting> settings = HashBasedTable.create();
+    // the settings of each parent id, which are loaded and read from any thread
+    private final Map<UUID, Map<Class<? extends Setting>, Setting>> settings = new ConcurrentHashMap<>();
+    // the settings of each parent id that changed since they were last saved or loaded
+    private final Map<UUID, Set<Class<? extends Setting>>> dirty = new ConcurrentHashMap<>();
     private final Setting.Registry registry;
 
+    private final LongAdder saves = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final Histogram savedRows = FusionCore.getMetrics().histogram("setting.save.rows");
+
     public SettingLoader() {
         this.registry = new Setting.Registry();
     }
@@ -34,7 +46,7 @@ public abstract class SettingLoader {
      */
     @SuppressWarnings("unchecked")
     public final <T extends Setting> T getSetting(UUID parentId, Class<T> type, T defaultValue) {
-        Setting setting = this.settings.get(parentId, type);
+        Setting setting = this.get(parentId, type);
         if (setting == null) {
             return defaultValue;
         }
@@ -53,7 +65,10 @@ public abstract class SettingLoader {
      * @param setting The value to set the setting to
      */
     public final void setSetting(UUID parentId, Setting setting) {
-        this.settings.put(parentId, setting.getClass(), setting);
+        Class<? extends Setting> type = setting.getClass();
+        if (this.row(parentId).put(type, setting) != setting) {
+            this.dirty.computeIfAbsent(parentId, k -> ConcurrentHashMap.newKeySet()).add(type);
+        }
     }
 
     /**
@@ -97,29 +112,74 @@ public abstract class SettingLoader {
      */
     public final CompletableFuture<Void> load(UUID parentId) {
         return this.loadImpl(parentId).thenApply(map -> {
-            Map<Class<? extends Setting>, Setting> converted = new HashMap<>();
+            this.row(parentId).putAll(this.convert(map));
+            return null;
+        });
+    }
 
-            for (Map.Entry<String, String> entry : map.entrySet()) {
-                String namespace = entry.getKey();
-                String id = entry.getValue();
+    /**
+     * Loads all stored settings for the given parent id again if they are loaded, such as
+     * when they were changed by another server. If they are unloaded before they have been
+     * loaded again, they stay unloaded.
+     *
+     * @param parentId The parent id to load the settings of again
+     * @return A future that completes once the settings have been loaded again
+     */
+    protected final CompletableFuture<Void> reload(UUID parentId) {
+        if (!this.isLoaded(parentId)) {
+            return CompletableFuture.completedFuture(null);
+        }
 
-                Class<? extends Setting> clazz = this.registry.getNamespaceRegistry().inverse().get(namespace);
-                if (clazz == null) {
-                    continue;
-                }
+        return this.loadImpl(parentId).thenApply(map -> {
+            Map<Class<? extends Setting>, Setting> converted = this.convert(map);
+            this.settings.computeIfPresent(parentId, (k, row) -> {
+                row.putAll(converted);
+                return row;
+            });
+            return null;
+        });
+    }
 
-                for (Setting setting : clazz.getEnumConstants()) {
-                    if (setting.getId().equalsIgnoreCase(id)) {
-                        converted.put(clazz, setting);
-                    }
-                }
-            }
+    /**
+     * Loads all stored settings for many parent ids at once, such as for every player of a
+     * transfer, and stores them in the local table here for manipulation and reading.
+     *
+     * @param parentIds The parent ids to load the settings of
+     * @return A future that completes once the settings of every id have been loaded
+     */
+    public final CompletableFuture<Void> load(Collection<UUID> parentIds) {
+        if (parentIds.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
 
-            converted.forEach((c, s) -> this.settings.put(parentId, c, s));
+        return this.loadImpl(parentIds).thenApply(loaded -> {
+            loaded.forEach((parentId, map) -> this.row(parentId).putAll(this.convert(map)));
             return null;
         });
     }
 
+    private Map<Class<? extends Setting>, Setting> convert(Map<String, String> map) {
+        Map<Class<? extends Setting>, Setting> converted = new HashMap<>();
+
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            String namespace = entry.getKey();
+            String id = entry.getValue();
+
+            Class<? extends Setting> clazz = this.registry.getNamespaceRegistry().inverse().get(namespace);
+            if (clazz == null) {
+                continue;
+            }
+
+            for (Setting setting : clazz.getEnumConstants()) {
+                if (setting.getId().equalsIgnoreCase(id)) {
+                    converted.put(clazz, setting);
+                }
+            }
+        }
+
+        return converted;
+    }
+
     /**
      * Should load settings from wherever they are stored and return them AS IS.
      * Very little manipulation of data is required here. You should be storing the settings
@@ -134,23 +194,122 @@ public abstract class SettingLoader {
     protected abstract CompletableFuture<Map<String, String>> loadImpl(UUID parentId);
 
     /**
-     * Saves the settings associated with a given parent id using the child implementation
+     * Should load the settings of many parent ids, the same way as {@link #loadImpl(UUID)}.
+     * By default each id is loaded on its own, so override this if your storage can
+     * retrieve many ids at once.
+     *
+     * @param parentIds The parent ids you should retrieve the settings of
+     * @return A future of the settings of each parent id, which may leave out ids without settings
+     */
+    protected CompletableFuture<Map<UUID, Map<String, String>>> loadImpl(Collection<UUID> parentIds) {
+        Map<UUID, CompletableFuture<Map<String, String>>> futures = new HashMap<>();
+        parentIds.forEach(parentId -> futures.put(parentId, this.loadImpl(parentId)));
+        return CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).thenApply(v -> {
+            Map<UUID, Map<String, String>> loaded = new HashMap<>();
+            futures.forEach((parentId, future) -> loaded.put(parentId, future.join()));
+            return loaded;
+        });
+    }
+
+    /**
+     * Saves the settings associated with a given parent id that were set since they were last
+     * saved using the child implementation. If none were set, nothing is saved. If saving
+     * fails, the settings are saved again by the next save, unless they were unloaded.
      *
      * @param parentId The parent id to save the setting of
      * @return A future that completes once the settings have been saved
      */
     public final CompletableFuture<Void> save(UUID parentId) {
+        Set<Class<? extends Setting>> changed = this.dirty.remove(parentId);
+        if (changed == null) {
+            this.skipped.increment();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Map<String, String> converted = this.convert(parentId, changed);
+        if (converted.isEmpty()) {
+            this.skipped.increment();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return this.saveImpl(parentId, converted).whenComplete((v, e) -> {
+            if (e != null) {
+                // only while still loaded, as unload discards the settings that were not saved
+                this.settings.computeIfPresent(parentId, (k, row) -> {
+                    this.dirty.computeIfAbsent(parentId, id -> ConcurrentHashMap.newKeySet()).addAll(changed);
+                    return row;
+                });
+            } else {
+                this.saves.increment();
+                this.rows.add(converted.size());
+                this.savedRows.record(converted.size());
+            }
+        });
+    }
+
+    /**
+     * Removes all settings of a given parent id from the local table, such as once they are
+     * saved when a player leaves. Settings that were not saved yet are discarded.
+     *
+     * @param parentId The parent id to remove the settings of
+     */
+    public final void unload(UUID parentId) {
+        this.settings.remove(parentId);
+        this.dirty.remove(parentId);
+    }
+
+    /**
+     * Checks if the settings of a given parent id are loaded in the local table.
+     *
+     * @param parentId The parent id to check
+     * @return If settings of the parent id are loaded
+     */
+    protected final boolean isLoaded(UUID parentId) {
+        return this.settings.containsKey(parentId);
+    }
+
+    /**
+     * Gets every setting of a given parent id in the local table, whether or not it changed,
+     * in the same format that is passed to {@link #saveImpl(UUID, Map)}.
+     *
+     * @param parentId The parent id to get the settings of
+     * @return A map of setting's namespace to the setting's id
+     */
+    protected final Map<String, String> snapshot(UUID parentId) {
+        Map<Class<? extends Setting>, Setting> row = this.settings.get(parentId);
+        return row != null ? this.convert(parentId, row.keySet()) : new HashMap<>();
+    }
+
+    private Map<String, String> convert(UUID parentId, Collection<Class<? extends Setting>> types) {
         Map<String, String> converted = new HashMap<>();
-        for (Map.Entry<Class<? extends Setting>, Setting> entry : this.settings.row(parentId).entrySet()){
-            Class<? extends Setting> clazz = entry.getKey();
-            Setting setting = entry.getValue();
+        for (Class<? extends Setting> clazz : types) {
+            Setting setting = this.get(parentId, clazz);
             String namespace = this.registry.getNamespaceRegistry().get(clazz);
-            if (namespace == null) {
+            if (setting == null || namespace == null) {
                 continue;
             }
             converted.put(namespace, setting.getId());
         }
-        return this.saveImpl(parentId, converted);
+        return converted;
+    }
+
+    private Setting get(UUID parentId, Class<? extends Setting> type) {
+        Map<Class<? extends Setting>, Setting> row = this.settings.get(parentId);
+        return row != null ? row.get(type) : null;
+    }
+
+    private Map<Class<? extends Setting>, Setting> row(UUID parentId) {
+        return this.settings.computeIfAbsent(parentId, k -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Get the {@link Stats} of the saves of this loader. The amount of saved rows is
+     * also recorded to the {@code setting.save.rows} histogram.
+     *
+     * @return The stats.
+     */
+    public final Stats getStats() {
+        return new Stats(this.saves.sum(), this.rows.sum(), this.skipped.sum());
     }
 
     /**
@@ -160,9 +319,23 @@ public abstract class SettingLoader {
      * There is no need to change the passed map. Simply store the map to each parent id.
      * FYI: The first string is the setting class name and the second is the setting id
      *
+     * Only the settings that changed since they were last saved are passed, so settings
+     * missing from the map should be left as they are. Complete the future exceptionally
+     * if they could not be stored, so they are passed again by the next save.
+     *
      * @param parentId The parent id to store the settings of
      * @param toSave The map of settings assigned to the passed parent id to store.
      * @return A future that completes once the settings have been saved
      */
     protected abstract CompletableFuture<Void> saveImpl(UUID parentId, Map<String, String> toSave);
+
+    /**
+     * The stats of the saves of a {@link SettingLoader}.
+     *
+     * @param saves The amount of saves that wrote settings.
+     * @param rows The amount of settings written by those saves.
+     * @param skipped The amount of saves that had no changed settings to write.
+     */
+    public record Stats(long saves, long rows, long skipped) {
+    }
 }
@@ -1,13 +1,18 @@
 package com.projecki.fusion.setting;
 
 import com.projecki.fusion.sql.SqlConnectionPool;
+import com.projecki.fusion.util.UUIDUtil;
+import com.projecki.fusion.util.concurrent.CoalescingLoader;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
@@ -42,15 +47,17 @@ public class SqlSettingLoader extends SettingLoader {
     //);
 
     public static final String SCHEMA = "CREATE TABLE IF NOT EXISTS player_settings(uuid BINARY(16) NOT NULL, namespace VARCHAR(20) NOT NULL, id VARCHAR(16) NOT NULL, PRIMARY KEY (uuid, namespace));";
-    private static final String INSERT = "INSERT INTO player_settings (uuid, namespace, id) VALUES (UNHEX(?), ?, ?) ON DUPLICATE KEY UPDATE id=VALUES(id);";
-    private static final String RETRIEVE = "SELECT namespace, id FROM player_settings WHERE uuid=UNHEX(?);";
+    private static final String INSERT = "INSERT INTO player_settings (uuid, namespace, id) VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE id=VALUES(id);";
 
     private final SqlConnectionPool connectionPool;
     private final ExecutorService executor;
+    // loads the ids requested within a few milliseconds of each other together
+    private final CoalescingLoader<UUID, Map<String, String>> loader;
 
     public SqlSettingLoader(ExecutorService executor, SqlConnectionPool connectionPool) {
         this.connectionPool = connectionPool;
         this.executor = executor;
+        this.loader = CoalescingLoader.<UUID, Map<String, String>>builder(this::loadBatch).build();
     }
 
     @Override
@@ -62,23 +69,43 @@ public class SqlSettingLoader extends SettingLoader {
 //                        toMap(PlayerSettingsRecord::getNamespace, PlayerSettingsRecord::getId)))
 //                .toCompletableFuture();
 
-        CompletableFuture<Map<String, String>> future = new CompletableFuture<>();
+        return loader.load(parentId);
+    }
+
+    @Override
+    protected CompletableFuture<Map<UUID, Map<String, String>>> loadImpl(Collection<UUID> parentIds) {
+        Map<UUID, CompletableFuture<Map<String, String>>> futures = loader.loadAll(parentIds);
+        return CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).thenApply(v -> {
+            Map<UUID, Map<String, String>> loaded = new HashMap<>();
+            futures.forEach((parentId, future) -> loaded.put(parentId, future.join()));
+            return loaded;
+        });
+    }
+
+    private CompletableFuture<Map<UUID, Map<String, String>>> loadBatch(Set<UUID> parentIds) {
+        CompletableFuture<Map<UUID, Map<String, String>>> future = new CompletableFuture<>();
         executor.submit(() -> {
             try (Connection conn = connectionPool.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(RETRIEVE)) {
-                ps.setString(1, parentId.toString().replaceAll("-", ""));
+                 PreparedStatement ps = conn.prepareStatement(getRetrieve(parentIds.size()))) {
+                int index = 1;
+                for (UUID parentId : parentIds) {
+                    ps.setBytes(index++, UUIDUtil.toBytes(parentId));
+                }
 
                 try (ResultSet resultSet = ps.executeQuery()) {
-                    Map<String, String> found = new HashMap<>();
+                    // ids without a row have no settings yet
+                    Map<UUID, Map<String, String>> found = new HashMap<>();
+                    parentIds.forEach(parentId -> found.put(parentId, new HashMap<>()));
                     while (resultSet.next()) {
+                        UUID parentId = UUIDUtil.toUuid(resultSet.getBytes("uuid"));
                         String namespace = resultSet.getString("namespace");
                         String id = resultSet.getString("id");
-                        found.put(namespace, id);
+                        found.get(parentId).put(namespace, id);
                     }
                     future.complete(found);
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
+            } catch (SQLException | RuntimeException e) {
+                future.completeExceptionally(e);
             }
         });
 
@@ -104,23 +131,28 @@ public class SqlSettingLoader extends SettingLoader {
         executor.submit(() -> {
             try (Connection conn = connectionPool.getConnection();
                  PreparedStatement ps = conn.prepareStatement(INSERT)) {
+                byte[] idBytes = UUIDUtil.toBytes(parentId);
                 for (Map.Entry<String, String> entry : toSave.entrySet()) {
                     String namespace = entry.getKey();
                     String id = entry.getValue();
-                    ps.setString(1, parentId.toString().replaceAll("-", ""));
+                    ps.setBytes(1, idBytes);
                     ps.setString(2, namespace);
                     ps.setString(3, id);
                     ps.addBatch();
                 }
 
-                ps.executeUpdate();
-                future.complete(null);
-            } catch (SQLException e) {
-                e.printStackTrace();
+                // sent as a single multi-row insert, as the pool rewrites batched statements
+                ps.executeBatch();
                 future.complete(null);
+            } catch (SQLException | RuntimeException e) {
+                future.completeExceptionally(e);
             }
         });
 
         return future;
     }
+
+    static String getRetrieve(int ids) {
+        return "SELECT uuid, namespace, id FROM player_settings WHERE uuid IN (" + String.join(", ", Collections.nCopies(ids, "?")) + ");";
+    }
 }
@@ -15,6 +15,9 @@ public class SqlConfig {
     private String tablePrefix;
     private final Map<String, String> mappings = Map.of();
     private final Map<String, Integer> executor = Map.of();
+    @JsonProperty("shared_executor")
+    @SerializedName("shared_executor")
+    private boolean sharedExecutor;
 
     public SqlConfig() {
     }
@@ -48,4 +51,8 @@ public class SqlConfig {
     public Map<String, Integer> getExecutor() {
         return executor;
     }
+
+    public boolean isSharedExecutor() {
+        return sharedExecutor;
+    }
 }
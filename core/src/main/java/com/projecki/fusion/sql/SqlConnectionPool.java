@@ -3,6 +3,7 @@ package com.projecki.fusion.sql;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.projecki.fusion.FusionCore;
+import com.projecki.fusion.util.concurrent.InstrumentedThreadPoolExecutor;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import org.jetbrains.annotations.NotNull;
@@ -32,6 +33,7 @@ public class SqlConnectionPool {
 
     private HikariDataSource dataSource;
     private final ExecutorService executor;
+    private final boolean ownsExecutor;
     private final Settings settings = new Settings().withExecuteLogging(false);
 
     /**
@@ -49,12 +51,14 @@ public class SqlConnectionPool {
         hikariConfig.addDataSourceProperty("cachePrepStmts", "true");
         hikariConfig.addDataSourceProperty("prepStmtCacheSize", "250");
         hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        hikariConfig.addDataSourceProperty("rewriteBatchedStatements", "true");
         hikariConfig.setConnectionTimeout(5 * 1000);
 
         try {
             this.dataSource = new HikariDataSource(hikariConfig);
         } catch (IllegalArgumentException e) {
             this.executor = null;
+            this.ownsExecutor = false;
             this.dataSource = null;
             FusionCore.LOGGER.error("Incorrect hikariCP config. Sql url/credentials are likely wrong");
             return;
@@ -85,17 +89,26 @@ public class SqlConnectionPool {
             }
         }
 
+        // Queries run on their own pool unless the shared IO pool is
+        // configured, so that they never wait behind other blocking work
+        this.ownsExecutor = !config.isSharedExecutor();
+        if (!ownsExecutor) {
+            this.executor = FusionCore.getExecutors().io();
+            return;
+        }
+
         Map<String, Integer> executor = config.getExecutor();
         int corePoolSize = executor.getOrDefault("corePoolSize", 5);
         int maxPoolSize = executor.getOrDefault("maximumPoolSize", 5);
         int keepAliveTime = executor.getOrDefault("keepAliveTime", 60);
-        this.executor = new ThreadPoolExecutor(
+        this.executor = new InstrumentedThreadPoolExecutor("jOOQ",
                 corePoolSize, maxPoolSize, keepAliveTime, TimeUnit.SECONDS,
                 new LinkedBlockingQueue<>(),
                 new ThreadFactoryBuilder()
                         .setNameFormat("jOOQ - %d")
                         .setUncaughtExceptionHandler((t, e) -> e.printStackTrace())
-                        .build()
+                        .build(),
+                new ThreadPoolExecutor.AbortPolicy()
         );
     }
 
@@ -129,7 +142,11 @@ public class SqlConnectionPool {
      * Shuts down the internal {@link DataSource} and it's associated pool
      */
     public void shutdown() {
-        MoreExecutors.shutdownAndAwaitTermination(executor, 5, TimeUnit.MINUTES);
+
+        if (ownsExecutor) {
+            MoreExecutors.shutdownAndAwaitTermination(executor, 5, TimeUnit.MINUTES);
+        }
+
         this.dataSource.close();
     }
 
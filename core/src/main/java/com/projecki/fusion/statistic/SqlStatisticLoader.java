@@ -1,106 +1,213 @@
 package com.projecki.fusion.statistic;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.projecki.fusion.sql.SqlConnectionPool;
+import com.projecki.fusion.util.UUIDUtil;
+import com.projecki.fusion.util.concurrent.CoalescingLoader;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.stream.Collectors;
 
-public class SqlStatisticLoader extends StatisticLoader {
+public class SqlStatisticLoader extends StatisticLoader implements AutoCloseable {
 
     private final SqlConnectionPool connectionPool;
     private final ExecutorService executor;
-
+    private final StatisticWriteBehind writeBehind;
+    // loads the ids requested within a few milliseconds of each other together, by namespace
+    private final Map<String, CoalescingLoader<UUID, Map<String, Long>>> loaders = new ConcurrentHashMap<>();
+
+    // the statements only differ by namespace, columns and amount of rows, so they are built once
+    private final LoadingCache<Template, String> templates = CacheBuilder.newBuilder()
+            .maximumSize(256)
+            .build(CacheLoader.from(template -> getInsert(template.namespace(), template.absolute(), template.columns(), template.rows())));
+
+    /**
+     * Create a loader that writes saved and incremented statistics every 30 seconds.
+     *
+     * @param executor The executor to load and write statistics on
+     * @param connectionPool The pool to get connections from
+     */
     public SqlStatisticLoader(ExecutorService executor, SqlConnectionPool connectionPool) {
+        this(executor, connectionPool, Duration.ofSeconds(30), 50_000);
+    }
+
+    /**
+     * Create a loader that writes saved and incremented statistics in batches.
+     *
+     * @param executor The executor to load and write statistics on
+     * @param connectionPool The pool to get connections from
+     * @param flushInterval How often pending statistics are written
+     * @param maxPending The most statistics to keep in memory while waiting to be written
+     * @see StatisticWriteBehind
+     */
+    public SqlStatisticLoader(ExecutorService executor, SqlConnectionPool connectionPool, Duration flushInterval, int maxPending) {
         this.connectionPool = connectionPool;
         this.executor = executor;
+        this.writeBehind = StatisticWriteBehind.builder(this::write)
+                .interval(flushInterval)
+                .maxPending(maxPending)
+                .executor(executor)
+                .build();
     }
 
+    /**
+     * {@inheritDoc}<p>
+     * The statistics are loaded along with those of every other id requested
+     * in the same namespace within a few milliseconds.
+     */
     @Override
     protected CompletableFuture<Map<String, Long>> loadImpl(UUID parentId, String namespace) {
-        CompletableFuture<Map<String, Long>> future = new CompletableFuture<>();
+        return this.loader(namespace).load(parentId);
+    }
+
+    /**
+     * {@inheritDoc}<p>
+     * The ids are loaded along with every other id requested in the same
+     * namespace within a few milliseconds, by as few queries as possible.
+     */
+    @Override
+    protected CompletableFuture<Map<UUID, Map<String, Long>>> loadImpl(Collection<UUID> parentIds, String namespace) {
+        Map<UUID, CompletableFuture<Map<String, Long>>> futures = this.loader(namespace).loadAll(parentIds);
+        return CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).thenApply(v -> {
+            Map<UUID, Map<String, Long>> loaded = new HashMap<>();
+            futures.forEach((parentId, future) -> loaded.put(parentId, future.join()));
+            return loaded;
+        });
+    }
+
+    /**
+     * {@inheritDoc}<p>
+     * The statistics are written along with every other pending statistic,
+     * replacing any increments to them that were not written yet. If the
+     * write fails, the statistics are retried on the next flush.
+     */
+    @Override
+    protected CompletableFuture<Void> saveImpl(UUID parentId, String namespace, Map<String, Long> statistics) {
+        writeBehind.set(parentId, namespace, statistics);
+        return writeBehind.flush().exceptionally(e -> null);
+    }
+
+    @Override
+    protected void incrementImpl(UUID parentId, String namespace, String statistic, long diff) {
+        writeBehind.increment(parentId, namespace, statistic, diff);
+    }
+
+    /**
+     * Get the {@link StatisticWriteBehind} that statistics are written through.
+     *
+     * @return The write-behind.
+     */
+    public StatisticWriteBehind getWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * Write every pending statistic, waiting for at most a minute.
+     */
+    @Override
+    public void close() {
+        writeBehind.close();
+    }
+
+    private CoalescingLoader<UUID, Map<String, Long>> loader(String namespace) {
+        return loaders.computeIfAbsent(namespace, k -> CoalescingLoader.<UUID, Map<String, Long>>builder(ids -> this.loadBatch(namespace, ids)).build());
+    }
+
+    private CompletableFuture<Map<UUID, Map<String, Long>>> loadBatch(String namespace, Set<UUID> parentIds) {
+        CompletableFuture<Map<UUID, Map<String, Long>>> future = new CompletableFuture<>();
 
         executor.submit(() -> {
-            final String retrieve = getRetrieve(namespace);
+            final String retrieve = getRetrieve(namespace, parentIds.size());
             try (Connection conn = connectionPool.getConnection();
                  PreparedStatement ps = conn.prepareStatement(retrieve)) {
-                ps.setString(1, parentId.toString().replaceAll("-", ""));
+                int index = 1;
+                for (UUID parentId : parentIds) {
+                    ps.setString(index++, parentId.toString().replace("-", ""));
+                }
 
                 try (ResultSet rs = ps.executeQuery()) {
-                    Map<String, Long> found = new HashMap<>();
+                    // ids without a row have no statistics yet
+                    Map<UUID, Map<String, Long>> found = new HashMap<>();
+                    parentIds.forEach(parentId -> found.put(parentId, new HashMap<>()));
+
+                    ResultSetMetaData rsMetaData = rs.getMetaData();
+                    int columns = rsMetaData.getColumnCount();
                     while (rs.next()) {
-                        ResultSetMetaData rsMetaData = rs.getMetaData();
-                        int columns = rsMetaData.getColumnCount();
-                        for (int i = 0; i < columns; i++) {
-                            int index = i + 1; // these index starting at 1
-                            String columnName = rsMetaData.getColumnName(index);
-                            Long value = rs.getLong(columnName);
-                            found.put(columnName, value);
+                        Map<String, Long> values = found.get(UUIDUtil.toUuid(rs.getBytes("uuid")));
+                        for (int i = 1; i <= columns; i++) { // these index starting at 1
+                            String columnName = rsMetaData.getColumnName(i);
+                            if (!columnName.equalsIgnoreCase("uuid")) {
+                                values.put(columnName, rs.getLong(i));
+                            }
                         }
                     }
                     future.complete(found);
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
+            } catch (SQLException | RuntimeException e) {
+                future.completeExceptionally(e);
             }
         });
 
         return future;
     }
 
-    @Override
-    protected CompletableFuture<Void> saveImpl(UUID parentId, String namespace, Map<String, Long> statistics) {
-        CompletableFuture<Void> future = new CompletableFuture<>();
-        final String insert = getInsert(namespace, statistics);
+    private void write(StatisticWriteBehind.Batch batch) throws SQLException {
+        String insert = templates.getUnchecked(new Template(batch.namespace(), batch.absolute(), batch.columns(), batch.rows().size()));
+        try (Connection conn = connectionPool.getConnection();
+             PreparedStatement ps = conn.prepareStatement(insert)) {
 
-        executor.submit(() -> {
-            try (Connection conn = connectionPool.getConnection();
-                 PreparedStatement ps = conn.prepareStatement(insert)) {
-                ps.setString(1, parentId.toString().replaceAll("-", ""));
-
-                int columnIndex = 2;
-                for (Map.Entry<String, Long> entry : statistics.entrySet()) {
-                    Long value = entry.getValue();
-                    ps.setLong(columnIndex, value);
-                    columnIndex++;
+            int index = 1;
+            for (StatisticWriteBehind.Row row : batch.rows()) {
+                ps.setString(index++, row.id().toString().replace("-", ""));
+                for (long value : row.values()) {
+                    ps.setLong(index++, value);
                 }
-
-                ps.executeUpdate();
-                future.complete(null);
-            } catch (SQLException e) {
-                e.printStackTrace();
-                future.complete(null);
             }
-        });
 
-        return future;
+            // a single statement, so the batch is written completely or not at all
+            ps.executeUpdate();
+        }
     }
 
-    private String getRetrieve(String namespace) {
-        return "SELECT * FROM " + namespace + " WHERE uuid=UNHEX(?);";
+    static String getRetrieve(String namespace, int ids) {
+        return "SELECT * FROM " + namespace + " WHERE uuid IN (" + String.join(", ", Collections.nCopies(ids, "UNHEX(?)")) + ");";
     }
 
-    private String getInsert(String namespace, Map<String, Long> statistics) {
-        Set<String> keyset = statistics.keySet();
+    static String getInsert(String namespace, boolean absolute, List<String> columns, int rows) {
         StringBuilder builder = new StringBuilder("INSERT INTO ");
         builder.append(namespace);
-        builder.append(" (");
-        builder.append(String.join(", ", keyset));
-        builder.append(") VALUES (UNHEX(?)");
-        builder.append(Strings.repeat(", ?", keyset.size()));
-        builder.append(") ON DUPLICATE KEY UPDATE ");
-        builder.append(keyset.stream().map(id -> id + "=VALUES(" + id + ")").collect(Collectors.joining(", ")));
+        builder.append(" (uuid, ");
+        builder.append(String.join(", ", columns));
+        builder.append(") VALUES ");
+
+        String row = "(UNHEX(?)" + Strings.repeat(", ?", columns.size()) + ")";
+        builder.append(String.join(", ", Collections.nCopies(rows, row)));
+        builder.append(" ON DUPLICATE KEY UPDATE ");
+        builder.append(columns.stream()
+                .map(id -> absolute ? id + "=VALUES(" + id + ")" : id + "=" + id + "+VALUES(" + id + ")")
+                .collect(Collectors.joining(", ")));
         builder.append(";");
         return builder.toString();
     }
+
+    private record Template(String namespace, boolean absolute, List<String> columns, int rows) {
+    }
 }
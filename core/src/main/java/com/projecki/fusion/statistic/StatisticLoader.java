@@ -1,18 +1,17 @@
 package com.projecki.fusion.statistic;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
-
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalLong;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
 
 public abstract class StatisticLoader {
 
-    // a table where statistic values are mapped to two values: uuid and type
-    private final Table<UUID, StatisticType, Long> statistics = HashBasedTable.create();
+    // statistic values by uuid and type, safe to change from any thread
+    private final StatisticStore statistics = new StatisticStore();
     private final StatisticType.Registry registry;
 
     public StatisticLoader() {
@@ -27,7 +26,8 @@ public abstract class StatisticLoader {
      * @return A possibly present statistic type tied to a given id
      */
     public final Optional<Long> getStatistic(UUID id, StatisticType type) {
-        return Optional.ofNullable(this.statistics.get(id, type));
+        OptionalLong value = this.statistics.get(id, type);
+        return value.isPresent() ? Optional.of(value.getAsLong()) : Optional.empty();
     }
 
     /**
@@ -38,7 +38,7 @@ public abstract class StatisticLoader {
      * @param value The value to set this statistic to
      */
     public final void setStatistic(UUID id, StatisticType type, long value) {
-        this.statistics.put(id, type, value);
+        this.statistics.set(id, type, value);
     }
 
     /**
@@ -52,7 +52,8 @@ public abstract class StatisticLoader {
      */
     public final void incrementStatistic(UUID id, StatisticType type, long diff) {
         if (diff != 0) {
-            this.setStatistic(id, type, this.getStatistic(id, type).orElse(0L) + diff);
+            this.statistics.increment(id, type, diff);
+            registry.getNamespace(StatisticStore.enumClass(type)).ifPresent(namespace -> this.incrementImpl(id, namespace, type.getId(), diff));
         }
     }
 
@@ -70,7 +71,29 @@ public abstract class StatisticLoader {
         } else {
             String namespace = namespaceOpt.get();
             return this.loadImpl(parentId, namespace).thenApply(map -> {
-                map.forEach((id, value) -> this.registry.getStatistic(type, id).ifPresent(stat -> this.statistics.put(parentId, stat, value)));
+                map.forEach((id, value) -> this.registry.getStatistic(type, id).ifPresent(stat -> this.statistics.set(parentId, stat, value)));
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Loads in statistics of many ids from the database at once and sets them in the cache, such as for every
+     * player of a transfer. The cache is not cleared before this operation.
+     *
+     * @param parentIds The ids to get the statistics attributed to
+     * @param type The type of statistic to load.
+     * @return A future that completes when the statistics of every id have been loaded
+     */
+    public final CompletableFuture<Void> load(Collection<UUID> parentIds, Class<? extends StatisticType> type) {
+        Optional<String> namespaceOpt = registry.getNamespace(type);
+        if (namespaceOpt.isEmpty() || parentIds.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        } else {
+            String namespace = namespaceOpt.get();
+            return this.loadImpl(parentIds, namespace).thenApply(loaded -> {
+                loaded.forEach((parentId, map) -> map.forEach((id, value) ->
+                        this.registry.getStatistic(type, id).ifPresent(stat -> this.statistics.set(parentId, stat, value))));
                 return null;
             });
         }
@@ -91,6 +114,21 @@ public abstract class StatisticLoader {
         );
     }
 
+    /**
+     * Loads all statistics attributed to many ids from the database at once and sets them in the cache. The cache
+     * is not cleared before this operation.
+     *
+     * @param parentIds The ids to get the statistics attributed to
+     * @return A future that completes when the statistics of every id are loaded
+     */
+    public final CompletableFuture<Void> loadAll(Collection<UUID> parentIds) {
+        return CompletableFuture.allOf(
+                registry.getNamespaceRegistry().inverse().values()
+                        .stream().map(value -> this.load(parentIds, value))
+                        .toArray(CompletableFuture[]::new)
+        );
+    }
+
     /**
      * Saves all statistics currently in the cache attributed to a given id and of a given type to the database.
      * This operation does NOT edit the cache
@@ -105,9 +143,7 @@ public abstract class StatisticLoader {
             return CompletableFuture.completedFuture(null);
         } else {
             String namespace = namespaceOpt.get();
-            Map<String, Long> toSave = this.statistics.row(parentId).entrySet().stream()
-                    .filter(e -> e.getKey().getClass() == type)
-                    .collect(Collectors.toMap(entry -> entry.getKey().getId(), Map.Entry::getValue));
+            Map<String, Long> toSave = this.statistics.snapshot(parentId, type);
             return this.saveImpl(parentId, namespace, toSave);
         }
     }
@@ -123,7 +159,49 @@ public abstract class StatisticLoader {
         return CompletableFuture.allOf(registry.getNamespaceRegistry().inverse().values().stream().map(value -> this.save(parentId, value)).toArray(CompletableFuture[]::new));
     }
 
+    /**
+     * Removes all statistics attributed to a given id from the cache, such as once they are saved
+     * when a player leaves. This operation does NOT edit the database
+     *
+     * @param parentId The id to remove the statistics of
+     */
+    public final void unload(UUID parentId) {
+        this.statistics.remove(parentId);
+    }
+
     protected abstract CompletableFuture<Map<String, Long>> loadImpl(UUID parentId, String namespace);
 
+    /**
+     * Loads the statistics of many ids in a namespace. By default each id is
+     * loaded on its own, so implementations that can query many ids at once
+     * should override this.
+     *
+     * @param parentIds The ids to load the statistics of
+     * @param namespace The namespace of the statistics
+     * @return A future of the statistics by id, which may leave out ids without statistics
+     */
+    protected CompletableFuture<Map<UUID, Map<String, Long>>> loadImpl(Collection<UUID> parentIds, String namespace) {
+        Map<UUID, CompletableFuture<Map<String, Long>>> futures = new HashMap<>();
+        parentIds.forEach(parentId -> futures.put(parentId, this.loadImpl(parentId, namespace)));
+        return CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).thenApply(v -> {
+            Map<UUID, Map<String, Long>> loaded = new HashMap<>();
+            futures.forEach((parentId, future) -> loaded.put(parentId, future.join()));
+            return loaded;
+        });
+    }
+
     protected abstract CompletableFuture<Void> saveImpl(UUID parentId, String namespace, Map<String, Long> statistics);
+
+    /**
+     * Called after a statistic is incremented, so the increment can be written
+     * without waiting for the next save. By default increments are only written
+     * by saving.
+     *
+     * @param parentId The id tied to the incremented statistic
+     * @param namespace The namespace of the statistic
+     * @param statistic The id of the statistic
+     * @param diff The difference the statistic was incremented by
+     */
+    protected void incrementImpl(UUID parentId, String namespace, String statistic, long diff) {
+    }
 }
@@ -0,0 +1,197 @@
+package com.projecki.fusion.statistic;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Keeps the statistic values of every loaded user in primitive arrays.
+ * <p>
+ * Every {@link StatisticType} enum is given a dense index the first time it is
+ * used, and each user has a {@link AtomicLongArray} per enum that is indexed by
+ * the statistic's ordinal. Getting, setting and incrementing a statistic is a
+ * single lookup of the user followed by array accesses, without boxing or locks,
+ * and is safe from any thread. A separate bit per statistic records whether it
+ * was ever set, so statistics that were never loaded are not saved as 0.
+ */
+public final class StatisticStore {
+
+    private final Map<UUID, User> users = new ConcurrentHashMap<>();
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private final ClassValue<Integer> indexes = new ClassValue<>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            return nextIndex.getAndIncrement();
+        }
+    };
+
+    /**
+     * Get the value of a statistic.
+     *
+     * @param id The id the statistic is attributed to.
+     * @param type The statistic to get.
+     * @return The value, or empty if it was never set.
+     */
+    public OptionalLong get(UUID id, StatisticType type) {
+        int index = this.index(type);
+        User user = users.get(id);
+        Slots slots = user == null ? null : user.get(index);
+        int ordinal = ordinal(type);
+        return slots != null && slots.isPresent(ordinal) ? OptionalLong.of(slots.values.get(ordinal)) : OptionalLong.empty();
+    }
+
+    /**
+     * Set the value of a statistic.
+     *
+     * @param id The id to attribute the statistic to.
+     * @param type The statistic to set.
+     * @param value The new value.
+     */
+    public void set(UUID id, StatisticType type, long value) {
+        Slots slots = this.slots(id, type);
+        int ordinal = ordinal(type);
+        slots.values.set(ordinal, value);
+        slots.markPresent(ordinal);
+    }
+
+    /**
+     * Add to the value of a statistic, which is treated as 0 if it was never set.
+     *
+     * @param id The id the statistic is attributed to.
+     * @param type The statistic to increment.
+     * @param diff The amount to add. Can be negative.
+     * @return The new value.
+     */
+    public long increment(UUID id, StatisticType type, long diff) {
+        Slots slots = this.slots(id, type);
+        int ordinal = ordinal(type);
+        long value = slots.values.addAndGet(ordinal, diff);
+        slots.markPresent(ordinal);
+        return value;
+    }
+
+    /**
+     * Copy the values of every statistic of a type that is set for an id,
+     * such as to save them. Each value is read atomically, but statistics
+     * that change while copying may be copied from before or after the change.
+     *
+     * @param id The id the statistics are attributed to.
+     * @param type The {@link StatisticType} enum to copy the statistics of.
+     * @return The values by statistic id.
+     */
+    public Map<String, Long> snapshot(UUID id, Class<? extends StatisticType> type) {
+        User user = users.get(id);
+        Slots slots = user == null ? null : user.get(indexes.get(type));
+        if (slots == null) {
+            return Map.of();
+        }
+
+        StatisticType[] constants = type.getEnumConstants();
+        Map<String, Long> values = new HashMap<>();
+        for (int i = 0; i < constants.length; i++) {
+            if (slots.isPresent(i)) {
+                values.put(constants[i].getId(), slots.values.get(i));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Remove every statistic of an id.
+     *
+     * @param id The id to remove the statistics of.
+     */
+    public void remove(UUID id) {
+        this.users.remove(id);
+    }
+
+    /**
+     * Get the amount of ids with statistics.
+     *
+     * @return The amount of ids.
+     */
+    public int size() {
+        return users.size();
+    }
+
+    private int index(StatisticType type) {
+        return indexes.get(enumClass(type));
+    }
+
+    private Slots slots(UUID id, StatisticType type) {
+        return users.computeIfAbsent(id, k -> new User()).getOrCreate(this.index(type), enumClass(type));
+    }
+
+    // not getClass(), which is a subclass for constants with a body
+    @SuppressWarnings("unchecked")
+    static Class<? extends StatisticType> enumClass(StatisticType type) {
+        checkArgument(type instanceof Enum<?>, "statistic types must be enums: %s", type.getClass());
+        return (Class<? extends StatisticType>) ((Enum<?>) type).getDeclaringClass();
+    }
+
+    private static int ordinal(StatisticType type) {
+        return ((Enum<?>) type).ordinal();
+    }
+
+    // the statistics of one user, by the index of their enum
+    private static final class User {
+
+        private volatile Slots[] slots = new Slots[0];
+
+        Slots get(int index) {
+            Slots[] slots = this.slots;
+            return index < slots.length ? slots[index] : null;
+        }
+
+        Slots getOrCreate(int index, Class<?> type) {
+            Slots found = this.get(index);
+            return found != null ? found : this.create(index, type);
+        }
+
+        private synchronized Slots create(int index, Class<?> type) {
+            Slots[] slots = this.slots;
+            if (index < slots.length && slots[index] != null) {
+                return slots[index];
+            }
+
+            // copied, so readers never see a partly filled array
+            Slots[] copy = Arrays.copyOf(slots, Math.max(slots.length, index + 1));
+            copy[index] = new Slots(type.getEnumConstants().length);
+            this.slots = copy;
+            return copy[index];
+        }
+    }
+
+    // the values of one statistic enum, and a bit for each value that is set
+    private static final class Slots {
+
+        private final AtomicLongArray values;
+        private final AtomicLongArray present;
+
+        Slots(int size) {
+            this.values = new AtomicLongArray(size);
+            this.present = new AtomicLongArray((size + Long.SIZE - 1) / Long.SIZE);
+        }
+
+        boolean isPresent(int ordinal) {
+            return (present.get(ordinal >>> 6) & (1L << ordinal)) != 0;
+        }
+
+        void markPresent(int ordinal) {
+            int word = ordinal >>> 6;
+            long bit = 1L << ordinal;
+            long bits;
+            // only written the first time the statistic is set
+            while (((bits = present.get(word)) & bit) == 0 && !present.compareAndSet(word, bits, bits | bit)) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
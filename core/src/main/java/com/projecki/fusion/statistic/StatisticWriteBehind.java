@@ -0,0 +1,610 @@
+package com.projecki.fusion.statistic;
+
+import com.projecki.fusion.FusionCore;
+import com.projecki.fusion.metrics.Gauge;
+import com.projecki.fusion.metrics.Histogram;
+import com.projecki.fusion.metrics.MetricRegistry;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Buffers statistic writes in memory and writes them to storage in batches.
+ * <p>
+ * Increments are merged per player and statistic into a single delta, so a
+ * statistic that changes many times between two flushes is written once, as
+ * {@code value = value + delta}. Setting a statistic replaces any pending delta
+ * with the new value, and later increments are added to that value. Every
+ * flush is grouped by namespace and written in batches of up to the batch size
+ * rows, and flushes never run at the same time, so writes reach storage in the
+ * order they were made.
+ * <p>
+ * At most the maximum amount of pending statistics is kept in memory. A new
+ * statistic that would go over it starts a flush without waiting for it, and
+ * is dropped if the flush has not taken the pending statistics yet, such as
+ * while storage cannot be reached. Changes to statistics that are already
+ * pending are always kept. The statistics of a failed flush are kept for the
+ * next one only while they fit.
+ */
+public class StatisticWriteBehind implements AutoCloseable {
+
+    private final Writer writer;
+    private final int batchSize, maxPending;
+    private final Executor executor;
+    private final ScheduledFuture<?> task;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // only used while holding the lock
+    private Map<Key, Pending> pending = new HashMap<>();
+    private long oldestPending;
+    @Nullable
+    private CompletableFuture<Void> nextFlush;
+    private boolean closed;
+    // if a statistic was dropped since the last successful flush, so it is only logged once
+    private boolean full;
+
+    // held while a flush writes, so flushes never overlap
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private volatile boolean failing;
+
+    private final MetricRegistry metrics;
+    private final Histogram lag, flushTime;
+    private final Gauge pendingGauge;
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder rowsWritten = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile long lastLag;
+
+    private StatisticWriteBehind(Builder builder) {
+        this.writer = builder.writer;
+        this.batchSize = builder.batchSize;
+        this.maxPending = builder.maxPending;
+        this.executor = builder.executor != null ? builder.executor : FusionCore.getExecutors().io();
+        this.metrics = builder.metrics != null ? builder.metrics : FusionCore.getMetrics();
+        this.lag = metrics.histogram("statistic.flush.lag");
+        this.flushTime = metrics.histogram("statistic.flush.time");
+        this.pendingGauge = metrics.gauge("statistic.pending", this::pending);
+
+        ScheduledExecutorService scheduler = builder.scheduler != null ? builder.scheduler : FusionCore.getExecutors().scheduled();
+        long interval = builder.interval.toNanos();
+        this.task = scheduler.scheduleAtFixedRate(this::flush, interval, interval, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Create a new {@link Builder} for a {@link StatisticWriteBehind}.
+     *
+     * @param writer The {@link Writer} that writes each batch to storage.
+     * @return The new {@link Builder}.
+     */
+    public static Builder builder(Writer writer) {
+        return new Builder(writer);
+    }
+
+    /**
+     * Add to a statistic the next time the statistics are flushed.
+     *
+     * @param id The id the statistic is attributed to.
+     * @param namespace The namespace of the statistic.
+     * @param statistic The id of the statistic.
+     * @param diff The amount to add. Can be negative.
+     */
+    public void increment(UUID id, String namespace, String statistic, long diff) {
+        if (diff != 0) {
+            this.record(new Key(id, namespace, statistic), diff, false);
+        }
+    }
+
+    /**
+     * Set the values of statistics the next time the statistics are flushed,
+     * replacing any increments to them that have not been flushed yet.
+     *
+     * @param id The id the statistics are attributed to.
+     * @param namespace The namespace of the statistics.
+     * @param statistics The values of the statistics by their id.
+     */
+    public void set(UUID id, String namespace, Map<String, Long> statistics) {
+        statistics.forEach((statistic, value) -> this.record(new Key(id, namespace, statistic), value, true));
+    }
+
+    /**
+     * Write every pending statistic now instead of waiting for the next flush.
+     * Calls made before a flush starts share the same flush.
+     *
+     * @return A future that completes once every statistic that was pending
+     * when this was called is written, or exceptionally if the flush failed.
+     */
+    public CompletableFuture<Void> flush() {
+
+        CompletableFuture<Void> future;
+        lock.lock();
+        try {
+            if (nextFlush != null) {
+                return nextFlush;
+            }
+
+            if (pending.isEmpty()) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            future = new CompletableFuture<>();
+            this.nextFlush = future;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            executor.execute(this::write);
+        } catch (RuntimeException e) { // the executor is shut down, so write on this thread
+            this.write();
+        }
+        return future;
+    }
+
+    /**
+     * Get the amount of statistics waiting to be written.
+     *
+     * @return The amount of pending statistics.
+     */
+    public int pending() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the current {@link Stats} of this write-behind.
+     *
+     * @return The stats.
+     */
+    public Stats getStats() {
+        return new Stats(this.pending(), flushes.sum(), rowsWritten.sum(), failures.sum(), dropped.sum(), Duration.ofNanos(lastLag));
+    }
+
+    /**
+     * Stop flushing periodically and write every pending statistic,
+     * waiting for at most the given time. Statistics can no longer
+     * be recorded afterwards.
+     *
+     * @param timeout The longest time to wait for the last flush.
+     * @param unit The unit of the timeout.
+     * @return Whether every statistic was written.
+     */
+    public boolean close(long timeout, TimeUnit unit) {
+
+        task.cancel(false);
+        lock.lock();
+        try {
+            this.closed = true;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            this.flush().get(timeout, unit);
+            return true;
+        } catch (Exception e) {
+            FusionCore.LOGGER.error("Could not write every pending statistic, {} are lost", this.pending(), e);
+            return false;
+        } finally {
+            metrics.remove(pendingGauge);
+        }
+    }
+
+    /**
+     * Stop flushing periodically and write every pending statistic,
+     * waiting for at most a minute.
+     */
+    @Override
+    public void close() {
+        this.close(1, TimeUnit.MINUTES);
+    }
+
+    private void record(Key key, long value, boolean absolute) {
+
+        lock.lock();
+        try {
+            checkState(!closed, "closed");
+            Pending existing = pending.get(key);
+            if (existing != null) {
+                existing.merge(value, absolute);
+                return;
+            }
+
+            if (pending.size() < maxPending) {
+                this.add(key, new Pending(value, absolute));
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // full, so start writing the pending statistics without waiting for them,
+        // as this is often called on the main thread
+        this.flush();
+
+        lock.lock();
+        try {
+            Pending existing = pending.get(key);
+            if (existing != null) {
+                existing.merge(value, absolute);
+            } else if (pending.size() < maxPending) { // the flush already took the pending statistics
+                this.add(key, new Pending(value, absolute));
+            } else {
+                dropped.increment();
+                if (!full) {
+                    this.full = true;
+                    FusionCore.LOGGER.warn("Too many statistics are waiting to be written, new statistics are dropped until they are");
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void add(Key key, Pending value) {
+        if (pending.isEmpty()) {
+            this.oldestPending = System.nanoTime();
+        }
+        this.pending.put(key, value);
+    }
+
+    private void write() {
+
+        flushLock.lock();
+        try {
+            CompletableFuture<Void> future;
+            Map<Key, Pending> batch;
+            long oldest;
+            lock.lock();
+            try {
+                future = nextFlush;
+                batch = pending;
+                oldest = oldestPending;
+                this.nextFlush = null;
+                this.pending = new HashMap<>();
+            } finally {
+                lock.unlock();
+            }
+
+            if (future == null) {
+                return;
+            }
+
+            long start = flushTime.start();
+            List<Batch> batches = this.batches(batch);
+            for (int i = 0; i < batches.size(); i++) {
+                try {
+                    writer.write(batches.get(i));
+                    rowsWritten.add(batches.get(i).rows().size());
+                } catch (Exception e) {
+                    // batches before this one are already written, so only the rest are kept
+                    this.failed(unwritten(batch, batches.subList(i, batches.size())), oldest, e);
+                    future.completeExceptionally(e);
+                    return;
+                }
+            }
+
+            long now = System.nanoTime();
+            this.lastLag = now - oldest;
+            this.failing = false;
+            lock.lock();
+            try {
+                this.full = false;
+            } finally {
+                lock.unlock();
+            }
+            flushes.increment();
+            lag.record(now - oldest);
+            flushTime.recordSince(start);
+            future.complete(null);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void failed(Map<Key, Pending> batch, long oldest, Exception e) {
+
+        failures.increment();
+        // only logged once until a flush succeeds again
+        if (!failing) {
+            this.failing = true;
+            FusionCore.LOGGER.error("Could not write statistics, they will be retried on the next flush", e);
+        }
+
+        lock.lock();
+        try {
+            Map<Key, Pending> newer = pending;
+            this.pending = new HashMap<>();
+            for (Map.Entry<Key, Pending> entry : batch.entrySet()) {
+                if (pending.size() < maxPending) {
+                    this.add(entry.getKey(), entry.getValue());
+                } else {
+                    dropped.increment();
+                }
+            }
+
+            // statistics recorded during the flush come after the failed ones
+            newer.forEach((key, value) -> {
+                Pending existing = pending.get(key);
+                if (existing != null) {
+                    existing.merge(value.value, value.absolute);
+                } else {
+                    this.add(key, value);
+                }
+            });
+
+            if (pending.size() > newer.size()) {
+                this.oldestPending = oldest;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // the pending statistics of a flush that are part of the given batches
+    private static Map<Key, Pending> unwritten(Map<Key, Pending> batch, List<Batch> batches) {
+
+        Map<Key, Pending> unwritten = new HashMap<>();
+        for (Batch next : batches) {
+            for (Row row : next.rows()) {
+                for (String column : next.columns()) {
+                    Key key = new Key(row.id(), next.namespace(), column);
+                    Pending value = batch.get(key);
+                    // deltas write 0 for columns the id did not change, which are not pending
+                    if (value != null && value.absolute == next.absolute()) {
+                        unwritten.put(key, value);
+                    }
+                }
+            }
+        }
+        return unwritten;
+    }
+
+    private List<Batch> batches(Map<Key, Pending> batch) {
+
+        // by namespace, whether the values are set, and then by id
+        Map<String, Map<Boolean, Map<UUID, Map<String, Long>>>> grouped = new TreeMap<>();
+        batch.forEach((key, value) -> grouped
+                .computeIfAbsent(key.namespace(), k -> new HashMap<>())
+                .computeIfAbsent(value.absolute, k -> new HashMap<>())
+                .computeIfAbsent(key.id(), k -> new TreeMap<>())
+                .put(key.statistic(), value.value));
+
+        List<Batch> batches = new ArrayList<>();
+        grouped.forEach((namespace, byKind) -> {
+
+            // deltas can share every column, as adding 0 changes nothing
+            Map<UUID, Map<String, Long>> deltas = byKind.get(false);
+            if (deltas != null) {
+                TreeSet<String> columns = new TreeSet<>();
+                deltas.values().forEach(values -> columns.addAll(values.keySet()));
+                this.split(namespace, false, List.copyOf(columns), new ArrayList<>(deltas.entrySet()), batches);
+            }
+
+            // set values must only write their own columns, so they are grouped by them
+            Map<UUID, Map<String, Long>> sets = byKind.get(true);
+            if (sets != null) {
+                Map<List<String>, List<Map.Entry<UUID, Map<String, Long>>>> byColumns = new HashMap<>();
+                sets.entrySet().forEach(entry -> byColumns
+                        .computeIfAbsent(List.copyOf(entry.getValue().keySet()), k -> new ArrayList<>())
+                        .add(entry));
+                byColumns.forEach((columns, entries) -> this.split(namespace, true, columns, entries, batches));
+            }
+        });
+        return batches;
+    }
+
+    private void split(String namespace, boolean absolute, List<String> columns,
+                       List<Map.Entry<UUID, Map<String, Long>>> entries, List<Batch> batches) {
+
+        for (int from = 0; from < entries.size(); from += batchSize) {
+
+            List<Row> rows = new ArrayList<>();
+            for (Map.Entry<UUID, Map<String, Long>> entry : entries.subList(from, Math.min(from + batchSize, entries.size()))) {
+
+                long[] values = new long[columns.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = entry.getValue().getOrDefault(columns.get(i), 0L);
+                }
+                rows.add(new Row(entry.getKey(), values));
+            }
+            batches.add(new Batch(namespace, absolute, columns, rows));
+        }
+    }
+
+    /**
+     * Writes a {@link Batch} of statistics to storage.
+     */
+    @FunctionalInterface
+    public interface Writer {
+
+        /**
+         * Write every row of the batch in as few operations as possible. The batch
+         * must either be written completely or not at all, as a batch that fails is
+         * written again by the next flush, while the batches written before it are not.
+         *
+         * @param batch The statistics to write.
+         * @throws Exception If any of the statistics could not be written.
+         */
+        void write(Batch batch) throws Exception;
+    }
+
+    /**
+     * Statistics to write for the same namespace and columns.
+     *
+     * @param namespace The namespace of the statistics.
+     * @param absolute Whether the values replace the stored values,
+     *                 instead of being added to them.
+     * @param columns The ids of the statistics, in the order of each row's values.
+     * @param rows The values by id, at most the batch size.
+     */
+    public record Batch(String namespace, boolean absolute, List<String> columns, List<Row> rows) {
+    }
+
+    /**
+     * The statistic values of one id in a {@link Batch}.
+     *
+     * @param id The id the statistics are attributed to.
+     * @param values The values, in the order of the batch's columns.
+     */
+    public record Row(UUID id, long[] values) {
+    }
+
+    /**
+     * The stats of a {@link StatisticWriteBehind}.
+     *
+     * @param pending The amount of statistics waiting to be written.
+     * @param flushes The amount of flushes that succeeded.
+     * @param rows The total amount of rows written.
+     * @param failures The amount of flushes that failed.
+     * @param dropped The amount of statistics that were lost because too many
+     *                statistics were pending.
+     * @param lastLag The time from the oldest statistic of the last successful
+     *                flush being recorded until it was written.
+     */
+    public record Stats(int pending, long flushes, long rows, long failures, long dropped, Duration lastLag) {
+    }
+
+    private record Key(UUID id, String namespace, String statistic) {
+    }
+
+    private static final class Pending {
+
+        private long value;
+        private boolean absolute;
+
+        Pending(long value, boolean absolute) {
+            this.value = value;
+            this.absolute = absolute;
+        }
+
+        void merge(long value, boolean absolute) {
+            if (absolute) {
+                this.value = value;
+                this.absolute = true;
+            } else {
+                this.value += value;
+            }
+        }
+    }
+
+    /**
+     * A builder for a {@link StatisticWriteBehind}.
+     */
+    public static final class Builder {
+
+        private final Writer writer;
+        private Duration interval = Duration.ofSeconds(30);
+        private int batchSize = 100, maxPending = 50_000;
+        private ScheduledExecutorService scheduler;
+        private Executor executor;
+        private MetricRegistry metrics;
+
+        private Builder(Writer writer) {
+            this.writer = checkNotNull(writer, "writer");
+        }
+
+        /**
+         * Set how often pending statistics are written. The default is 30 seconds.
+         *
+         * @param interval The time between flushes.
+         * @return This builder.
+         */
+        public Builder interval(Duration interval) {
+            checkArgument(!interval.isNegative() && !interval.isZero(), "invalid interval: %s", interval);
+            this.interval = interval;
+            return this;
+        }
+
+        /**
+         * Set the most rows to write in a single batch. The default is 100.
+         *
+         * @param batchSize The maximum rows per batch.
+         * @return This builder.
+         */
+        public Builder batchSize(int batchSize) {
+            checkArgument(batchSize > 0, "invalid batch size: %s", batchSize);
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Set the most statistics to keep in memory while waiting to be written.
+         * The default is 50 thousand.
+         *
+         * @param maxPending The maximum amount of pending statistics.
+         * @return This builder.
+         */
+        public Builder maxPending(int maxPending) {
+            checkArgument(maxPending > 0, "invalid max pending: %s", maxPending);
+            this.maxPending = maxPending;
+            return this;
+        }
+
+        /**
+         * Set the scheduler to flush periodically on instead of the shared scheduler.
+         *
+         * @param scheduler The {@link ScheduledExecutorService}.
+         * @return This builder.
+         */
+        public Builder scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Set the executor to write on instead of the shared IO pool.
+         *
+         * @param executor The {@link Executor}.
+         * @return This builder.
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Set the registry to record the {@code statistic.flush.lag} and
+         * {@code statistic.flush.time} histograms and the
+         * {@code statistic.pending} gauge in, instead of the shared registry.
+         *
+         * @param metrics The {@link MetricRegistry}.
+         * @return This builder.
+         */
+        public Builder metrics(MetricRegistry metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Create the {@link StatisticWriteBehind} and start flushing periodically.
+         *
+         * @return The new {@link StatisticWriteBehind}.
+         */
+        public StatisticWriteBehind build() {
+            return new StatisticWriteBehind(this);
+        }
+    }
+}
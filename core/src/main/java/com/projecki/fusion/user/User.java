@@ -15,6 +15,12 @@ public abstract class User<T> extends ModularObject<UserModule> {
 
     private WeakReference<T> reference = (WeakReference<T>) ABSENT;
 
+    protected User() {
+        // Bound here as the steps of this object can be overridden
+        this.addModuleListener(new UserTaskExecutor.Binder(this));
+        UserTaskExecutor.bind(this);
+    }
+
     /**
      * Get the name of this user.
      *
@@ -1,43 +1,123 @@
 package com.projecki.fusion.user;
 
+import com.projecki.fusion.object.ModuleListener;
 import com.projecki.fusion.util.concurrent.RefreshTask;
 import com.projecki.fusion.util.concurrent.RefreshTaskExecutor;
 import com.projecki.fusion.util.concurrent.Refreshable;
+import org.jetbrains.annotations.Nullable;
 
 /**
+ * Runs the {@link RefreshTask RefreshTasks} of {@link User Users}
+ * and their {@link UserModule modules} that are {@link Refreshable}.
+ * <p>
+ *     Every user is {@link #bind(User) bound} when it is created and
+ *     every module when it is added to its user, so the current task of
+ *     each runs for as long as the user is online, whether it was set
+ *     before or after. Tasks are also {@link #schedule(User, Refreshable) scheduled}
+ *     by whatever sets them to have them picked up straight away.
+ * </p>
+ *
  * @since May 31, 2022
  * @author Andavin
  */
 public final class UserTaskExecutor extends RefreshTaskExecutor {
 
     private static final long PERIOD = ONE_MILLIS * 50;
-    private final Users<?, ?> users;
+    private static volatile UserTaskExecutor instance;
 
     public UserTaskExecutor(Users<?, ?> users) {
-        super(PERIOD);
-        this.users = users;
+        super("User Refresh", PERIOD);
+        instance = this;
+        // Users created before this executor existed
+        users.getAll().forEach(this::bindAll);
     }
 
-    @Override
-    protected void execute(long currentTime) {
+    /**
+     * Check the current {@link Refreshable#refreshTask() task} of a
+     * user, or of one of its modules, on the user executor straight
+     * away. This should be called whenever the task is set.
+     *
+     * @param user The user that the task is for.
+     * @param refreshable The user or module that holds the task.
+     */
+    public static void schedule(User<?> user, Refreshable refreshable) {
 
-        for (User<?> user : users.getOnline()) {
+        UserTaskExecutor executor = instance;
+        if (executor != null) {
+            executor.bind(user, refreshable);
+        }
+    }
+
+    /**
+     * Stop running a task on the user executor until the task of
+     * its user or module is set again.
+     *
+     * @param task The task to stop running, or {@code null} to ignore.
+     */
+    public static void unschedule(@Nullable RefreshTask task) {
+
+        UserTaskExecutor executor = instance;
+        if (executor != null) {
+            executor.remove(task);
+        }
+    }
 
-            if (user instanceof Refreshable refreshable) {
+    /**
+     * Bind a user, and every module that is added to it, to the user
+     * executor. This cannot be skipped by subclasses of the user.
+     *
+     * @param user The user to bind.
+     */
+    static void bind(User<?> user) {
 
-                RefreshTask task = refreshable.refreshTask();
-                if (task != null && task.shouldRun(currentTime)) {
-                    task.execute(currentTime);
-                }
+        UserTaskExecutor executor = instance;
+        if (executor != null && user instanceof Refreshable refreshable) {
+            executor.bind(user, refreshable);
+        }
+    }
+
+    /**
+     * The {@link ModuleListener} that binds the {@link Refreshable}
+     * modules of a user as they are added and removed.
+     */
+    static final class Binder implements ModuleListener<UserModule> {
+
+        private final User<?> user;
+
+        Binder(User<?> user) {
+            this.user = user;
+        }
+
+        @Override
+        public void onAdd(UserModule module) {
+
+            if (module instanceof Refreshable refreshable) {
+                UserTaskExecutor.schedule(user, refreshable);
             }
+        }
 
-            for (Refreshable refreshable : user.getAll(Refreshable.class)) {
+        @Override
+        public void onRemove(UserModule module) {
 
-                RefreshTask task = refreshable.refreshTask();
-                if (task != null && task.shouldRun(currentTime)) {
-                    task.execute(currentTime);
-                }
+            UserTaskExecutor executor = instance;
+            if (executor != null && module instanceof Refreshable refreshable) {
+                executor.remove(refreshable);
             }
         }
     }
+
+    private void bindAll(User<?> user) {
+
+        if (user instanceof Refreshable refreshable) {
+            this.bind(user, refreshable);
+        }
+
+        for (Refreshable refreshable : user.getAll(Refreshable.class)) {
+            this.bind(user, refreshable);
+        }
+    }
+
+    private void bind(User<?> user, Refreshable refreshable) {
+        this.schedule(refreshable, () -> !user.isDestroyed(), user::isOnline);
+    }
 }
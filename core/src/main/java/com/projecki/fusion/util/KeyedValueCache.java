@@ -0,0 +1,448 @@
+package com.projecki.fusion.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.projecki.fusion.FusionCore;
+import com.projecki.fusion.metrics.Gauge;
+import com.projecki.fusion.metrics.Histogram;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A {@link ValueCache} for many keys, where the values of every key that
+ * is due for a refresh are loaded together in a single batch.
+ * <p>
+ * A key is added the first time it is requested and its value is loaded
+ * in the background, so {@link #get(Object)} never blocks and returns
+ * {@code null} until then. After that, the key is refreshed every interval
+ * for as long as it keeps being requested. Keys that have not been requested
+ * for the expire time are removed, and when there are more keys than the
+ * maximum, the key that was requested the longest ago is removed. Keys are
+ * kept in access order, so neither of these searches through the keys.
+ * <p>
+ * A single task on the {@link FusionCore#getExecutors() shared scheduler}
+ * refreshes every key of the cache, and only one batch is loaded at a time.
+ *
+ * @param <K> type of key
+ * @param <V> type of value to cache and update
+ */
+public class KeyedValueCache<K, V> implements AutoCloseable {
+
+    private final BatchLoader<K, V> loader;
+    private final long intervalNanos, expireNanos, timeoutNanos;
+    private final ScheduledExecutorService scheduler;
+    private final Executor executor;
+    @Nullable
+    private final Histogram latency;
+    @Nullable
+    private final Gauge size;
+    private final LongAdder evictions = new LongAdder();
+
+    private final Cache<K, Entry<V>> entries;
+    private final AtomicBoolean loading = new AtomicBoolean();
+    private final ScheduledFuture<?> task;
+    private volatile boolean closed, failing, pending;
+
+    // only written while loading
+    private volatile long batches, loaded, failures, totalLatency;
+
+    private KeyedValueCache(Builder<K, V> builder) {
+        this.loader = builder.loader;
+        this.intervalNanos = builder.interval.toNanos();
+        this.expireNanos = builder.expireAfterAccess.toNanos();
+        this.timeoutNanos = builder.timeout != null ? builder.timeout.toNanos() : Math.max(intervalNanos * 10, TimeUnit.SECONDS.toNanos(5));
+        // a single segment so that the least recently requested key of the whole cache is evicted
+        this.entries = CacheBuilder.newBuilder()
+                .concurrencyLevel(1)
+                .maximumSize(builder.maxKeys)
+                .expireAfterAccess(expireNanos, TimeUnit.NANOSECONDS)
+                .<K, Entry<V>>removalListener(notification -> {
+
+                    if (notification.wasEvicted()) {
+                        evictions.increment();
+                    }
+                })
+                .build();
+        this.scheduler = builder.scheduler != null ? builder.scheduler : FusionCore.getExecutors().scheduled();
+        this.executor = builder.executor != null ? builder.executor : FusionCore.getExecutors().io();
+        this.latency = builder.name != null ? FusionCore.getMetrics().histogram("cache." + builder.name + ".refresh") : null;
+        this.size = builder.name != null ? FusionCore.getMetrics().gauge("cache." + builder.name + ".size", entries::size) : null;
+        // start at a random point of the interval so caches created together are spread out
+        long initialDelay = ThreadLocalRandom.current().nextLong(intervalNanos);
+        this.task = scheduler.scheduleAtFixedRate(this::refresh, initialDelay, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Create a new {@link Builder} for a {@link KeyedValueCache}.
+     *
+     * @param loader The {@link BatchLoader} that loads the values of many keys at once.
+     * @param <K> type of key
+     * @param <V> type of value to be cached
+     * @return The new {@link Builder}.
+     */
+    public static <K, V> Builder<K, V> builder(BatchLoader<K, V> loader) {
+        return new Builder<>(loader);
+    }
+
+    /**
+     * Get the cached value for a key. If the key is not cached yet,
+     * it is added and its value is loaded in the background.
+     *
+     * @param key The key to get the value for.
+     * @return The cached value, or {@code null} if none has been loaded yet.
+     */
+    @Nullable
+    public V get(K key) {
+
+        Entry<V> entry = entries.getIfPresent(key);
+        if (entry == null) {
+
+            if (closed) {
+                return null;
+            }
+
+            // evicts the least recently requested key when over the maximum
+            entry = entries.asMap().computeIfAbsent(key, k -> new Entry<>());
+            this.scheduleRefresh(); // new keys are loaded right away instead of on the next interval
+        }
+
+        return entry.value;
+    }
+
+    /**
+     * Get the cached value for a key, or a default if none has been loaded yet.
+     *
+     * @param key The key to get the value for.
+     * @param defaultValue The value to return if none has been loaded.
+     * @return The cached value or the default.
+     */
+    public V get(K key, V defaultValue) {
+        V value = this.get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Remove a key from this cache.
+     *
+     * @param key The key to remove.
+     */
+    public void invalidate(K key) {
+        this.entries.invalidate(key);
+    }
+
+    /**
+     * Get the amount of keys that are currently cached.
+     *
+     * @return The amount of keys.
+     */
+    public int size() {
+        return (int) entries.size();
+    }
+
+    /**
+     * Get the current {@link Stats} for this cache.
+     *
+     * @return The stats.
+     */
+    public Stats getStats() {
+        return new Stats(this.size(), batches, loaded, failures, evictions.sum(), batches == 0 ? 0 : totalLatency / batches);
+    }
+
+    /**
+     * Stop refreshing this cache and remove every key.
+     */
+    @Override
+    public void close() {
+
+        this.closed = true;
+        this.task.cancel(false);
+        this.entries.invalidateAll();
+        if (size != null) {
+            FusionCore.getMetrics().remove(size);
+        }
+    }
+
+    private void scheduleRefresh() {
+        try {
+            scheduler.execute(this::refresh);
+        } catch (RuntimeException ignored) {
+            // the scheduler is shut down
+        }
+    }
+
+    private void refresh() {
+
+        // thrown out of the fixed rate task, an exception would cancel every later refresh
+        try {
+            this.refreshDue();
+        } catch (Throwable e) {
+            FusionCore.LOGGER.error("Failed to refresh a KeyedValueCache", e);
+        }
+    }
+
+    private void refreshDue() {
+
+        if (closed) {
+            return;
+        }
+
+        if (!loading.compareAndSet(false, true)) {
+            this.pending = true; // refreshed again once the running batch is done
+            return;
+        }
+
+        boolean started = false;
+        try {
+
+            this.pending = false;
+            this.entries.cleanUp(); // removes the keys that expired
+            long now = System.nanoTime();
+            Map<K, Entry<V>> due = new HashMap<>();
+            // iterating does not count as an access, unlike get
+            entries.asMap().forEach((key, entry) -> {
+
+                if (now - entry.nextRefresh >= 0 || entry.nextRefresh == 0) {
+                    due.put(key, entry);
+                }
+            });
+
+            if (!due.isEmpty()) {
+                executor.execute(() -> this.load(due, now));
+                started = true;
+            }
+        } catch (RejectedExecutionException ignored) {
+            // the executor is shut down
+        } finally {
+            if (!started) {
+                loading.set(false);
+            }
+        }
+    }
+
+    private void load(Map<K, Entry<V>> due, long start) {
+
+        CompletableFuture<Map<K, V>> future;
+        try {
+            future = loader.load(due.keySet()).toCompletableFuture().copy();
+        } catch (Throwable e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+
+        future.orTimeout(timeoutNanos, TimeUnit.NANOSECONDS).whenComplete((values, e) -> {
+
+            try {
+                this.complete(due, values, e, start);
+            } catch (Throwable t) {
+                FusionCore.LOGGER.error("Failed to complete a KeyedValueCache refresh", t);
+            } finally {
+
+                loading.set(false);
+                if (pending) {
+                    this.scheduleRefresh();
+                }
+            }
+        });
+    }
+
+    private void complete(Map<K, Entry<V>> due, @Nullable Map<K, V> values, @Nullable Throwable e, long start) {
+
+        long now = System.nanoTime();
+        if (e == null) {
+
+            // entries that were removed meanwhile are updated without effect
+            for (Map.Entry<K, Entry<V>> entry : due.entrySet()) {
+
+                V value = values != null ? values.get(entry.getKey()) : null;
+                if (value != null) {
+                    entry.getValue().value = value;
+                }
+
+                entry.getValue().nextRefresh = now + intervalNanos;
+            }
+
+            this.batches++;
+            this.loaded += due.size();
+            this.totalLatency += now - start;
+            this.failing = false;
+            if (latency != null) {
+                latency.record(now - start);
+            }
+        } else {
+            this.failures++;
+            // only logged once until a batch succeeds again
+            if (!failing && !closed) {
+                this.failing = true;
+                FusionCore.LOGGER.warn("Could not refresh a KeyedValueCache", e);
+            }
+        }
+    }
+
+    /**
+     * Loads the values of many keys at once.
+     *
+     * @param <K> type of key
+     * @param <V> type of value
+     */
+    @FunctionalInterface
+    public interface BatchLoader<K, V> {
+
+        /**
+         * Load the current values of the given keys. Keys that are
+         * missing from the result keep their previous value.
+         *
+         * @param keys The keys to load the values of.
+         * @return A {@link CompletionStage} that completes with the values by key.
+         */
+        CompletionStage<Map<K, V>> load(Set<K> keys);
+    }
+
+    private static final class Entry<V> {
+
+        private volatile V value;
+        private volatile long nextRefresh;
+    }
+
+    /**
+     * The stats of a {@link KeyedValueCache}.
+     *
+     * @param size The amount of keys that are cached.
+     * @param batches The amount of batches that were loaded.
+     * @param loaded The total amount of keys that were loaded over every batch.
+     * @param failures The amount of batches that failed or timed out.
+     * @param evictions The amount of keys that were removed for being unused or over the maximum.
+     * @param averageLatency The average nanoseconds a successful batch took.
+     */
+    public record Stats(int size, long batches, long loaded, long failures, long evictions, long averageLatency) {
+    }
+
+    /**
+     * A builder for a {@link KeyedValueCache}.
+     *
+     * @param <K> type of key
+     * @param <V> type of value to be cached
+     */
+    public static final class Builder<K, V> {
+
+        private final BatchLoader<K, V> loader;
+        private Duration interval = Duration.ofSeconds(1), expireAfterAccess = Duration.ofMinutes(1), timeout;
+        private int maxKeys = 1024;
+        private String name;
+        private ScheduledExecutorService scheduler;
+        private Executor executor;
+
+        private Builder(BatchLoader<K, V> loader) {
+            this.loader = checkNotNull(loader, "loader");
+        }
+
+        /**
+         * Set how often each key is refreshed. The default is one second.
+         *
+         * @param interval The time between refreshes.
+         * @return This builder.
+         */
+        public Builder<K, V> interval(Duration interval) {
+            checkArgument(!interval.isNegative() && !interval.isZero(), "invalid interval: %s", interval);
+            this.interval = interval;
+            return this;
+        }
+
+        /**
+         * Set how long a key is kept after it was last requested.
+         * The default is one minute.
+         *
+         * @param expireAfterAccess The time to keep unused keys for.
+         * @return This builder.
+         */
+        public Builder<K, V> expireAfterAccess(Duration expireAfterAccess) {
+            checkArgument(!expireAfterAccess.isNegative() && !expireAfterAccess.isZero(), "invalid expire time: %s", expireAfterAccess);
+            this.expireAfterAccess = expireAfterAccess;
+            return this;
+        }
+
+        /**
+         * Set the most keys to keep. The default is 1024.
+         *
+         * @param maxKeys The maximum amount of keys.
+         * @return This builder.
+         */
+        public Builder<K, V> maxKeys(int maxKeys) {
+            checkArgument(maxKeys > 0, "invalid max keys: %s", maxKeys);
+            this.maxKeys = maxKeys;
+            return this;
+        }
+
+        /**
+         * Set how long a batch may take before it fails. The default
+         * is ten times the interval, but at least five seconds.
+         *
+         * @param timeout The batch timeout.
+         * @return This builder.
+         */
+        public Builder<K, V> timeout(Duration timeout) {
+            checkArgument(!timeout.isNegative() && !timeout.isZero(), "invalid timeout: %s", timeout);
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * Set the name to record metrics under, as the
+         * {@code cache.<name>.refresh} histogram and
+         * {@code cache.<name>.size} gauge.
+         *
+         * @param name The name of the cache.
+         * @return This builder.
+         */
+        public Builder<K, V> name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Set the scheduler to refresh on instead of the shared scheduler.
+         *
+         * @param scheduler The {@link ScheduledExecutorService}.
+         * @return This builder.
+         */
+        public Builder<K, V> scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Set the executor to call the loader on instead of the shared IO pool.
+         *
+         * @param executor The {@link Executor}.
+         * @return This builder.
+         */
+        public Builder<K, V> executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Create the {@link KeyedValueCache} and start its refresh task.
+         *
+         * @return The new {@link KeyedValueCache}.
+         */
+        public KeyedValueCache<K, V> build() {
+            return new KeyedValueCache<>(this);
+        }
+    }
+}
@@ -1,26 +1,44 @@
 package com.projecki.fusion.util;
 
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 /**
  * Literally redis sorted set. YES THIS IS THREADSAFE!!!!
+ * <p>
+ * The elements are kept in a persistent treap where every node knows the size
+ * of its subtree, so updating a score, looking up the rank of an element and
+ * getting a range by rank or by score all take O(log n). Writers are serialized
+ * and replace only the nodes on the path they change, so readers see a consistent
+ * snapshot of the set without locking.
  *
  * @param <T> The type of elements
  */
 public class SortedScoredSet<T> implements Iterable<T> {
 
-    // for thread safety
-    private final ReentrantLock lock = new ReentrantLock(true);
-    // internal collection for actual elements hidden from user
-    private final List<ScoredElement<T>> internal = new ArrayList<>();
+    // held by writers, and by rank lookups that raced a writer
+    private final ReentrantLock lock = new ReentrantLock();
+    // the score and insertion order of every element, to find its node.
+    // elements are removed from here before their node and added after it
+    private final Map<T, ScoredElement<T>> elements = new ConcurrentHashMap<>();
+    // replaced as a whole by every write
+    @Nullable
+    private volatile Node<T> root;
+    // ties are kept in the order they were put in
+    private long sequence;
 
     /**
      * Removes all the elements from this scored sorted set.
@@ -28,7 +46,8 @@ public class SortedScoredSet<T> implements Iterable<T> {
     public void clear() {
         lock.lock();
         try {
-            this.internal.clear();
+            this.elements.clear();
+            this.root = null;
         } finally {
             lock.unlock();
         }
@@ -42,21 +61,17 @@ public class SortedScoredSet<T> implements Iterable<T> {
      */
     public boolean remove(T item) {
         lock.lock();
-        boolean contained = false;
         try {
-            Iterator<ScoredElement<T>> iterator = internal.iterator();
-            while (iterator.hasNext()) {
-                ScoredElement<T> next = iterator.next();
-                if (next.item.equals(item)) {
-                    iterator.remove();
-                    contained = true;
-                    break;
-                }
+            ScoredElement<T> element = elements.remove(item);
+            if (element == null) {
+                return false;
             }
+
+            this.root = delete(root, element);
+            return true;
         } finally {
             lock.unlock();
         }
-        return contained;
     }
 
     /**
@@ -67,13 +82,18 @@ public class SortedScoredSet<T> implements Iterable<T> {
      */
     public boolean removeIf(Predicate<T> filter) {
         lock.lock();
-        boolean removed;
         try {
-            removed = this.internal.removeIf(tScoredElement -> filter.test(tScoredElement.getItem()));
+            boolean removed = false;
+            for (T item : this) {
+                if (filter.test(item)) {
+                    this.root = delete(root, elements.remove(item));
+                    removed = true;
+                }
+            }
+            return removed;
         } finally {
             lock.unlock();
         }
-        return removed;
     }
 
     /**
@@ -84,13 +104,18 @@ public class SortedScoredSet<T> implements Iterable<T> {
      */
     public Optional<T> remove(int index) {
         lock.lock();
-        ScoredElement<T> removed = null;
         try {
-            removed = this.internal.remove(index);
-        } catch (IndexOutOfBoundsException ignored) {} finally {
+            Node<T> node = select(root, index);
+            if (node == null) {
+                return Optional.empty();
+            }
+
+            this.elements.remove(node.element.item);
+            this.root = delete(root, node.element);
+            return Optional.of(node.element.item);
+        } finally {
             lock.unlock();
         }
-        return removed == null ? Optional.empty() : Optional.of(removed.getItem());
     }
 
     /**
@@ -100,12 +125,44 @@ public class SortedScoredSet<T> implements Iterable<T> {
      * @return A list of all the elements in this set as they are now.
      */
     public List<T> getAll() {
-        lock.lock();
-        try {
-            return new ArrayList<>(this.internal).stream().map(ScoredElement::getItem).collect(Collectors.toList());
-        } finally {
-            lock.unlock();
+        Node<T> snapshot = root;
+        List<T> found = new ArrayList<>(size(snapshot));
+        collect(snapshot, found);
+        return found;
+    }
+
+    /**
+     * Returns the elements from index {@code from}, inclusive, to index {@code to}, exclusive, in order.
+     * Indexes outside of this set are ignored, so the returned list may be shorter than requested.
+     *
+     * @param from The index of the first element, inclusive.
+     * @param to The index after the last element, exclusive.
+     * @return A list of the elements in that range as they are now.
+     */
+    public List<T> getRange(int from, int to) {
+        Node<T> snapshot = root;
+        int start = Math.max(from, 0);
+        int end = Math.min(to, size(snapshot));
+        List<T> found = new ArrayList<>(Math.max(end - start, 0));
+        if (start < end) {
+            collectRange(snapshot, start, end, 0, found);
         }
+        return found;
+    }
+
+    /**
+     * Returns the elements with a score from {@code max} down to {@code min}, both inclusive, in order.
+     *
+     * @param max The highest score to include.
+     * @param min The lowest score to include.
+     * @return A list of the elements in that range as they are now.
+     */
+    public List<T> getRangeByScore(int max, int min) {
+        List<T> found = new ArrayList<>();
+        if (max >= min) {
+            collectScores(root, max, min, found);
+        }
+        return found;
     }
 
     /**
@@ -114,14 +171,15 @@ public class SortedScoredSet<T> implements Iterable<T> {
      * @return An optional containing the highest scored item, empty if the set is empty.
      */
     public Optional<T> getHighest() {
-        lock.lock();
-        ScoredElement<T> found = null;
-        try {
-            found = this.internal.get(0);
-        } catch (IndexOutOfBoundsException ignored) {} finally {
-            lock.unlock();
+        Node<T> node = root;
+        if (node == null) {
+            return Optional.empty();
+        }
+
+        while (node.left != null) {
+            node = node.left;
         }
-        return found == null ? Optional.empty() : Optional.of(found.getItem());
+        return Optional.of(node.element.item);
     }
 
     /**
@@ -130,14 +188,15 @@ public class SortedScoredSet<T> implements Iterable<T> {
      * @return An optional containing the lowest scored item, empty if the set is empty.
      */
     public Optional<T> getLowest() {
-        lock.lock();
-        ScoredElement<T> found = null;
-        try {
-            found = this.internal.get(internal.size() - 1);
-        } catch (IndexOutOfBoundsException ignored) {} finally {
-            lock.unlock();
+        Node<T> node = root;
+        if (node == null) {
+            return Optional.empty();
         }
-        return found == null ? Optional.empty() : Optional.of(found.getItem());
+
+        while (node.right != null) {
+            node = node.right;
+        }
+        return Optional.of(node.element.item);
     }
 
     /**
@@ -147,14 +206,37 @@ public class SortedScoredSet<T> implements Iterable<T> {
      * @return An optional containing the item at that index or empty if the index is out of bounds.
      */
     public Optional<T> get(int index) {
+        Node<T> node = select(root, index);
+        return node == null ? Optional.empty() : Optional.of(node.element.item);
+    }
+
+    /**
+     * Returns the index of the given item by means of {@code .equals()}, where the item
+     * with the highest score has index 0, or empty if the item was not present.
+     *
+     * @param item The item to get the index of
+     * @return An optional containing the index of the item or empty if the item was not found
+     */
+    public Optional<Integer> getRank(T item) {
+
+        ScoredElement<T> element = elements.get(item);
+        if (element == null) {
+            return Optional.empty();
+        }
+
+        int rank = rank(root, element);
+        if (rank >= 0) {
+            return Optional.of(rank);
+        }
+
+        // the item is being put again, so wait for the writer
         lock.lock();
-        ScoredElement<T> found = null;
         try {
-            found = this.internal.get(index);
-        } catch (IndexOutOfBoundsException ignored) {} finally {
+            element = elements.get(item);
+            return element == null ? Optional.empty() : Optional.of(rank(root, element));
+        } finally {
             lock.unlock();
         }
-        return found == null ? Optional.empty() : Optional.of(found.getItem());
     }
 
     /**
@@ -164,18 +246,7 @@ public class SortedScoredSet<T> implements Iterable<T> {
      * @return A collection containing the items of this score
      */
     public Collection<T> getAllOfScore(int score) {
-        lock.lock();
-        List<T> found = new ArrayList<>();
-        try {
-            for (ScoredElement<T> tScoredElement : this.internal) {
-                if (tScoredElement.getScore() == score) {
-                    found.add(tScoredElement.getItem());
-                }
-            }
-        } finally {
-            lock.unlock();
-        }
-        return found;
+        return this.getRangeByScore(score, score);
     }
 
     /**
@@ -186,31 +257,22 @@ public class SortedScoredSet<T> implements Iterable<T> {
      * @return An optional containing the score of the item or empty if the item was not found
      */
     public Optional<Integer> getScore(T item) {
-        lock.lock();
-        try {
-            for (ScoredElement<T> tScoredElement : this.internal) {
-                if (tScoredElement.equals(item)) {
-                    return Optional.of(tScoredElement.getScore());
-                }
-            }
-        } finally {
-            lock.unlock(); // yes, you nerd, this will get executed despite the return statement above
-        }
-        return Optional.empty();
+        ScoredElement<T> element = elements.get(item);
+        return element == null ? Optional.empty() : Optional.of(element.score);
     }
 
     /**
      * @return Whether this queue is empty or not.
      */
     public boolean isEmpty() {
-        return this.internal.isEmpty();
+        return this.root == null;
     }
 
     /**
      * @return The length or size of this queue.
      */
     public int size() {
-        return this.internal.size();
+        return size(this.root);
     }
 
     /**
@@ -220,17 +282,7 @@ public class SortedScoredSet<T> implements Iterable<T> {
      * @return Whether this set contains the given item
      */
     public boolean contains(T item) {
-        lock.lock();
-        try {
-            for (ScoredElement<T> tScoredElement : this.internal) {
-                if (tScoredElement.getItem().equals(item)) {
-                    return true;
-                }
-            }
-        } finally {
-            lock.unlock();
-        }
-        return false;
+        return this.elements.containsKey(item);
     }
 
     /**
@@ -244,92 +296,237 @@ public class SortedScoredSet<T> implements Iterable<T> {
      * @return the index at which this element was added. -1 if the element could no be added
      */
     public int put(T item, int score) {
-        lock.lock();
+        if (item == null) {
+            return -1;
+        }
 
+        lock.lock();
         try {
-            if (item == null) {
-                return -1;
-            }
+            ScoredElement<T> element = new ScoredElement<>(item, score, sequence++);
+            ScoredElement<T> previous = elements.get(item);
+            Node<T> updated = previous == null ? root : delete(root, previous);
+            updated = insert(updated, element, ThreadLocalRandom.current().nextInt());
+
+            this.root = updated;
+            this.elements.put(item, element);
+            return rank(updated, element);
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            ScoredElement<T> toAdd = new ScoredElement<>(item, score);
+    /**
+     * Returns an iterator over a snapshot of this set, in order. It does not reflect
+     * changes made after it was created and does not support removal.
+     *
+     * @return The iterator.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        Node<T> snapshot = root;
+        return new Iterator<>() {
+
+            private final Deque<Node<T>> path = new ArrayDeque<>();
 
-            // no duplicates
-            // score does not matter here as equals does not contain it
-            internal.remove(toAdd);
+            {
+                this.descend(snapshot);
+            }
 
-            // yes this goes after the remove. trust me :)
-            if (internal.isEmpty()) {
-                internal.add(toAdd);
-                return 0;
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
             }
 
-            if (internal.size() == 1) {
-                ScoredElement<T> existing = this.internal.get(0);
-                if (existing.getScore() < score) {
-                    internal.add(0, toAdd);
-                    return 0;
-                } else {
-                    internal.add(toAdd);
-                    return internal.size() - 1;
+            @Override
+            public T next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
                 }
+
+                Node<T> node = path.pop();
+                this.descend(node.right);
+                return node.element.item;
             }
 
-            for (int i = internal.size() - 1; i >= 0; i--) {
-                ScoredElement<T> current = internal.get(i);
-                if (current.getScore() >= score) {
-                    if (i == this.internal.size() - 1) {
-                        this.internal.add(toAdd);
-                        return internal.size() - 1;
-                    } else {
-                        this.internal.add(i + 1, toAdd);
-                        return i + 1;
-                    }
-                } else {
-                    if (i == 0) {
-                        this.internal.add(0, toAdd);
-                        return 0;
-                    }
+            private void descend(@Nullable Node<T> node) {
+                for (; node != null; node = node.left) {
+                    path.push(node);
                 }
             }
-            return -1;
-        } finally {
-            lock.unlock();
+        };
+    }
+
+    private static int size(@Nullable Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    // higher scores first, then the order they were put in
+    private static int compare(ScoredElement<?> a, ScoredElement<?> b) {
+        int compare = Integer.compare(b.score, a.score);
+        return compare != 0 ? compare : Long.compare(a.sequence, b.sequence);
+    }
+
+    private static <T> Node<T> insert(@Nullable Node<T> node, ScoredElement<T> element, int priority) {
+        if (node == null) {
+            return new Node<>(element, priority, null, null);
         }
+
+        if (priority > node.priority) {
+            // the new node becomes the root of this subtree
+            Node<T>[] split = split(node, element);
+            return new Node<>(element, priority, split[0], split[1]);
+        }
+
+        return compare(element, node.element) < 0 ?
+                node.with(insert(node.left, element, priority), node.right) :
+                node.with(node.left, insert(node.right, element, priority));
     }
 
-    @Override
-    public Iterator<T> iterator() {
-        return this.getAll().iterator();
+    @Nullable
+    private static <T> Node<T> delete(@Nullable Node<T> node, ScoredElement<T> element) {
+        if (node == null) {
+            return null;
+        }
+
+        int compare = compare(element, node.element);
+        if (compare == 0) {
+            return merge(node.left, node.right);
+        }
+
+        return compare < 0 ?
+                node.with(delete(node.left, element), node.right) :
+                node.with(node.left, delete(node.right, element));
+    }
+
+    // splits into the nodes before the element and the nodes after it
+    @SuppressWarnings("unchecked")
+    private static <T> Node<T>[] split(@Nullable Node<T> node, ScoredElement<T> element) {
+        if (node == null) {
+            return new Node[2];
+        }
+
+        if (compare(element, node.element) < 0) {
+            Node<T>[] split = split(node.left, element);
+            split[1] = node.with(split[1], node.right);
+            return split;
+        }
+
+        Node<T>[] split = split(node.right, element);
+        split[0] = node.with(node.left, split[0]);
+        return split;
+    }
+
+    @Nullable
+    private static <T> Node<T> merge(@Nullable Node<T> left, @Nullable Node<T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+
+        return left.priority > right.priority ?
+                left.with(left.left, merge(left.right, right)) :
+                right.with(merge(left, right.left), right.right);
+    }
+
+    @Nullable
+    private static <T> Node<T> select(@Nullable Node<T> node, int index) {
+        if (index < 0 || index >= size(node)) {
+            return null;
+        }
+
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node;
+            }
+        }
+        return null;
     }
 
-    static class ScoredElement<E> {
-        private final E item;
-        private final int score;
+    // the index of the element, or -1 if it is not in the tree
+    private static int rank(@Nullable Node<?> node, ScoredElement<?> element) {
+        int rank = 0;
+        while (node != null) {
+            int compare = compare(element, node.element);
+            if (compare < 0) {
+                node = node.left;
+            } else if (compare > 0) {
+                rank += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return rank + size(node.left);
+            }
+        }
+        return -1;
+    }
 
-        public ScoredElement(E item, int score) {
-            this.item = item;
-            this.score = score;
+    private static <T> void collect(@Nullable Node<T> node, List<T> found) {
+        if (node != null) {
+            collect(node.left, found);
+            found.add(node.element.item);
+            collect(node.right, found);
         }
+    }
 
-        public E getItem() {
-            return item;
+    // only visits the subtrees that overlap [from, to), where offset is the index of the first node in this subtree
+    private static <T> void collectRange(@Nullable Node<T> node, int from, int to, int offset, List<T> found) {
+        if (node == null || offset >= to || offset + node.size <= from) {
+            return;
         }
 
-        public int getScore() {
-            return score;
+        int index = offset + size(node.left);
+        collectRange(node.left, from, to, offset, found);
+        if (index >= from && index < to) {
+            found.add(node.element.item);
         }
+        collectRange(node.right, from, to, index + 1, found);
+    }
+
+    private static <T> void collectScores(@Nullable Node<T> node, int max, int min, List<T> found) {
+        if (node == null) {
+            return;
+        }
+
+        int score = node.element.score;
+        if (score <= max) {
+            collectScores(node.left, max, min, found);
+        }
+        if (score <= max && score >= min) {
+            found.add(node.element.item);
+        }
+        if (score >= min) {
+            collectScores(node.right, max, min, found);
+        }
+    }
+
+    record ScoredElement<E>(E item, int score, long sequence) {
+    }
+
+    private static final class Node<T> {
+
+        private final ScoredElement<T> element;
+        private final int priority, size;
+        @Nullable
+        private final Node<T> left, right;
 
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-            ScoredElement<?> that = (ScoredElement<?>) o;
-            return item.equals(that.item);
+        Node(ScoredElement<T> element, int priority, @Nullable Node<T> left, @Nullable Node<T> right) {
+            this.element = element;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + size(right) + 1;
         }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(item);
+        // nodes are never changed, so a changed child means a copy
+        Node<T> with(@Nullable Node<T> left, @Nullable Node<T> right) {
+            return left == this.left && right == this.right ? this : new Node<>(element, priority, left, right);
         }
     }
 }
@@ -1,54 +1,86 @@
 package com.projecki.fusion.util;
 
+import com.projecki.fusion.FusionCore;
+import com.projecki.fusion.metrics.Histogram;
+import org.jetbrains.annotations.Nullable;
 
 import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
 /**
  * Object that contains a cached value that is updated periodically
  * at a specified update interval and with a supplier to generate the
  * new value.
+ * <p>
+ * Reading the value never blocks. The first value is loaded in the
+ * background, so {@link #getValue()} is {@code null} until it
+ * {@link #whenLoaded() is loaded}, and after that the last loaded value
+ * is returned while a newer one is loaded (stale-while-revalidate).
+ * <p>
+ * Refreshes are started on the {@link FusionCore#getExecutors() shared scheduler}
+ * and the supplier is called on the shared IO pool, so a slow supplier
+ * does not hold up any other cache. The time between refreshes is
+ * jittered so that caches created together do not all refresh at once.
+ * Only one refresh runs at a time; asking for another while it runs
+ * returns the same one.
  *
  * @param <T> type of value to cache and update
  */
-public class ValueCache<T> {
-
-    private static final ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(1);
+public class ValueCache<T> implements AutoCloseable {
 
-    private final Duration updateInterval;
     private final Supplier<CompletionStage<T>> supplier;
-    private final AtomicReference<T> value = new AtomicReference<>();
+    private final long intervalNanos, timeoutNanos;
+    private final double jitter;
+    private final ScheduledExecutorService scheduler;
+    private final Executor executor;
+    @Nullable
+    private final Histogram latency;
 
-    private ValueCache(Duration updateInterval, Supplier<CompletionStage<T>> supplier) {
-        this.updateInterval = updateInterval;
-        this.supplier = supplier;
+    private volatile T value;
+    private volatile long updated;
+    private volatile boolean closed;
+    private final CompletableFuture<T> loaded = new CompletableFuture<>();
+    private final AtomicReference<CompletableFuture<T>> refreshing = new AtomicReference<>();
+    private final AtomicReference<ScheduledFuture<?>> next = new AtomicReference<>();
 
-        try {
-            updateValue().toCompletableFuture().get();
-        } catch (InterruptedException | ExecutionException e) {
-            System.out.println("Exception generated when getting initial value for a ValueCache");
-            e.printStackTrace();
-        }
+    // only written by the completion of the single running refresh
+    private volatile long refreshes, failures, totalLatency, maxLatency;
+    private volatile boolean failing;
 
-        scheduleTask();
-    }
+    private ValueCache(Builder<T> builder) {
+        this.supplier = builder.supplier;
+        this.intervalNanos = builder.interval.toNanos();
+        this.timeoutNanos = builder.timeout != null ? builder.timeout.toNanos() : Math.max(intervalNanos * 10, TimeUnit.SECONDS.toNanos(5));
+        this.jitter = builder.jitter;
+        this.scheduler = builder.scheduler != null ? builder.scheduler : FusionCore.getExecutors().scheduled();
+        this.executor = builder.executor != null ? builder.executor : FusionCore.getExecutors().io();
+        this.latency = builder.name != null ? FusionCore.getMetrics().histogram("cache." + builder.name + ".refresh") : null;
+        if (builder.initialValue != null) {
+            this.value = builder.initialValue;
+        }
 
-    private void scheduleTask() {
-        executor.schedule(() -> {
-            updateValue();
-            scheduleTask();
-        }, updateInterval.toMillis(), TimeUnit.MILLISECONDS);
+        this.refresh(true);
     }
 
     /**
      * Create a new {@link ValueCache} that periodically updates the internal value
      * to the value of the {@link CompletionStage} supplied from the supplied supplier.
+     * <p>
+     * Unlike before, the first value is loaded in the background, so {@link #getValue()}
+     * is now {@code null} until it {@link #whenLoaded() is loaded} rather than waiting
+     * for it. Callers should pass a default to {@link #getValue(Object)} or wait on
+     * {@link #whenLoaded()} before the first read.
      *
      * @param updateInterval how often the cached value is updated
      * @param supplier       supplier that supplies a {@link CompletionStage} that completes
@@ -56,20 +88,344 @@ public class ValueCache<T> {
      * @param <T>            type of value to be cached
      * @return a new {@link ValueCache} with that caches a value of type {@code T} generated
      * from {@code supplier} that refreshes every {@code updateInterval}
+     * @deprecated {@link #getValue()} is {@link Nullable} until the first load; use
+     *             {@link #builder(Supplier)}, and {@link #getValue(Object)} or
+     *             {@link #whenLoaded()} to handle the value not being loaded yet.
      */
+    @Deprecated
     public static <T> ValueCache<T> create(Duration updateInterval, Supplier<CompletionStage<T>> supplier) {
-        return new ValueCache<>(updateInterval, supplier);
+        return ValueCache.builder(supplier).interval(updateInterval).build();
     }
 
-    private CompletionStage<Void> updateValue() {
-        return supplier.get().thenAccept(value::set);
+    /**
+     * Create a new {@link Builder} for a {@link ValueCache}.
+     *
+     * @param supplier supplier that supplies a {@link CompletionStage} that completes
+     *                 with the value intended to be cached.
+     * @param <T>      type of value to be cached
+     * @return The new {@link Builder}.
+     */
+    public static <T> Builder<T> builder(Supplier<CompletionStage<T>> supplier) {
+        return new Builder<>(supplier);
     }
 
     /**
-     * Get the cached value
+     * Get the cached value. If the value has not been updated
+     * for twice the update interval, then a refresh is started
+     * in the background, but the current value is still returned.
+     *
+     * @return The cached value, or {@code null} if none has been loaded yet.
      */
+    @Nullable
     public T getValue() {
-        return value.get();
+
+        long updated = this.updated;
+        if (updated != 0 && System.nanoTime() - updated > intervalNanos * 2 && refreshing.get() == null) {
+            this.refresh(true); // handed to the scheduler so the reader never waits
+        }
+
+        return value;
+    }
+
+    /**
+     * Get the cached value, or a default if none has been loaded yet.
+     *
+     * @param defaultValue The value to return if none has been loaded.
+     * @return The cached value or the default.
+     */
+    public T getValue(T defaultValue) {
+        T value = this.getValue();
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Get a {@link CompletableFuture} that completes
+     * once the first value has been loaded.
+     *
+     * @return The future for the first value.
+     */
+    public CompletableFuture<T> whenLoaded() {
+        return loaded.copy();
+    }
+
+    /**
+     * Refresh the value now, unless a refresh is already running.
+     *
+     * @return A {@link CompletableFuture} that completes with the new value,
+     *         which is the same future for every call while a refresh runs.
+     */
+    public CompletableFuture<T> refresh() {
+        return this.refresh(false);
     }
 
+    private CompletableFuture<T> refresh(boolean schedule) {
+
+        while (true) {
+
+            CompletableFuture<T> current = refreshing.get();
+            if (current != null) {
+                return current;
+            }
+
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("cache is closed"));
+            }
+
+            CompletableFuture<T> future = new CompletableFuture<>();
+            if (refreshing.compareAndSet(null, future)) {
+                this.load(future, schedule);
+                return future;
+            }
+        }
+    }
+
+    /**
+     * Get the current {@link Stats} for this cache.
+     *
+     * @return The stats.
+     */
+    public Stats getStats() {
+        long updated = this.updated;
+        return new Stats(refreshes, failures, refreshes == 0 ? 0 : totalLatency / refreshes,
+                maxLatency, updated == 0 ? -1 : System.nanoTime() - updated);
+    }
+
+    /**
+     * Stop refreshing this cache. The last value stays available.
+     */
+    @Override
+    public void close() {
+
+        this.closed = true;
+        ScheduledFuture<?> next = this.next.getAndSet(null);
+        if (next != null) {
+            next.cancel(false);
+        }
+
+        CompletableFuture<T> current = refreshing.get();
+        if (current != null) {
+            current.cancel(false);
+        }
+    }
+
+    /**
+     * Determine whether this cache has been {@link #close() closed}.
+     *
+     * @return If this cache is closed.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void load(CompletableFuture<T> future, boolean schedule) {
+
+        try {
+            if (schedule) {
+                scheduler.execute(() -> this.load(future, false));
+            } else {
+                long start = System.nanoTime();
+                executor.execute(() -> this.supply(future, start));
+            }
+        } catch (RuntimeException e) { // the executors are shut down
+            this.complete(future, System.nanoTime(), null, e);
+        }
+    }
+
+    private void supply(CompletableFuture<T> future, long start) {
+
+        try {
+            supplier.get().toCompletableFuture().copy()
+                    .orTimeout(timeoutNanos, TimeUnit.NANOSECONDS)
+                    .whenComplete((value, e) -> this.complete(future, start, value, e));
+        } catch (Throwable e) {
+            this.complete(future, start, null, e);
+        }
+    }
+
+    private void complete(CompletableFuture<T> future, long start, T value, Throwable e) {
+
+        long elapsed = System.nanoTime() - start;
+        if (e == null) {
+            this.value = value;
+            this.updated = System.nanoTime();
+            this.refreshes++;
+            this.totalLatency += elapsed;
+            this.maxLatency = Math.max(maxLatency, elapsed);
+            if (latency != null) {
+                latency.record(elapsed);
+            }
+
+            this.failing = false;
+            this.loaded.complete(value);
+        } else {
+            this.failures++;
+            // only logged once until a refresh succeeds again
+            if (!failing && !closed) {
+                this.failing = true;
+                FusionCore.LOGGER.warn("Could not refresh a ValueCache", e);
+            }
+        }
+
+        refreshing.compareAndSet(future, null);
+        this.scheduleNext();
+        if (e == null) {
+            future.complete(value);
+        } else {
+            future.completeExceptionally(e);
+        }
+    }
+
+    // replaces whatever refresh was scheduled, so a refresh started by
+    // a read does not start a second chain of scheduled refreshes
+    private void scheduleNext() {
+
+        if (closed) {
+            return;
+        }
+
+        long delay = intervalNanos;
+        if (jitter > 0) {
+            delay += (long) (intervalNanos * jitter * (ThreadLocalRandom.current().nextDouble() * 2 - 1));
+        }
+
+        ScheduledFuture<?> scheduled;
+        try {
+            scheduled = scheduler.schedule(() -> this.refresh(false), delay, TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) { // the scheduler is shut down
+            return;
+        }
+
+        ScheduledFuture<?> previous = next.getAndSet(scheduled);
+        if (previous != null) {
+            previous.cancel(false);
+        }
+
+        if (closed) {
+            scheduled.cancel(false);
+        }
+    }
+
+    /**
+     * The refresh stats of a {@link ValueCache}.
+     *
+     * @param refreshes The amount of successful refreshes.
+     * @param failures The amount of refreshes that failed or timed out.
+     * @param averageLatency The average nanoseconds a successful refresh took.
+     * @param maxLatency The most nanoseconds a successful refresh took.
+     * @param age The nanoseconds since the value was last updated, or {@code -1} if it never was.
+     */
+    public record Stats(long refreshes, long failures, long averageLatency, long maxLatency, long age) {
+    }
+
+    /**
+     * A builder for a {@link ValueCache}.
+     *
+     * @param <T> type of value to be cached
+     */
+    public static final class Builder<T> {
+
+        private final Supplier<CompletionStage<T>> supplier;
+        private Duration interval = Duration.ofSeconds(1), timeout;
+        private double jitter = 0.1;
+        private T initialValue;
+        private String name;
+        private ScheduledExecutorService scheduler;
+        private Executor executor;
+
+        private Builder(Supplier<CompletionStage<T>> supplier) {
+            this.supplier = checkNotNull(supplier, "supplier");
+        }
+
+        /**
+         * Set how often the value is refreshed. The default is one second.
+         *
+         * @param interval The time between refreshes.
+         * @return This builder.
+         */
+        public Builder<T> interval(Duration interval) {
+            checkArgument(!interval.isNegative() && !interval.isZero(), "invalid interval: %s", interval);
+            this.interval = interval;
+            return this;
+        }
+
+        /**
+         * Set the fraction of the interval that each refresh may be
+         * moved earlier or later by. The default is {@code 0.1}.
+         *
+         * @param jitter The jitter between {@code 0} and {@code 1}.
+         * @return This builder.
+         */
+        public Builder<T> jitter(double jitter) {
+            checkArgument(jitter >= 0 && jitter < 1, "invalid jitter: %s", jitter);
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Set how long a refresh may take before it fails. The default
+         * is ten times the interval, but at least five seconds.
+         *
+         * @param timeout The refresh timeout.
+         * @return This builder.
+         */
+        public Builder<T> timeout(Duration timeout) {
+            checkArgument(!timeout.isNegative() && !timeout.isZero(), "invalid timeout: %s", timeout);
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * Set the value to return until the first value is loaded.
+         *
+         * @param initialValue The initial value.
+         * @return This builder.
+         */
+        public Builder<T> initialValue(T initialValue) {
+            this.initialValue = initialValue;
+            return this;
+        }
+
+        /**
+         * Set the name to record the refresh latency under,
+         * as the {@code cache.<name>.refresh} histogram.
+         *
+         * @param name The name of the cache.
+         * @return This builder.
+         */
+        public Builder<T> name(String name) {
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * Set the scheduler to refresh on instead of the shared scheduler.
+         *
+         * @param scheduler The {@link ScheduledExecutorService}.
+         * @return This builder.
+         */
+        public Builder<T> scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Set the executor to call the supplier on instead of the shared IO pool.
+         *
+         * @param executor The {@link Executor}.
+         * @return This builder.
+         */
+        public Builder<T> executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Create the {@link ValueCache} and start loading its first value.
+         *
+         * @return The new {@link ValueCache}.
+         */
+        public ValueCache<T> build() {
+            return new ValueCache<>(this);
+        }
+    }
 }
@@ -0,0 +1,242 @@
+package com.projecki.fusion.util.concurrent;
+
+import com.projecki.fusion.FusionCore;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Collects the keys requested within a short window and loads them together.
+ * <p>
+ * The first key requested starts the window. Every key requested before it
+ * ends, such as the players of a transfer all joining at once, is loaded by
+ * the same call to the batch loader, split into batches of at most the
+ * batch size. A key that is requested again while it is waiting shares the
+ * first request's future. The window is cut short once a full batch of keys
+ * is waiting.
+ *
+ * @param <K> type of key
+ * @param <V> type of value
+ */
+public class CoalescingLoader<K, V> {
+
+    private final Function<Set<K>, CompletionStage<Map<K, V>>> loader;
+    private final long windowNanos;
+    private final int batchSize;
+    private final ScheduledExecutorService scheduler;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // only used while holding the lock
+    private Map<K, CompletableFuture<V>> waiting = new LinkedHashMap<>();
+
+    private final LongAdder requested = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    private CoalescingLoader(Builder<K, V> builder) {
+        this.loader = builder.loader;
+        this.windowNanos = builder.window.toNanos();
+        this.batchSize = builder.batchSize;
+        this.scheduler = builder.scheduler != null ? builder.scheduler : FusionCore.getExecutors().scheduled();
+    }
+
+    /**
+     * Create a new {@link Builder} for a {@link CoalescingLoader}.
+     *
+     * @param loader Loads the values of a batch of keys. Keys that are missing
+     *               from the result, or every key if the result is {@code null},
+     *               are completed with {@code null}.
+     * @param <K> type of key
+     * @param <V> type of value
+     * @return The new {@link Builder}.
+     */
+    public static <K, V> Builder<K, V> builder(Function<Set<K>, CompletionStage<Map<K, V>>> loader) {
+        return new Builder<>(loader);
+    }
+
+    /**
+     * Load the value of a key along with every other key requested in the same window.
+     *
+     * @param key The key to load.
+     * @return A future that completes with the value, or {@code null} if there is none.
+     */
+    public CompletableFuture<V> load(K key) {
+        return this.loadAll(List.of(key)).get(key);
+    }
+
+    /**
+     * Load the values of many keys along with every other key requested in the same window.
+     *
+     * @param keys The keys to load.
+     * @return A future for every key, which completes with its value, or {@code null} if there is none.
+     */
+    public Map<K, CompletableFuture<V>> loadAll(Collection<K> keys) {
+
+        Map<K, CompletableFuture<V>> futures = new HashMap<>();
+        boolean first, full;
+        lock.lock();
+        try {
+            first = waiting.isEmpty();
+            for (K key : keys) {
+                futures.put(key, waiting.computeIfAbsent(checkNotNull(key, "key"), k -> new CompletableFuture<>()));
+            }
+            full = waiting.size() >= batchSize;
+        } finally {
+            lock.unlock();
+        }
+
+        requested.add(keys.size());
+        if (full) {
+            this.run();
+        } else if (first && !futures.isEmpty()) {
+            try {
+                scheduler.schedule(this::run, windowNanos, TimeUnit.NANOSECONDS);
+            } catch (RuntimeException e) { // the scheduler is shut down
+                this.run();
+            }
+        }
+        return futures;
+    }
+
+    /**
+     * Get the current {@link Stats} of this loader.
+     *
+     * @return The stats.
+     */
+    public Stats getStats() {
+        long requested = this.requested.sum();
+        long batches = this.batches.sum();
+        return new Stats(requested, batches, batches == 0 ? 0 : (double) requested / batches);
+    }
+
+    private void run() {
+
+        Map<K, CompletableFuture<V>> window;
+        lock.lock();
+        try {
+            window = waiting;
+            this.waiting = new LinkedHashMap<>();
+        } finally {
+            lock.unlock();
+        }
+
+        // a window that was cut short by a full batch still runs when it was scheduled to end
+        if (window.isEmpty()) {
+            return;
+        }
+
+        List<K> keys = new ArrayList<>(window.keySet());
+        for (int from = 0; from < keys.size(); from += batchSize) {
+
+            Set<K> batch = new LinkedHashSet<>(keys.subList(from, Math.min(from + batchSize, keys.size())));
+            batches.increment();
+            CompletionStage<Map<K, V>> stage;
+            try {
+                stage = checkNotNull(loader.apply(batch), "loader returned no stage");
+            } catch (Throwable e) {
+                stage = CompletableFuture.failedFuture(e);
+            }
+
+            stage.whenComplete((values, e) -> batch.forEach(key -> {
+                CompletableFuture<V> future = window.get(key);
+                if (e != null) {
+                    future.completeExceptionally(e);
+                } else {
+                    future.complete(values != null ? values.get(key) : null);
+                }
+            }));
+        }
+    }
+
+    /**
+     * The stats of a {@link CoalescingLoader}.
+     *
+     * @param requested The amount of keys requested.
+     * @param batches The amount of batches loaded.
+     * @param averageBatchSize The average amount of requested keys per batch,
+     *                         counting keys that shared a request once each.
+     */
+    public record Stats(long requested, long batches, double averageBatchSize) {
+    }
+
+    /**
+     * A builder for a {@link CoalescingLoader}.
+     *
+     * @param <K> type of key
+     * @param <V> type of value
+     */
+    public static final class Builder<K, V> {
+
+        private final Function<Set<K>, CompletionStage<Map<K, V>>> loader;
+        private Duration window = Duration.ofMillis(10);
+        private int batchSize = 500;
+        @Nullable
+        private ScheduledExecutorService scheduler;
+
+        private Builder(Function<Set<K>, CompletionStage<Map<K, V>>> loader) {
+            this.loader = checkNotNull(loader, "loader");
+        }
+
+        /**
+         * Set how long to wait for more keys after the first one is requested.
+         * The default is 10 milliseconds.
+         *
+         * @param window The time to collect keys for.
+         * @return This builder.
+         */
+        public Builder<K, V> window(Duration window) {
+            checkArgument(!window.isNegative(), "invalid window: %s", window);
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * Set the most keys to load in a single batch. The default is 500.
+         *
+         * @param batchSize The maximum keys per batch.
+         * @return This builder.
+         */
+        public Builder<K, V> batchSize(int batchSize) {
+            checkArgument(batchSize > 0, "invalid batch size: %s", batchSize);
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Set the scheduler to end windows on instead of the shared scheduler.
+         *
+         * @param scheduler The {@link ScheduledExecutorService}.
+         * @return This builder.
+         */
+        public Builder<K, V> scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Create the {@link CoalescingLoader}.
+         *
+         * @return The new {@link CoalescingLoader}.
+         */
+        public CoalescingLoader<K, V> build() {
+            return new CoalescingLoader<>(this);
+        }
+    }
+}
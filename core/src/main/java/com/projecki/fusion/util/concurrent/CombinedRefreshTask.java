@@ -19,9 +19,15 @@ public class CombinedRefreshTask extends RefreshTask {
                task2.shouldRun(currentTime);
     }
 
+    @Override
+    public long nextRun() {
+        return Math.min(task1.nextRun(), task2.nextRun());
+    }
+
     @Override
     public void execute(long currentTime) {
 
+        this.recordDrift(currentTime);
         if (task1.shouldRun(currentTime)) {
             task1.execute(currentTime);
         }
@@ -30,4 +36,18 @@ public class CombinedRefreshTask extends RefreshTask {
             task2.execute(currentTime);
         }
     }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Both combined tasks run next after the delay.
+     *
+     * @param delay The delay (in nanoseconds) until the next run.
+     */
+    @Override
+    public void reschedule(long delay) {
+        task1.reschedule(delay);
+        task2.reschedule(delay);
+        super.reschedule(delay); // moves this task to the earliest of the two
+    }
 }
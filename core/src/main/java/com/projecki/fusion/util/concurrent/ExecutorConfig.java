@@ -0,0 +1,66 @@
+package com.projecki.fusion.util.concurrent;
+
+import com.projecki.fusion.util.concurrent.StripedExecutor.OverflowPolicy;
+
+/**
+ * The sizes of the shared pools in an {@link ExecutorRegistry}.
+ */
+public class ExecutorConfig {
+
+    private int ioThreads = 8;
+    private int ioQueue = 4096;
+    private OverflowPolicy ioOverflow = OverflowPolicy.BLOCK;
+    private boolean virtualThreads;
+    private int virtualIoThreads = 256;
+
+    private int cpuThreads = Math.max(Runtime.getRuntime().availableProcessors() - 1, 1);
+    private int cpuQueue = 1024;
+    private OverflowPolicy cpuOverflow = OverflowPolicy.CALLER_RUNS;
+
+    private int scheduledThreads = 2;
+
+    public ExecutorConfig() {
+    }
+
+    public ExecutorConfig(int ioThreads, int cpuThreads, int scheduledThreads) {
+        this.ioThreads = ioThreads;
+        this.cpuThreads = cpuThreads;
+        this.scheduledThreads = scheduledThreads;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public int getIoQueue() {
+        return ioQueue;
+    }
+
+    public OverflowPolicy getIoOverflow() {
+        return ioOverflow;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public int getVirtualIoThreads() {
+        return virtualIoThreads;
+    }
+
+    public int getCpuThreads() {
+        return cpuThreads;
+    }
+
+    public int getCpuQueue() {
+        return cpuQueue;
+    }
+
+    public OverflowPolicy getCpuOverflow() {
+        return cpuOverflow;
+    }
+
+    public int getScheduledThreads() {
+        return scheduledThreads;
+    }
+}
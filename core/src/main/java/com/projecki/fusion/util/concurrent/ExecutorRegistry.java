@@ -0,0 +1,241 @@
+package com.projecki.fusion.util.concurrent;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.projecki.fusion.FusionCore;
+import com.projecki.fusion.metrics.MetricRegistry;
+import com.projecki.fusion.util.concurrent.StripedExecutor.OverflowPolicy;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * The shared thread pools that everything in Fusion runs its
+ * background work on, so that the amount of threads is budgeted
+ * by a single {@link ExecutorConfig} instead of every storage
+ * and service creating its own pool.
+ * <ul>
+ *     <li>{@link #io()} for blocking work such as SQL, HTTP and file access.</li>
+ *     <li>{@link #cpu()} for work that never blocks.</li>
+ *     <li>{@link #scheduled()} for delayed and periodic work, which should
+ *     hand anything expensive over to one of the other pools.</li>
+ * </ul>
+ * The IO and CPU pools have bounded queues, and what happens when a queue
+ * is full is decided by the configured {@link OverflowPolicy}. Every pool
+ * records its metrics to {@link FusionCore#getMetrics()}.
+ * <p>
+ * Threads that need to loop on their own, such as refresh loops, are
+ * created with {@link #newThread(String, Runnable)} or {@link #threadFactory(String)}
+ * so they are listed alongside the pools.
+ */
+public final class ExecutorRegistry {
+
+    /**
+     * The name of each shared pool.
+     */
+    public static final String IO = "Fusion IO", CPU = "Fusion CPU", SCHEDULED = "Fusion Scheduler";
+
+    private final ThreadPoolExecutor io, cpu;
+    private final ScheduledThreadPoolExecutor scheduled;
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+
+    /**
+     * Create the shared pools for the given config.
+     *
+     * @param config The {@link ExecutorConfig} to size the pools by.
+     */
+    public ExecutorRegistry(ExecutorConfig config) {
+
+        checkArgument(config.getIoThreads() > 0, "invalid io threads: %s", config.getIoThreads());
+        checkArgument(config.getCpuThreads() > 0, "invalid cpu threads: %s", config.getCpuThreads());
+        checkArgument(config.getScheduledThreads() > 0, "invalid scheduled threads: %s", config.getScheduledThreads());
+        ThreadFactory virtualFactory = config.isVirtualThreads() ? virtualThreadFactory(IO + " - ") : null;
+        if (config.isVirtualThreads() && virtualFactory == null) {
+            FusionCore.LOGGER.warn("Virtual threads are not available on this Java version; using platform threads for IO");
+        }
+
+        this.io = virtualFactory != null ?
+                pool(IO, config.getVirtualIoThreads(), config.getIoQueue(), config.getIoOverflow(), virtualFactory) :
+                pool(IO, config.getIoThreads(), config.getIoQueue(), config.getIoOverflow(), factory(IO));
+        this.cpu = pool(CPU, config.getCpuThreads(), config.getCpuQueue(), config.getCpuOverflow(), factory(CPU));
+        this.scheduled = new ScheduledThreadPoolExecutor(config.getScheduledThreads(), factory(SCHEDULED));
+        this.scheduled.setRemoveOnCancelPolicy(true);
+        // scheduled tasks wait for their delay on purpose, so only their amount is tracked
+        MetricRegistry metrics = FusionCore.getMetrics();
+        metrics.gauge("executor.fusion-scheduler.queued", () -> scheduled.getQueue().size());
+        metrics.gauge("executor.fusion-scheduler.active", scheduled::getActiveCount);
+    }
+
+    /**
+     * Get the pool for work that blocks, such as SQL, HTTP or file access.
+     *
+     * @return The IO {@link ExecutorService}.
+     */
+    public ExecutorService io() {
+        return io;
+    }
+
+    /**
+     * Get the pool for work that does not block.
+     *
+     * @return The CPU {@link ExecutorService}.
+     */
+    public ExecutorService cpu() {
+        return cpu;
+    }
+
+    /**
+     * Get the pool for delayed and periodic work.
+     * Scheduled tasks should be short and hand any
+     * expensive work over to {@link #io()} or {@link #cpu()}.
+     *
+     * @return The {@link ScheduledExecutorService}.
+     */
+    public ScheduledExecutorService scheduled() {
+        return scheduled;
+    }
+
+    /**
+     * Get every shared pool by its name.
+     *
+     * @return The pools by name.
+     */
+    public Map<String, ExecutorService> getPools() {
+        return Map.of(IO, io, CPU, cpu, SCHEDULED, scheduled);
+    }
+
+    /**
+     * Get a {@link ThreadFactory} for dedicated daemon threads that
+     * are tracked by this registry. This is meant for executors that
+     * need their own threads, such as a {@link NonBlockingExecutor}.
+     *
+     * @param name The name of each thread.
+     * @return The {@link ThreadFactory}.
+     */
+    public ThreadFactory threadFactory(String name) {
+        return task -> {
+
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            thread.setUncaughtExceptionHandler((t, e) -> FusionCore.LOGGER.error("Uncaught exception in " + t.getName(), e));
+            this.threads.removeIf(t -> t.getState() == Thread.State.TERMINATED);
+            this.threads.add(thread);
+            return thread;
+        };
+    }
+
+    /**
+     * Create and start a dedicated daemon {@link Thread} that is
+     * tracked by this registry. This is meant for tasks that loop
+     * for the whole lifetime of the server.
+     *
+     * @param name The name of the thread.
+     * @param task The task for the thread to run.
+     * @return The started thread.
+     */
+    public Thread newThread(String name, Runnable task) {
+        Thread thread = this.threadFactory(name).newThread(task);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Get the dedicated threads that have not terminated.
+     *
+     * @return The dedicated threads.
+     */
+    public List<Thread> getThreads() {
+        return threads.stream().filter(t -> t.getState() != Thread.State.TERMINATED).toList();
+    }
+
+    /**
+     * Shut down every pool, letting the tasks that were already
+     * submitted finish, and wait for them to finish.
+     *
+     * @param timeout The longest time to wait.
+     * @param unit The {@link TimeUnit} of the timeout.
+     * @return If every pool finished within the time.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+
+        // periodic work is stopped first so that it does not
+        // keep submitting to the other pools while they drain
+        scheduled.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+        scheduled.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        scheduled.shutdown();
+        io.shutdown();
+        cpu.shutdown();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (ExecutorService pool : List.of(scheduled, io, cpu)) {
+
+            if (!pool.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static ThreadFactory factory(String name) {
+        return new ThreadFactoryBuilder()
+                .setNameFormat(name + " - %d")
+                .setDaemon(true)
+                .setUncaughtExceptionHandler((t, e) -> FusionCore.LOGGER.error("Uncaught exception in " + t.getName(), e))
+                .build();
+    }
+
+    private static ThreadPoolExecutor pool(String name, int threads, int queue, OverflowPolicy policy, ThreadFactory factory) {
+        checkArgument(queue > 0, "invalid queue: %s", queue);
+        ThreadPoolExecutor pool = new InstrumentedThreadPoolExecutor(name, threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queue), factory, handler(policy));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static RejectedExecutionHandler handler(OverflowPolicy policy) {
+        return switch (policy) {
+            case BLOCK -> (task, pool) -> {
+
+                if (pool.isShutdown()) {
+                    throw new RejectedExecutionException("executor is shut down");
+                }
+
+                try {
+                    pool.getQueue().put(task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("interrupted while waiting for space", e);
+                }
+            };
+            case DROP_OLDEST -> new ThreadPoolExecutor.DiscardOldestPolicy();
+            case CALLER_RUNS -> new ThreadPoolExecutor.CallerRunsPolicy();
+        };
+    }
+
+    // Thread.ofVirtual() is only available from Java 21, so it is found reflectively
+    @Nullable
+    private static ThreadFactory virtualThreadFactory(String prefix) {
+
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
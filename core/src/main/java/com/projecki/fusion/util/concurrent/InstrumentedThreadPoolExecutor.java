@@ -0,0 +1,58 @@
+package com.projecki.fusion.util.concurrent;
+
+import com.projecki.fusion.FusionCore;
+import com.projecki.fusion.metrics.ExecutorMetrics;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ThreadPoolExecutor} that records its {@link ExecutorMetrics}
+ * to the {@link FusionCore#getMetrics() shared metrics}, along with
+ * gauges of its active threads and pool size.
+ */
+public class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor {
+
+    private final ExecutorMetrics metrics;
+
+    /**
+     * Create a new instrumented pool.
+     *
+     * @param name The name to record the metrics under.
+     * @param corePoolSize The amount of threads to keep in the pool.
+     * @param maximumPoolSize The most threads to allow in the pool.
+     * @param keepAliveTime The time that idle threads are kept alive for.
+     * @param unit The {@link TimeUnit} of the keep alive time.
+     * @param queue The queue that tasks wait in.
+     * @param factory The {@link ThreadFactory} to create threads with.
+     * @param handler The {@link RejectedExecutionHandler} for when the queue is full.
+     */
+    public InstrumentedThreadPoolExecutor(String name, int corePoolSize, int maximumPoolSize, long keepAliveTime, TimeUnit unit,
+                                          BlockingQueue<Runnable> queue, ThreadFactory factory, RejectedExecutionHandler handler) {
+        super(corePoolSize, maximumPoolSize, keepAliveTime, unit, queue, factory, handler);
+        this.metrics = new ExecutorMetrics(FusionCore.getMetrics(), name, queue::size);
+        this.metrics.gauge("active", this::getActiveCount);
+        this.metrics.gauge("threads", this::getPoolSize);
+    }
+
+    @Override
+    public void execute(@NotNull Runnable command) {
+
+        try {
+            super.execute(metrics.wrap(command));
+        } catch (RejectedExecutionException e) {
+            metrics.rejected().increment();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void terminated() {
+        metrics.close();
+    }
+}
@@ -1,5 +1,7 @@
 package com.projecki.fusion.util.concurrent;
 
+import com.projecki.fusion.FusionCore;
+import com.projecki.fusion.metrics.ExecutorMetrics;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
@@ -10,6 +12,8 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
@@ -20,40 +24,47 @@ import static com.google.common.base.Preconditions.checkState;
  * <p>
  * This implementation is completely non-blocking when adding
  * tasks. {@link ConcurrentLinkedQueue} is used as the underlying
- * queue; the queue is only checked for tasks on a periodic timer.
- * <p>
- * <i>Tasks are, in no way, guaranteed to be executed immediately.</i>
+ * queue and adding a task wakes up an idle thread to execute it.
  * <p>
  * All tasks in the queue will be executed and, once empty,
- * the thread will go into a waiting state for a period
- * of milliseconds. It will then check if any more tasks are available.
- * If no tasks are available, the thread will wait again, check again
- * and so on.
+ * the thread will spin for a short while in case more tasks
+ * are added right away. The amount of spinning adapts to how often
+ * it finds a task. If no task is found, the thread is parked until
+ * a task is added or, at most, for a period of milliseconds.
+ * <p>
+ * With multiple threads, every added task wakes up at most
+ * one parked thread, so tasks may run in parallel, but not
+ * in any particular order.
+ * <p>
+ * The {@link ExecutorMetrics} are named after the threads,
+ * without the number of each thread.
  *
  * @since April 11, 2022
  * @author Andavin
  */
 public class NonBlockingExecutor extends AbstractExecutorService {
 
-    private volatile boolean running = true;
-    private final long period;
-    private final List<Thread> threads;
-    private final Object lock = new Object();
+    private static final int MIN_SPINS = 1 << 4, MAX_SPINS = 1 << 12;
+    private static final boolean SPIN = Runtime.getRuntime().availableProcessors() > 1;
+
+    private volatile boolean running = true, halted;
+    private final long periodNanos;
+    private final Worker[] workers;
     private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final ExecutorMetrics metrics;
 
     /**
      * Create a new executor with a single thread
      * to execute tasks with.
      *
      * @param name The name of the executor thread.
-     * @param period The period of milliseconds to will wait after
-     *               completing all available tasks before checking
-     *               for more tasks.
+     * @param period The maximum period of milliseconds the thread will
+     *               stay parked after completing all available tasks
+     *               before checking for more tasks, if it is not woken
+     *               up by a new task before then.
      */
     public NonBlockingExecutor(String name, long period) {
-        checkArgument(period > 0, "invalid period: %s", period);
-        this.period = period;
-        this.threads = List.of(this.createThread(r -> new Thread(r, name), 0));
+        this(r -> new Thread(r, name), period);
     }
 
     /**
@@ -62,14 +73,13 @@ public class NonBlockingExecutor extends AbstractExecutorService {
      *
      * @param factory The {@link ThreadFactory} to use when
      *                creating the {@link Thread}.
-     * @param period The period of milliseconds to will wait after
-     *               completing all available tasks before checking
-     *               for more tasks.
+     * @param period The maximum period of milliseconds the thread will
+     *               stay parked after completing all available tasks
+     *               before checking for more tasks, if it is not woken
+     *               up by a new task before then.
      */
     public NonBlockingExecutor(ThreadFactory factory, long period) {
-        checkArgument(period > 0, "invalid period: %s", period);
-        this.period = period;
-        this.threads = List.of(this.createThread(factory, 0));
+        this(factory, period, 1);
     }
 
     /**
@@ -77,29 +87,22 @@ public class NonBlockingExecutor extends AbstractExecutorService {
      * threads to execute tasks with.
      *
      * @param name The name prefix to use when naming each thread.
-     * @param period The period of milliseconds each thread will wait after
-     *               completing all available tasks before checking
-     *               for more tasks.<br>
-     *               With multiple threads, the effective period will be roughly:
-     *               <pre>Math.max(period / threads, 1)</pre>
-     * @param threadCount The amount of threads to use to execute tasks.<br>
-     *                    Threads will start on an interval split as evenly
-     *                    as possible using {@code Math.max(period / threads, 1)}
-     *                    for the offset of each subsequent thread.
+     * @param period The maximum period of milliseconds each thread will
+     *               stay parked after completing all available tasks
+     *               before checking for more tasks, if it is not woken
+     *               up by a new task before then.
+     * @param threadCount The amount of threads to use to execute tasks.
      */
     public NonBlockingExecutor(String name, long period, int threadCount) {
+        this(new ThreadFactory() {
 
-        checkArgument(period > 0, "invalid period: %s", period);
-        checkArgument(threadCount > 0, "invalid thread count: %s", threadCount);
-        Thread[] threads = new Thread[threadCount];
-        long offset = Math.max(period / threadCount, 1);
-        for (int i = 0; i < threadCount; i++) {
-            String threadName = name + " - " + i;
-            threads[i] = this.createThread(r -> new Thread(r, threadName), offset * i);
-        }
+            private int count;
 
-        this.period = period;
-        this.threads = List.of(threads);
+            @Override
+            public Thread newThread(@NotNull Runnable r) {
+                return new Thread(r, name + " - " + count++);
+            }
+        }, period, threadCount);
     }
 
     /**
@@ -108,41 +111,53 @@ public class NonBlockingExecutor extends AbstractExecutorService {
      *
      * @param factory The {@link ThreadFactory} to use when
      *                creating {@link Thread Threads}.
-     * @param period The period of milliseconds each thread will wait after
-     *               completing all available tasks before checking
-     *               for more tasks.<br>
-     *               With multiple threads, the effective period will be roughly:
-     *               <pre>Math.max(period / threads, 1)</pre>
+     * @param period The maximum period of milliseconds each thread will
+     *               stay parked after completing all available tasks
+     *               before checking for more tasks, if it is not woken
+     *               up by a new task before then.
      * @param threadCount The amount of threads to use to execute tasks.
-     *                    Threads will start on an interval split as evenly
-     *                    as possible using {@code Math.max(period / threads, 1)}
-     *                    for the offset of each subsequent thread.
      */
     public NonBlockingExecutor(ThreadFactory factory, long period, int threadCount) {
 
         checkArgument(period > 0, "invalid period: %s", period);
         checkArgument(threadCount > 0, "invalid thread count: %s", threadCount);
-        Thread[] threads = new Thread[threadCount];
-        long offset = Math.max(period / threadCount, 1);
+        this.periodNanos = TimeUnit.MILLISECONDS.toNanos(period);
+        this.workers = new Worker[threadCount];
         for (int i = 0; i < threadCount; i++) {
-            threads[i] = this.createThread(factory, offset * i);
+            workers[i] = new Worker();
+            workers[i].thread = factory.newThread(workers[i]::run);
         }
 
-        this.period = period;
-        this.threads = List.of(threads);
+        String name = workers[0].thread.getName().replaceFirst(" - \\d+$", "");
+        this.metrics = new ExecutorMetrics(FusionCore.getMetrics(), name, queue::size);
+
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
     }
 
     @Override
     public void execute(@NotNull Runnable command) {
-        this.queue.add(command);
+
+        this.queue.add(metrics.wrap(command));
+        for (Worker worker : workers) {
+            // a worker only parks after it sets this flag and sees
+            // the queue is still empty, so either it sees the task
+            // or the task sees it is parked and wakes it up
+            if (worker.parked.get() && worker.parked.compareAndSet(true, false)) {
+                LockSupport.unpark(worker.thread);
+                return;
+            }
+        }
     }
 
     @Override
     public void shutdown() {
 
         this.running = false;
-        synchronized (lock) {
-            lock.notifyAll();
+        this.metrics.close();
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
         }
     }
 
@@ -154,9 +169,10 @@ public class NonBlockingExecutor extends AbstractExecutorService {
             return List.of();
         }
 
+        this.halted = true;
         this.shutdown();
-        for (Thread thread : threads) {
-            thread.interrupt();
+        for (Worker worker : workers) {
+            worker.thread.interrupt();
         }
 
         if (queue.isEmpty()) {
@@ -186,62 +202,85 @@ public class NonBlockingExecutor extends AbstractExecutorService {
     public boolean awaitTermination(long timeout, @NotNull TimeUnit unit) throws InterruptedException {
 
         checkState(isShutdown(), "not shutdown");
-        long start = System.nanoTime();
-        long nanos = unit.toNanos(timeout);
-        if (!queue.isEmpty()) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Worker worker : workers) {
 
-            long leftover = nanos;
-            for (Thread thread : threads) {
+            long leftover = deadline - System.nanoTime();
+            if (leftover <= 0) {
+                return !worker.thread.isAlive();
+            }
 
-                thread.join(TimeUnit.NANOSECONDS.toMillis(leftover), (int) (leftover % 1000000));
-                leftover = nanos - (System.nanoTime() - start);
-                if (leftover <= 0) {
-                    return false;
-                }
+            TimeUnit.NANOSECONDS.timedJoin(worker.thread, leftover);
+            if (worker.thread.isAlive()) {
+                return false;
             }
         }
 
         return true;
     }
 
-    private Thread createThread(ThreadFactory factory, long startupDelay) {
-        Thread thread = factory.newThread(() -> {
+    private void executeTasks() {
 
-            if (startupDelay > 0) {
-                try {
-                    Thread.sleep(startupDelay);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+        Runnable action;
+        while (!halted && (action = queue.poll()) != null) {
+            try {
+                action.run();
+            } catch (Throwable e) {
+                e.printStackTrace();
             }
+        }
+    }
+
+    private final class Worker {
+
+        private Thread thread;
+        private int spins = MIN_SPINS;
+        private final AtomicBoolean parked = new AtomicBoolean();
+
+        void run() {
 
             while (running) {
-                this.executeTasks();
+
+                executeTasks();
+                if (!this.spin()) {
+                    this.park();
+                }
             }
-        });
-        thread.start();
-        return thread;
-    }
 
-    private void executeTasks() {
+            executeTasks();
+        }
 
-        if (queue.isEmpty()) {
-            synchronized (lock) {
-                try {
-                    lock.wait(period);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
+        // spin while waiting for a task; the spin limit doubles whenever
+        // a task shows up and halves whenever one does not
+        private boolean spin() {
+
+            if (!SPIN) {
+                return false;
+            }
+
+            for (int i = 0; i < spins; i++) {
+
+                if (!queue.isEmpty()) {
+                    spins = Math.min(spins << 1, MAX_SPINS);
+                    return true;
                 }
+
+                Thread.onSpinWait();
             }
+
+            spins = Math.max(spins >> 1, MIN_SPINS);
+            return false;
         }
 
-        Runnable action;
-        while ((action = queue.poll()) != null) {
-            try {
-                action.run();
-            } catch (Throwable e) {
-                e.printStackTrace();
+        private void park() {
+
+            parked.set(true);
+            if (running && queue.isEmpty()) {
+                LockSupport.parkNanos(NonBlockingExecutor.this, periodNanos);
             }
+
+            parked.set(false);
+            Thread.interrupted(); // an interrupt should not keep the worker from parking again
         }
     }
 }
@@ -1,15 +1,25 @@
 package com.projecki.fusion.util.concurrent;
 
 /**
+ * A task that runs every period of nanoseconds while it
+ * is scheduled by a {@link RefreshTaskExecutor}.
+ * <p>
+ * The time that each run was late by, compared to when it
+ * should have run, is tracked as its drift in the {@link #getStats() stats}.
+ *
  * @author Andavin
  * @since April 08, 2022
  */
 public class RefreshTask {
 
-    private long next;
+    private volatile long next;
     private final long period;
     private final Runnable task;
 
+    private volatile boolean cancelled;
+    private volatile RefreshTaskExecutor executor;
+    private volatile long runs, totalDrift, maxDrift; // only written by the executing thread
+
     /**
      * Create a new refresh task that runs a task every
      * period of nanoseconds.
@@ -54,6 +64,15 @@ public class RefreshTask {
         return currentTime >= next;
     }
 
+    /**
+     * Get the next time that this task should run.
+     *
+     * @return The next time (in nanoseconds).
+     */
+    public long nextRun() {
+        return next;
+    }
+
     /**
      * Execute this task and set the next time that it
      * should execute.
@@ -61,7 +80,93 @@ public class RefreshTask {
      * @param currentTime The current time (in nanoseconds).
      */
     public void execute(long currentTime) {
+        this.recordDrift(currentTime);
         this.next = currentTime + period;
         this.task.run();
     }
+
+    /**
+     * Run this task next after the given delay instead of
+     * after its period. Following runs continue every period.
+     *
+     * @param delay The delay (in nanoseconds) until the next run.
+     */
+    public void reschedule(long delay) {
+
+        this.next = System.nanoTime() + delay;
+        RefreshTaskExecutor executor = this.executor;
+        if (executor != null) {
+            executor.reschedule(this);
+        }
+    }
+
+    /**
+     * Cancel this task so that it is never run again.
+     */
+    public void cancel() {
+
+        this.cancelled = true;
+        RefreshTaskExecutor executor = this.executor;
+        if (executor != null) {
+            executor.cancel(this);
+        }
+    }
+
+    /**
+     * Determine whether this task has been {@link #cancel() cancelled}.
+     *
+     * @return If this task is cancelled.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Get the current {@link Stats} for how much
+     * later than planned this task has run.
+     *
+     * @return The stats.
+     */
+    public Stats getStats() {
+        return new Stats(runs, totalDrift, maxDrift);
+    }
+
+    /**
+     * Record a run of this task in its {@link #getStats() stats}.
+     * This must be called before the {@link #nextRun() next run} changes.
+     *
+     * @param currentTime The current time (in nanoseconds).
+     */
+    final void recordDrift(long currentTime) {
+
+        long drift = Math.max(currentTime - this.nextRun(), 0);
+        this.runs++;
+        this.totalDrift += drift;
+        if (drift > maxDrift) {
+            this.maxDrift = drift;
+        }
+    }
+
+    void bind(RefreshTaskExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * The drift of a {@link RefreshTask}.
+     *
+     * @param runs The amount of times the task has run.
+     * @param totalDrift The total nanoseconds that all runs were late by.
+     * @param maxDrift The most nanoseconds a single run was late by.
+     */
+    public record Stats(long runs, long totalDrift, long maxDrift) {
+
+        /**
+         * Get the average nanoseconds that each run was late by.
+         *
+         * @return The average drift.
+         */
+        public long averageDrift() {
+            return runs == 0 ? 0 : totalDrift / runs;
+        }
+    }
 }
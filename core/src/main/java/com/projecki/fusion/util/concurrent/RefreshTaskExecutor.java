@@ -1,41 +1,86 @@
 package com.projecki.fusion.util.concurrent;
 
+import com.projecki.fusion.FusionCore;
+import com.projecki.fusion.metrics.ExecutorMetrics;
+import com.projecki.fusion.util.concurrent.TimingWheel.Timeout;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 import java.util.function.LongSupplier;
 
 /**
- * An executor {@link Runnable} that periodically calls
- * the {@link #execute(long)} when used as the task passed
+ * An executor {@link Runnable} that runs {@link RefreshTask RefreshTasks}
+ * when their time comes while it is used as the task passed
  * to a {@link Thread} constructor such as {@link Thread(Runnable)}.
  * <p>
- *     The implementation is intended to search for
- *     {@link RefreshTask RefreshTasks} that are present and
- *     {@link RefreshTask#shouldRun(long) should run} and execute them.
+ *     Tasks are kept in a {@link TimingWheel} with a tick of the period
+ *     of this executor, so each task is only touched when it is due.
+ *     The objects that hold tasks {@link #schedule(RefreshTask, BooleanSupplier) schedule}
+ *     them when they are set and {@link #remove(RefreshTask) remove} them
+ *     when they are removed, so this executor never searches for tasks.
+ * </p>
+ * <p>
+ *     A {@link Refreshable} can be {@link #schedule(Refreshable, BooleanSupplier, BooleanSupplier) scheduled}
+ *     instead, in which case its current {@link Refreshable#refreshTask() task}
+ *     is looked up each time it would run, so a task that is set or replaced
+ *     later is picked up without being scheduled again.
  * </p>
  * <p>
- *     In this way, a {@link RefreshTask} is not needed to be
- *     scheduled anywhere and instead can be passive while the
- *     {@link Thread} executing this task is active.
+ *     In its {@link ExecutorMetrics}, the wait of a task is how late
+ *     it ran compared to when it was scheduled to run.
  * </p>
  *
  * @since May 31, 2022
  * @author Andavin
  */
-public abstract class RefreshTaskExecutor implements Runnable {
+public class RefreshTaskExecutor implements Runnable {
 
     protected static final long ONE_MILLIS = 1000000;
+    private static final BooleanSupplier ALWAYS = () -> true;
+    private static final long WATCH_PERIOD = TimeUnit.SECONDS.toNanos(1);
+
     private volatile boolean running = true;
     private final long period;
     private final Object refreshLock = new Object();
 
+    // only accessed by the executing thread
+    private final TimingWheel<Binding> wheel;
+    private final Map<RefreshTask, Timeout<Binding>> scheduled = new IdentityHashMap<>();
+    private final Map<Refreshable, Timeout<Binding>> refreshables = new IdentityHashMap<>();
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+
+    private volatile int size;
+    private volatile long executed;
+    private final ExecutorMetrics metrics;
+
+    /**
+     * Create a new task executor that records its
+     * metrics under the name of its class.
+     *
+     * @param period The period of time (in nanoseconds) that should
+     *               elapse before the loop should iterate again.
+     */
+    public RefreshTaskExecutor(long period) {
+        this(null, period);
+    }
+
     /**
      * Create a new task executor.
      *
+     * @param name The name to record the metrics under.
      * @param period The period of time (in nanoseconds) that should
      *               elapse before the loop should iterate again.
      */
-    protected RefreshTaskExecutor(long period) {
+    public RefreshTaskExecutor(@Nullable String name, long period) {
         this.period = period;
+        this.wheel = new TimingWheel<>(period, System.nanoTime());
+        this.metrics = new ExecutorMetrics(FusionCore.getMetrics(),
+                name != null ? name : this.getClass().getSimpleName(), () -> size);
     }
 
     @Override
@@ -47,7 +92,7 @@ public abstract class RefreshTaskExecutor implements Runnable {
             try {
                 this.execute(currentTime);
             } catch (Throwable e) {
-                e.printStackTrace();
+                FusionCore.LOGGER.error("Failed to run refresh tasks", e);
             }
             // Wait the time minus the elapsed time
             LongSupplier wait = () -> period - (System.nanoTime() - currentTime);
@@ -61,7 +106,7 @@ public abstract class RefreshTaskExecutor implements Runnable {
                             try {
                                 refreshLock.wait(waitMs);
                             } catch (InterruptedException e) {
-                                e.printStackTrace();
+                                FusionCore.LOGGER.warn("Interrupted while waiting to run refresh tasks", e);
                             }
                         } else {
                             break;
@@ -73,17 +118,102 @@ public abstract class RefreshTaskExecutor implements Runnable {
     }
 
     /**
-     * Execute the task for this refresh action.
+     * Schedule a {@link RefreshTask} to run on this executor until
+     * it is {@link RefreshTask#cancel() cancelled} or {@link #remove(RefreshTask) removed}.
+     *
+     * @param task The {@link RefreshTask} to schedule.
+     */
+    public final void schedule(RefreshTask task) {
+        this.schedule(task, ALWAYS);
+    }
+
+    /**
+     * Schedule a {@link RefreshTask} to run on this executor for as long
+     * as it is active. Tasks that are already scheduled are ignored.
      * <p>
-     *     This is called once every {@link #period}; never shorter,
-     *     but, depending on how long the tasks require to execute,
-     *     could be longer.
+     *     The check of whether the task is still active is done every time
+     *     before it runs and, once it fails, the task is no longer scheduled
+     *     until it is scheduled again. As it runs on the thread of this
+     *     executor, the check should be a constant time lookup.
      * </p>
      *
-     * @param currentTime The current time in
-     *                    {@link System#nanoTime() nanoseconds}.
+     * @param task The {@link RefreshTask} to schedule, or {@code null} to ignore.
+     * @param active Whether the task is still active.
+     */
+    public final void schedule(@Nullable RefreshTask task, BooleanSupplier active) {
+
+        if (task != null) {
+            this.commands.add(() -> this.bind(task, active));
+        }
+    }
+
+    /**
+     * Schedule the current {@link Refreshable#refreshTask() task} of a
+     * {@link Refreshable} to run on this executor for as long as the
+     * refreshable is attached.
+     * <p>
+     *     The task is looked up every time before it runs, so when it is
+     *     replaced, the new task runs in its place and, while there is no
+     *     task, the refreshable is checked again every second. While the
+     *     refreshable is not active, its task is not looked up and is skipped
+     *     rather than removed. Both checks are done on the thread of this
+     *     executor, so they should be constant time lookups.
+     * </p>
+     * <p>
+     *     Scheduling a refreshable that is already scheduled checks its
+     *     task again on the next iteration, which should be done whenever
+     *     its task is set to have the new task picked up straight away.
+     * </p>
+     *
+     * @param refreshable The {@link Refreshable} to schedule.
+     * @param attached Whether the refreshable should still be scheduled.
+     * @param active Whether the task of the refreshable should currently run.
+     */
+    public final void schedule(Refreshable refreshable, BooleanSupplier attached, BooleanSupplier active) {
+        this.commands.add(() -> this.bind(refreshable, attached, active));
+    }
+
+    /**
+     * Stop running a {@link RefreshTask} on this executor without
+     * cancelling it, so that it can be scheduled again later.
+     *
+     * @param task The {@link RefreshTask} to remove, or {@code null} to ignore.
+     */
+    public final void remove(@Nullable RefreshTask task) {
+
+        if (task != null) {
+            this.cancel(task);
+        }
+    }
+
+    /**
+     * Stop checking a {@link Refreshable} and running its task on this
+     * executor without cancelling the task.
+     *
+     * @param refreshable The {@link Refreshable} to remove, or {@code null} to ignore.
      */
-    protected abstract void execute(long currentTime);
+    public final void remove(@Nullable Refreshable refreshable) {
+
+        if (refreshable != null) {
+            this.commands.add(() -> {
+
+                Timeout<Binding> timeout = refreshables.remove(refreshable);
+                if (timeout != null) {
+                    wheel.cancel(timeout);
+                    this.unbindTask(timeout);
+                }
+            });
+        }
+    }
+
+    /**
+     * Get the current {@link Stats} for this executor.
+     *
+     * @return The stats.
+     */
+    public final Stats getStats() {
+        return new Stats(size, executed);
+    }
 
     /**
      * Cease execution of this task on start of the
@@ -91,5 +221,202 @@ public abstract class RefreshTaskExecutor implements Runnable {
      */
     public final void shutdown() {
         this.running = false;
+        this.metrics.close();
+    }
+
+    void reschedule(RefreshTask task) {
+        this.commands.add(() -> {
+
+            Timeout<Binding> timeout = scheduled.get(task);
+            if (timeout != null) {
+                wheel.reschedule(timeout, task.nextRun());
+            }
+        });
+    }
+
+    void cancel(RefreshTask task) {
+        this.commands.add(() -> {
+
+            Timeout<Binding> timeout = scheduled.remove(task);
+            if (timeout == null) {
+                return;
+            }
+
+            Binding binding = timeout.value();
+            if (binding.refreshable != null) {
+                // Stays scheduled so that the next task of the refreshable is picked up
+                binding.removed = true;
+                wheel.reschedule(timeout, System.nanoTime() + WATCH_PERIOD);
+            } else {
+                wheel.cancel(timeout);
+            }
+        });
+    }
+
+    /**
+     * Run all the tasks that are due on this executor.
+     * <p>
+     *     This used to be the extension point for executors that searched
+     *     for their tasks on every iteration. Tasks should instead be
+     *     {@link #schedule(RefreshTask, BooleanSupplier) scheduled} or, for
+     *     objects whose task may change, their {@link Refreshable} should be
+     *     {@link #schedule(Refreshable, BooleanSupplier, BooleanSupplier) scheduled}.
+     *     Executors that still override this method must call it to keep
+     *     running the tasks that are scheduled.
+     * </p>
+     *
+     * @param currentTime The current {@link System#nanoTime() time}.
+     * @deprecated Schedule tasks or refreshables instead of searching for them.
+     */
+    @Deprecated
+    protected void execute(long currentTime) {
+
+        Runnable command;
+        while ((command = commands.poll()) != null) {
+            command.run();
+        }
+
+        wheel.advance(currentTime, timeout -> this.run(timeout, currentTime));
+        this.size = wheel.size();
+    }
+
+    private void bind(RefreshTask task, BooleanSupplier active) {
+
+        if (scheduled.containsKey(task)) {
+            return;
+        }
+        // Bind before checking so that a concurrent cancel either is seen
+        // here or sees this executor and removes the task afterwards
+        task.bind(this);
+        if (!task.isCancelled()) {
+            scheduled.put(task, wheel.schedule(new Binding(null, ALWAYS, active, task), task.nextRun()));
+        }
+    }
+
+    private void bind(Refreshable refreshable, BooleanSupplier attached, BooleanSupplier active) {
+
+        Timeout<Binding> timeout = refreshables.get(refreshable);
+        if (timeout != null) { // check it again straight away
+            timeout.value().removed = false;
+            wheel.reschedule(timeout, System.nanoTime());
+        } else {
+            Binding binding = new Binding(refreshable, attached, active, null);
+            refreshables.put(refreshable, wheel.schedule(binding, System.nanoTime()));
+        }
+    }
+
+    private void run(Timeout<Binding> timeout, long currentTime) {
+
+        Binding binding = timeout.value();
+        if (binding.refreshable != null && !this.refresh(timeout, currentTime)) {
+            return;
+        }
+
+        RefreshTask task = binding.task;
+        if (task.isCancelled() || !binding.active.getAsBoolean()) {
+            scheduled.remove(task);
+            return;
+        }
+
+        long start = metrics.runTime().start();
+        metrics.waitTime().record(currentTime - task.nextRun());
+        try {
+            task.execute(currentTime);
+        } catch (Throwable e) {
+            FusionCore.LOGGER.error("Failed to run a refresh task", e);
+        }
+
+        metrics.runTime().recordSince(start);
+        this.executed++;
+        if (!task.isCancelled()) {
+            wheel.reschedule(timeout, task.nextRun());
+        } else if (binding.refreshable != null) {
+            wheel.reschedule(timeout, currentTime + WATCH_PERIOD);
+        } else {
+            scheduled.remove(task);
+        }
+    }
+
+    /**
+     * Check the current task of a {@link Refreshable} binding and
+     * reschedule it if the task should not run yet.
+     *
+     * @return If the task of the binding should run now.
+     */
+    private boolean refresh(Timeout<Binding> timeout, long currentTime) {
+
+        Binding binding = timeout.value();
+        if (!binding.attached.getAsBoolean()) {
+            refreshables.remove(binding.refreshable);
+            this.unbindTask(timeout);
+            return false;
+        }
+
+        if (!binding.active.getAsBoolean()) { // the task is not even looked up
+            wheel.reschedule(timeout, currentTime + WATCH_PERIOD);
+            return false;
+        }
+
+        RefreshTask task = binding.refreshable.refreshTask();
+        if (task != binding.task) {
+
+            this.unbindTask(timeout);
+            binding.task = task;
+            binding.removed = false;
+            if (task != null) {
+                // The same as binding a task, see above
+                task.bind(this);
+                Timeout<Binding> previous = scheduled.put(task, timeout);
+                if (previous != null && previous.value().refreshable == null) {
+                    wheel.cancel(previous); // no longer scheduled on its own
+                }
+            }
+        }
+
+        if (task == null || task.isCancelled() || binding.removed) {
+            wheel.reschedule(timeout, currentTime + WATCH_PERIOD);
+            return false;
+        }
+
+        if (task.nextRun() - currentTime > 0) { // a new task that is not due yet
+            wheel.reschedule(timeout, task.nextRun());
+            return false;
+        }
+
+        return true;
+    }
+
+    private void unbindTask(Timeout<Binding> timeout) {
+
+        RefreshTask task = timeout.value().task;
+        if (task != null && scheduled.get(task) == timeout) {
+            scheduled.remove(task);
+        }
+    }
+
+    private static final class Binding {
+
+        @Nullable
+        private final Refreshable refreshable;
+        private final BooleanSupplier attached, active;
+        private RefreshTask task; // only null for a refreshable without a task
+        private boolean removed;
+
+        Binding(@Nullable Refreshable refreshable, BooleanSupplier attached,
+                BooleanSupplier active, @Nullable RefreshTask task) {
+            this.refreshable = refreshable;
+            this.attached = attached;
+            this.active = active;
+            this.task = task;
+        }
+    }
+
+    /**
+     * The stats of a {@link RefreshTaskExecutor}.
+     *
+     * @param scheduled The amount of tasks and refreshables that are currently scheduled.
+     * @param executed The amount of times any task has run.
+     */
+    public record Stats(int scheduled, long executed) {
     }
 }
@@ -0,0 +1,269 @@
+package com.projecki.fusion.util.concurrent;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.projecki.fusion.FusionCore;
+import com.projecki.fusion.metrics.ExecutorMetrics;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * An executor that runs tasks on a fixed set of threads, or stripes,
+ * where every task submitted with the same key is run on the same
+ * stripe in the order it was submitted. Tasks with different keys
+ * are spread over the stripes and run in parallel.
+ * <p>
+ * Each stripe has a bounded queue. What happens when a task is
+ * submitted to a full queue is decided by the {@link OverflowPolicy}.
+ * Tasks that are dropped, including those submitted after the executor
+ * is {@link #close() closed}, are recorded as rejected in its {@link ExecutorMetrics}.
+ */
+public class StripedExecutor implements AutoCloseable {
+
+    private static final long POLL_MILLIS = 100;
+    private static final long CLOSE_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private final Stripe[] stripes;
+    private final OverflowPolicy policy;
+    private volatile boolean running = true;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final ExecutorMetrics metrics;
+
+    /**
+     * Create a new executor and start its threads.
+     *
+     * @param name The name prefix to use when naming each thread.
+     * @param stripeCount The amount of stripes (threads) to run tasks on.
+     * @param queueCapacity The maximum amount of queued tasks per stripe.
+     * @param policy The {@link OverflowPolicy} for when a stripe's queue is full.
+     */
+    public StripedExecutor(String name, int stripeCount, int queueCapacity, OverflowPolicy policy) {
+        checkArgument(stripeCount > 0, "invalid stripe count: %s", stripeCount);
+        checkArgument(queueCapacity > 0, "invalid queue capacity: %s", queueCapacity);
+        ThreadFactory factory = new ThreadFactoryBuilder()
+                .setNameFormat(name + " - %d")
+                .setDaemon(true)
+                .build();
+        this.policy = policy;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(new ArrayBlockingQueue<>(queueCapacity));
+            stripes[i].thread = factory.newThread(stripes[i]::run);
+            stripes[i].thread.start();
+        }
+
+        this.metrics = new ExecutorMetrics(FusionCore.getMetrics(), name, () -> this.getStats().queued());
+    }
+
+    /**
+     * Execute a task on the stripe for the given key. Tasks with
+     * equal keys are run one at a time in the order they were submitted,
+     * except for tasks run by the caller due to {@link OverflowPolicy#CALLER_RUNS}.
+     * Tasks submitted after the executor is closed are dropped.
+     *
+     * @param key The key to order the task by.
+     * @param task The task to execute.
+     */
+    public void execute(@NotNull Object key, @NotNull Runnable task) {
+
+        if (!running) { // never throw, as the caller may be a network thread
+            dropped.increment();
+            metrics.rejected().increment();
+            return;
+        }
+
+        submitted.increment();
+        task = metrics.wrap(task);
+        BlockingQueue<Runnable> queue = this.stripe(key).queue;
+        if (queue.offer(task)) {
+            this.queued(queue, task);
+            return;
+        }
+
+        switch (policy) {
+            case BLOCK -> {
+                try {
+                    queue.put(task);
+                    this.queued(queue, task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.increment();
+                    metrics.rejected().increment();
+                }
+            }
+            case DROP_OLDEST -> {
+
+                while (!queue.offer(task)) {
+
+                    if (queue.poll() != null) {
+                        dropped.increment();
+                        metrics.rejected().increment();
+                    }
+                }
+
+                this.queued(queue, task);
+            }
+            case CALLER_RUNS -> {
+                callerRuns.increment();
+                this.run(task);
+            }
+        }
+    }
+
+    /**
+     * Get the amount of tasks currently waiting in each stripe's queue.
+     *
+     * @return The queue depth of each stripe.
+     */
+    public int[] getQueueDepths() {
+
+        int[] depths = new int[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            depths[i] = stripes[i].queue.size();
+        }
+
+        return depths;
+    }
+
+    /**
+     * Get the statistics of this executor since it was created.
+     *
+     * @return The {@link Stats}.
+     */
+    public Stats getStats() {
+
+        int queued = 0, max = 0;
+        for (Stripe stripe : stripes) {
+            int size = stripe.queue.size();
+            queued += size;
+            max = Math.max(max, size);
+        }
+
+        return new Stats(submitted.sum(), completed.sum(), dropped.sum(), callerRuns.sum(), queued, max);
+    }
+
+    /**
+     * Stop accepting tasks and wait for every queued task to finish,
+     * for at most 5 seconds per stripe. Running tasks are not interrupted.
+     */
+    @Override
+    public void close() {
+        this.running = false;
+        for (Stripe stripe : stripes) {
+            try {
+                stripe.thread.join(CLOSE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            if (stripe.thread.isAlive()) {
+                FusionCore.LOGGER.warn("{} still has {} queued tasks after closing", stripe.thread.getName(), stripe.queue.size());
+            }
+        }
+
+        this.metrics.close();
+    }
+
+    private Stripe stripe(Object key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16; // spread the higher bits like HashMap
+        return stripes[Math.floorMod(hash, stripes.length)];
+    }
+
+    // closed while the task was being queued, so its stripe may have already
+    // exited and the task is dropped, unless the stripe has taken it to run
+    private void queued(BlockingQueue<Runnable> queue, Runnable task) {
+
+        if (!running && queue.remove(task)) {
+            dropped.increment();
+            metrics.rejected().increment();
+        }
+    }
+
+    private void run(Runnable task) {
+
+        try {
+            task.run();
+        } catch (Throwable e) {
+            FusionCore.LOGGER.error(e.getMessage(), e);
+        } finally {
+            completed.increment();
+        }
+    }
+
+    /**
+     * What to do with a task that is submitted to a full stripe.
+     */
+    public enum OverflowPolicy {
+
+        /**
+         * Block the submitting thread until there is space in the queue.
+         * This must not be used when tasks are submitted from a thread that
+         * may never block, such as the event loop of a network connection.
+         */
+        BLOCK,
+
+        /**
+         * Discard the oldest task in the queue to make space.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Run the task on the submitting thread. The task will not
+         * be ordered with the other tasks for its key.
+         */
+        CALLER_RUNS
+    }
+
+    /**
+     * The statistics for a {@link StripedExecutor}.
+     *
+     * @param submitted The total amount of tasks submitted.
+     * @param completed The total amount of tasks that finished running.
+     * @param dropped The total amount of tasks that were discarded.
+     * @param callerRuns The total amount of tasks run by the submitting thread.
+     * @param queued The amount of tasks currently queued over every stripe.
+     * @param maxQueueDepth The amount of tasks queued on the busiest stripe.
+     */
+    public record Stats(long submitted, long completed, long dropped, long callerRuns, int queued, int maxQueueDepth) {
+    }
+
+    private final class Stripe {
+
+        private final BlockingQueue<Runnable> queue;
+        private Thread thread;
+
+        Stripe(BlockingQueue<Runnable> queue) {
+            this.queue = queue;
+        }
+
+        void run() {
+
+            while (running || !queue.isEmpty()) {
+
+                Runnable task;
+                try {
+                    // polled, so that closing is noticed without interrupting a running task
+                    task = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    continue;
+                }
+
+                if (task != null) {
+                    StripedExecutor.this.run(task);
+                }
+            }
+        }
+    }
+}
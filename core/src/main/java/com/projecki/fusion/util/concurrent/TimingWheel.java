@@ -0,0 +1,261 @@
+package com.projecki.fusion.util.concurrent;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A hashed hierarchical timing wheel for scheduling values that
+ * should be handled once a deadline has passed.
+ * <p>
+ * Time is split into ticks of a fixed duration. The first wheel holds
+ * the next 64 ticks with one slot per tick, and each of the following
+ * wheels holds 64 times the span of the wheel below it. A value is placed
+ * in the slot of the smallest wheel that can hold its deadline and is moved
+ * down one wheel at a time as its deadline comes closer. Values that are
+ * not yet due are never looked at, so scheduling and cancelling are constant
+ * time and advancing by a tick is amortized constant time.
+ * <p>
+ * Deadlines are only as precise as the tick duration; a value is
+ * handled on the first tick at or after its deadline.
+ * <p>
+ * <i>This class is not thread-safe.</i> It is intended to be owned
+ * and advanced by a single thread.
+ *
+ * @param <T> The type of value that is scheduled.
+ */
+public final class TimingWheel<T> {
+
+    private static final int WHEEL_BITS = 6, WHEEL_SIZE = 1 << WHEEL_BITS, WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int WHEELS = 4;
+    private static final long MAX_TICKS = (1L << WHEEL_BITS * WHEELS) - 1;
+
+    private final long start;
+    private final long tickNanos;
+    private final Slot<T>[][] wheels;
+    private long currentTick;
+    private int size;
+
+    /**
+     * Create a new timing wheel.
+     *
+     * @param tickNanos The duration of each tick in nanoseconds.
+     * @param start The time (in nanoseconds) that the first tick starts at.
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickNanos, long start) {
+        checkArgument(tickNanos > 0, "invalid tick: %s", tickNanos);
+        this.start = start;
+        this.tickNanos = tickNanos;
+        this.wheels = new Slot[WHEELS][WHEEL_SIZE];
+        for (Slot<T>[] wheel : wheels) {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                wheel[i] = new Slot<>();
+            }
+        }
+    }
+
+    /**
+     * Get the amount of values that are currently scheduled.
+     *
+     * @return The amount of scheduled values.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedule a value to be handled once the given deadline has passed.
+     * If the deadline has already passed, then the value will be handled
+     * on the next tick.
+     *
+     * @param value The value to schedule.
+     * @param deadline The deadline (in {@link System#nanoTime() nanoseconds}).
+     * @return The {@link Timeout} that can be used to cancel or reschedule.
+     */
+    public Timeout<T> schedule(@NotNull T value, long deadline) {
+        Timeout<T> timeout = new Timeout<>(value);
+        this.add(timeout, deadline);
+        return timeout;
+    }
+
+    /**
+     * Move a {@link Timeout} to a new deadline. If it was
+     * cancelled or already handled, then it is scheduled again.
+     *
+     * @param timeout The {@link Timeout} to reschedule.
+     * @param deadline The new deadline (in {@link System#nanoTime() nanoseconds}).
+     */
+    public void reschedule(@NotNull Timeout<T> timeout, long deadline) {
+        this.cancel(timeout);
+        this.add(timeout, deadline);
+    }
+
+    /**
+     * Cancel a {@link Timeout} so that its value is not handled.
+     *
+     * @param timeout The {@link Timeout} to cancel.
+     * @return If the timeout was scheduled before it was cancelled.
+     */
+    public boolean cancel(@NotNull Timeout<T> timeout) {
+
+        if (timeout.slot == null) {
+            return false;
+        }
+
+        timeout.slot.remove(timeout);
+        this.size--;
+        return true;
+    }
+
+    /**
+     * Advance this wheel to the given time and handle every value
+     * whose deadline has passed. The handler may schedule new values,
+     * including the value it is handling.
+     *
+     * @param currentTime The current time (in {@link System#nanoTime() nanoseconds}).
+     * @param handler The handler to pass each {@link Timeout} that is due to.
+     */
+    public void advance(long currentTime, Consumer<Timeout<T>> handler) {
+
+        long targetTick = Math.floorDiv(currentTime - start, tickNanos);
+        while (currentTick < targetTick) {
+
+            long tick = ++this.currentTick;
+            // move the values in the slots that now fall within
+            // the span of a smaller wheel down, largest first
+            for (int wheel = WHEELS - 1; wheel > 0; wheel--) {
+
+                int shift = WHEEL_BITS * wheel;
+                if ((tick & (1L << shift) - 1) == 0) {
+                    this.cascade(wheels[wheel][(int) (tick >>> shift) & WHEEL_MASK]);
+                }
+            }
+
+            // the handler may schedule or cancel other values, but never in this slot
+            Slot<T> slot = wheels[0][(int) tick & WHEEL_MASK];
+            Timeout<T> timeout;
+            while ((timeout = slot.head) != null) {
+
+                slot.remove(timeout);
+                if (timeout.deadlineTick <= tick) {
+                    this.size--;
+                    handler.accept(timeout);
+                } else { // past the largest wheel when it was scheduled
+                    this.insert(timeout);
+                }
+            }
+        }
+    }
+
+    private void cascade(Slot<T> slot) {
+
+        Timeout<T> timeout;
+        while ((timeout = slot.head) != null) {
+            slot.remove(timeout);
+            this.insert(timeout);
+        }
+    }
+
+    private void add(Timeout<T> timeout, long deadline) {
+        // round up so that a value is never handled before its deadline
+        long ticks = Math.floorDiv(deadline - start + tickNanos - 1, tickNanos);
+        timeout.deadline = deadline;
+        timeout.deadlineTick = Math.max(ticks, currentTick + 1);
+        this.size++;
+        this.insert(timeout);
+    }
+
+    // place a timeout in the slot for its deadline without counting it
+    private void insert(Timeout<T> timeout) {
+
+        long tick = Math.min(timeout.deadlineTick, currentTick + MAX_TICKS);
+        long delta = tick - currentTick;
+        int wheel = 0;
+        while (delta >= 1L << WHEEL_BITS * (wheel + 1)) {
+            wheel++;
+        }
+
+        wheels[wheel][(int) (tick >>> WHEEL_BITS * wheel) & WHEEL_MASK].add(timeout);
+    }
+
+    /**
+     * A value that is scheduled in a {@link TimingWheel}.
+     *
+     * @param <T> The type of value.
+     */
+    public static final class Timeout<T> {
+
+        private final T value;
+        private long deadline, deadlineTick;
+        private Slot<T> slot;
+        private Timeout<T> prev, next;
+
+        private Timeout(T value) {
+            this.value = value;
+        }
+
+        /**
+         * Get the value that is scheduled.
+         *
+         * @return The value.
+         */
+        public T value() {
+            return value;
+        }
+
+        /**
+         * Get the deadline this value was last scheduled for.
+         *
+         * @return The deadline (in {@link System#nanoTime() nanoseconds}).
+         */
+        public long deadline() {
+            return deadline;
+        }
+
+        /**
+         * Determine whether this timeout is currently scheduled.
+         *
+         * @return If this timeout is waiting for its deadline.
+         */
+        public boolean isScheduled() {
+            return slot != null;
+        }
+    }
+
+    // a doubly linked list of timeouts so that any can be removed in constant time
+    private static final class Slot<T> {
+
+        private Timeout<T> head;
+
+        void add(Timeout<T> timeout) {
+
+            timeout.slot = this;
+            timeout.prev = null;
+            timeout.next = head;
+            if (head != null) {
+                head.prev = timeout;
+            }
+
+            this.head = timeout;
+        }
+
+        void remove(Timeout<T> timeout) {
+
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                this.head = timeout.next;
+            }
+
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+
+            timeout.slot = null;
+            timeout.prev = timeout.next = null;
+        }
+    }
+}
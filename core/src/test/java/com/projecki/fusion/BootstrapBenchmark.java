@@ -0,0 +1,47 @@
+package com.projecki.fusion;
+
+import com.projecki.fusion.message.MessageClient.HandledMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.reflections.Reflections;
+import org.reflections.scanners.Scanners;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the startup cost of finding subtypes with the {@link ClassIndex}
+ * against scanning the classpath with {@link Reflections}. Every measurement
+ * runs in a fresh JVM, as it would on a server boot.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class BootstrapBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BootstrapBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Benchmark
+    public Set<?> index() {
+        ClassIndex index = new ClassIndex();
+        index.load(BootstrapBenchmark.class.getClassLoader());
+        return index.getSubTypesOf(HandledMessage.class);
+    }
+
+    @Benchmark
+    public Set<?> scan() {
+        return new Reflections("com.projecki", Scanners.values()).getSubTypesOf(HandledMessage.class);
+    }
+}
@@ -0,0 +1,36 @@
+package com.projecki.fusion;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+public class ClassIndexTest {
+
+    interface Root {
+    }
+
+    static class Direct implements Root {
+    }
+
+    static class Indirect extends Direct {
+    }
+
+    @Test
+    void subTypesTest() {
+
+        ClassIndex index = new ClassIndex();
+        index.load(ClassIndexTest.class.getClassLoader());
+        Assertions.assertEquals(Set.of(Direct.class, Indirect.class), index.getSubTypesOf(Root.class));
+        Assertions.assertEquals(Set.of(Indirect.class), index.getSubTypesOf(Direct.class));
+        Assertions.assertEquals(Set.of(), index.getSubTypesOf(Indirect.class));
+    }
+
+    @Test
+    void loadedOnceTest() {
+
+        ClassIndex index = new ClassIndex();
+        index.load(ClassIndexTest.class.getClassLoader(), ClassIndexTest.class.getClassLoader());
+        Assertions.assertEquals(2, index.getSubTypesOf(Root.class).size());
+    }
+}
@@ -0,0 +1,102 @@
+package com.projecki.fusion.currency.cache;
+
+import com.projecki.fusion.currency.Currency;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+public class CurrencyCacheTest {
+
+    private final UUID id = new UUID(0, 1);
+
+    @Test
+    void staleLoadTest() {
+
+        TestCurrency coins = new TestCurrency("coins");
+        CurrencyCache cache = new CurrencyCache();
+        cache.updateBalance(coins, id);
+        cache.updateBalance(coins, id);
+
+        // the later load completes first, so the earlier one is older and rejected
+        coins.requests.removeLast().complete(20L);
+        coins.requests.removeLast().complete(10L);
+        Assertions.assertEquals(Optional.of(20L), cache.getCachedBalance(coins, id));
+    }
+
+    @Test
+    void versionTest() {
+
+        TestCurrency coins = new TestCurrency("coins");
+        TestCurrency gems = new TestCurrency("gems");
+        CurrencyCache cache = new CurrencyCache();
+        long older = cache.nextVersion();
+        long newer = cache.nextVersion();
+
+        Assertions.assertTrue(cache.setCacheBalance(coins, id, 5, newer));
+        Assertions.assertFalse(cache.setCacheBalance(coins, id, 3, older));
+        Assertions.assertFalse(cache.setCacheBalance(gems, id, -1, cache.nextVersion()));
+        Assertions.assertEquals(5, cache.getCachedBalance(coins, id, -1));
+        Assertions.assertEquals(-1, cache.getCachedBalance(gems, id, -1));
+        Assertions.assertEquals(Optional.empty(), cache.getCachedBalance(gems, new UUID(0, 2)));
+    }
+
+    @Test
+    void clearWhileLoadingTest() {
+
+        TestCurrency coins = new TestCurrency("coins");
+        CurrencyCache cache = new CurrencyCache();
+        cache.updateBalance(coins, id);
+        cache.clear(id);
+
+        coins.requests.remove().complete(10L);
+        Assertions.assertEquals(Optional.empty(), cache.getCachedBalance(coins, id));
+    }
+
+    private static final class TestCurrency implements Currency {
+
+        private final String id;
+        private final Deque<CompletableFuture<Long>> requests = new ArrayDeque<>();
+
+        private TestCurrency(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public String id() {
+            return id;
+        }
+
+        @Override
+        public String singular() {
+            return id;
+        }
+
+        @Override
+        public String plural() {
+            return id;
+        }
+
+        @Override
+        public CompletableFuture<Long> getBalance(@NotNull UUID uuid) {
+            CompletableFuture<Long> future = new CompletableFuture<>();
+            requests.add(future);
+            return future;
+        }
+
+        @Override
+        public CompletableFuture<Void> setBalance(@NotNull UUID uuid, long newAmount) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Void> transact(@NotNull UUID uuid, long amountChange) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.projecki.fusion.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.RecordComponent;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares deserializing a record with the {@link RecordTypeAdapterFactory}
+ * against the previous implementation, which reflected on the record
+ * and looked up its constructor on every read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordTypeAdapterBenchmark {
+
+    record Profile(UUID uuid, String name, int level, long playTime, boolean online, List<String> ranks) {
+    }
+
+    private final Gson cached = new GsonBuilder().registerTypeAdapterFactory(new RecordTypeAdapterFactory()).create();
+    private final Gson legacy = new GsonBuilder().registerTypeAdapterFactory(new LegacyRecordTypeAdapterFactory()).create();
+    private final String json = cached.toJson(new Profile(UUID.randomUUID(), "Notch", 42, 123_456_789L, true, List.of("admin", "vip")));
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RecordTypeAdapterBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Benchmark
+    public Profile cached() {
+        return cached.fromJson(json, Profile.class);
+    }
+
+    @Benchmark
+    public Profile legacy() {
+        return legacy.fromJson(json, Profile.class);
+    }
+
+    private static class LegacyRecordTypeAdapterFactory implements TypeAdapterFactory {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+
+            Class<T> clazz = (Class<T>) type.getRawType();
+            if (!clazz.isRecord()) {
+                return null;
+            }
+
+            TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+            return new TypeAdapter<>() {
+
+                @Override
+                public void write(JsonWriter out, T value) throws IOException {
+                    delegate.write(out, value);
+                }
+
+                @Override
+                public T read(JsonReader reader) throws IOException {
+
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                        return null;
+                    }
+
+                    RecordComponent[] components = clazz.getRecordComponents();
+                    Map<String, TypeToken<?>> types = new HashMap<>();
+                    for (RecordComponent component : components) {
+                        types.put(component.getName(), TypeToken.get(component.getGenericType()));
+                    }
+
+                    Map<String, Object> values = new HashMap<>();
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String name = reader.nextName();
+                        values.put(name, gson.getAdapter(types.get(name)).read(reader));
+                    }
+
+                    reader.endObject();
+                    Class<?>[] argTypes = new Class<?>[components.length];
+                    Object[] args = new Object[components.length];
+                    for (int i = 0; i < components.length; i++) {
+                        argTypes[i] = components[i].getType();
+                        args[i] = values.get(components[i].getName());
+                    }
+
+                    try {
+                        Constructor<T> constructor = clazz.getDeclaredConstructor(argTypes);
+                        constructor.setAccessible(true);
+                        return constructor.newInstance(args);
+                    } catch (ReflectiveOperationException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+        }
+    }
+}
@@ -2,13 +2,17 @@ package com.projecki.fusion.gson;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.reflect.TypeToken;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.util.List;
 import java.util.stream.Stream;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
@@ -21,6 +25,15 @@ public class RecordTypeAdapterFactoryTest {
     record TestRecord(@NotNull String name, @NotNull String value) {
     }
 
+    record PrimitiveRecord(int count, long total, boolean flag) {
+    }
+
+    record NamedRecord(@SerializedName("n") String name) {
+    }
+
+    record Box<T>(T value, List<T> values) {
+    }
+
     @ParameterizedTest
     @MethodSource("provideSerialiseTests")
     void serialiseTest(@NotNull TestRecord record, @NotNull String expected) {
@@ -49,4 +62,28 @@ public class RecordTypeAdapterFactoryTest {
         );
     }
 
+    @Test
+    void unknownFieldTest() {
+        Assertions.assertEquals(new TestRecord("a", "b"),
+                gson.fromJson("{\"name\":\"a\",\"other\":{\"x\":[1,2]},\"value\":\"b\"}", TestRecord.class));
+    }
+
+    @Test
+    void primitiveDefaultTest() {
+        Assertions.assertEquals(new PrimitiveRecord(0, 0, false), gson.fromJson("{}", PrimitiveRecord.class));
+        Assertions.assertEquals(new PrimitiveRecord(0, 5, false), gson.fromJson("{\"count\":null,\"total\":5}", PrimitiveRecord.class));
+    }
+
+    @Test
+    void serializedNameTest() {
+        Assertions.assertEquals("{\"n\":\"test\"}", gson.toJson(new NamedRecord("test")));
+        Assertions.assertEquals(new NamedRecord("test"), gson.fromJson("{\"n\":\"test\"}", NamedRecord.class));
+    }
+
+    @Test
+    void genericTest() {
+        Box<Integer> box = gson.fromJson("{\"value\":1,\"values\":[2,3]}", new TypeToken<Box<Integer>>() {}.getType());
+        Assertions.assertEquals(new Box<>(1, List.of(2, 3)), box);
+        Assertions.assertEquals(Integer.class, box.value().getClass());
+    }
 }
@@ -0,0 +1,75 @@
+package com.projecki.fusion.message;
+
+import com.projecki.fusion.message.MessageClient.Message;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Compares delivering a message to a {@link MessageClient.MessageListener}
+ * through {@link Method#invoke} against the invokers created by {@link ListenerInvokers}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListenerInvokerBenchmark {
+
+    private final TestMessage message = new TestMessage(42);
+    private Listener listener;
+    private Method method;
+    private BiConsumer<String, Message> invoker;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ListenerInvokerBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        listener = new Listener();
+        method = Listener.class.getMethod("receive", String.class, TestMessage.class);
+        invoker = ListenerInvokers.create(listener, method);
+    }
+
+    @Benchmark
+    public void reflective(Blackhole blackhole) throws Exception {
+        method.invoke(listener, "channel", message);
+        blackhole.consume(listener.total);
+    }
+
+    @Benchmark
+    public void generated(Blackhole blackhole) {
+        invoker.accept("channel", message);
+        blackhole.consume(listener.total);
+    }
+
+    public record TestMessage(int value) implements Message {
+    }
+
+    public static class Listener {
+
+        private long total;
+
+        @MessageClient.MessageListener
+        public void receive(String channel, TestMessage message) {
+            total += message.value();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.projecki.fusion.message;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MessageClientTest {
+
+    public record TestMessage(int value) implements MessageClient.Message {
+    }
+
+    @Test
+    void identicalMessageFromOtherClientTest() {
+
+        List<TestMessage> received = new ArrayList<>();
+        CapturingClient client = new CapturingClient();
+        client.setLoopback(true);
+        client.registerMessageListener(TestMessage.class, (c, m) -> received.add(m));
+        CapturingClient other = new CapturingClient();
+        other.setLoopback(true);
+
+        TestMessage message = new TestMessage(5);
+        client.send("channel", message);
+        other.send("channel", new TestMessage(5));
+        Assertions.assertEquals(List.of(message), received); // delivered locally
+
+        // the same message from another client arrives before the echo
+        client.receive("channel", other.frames.get(0));
+        Assertions.assertEquals(2, received.size());
+        Assertions.assertNotSame(message, received.get(1));
+
+        client.receive("channel", client.frames.get(0));
+        Assertions.assertEquals(2, received.size(), "echo was delivered again");
+    }
+
+    @Test
+    void notLoopedBackTest() {
+
+        CapturingClient client = new CapturingClient(); // disabled by default
+        client.send("channel", new TestMessage(3));
+        Assertions.assertArrayEquals(client.encode(new TestMessage(3)), client.frames.get(0));
+    }
+
+    private static final class CapturingClient extends MessageClient {
+
+        private final List<byte[]> frames = new ArrayList<>();
+
+        CapturingClient() {
+            this.setBinaryCodec(true);
+            this.subscribe("channel");
+        }
+
+        @Override
+        public void send(String channel, Message message) {
+
+            if (!channel.equals(CODEC_CHANNEL)) {
+                this.frames.add(this.loopback(channel, message, this.encode(message)));
+            }
+        }
+
+        @Override
+        public void subscribe(String channel) {
+            this.setSubscribed(channel, true);
+        }
+
+        @Override
+        public void unsubscribe(String channel) {
+            this.setSubscribed(channel, false);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.projecki.fusion.message.codec;
+
+import com.projecki.fusion.message.MessageClient;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class BinaryMessageCodecTest {
+
+    record TestRecord(int count, long total, String name, UUID uuid, Boolean flag,
+                      Thread.State state, List<String> values) implements MessageClient.Message {
+    }
+
+    // the names of these have the same hash code, so they have the same id
+    record Aa(int value) implements MessageClient.Message {
+    }
+
+    record BB(String value) implements MessageClient.Message {
+    }
+
+    static class TestMessage implements MessageClient.Message {
+
+        private final int count;
+        private Map<String, Integer> values;
+
+        TestMessage() {
+            this.count = 0;
+        }
+
+        TestMessage(int count, Map<String, Integer> values) {
+            this.count = count;
+            this.values = values;
+        }
+    }
+
+    @Test
+    void recordRoundTripTest() {
+
+        BinaryMessageCodec codec = new BinaryMessageCodec();
+        codec.registerType(TestRecord.class);
+
+        TestRecord record = new TestRecord(-3, 1L << 40, "name", UUID.randomUUID(), null,
+                Thread.State.RUNNABLE, List.of("a", "b"));
+        byte[] frame = codec.encode(record);
+        Assertions.assertNotNull(frame);
+        Assertions.assertTrue(codec.accepts(frame));
+        Assertions.assertEquals(record, codec.decode(frame));
+    }
+
+    @Test
+    void classRoundTripTest() {
+
+        BinaryMessageCodec codec = new BinaryMessageCodec();
+        codec.registerType(TestMessage.class);
+
+        byte[] frame = codec.encode(new TestMessage(7, Map.of("key", 1)));
+        Assertions.assertNotNull(frame);
+
+        TestMessage decoded = (TestMessage) codec.decode(frame);
+        Assertions.assertNotNull(decoded);
+        Assertions.assertEquals(7, decoded.count);
+        Assertions.assertEquals(Map.of("key", 1), decoded.values);
+    }
+
+    @Test
+    void unregisteredTypeTest() {
+        byte[] frame = new BinaryMessageCodec().encode(new TestMessage(1, null));
+        Assertions.assertNotNull(frame);
+        Assertions.assertNull(new BinaryMessageCodec().decode(frame));
+    }
+
+    @Test
+    void fingerprintMismatchTest() {
+
+        BinaryMessageCodec codec = new BinaryMessageCodec();
+        codec.registerType(Aa.class);
+
+        // as written by a server where the record has different fields
+        FrameOutput out = new FrameOutput(16);
+        out.writeByte(BinaryMessageCodec.MAGIC);
+        out.writeVarInt(BinaryMessageCodec.typeId(Aa.class));
+        out.writeInt(MessageSchema.of(Aa.class).fingerprint() + 1);
+        out.writeString("value");
+
+        Assertions.assertNull(codec.decode(out.toByteArray()));
+        Assertions.assertEquals(1, codec.getRejected());
+        // the sender could not decode it in binary either
+        Assertions.assertNull(codec.encode(new Aa(1)));
+    }
+
+    @Test
+    void advertisedTest() {
+
+        BinaryMessageCodec codec = new BinaryMessageCodec();
+        codec.registerType(Aa.class);
+        int fingerprint = MessageSchema.of(Aa.class).fingerprint();
+        Assertions.assertEquals(Map.of(Aa.class.getName(), fingerprint), codec.getFingerprints());
+
+        codec.advertised(Map.of(Aa.class.getName(), fingerprint));
+        Assertions.assertNotNull(codec.encode(new Aa(1)));
+
+        // another server has different fields for it
+        codec.advertised(Map.of(Aa.class.getName(), fingerprint + 1));
+        Assertions.assertNull(codec.encode(new Aa(1)));
+    }
+
+    @Test
+    void collisionTest() {
+
+        BinaryMessageCodec codec = new BinaryMessageCodec();
+        codec.registerType(Aa.class);
+        codec.registerType(BB.class);
+        Assertions.assertEquals(BinaryMessageCodec.typeId(Aa.class), BinaryMessageCodec.typeId(BB.class));
+        Assertions.assertNull(codec.encode(new BB("value")));
+
+        // as written by a server that only knows one of them
+        BinaryMessageCodec sender = new BinaryMessageCodec();
+        sender.registerType(BB.class);
+        byte[] frame = sender.encode(new BB("value"));
+        Assertions.assertNotNull(frame);
+        Assertions.assertEquals(new BB("value"), codec.decode(frame));
+        Assertions.assertEquals(0, codec.getRejected());
+    }
+
+    @Test
+    void gsonFramesNotAcceptedTest() {
+        GsonMessageCodec gson = new GsonMessageCodec(id -> null);
+        Assertions.assertFalse(new BinaryMessageCodec().accepts(gson.encode(new TestMessage(1, null))));
+    }
+}
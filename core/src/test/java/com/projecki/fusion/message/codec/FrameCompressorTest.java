@@ -0,0 +1,79 @@
+package com.projecki.fusion.message.codec;
+
+import com.projecki.fusion.FusionCore;
+import com.projecki.fusion.message.MessageClient;
+import com.projecki.fusion.metrics.Gauge;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class FrameCompressorTest {
+
+    record TestMessage(String text) implements MessageClient.Message {
+    }
+
+    private static final TestMessage MESSAGE = new TestMessage("unused");
+    private static final byte[] FRAME = "{\"word\":\"value\"},".repeat(100).getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void roundTripTest() {
+
+        FrameCompressor compressor = new FrameCompressor(id -> TestMessage.class);
+        compressor.setThreshold(256);
+
+        byte[] compressed = compressor.compress(MESSAGE, FRAME);
+        Assertions.assertTrue(FrameCompressor.isCompressed(compressed));
+        Assertions.assertTrue(compressed.length < FRAME.length);
+        Assertions.assertEquals(TestMessage.class, compressor.peekType(compressed));
+        Assertions.assertArrayEquals(FRAME, compressor.decompress(compressed));
+
+        FrameCompressor.Stats stats = compressor.getStats().get(MESSAGE.getIdentifier());
+        Assertions.assertEquals(1, stats.compressed());
+        Assertions.assertEquals(1, stats.decompressed());
+        Assertions.assertTrue(stats.ratio() < 1);
+    }
+
+    @Test
+    void thresholdTest() {
+
+        FrameCompressor compressor = new FrameCompressor(id -> TestMessage.class);
+        Assertions.assertSame(FRAME, compressor.compress(MESSAGE, FRAME)); // disabled by default
+
+        compressor.setThreshold(FRAME.length + 1);
+        Assertions.assertSame(FRAME, compressor.compress(MESSAGE, FRAME));
+    }
+
+    @Test
+    void dictionaryTest() {
+
+        byte[] dictionary = "{\"word\":\"value\"}".getBytes(StandardCharsets.UTF_8);
+        FrameCompressor compressor = new FrameCompressor(id -> TestMessage.class);
+        compressor.setThreshold(1);
+        compressor.setDictionary(dictionary);
+
+        byte[] compressed = compressor.compress(MESSAGE, FRAME);
+        Assertions.assertArrayEquals(FRAME, compressor.decompress(compressed));
+
+        FrameCompressor other = new FrameCompressor(id -> TestMessage.class);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> other.decompress(compressed));
+    }
+
+    @Test
+    void metricsAndCloseTest() {
+
+        FrameCompressor compressor = new FrameCompressor(id -> TestMessage.class);
+        compressor.setThreshold(256);
+        byte[] compressed = compressor.compress(MESSAGE, FRAME);
+        compressor.decompress(compressed);
+
+        String prefix = "message.compression." + MESSAGE.getIdentifier() + '.';
+        Gauge gauge = (Gauge) FusionCore.getMetrics().getMetrics().get(prefix + "compressed-bytes");
+        Assertions.assertEquals(compressed.length, gauge.source().getAsLong());
+
+        // still works after closing, without pooling
+        compressor.close();
+        Assertions.assertFalse(FusionCore.getMetrics().getMetrics().containsKey(prefix + "compressed-bytes"));
+        Assertions.assertArrayEquals(FRAME, compressor.decompress(compressor.compress(MESSAGE, FRAME)));
+    }
+}
@@ -0,0 +1,60 @@
+package com.projecki.fusion.message.memory;
+
+import com.projecki.fusion.message.MessageClient;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class InMemoryMessageClientTest {
+
+    public record TestMessage(int value) implements MessageClient.Message {
+    }
+
+    @Test
+    void deliveredToEverySubscriberTest() {
+
+        InMemoryMessageClient.Cluster cluster = new InMemoryMessageClient.Cluster();
+        List<InMemoryMessageClient> clients = new ArrayList<>();
+        List<List<TestMessage>> received = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+
+            InMemoryMessageClient client = new InMemoryMessageClient(cluster);
+            List<TestMessage> messages = new ArrayList<>();
+            client.setBinaryCodec(true);
+            client.setLoopback(true);
+            client.subscribe("channel");
+            client.registerMessageListener(TestMessage.class, (c, m) -> messages.add(m));
+            clients.add(client);
+            received.add(messages);
+        }
+
+        clients.get(2).unsubscribe("channel");
+        TestMessage message = new TestMessage(5);
+        clients.get(0).send("channel", message);
+
+        Assertions.assertEquals(1, received.get(0).size());
+        Assertions.assertSame(message, received.get(0).get(0)); // delivered locally
+        Assertions.assertEquals(List.of(message), received.get(1));
+        Assertions.assertEquals(List.of(), received.get(2));
+        Assertions.assertEquals(1, clients.get(0).getLoopbacks());
+    }
+
+    @Test
+    void loopbackDisabledTest() {
+
+        InMemoryMessageClient client = new InMemoryMessageClient(new InMemoryMessageClient.Cluster());
+        List<TestMessage> received = new ArrayList<>();
+        client.setBinaryCodec(true);
+        client.setLoopback(false);
+        client.registerMessageListener(TestMessage.class, (c, m) -> received.add(m));
+
+        TestMessage message = new TestMessage(7);
+        client.send(message);
+
+        Assertions.assertEquals(List.of(message), received);
+        Assertions.assertNotSame(message, received.get(0)); // decoded from the frame
+        Assertions.assertEquals(0, client.getLoopbacks());
+    }
+}
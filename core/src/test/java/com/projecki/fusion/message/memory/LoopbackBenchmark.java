@@ -0,0 +1,69 @@
+package com.projecki.fusion.message.memory;
+
+import com.projecki.fusion.message.MessageClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures sending a message on a channel the sender is subscribed to
+ * in a simulated cluster, with and without {@link MessageClient#setLoopback(boolean) loopback}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoopbackBenchmark {
+
+    @Param({ "true", "false" })
+    private boolean loopback;
+
+    @Param({ "1", "8" })
+    private int nodes;
+
+    private final TestMessage message = new TestMessage(42, "some chat message that was sent");
+    private InMemoryMessageClient sender;
+    private long total;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LoopbackBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setup() {
+
+        InMemoryMessageClient.Cluster cluster = new InMemoryMessageClient.Cluster();
+        for (int i = 0; i < nodes; i++) {
+            InMemoryMessageClient client = new InMemoryMessageClient(cluster);
+            client.setBinaryCodec(true);
+            client.setLoopback(loopback);
+            client.registerMessageListener(TestMessage.class, (c, m) -> total += m.value());
+            sender = client;
+        }
+    }
+
+    @Benchmark
+    public void send(Blackhole blackhole) {
+        sender.send(message);
+        blackhole.consume(total);
+    }
+
+    public record TestMessage(int value, String text) implements MessageClient.Message {
+    }
+}
@@ -0,0 +1,130 @@
+package com.projecki.fusion.message.redis;
+
+import com.projecki.fusion.message.MessageClient;
+import io.lettuce.core.RedisClient;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class RedisStreamMessageClientTest {
+
+    private RedisServer server;
+    private RedisClient redisClient;
+
+    record TestMessage(int value) implements MessageClient.Message {
+    }
+
+    @BeforeAll
+    void startRedis() throws Exception {
+        int port = freePort();
+        server = new RedisServer(port);
+        server.start();
+        redisClient = RedisClient.create("redis://localhost:" + port);
+    }
+
+    @AfterAll
+    void stopRedis() throws Exception {
+        redisClient.shutdown();
+        server.stop();
+    }
+
+    @Test
+    void deliveredToEveryServerTest() throws InterruptedException {
+
+        RedisStreamMessageClient first = new RedisStreamMessageClient(redisClient, "first");
+        RedisStreamMessageClient second = new RedisStreamMessageClient(redisClient, "second");
+        List<Integer> firstReceived = new CopyOnWriteArrayList<>();
+        List<Integer> secondReceived = new CopyOnWriteArrayList<>();
+        first.registerMessageListener(TestMessage.class, (c, m) -> firstReceived.add(m.value()));
+        second.registerMessageListener(TestMessage.class, (c, m) -> secondReceived.add(m.value()));
+        first.ready(MessageClient.DEFAULT_CHANNEL).join();
+        second.ready(MessageClient.DEFAULT_CHANNEL).join();
+
+        for (int i = 0; i < 100; i++) {
+            first.send(new TestMessage(i));
+        }
+
+        awaitSize(firstReceived, 100);
+        awaitSize(secondReceived, 100);
+        Assertions.assertEquals(firstReceived, secondReceived); // in order on both
+        first.shutdown();
+        second.shutdown();
+    }
+
+    @Test
+    void replayAfterReconnectTest() throws InterruptedException {
+
+        RedisStreamMessageClient sender = new RedisStreamMessageClient(redisClient, "sender");
+        RedisStreamMessageClient receiver = new RedisStreamMessageClient(redisClient, "receiver");
+        receiver.subscribe("replay");
+        receiver.ready("replay").join();
+        receiver.shutdown(); // the group now exists, but nothing is reading from it
+
+        for (int i = 0; i < 10; i++) {
+            sender.send("replay", new TestMessage(i));
+        }
+
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        receiver = new RedisStreamMessageClient(redisClient, "receiver");
+        receiver.registerMessageListener(TestMessage.class, "replay", (c, m) -> received.add(m.value()));
+        receiver.subscribe("replay");
+
+        awaitSize(received, 10);
+        Assertions.assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), received);
+        sender.shutdown();
+        receiver.shutdown();
+    }
+
+    @Test
+    void failedMessageTest() throws InterruptedException {
+
+        RedisStreamMessageClient sender = new RedisStreamMessageClient(redisClient, "failing-sender");
+        RedisStreamMessageClient client = new RedisStreamMessageClient(redisClient, "failing");
+        List<Integer> received = new CopyOnWriteArrayList<>();
+        client.registerMessageListener(TestMessage.class, "failing", (c, m) -> {
+            if (m.value() == 0) {
+                throw new IllegalStateException("listener failed");
+            }
+            received.add(m.value());
+        });
+        client.subscribe("failing");
+        client.ready("failing").join();
+
+        for (int i = 0; i < 3; i++) {
+            sender.send("failing", new TestMessage(i));
+        }
+
+        // the reader keeps going after the failed message, and acknowledges it
+        awaitSize(received, 2);
+        Assertions.assertEquals(List.of(1, 2), received);
+        Assertions.assertEquals(1, client.getStats().failed());
+        sender.shutdown();
+        client.shutdown();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (list.size() < size && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        Assertions.assertEquals(size, list.size());
+    }
+}
@@ -0,0 +1,78 @@
+package com.projecki.fusion.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+public class HistogramTest {
+
+    @Test
+    void bucketBoundsTest() {
+
+        long[] values = { 0, 1, 31, 32, 33, 63, 64, 65, 1000, 123456789, Long.MAX_VALUE };
+        for (long value : values) {
+            int bucket = Histogram.bucket(value);
+            Assertions.assertTrue(Histogram.lowerBound(bucket) <= value, "lower bound above " + value);
+            if (bucket + 1 < (Long.SIZE - 5) * 32) {
+                Assertions.assertTrue(Histogram.lowerBound(bucket + 1) > value, "next bound below " + value);
+            }
+        }
+
+        Assertions.assertEquals((Long.SIZE - 5) * 32 - 1, Histogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    void percentileTest() {
+
+        Histogram histogram = new MetricRegistry(true).histogram("test");
+        for (int i = 1; i <= 100000; i++) {
+            histogram.record(i);
+        }
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        Assertions.assertEquals(100000, snapshot.count());
+        Assertions.assertEquals(1, snapshot.min());
+        Assertions.assertEquals(100000, snapshot.max());
+        Assertions.assertEquals(50000.5, snapshot.mean(), 0.001);
+        assertWithin(50000, snapshot.p50());
+        assertWithin(90000, snapshot.p90());
+        assertWithin(99000, snapshot.p99());
+        assertWithin(99900, snapshot.p999());
+    }
+
+    @Test
+    void randomPercentileTest() {
+
+        Histogram histogram = new MetricRegistry(true).histogram("test");
+        long[] values = ThreadLocalRandom.current().longs(10000, 0, 1L << 40).sorted().toArray();
+        for (long value : values) {
+            histogram.record(value);
+        }
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertWithin(values[4999], snapshot.p50());
+        assertWithin(values[9899], snapshot.p99());
+    }
+
+    @Test
+    void disabledTest() {
+
+        MetricRegistry registry = new MetricRegistry(false);
+        Histogram histogram = registry.histogram("test");
+        Assertions.assertEquals(0, histogram.start());
+        histogram.recordSince(histogram.start());
+        histogram.record(10);
+        Assertions.assertEquals(0, histogram.snapshot().count());
+
+        registry.setEnabled(true);
+        histogram.record(10);
+        Assertions.assertEquals(1, histogram.snapshot().count());
+        registry.reset();
+        Assertions.assertEquals(0, histogram.snapshot().count());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        Assertions.assertTrue(Math.abs(expected - actual) <= expected * 0.04, "expected about " + expected + " but was " + actual);
+    }
+}
@@ -0,0 +1,96 @@
+package com.projecki.fusion.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.management.Attribute;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class MetricRegistryTest {
+
+    @Test
+    void counterTest() {
+
+        MetricRegistry registry = new MetricRegistry(false);
+        Counter counter = registry.counter("test.count");
+        counter.increment();
+        Assertions.assertEquals(0, counter.get());
+
+        registry.setEnabled(true);
+        counter.increment();
+        counter.add(4);
+        Assertions.assertEquals(5, counter.get());
+        Assertions.assertSame(counter, registry.counter("test.count"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> registry.histogram("test.count"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> registry.gauge("test.count", () -> 1));
+    }
+
+    @Test
+    void gaugeTest() {
+
+        MetricRegistry registry = new MetricRegistry(false);
+        Gauge first = registry.gauge("test.gauge", () -> 1);
+        Gauge second = registry.gauge("test.gauge", () -> 2);
+        Assertions.assertEquals(2, ((Gauge) registry.getMetrics().get("test.gauge")).get());
+
+        registry.remove(first); // replaced, so this does nothing
+        Assertions.assertTrue(registry.getMetrics().containsKey("test.gauge"));
+        registry.remove(second);
+        Assertions.assertFalse(registry.getMetrics().containsKey("test.gauge"));
+    }
+
+    @Test
+    void executorMetricsTest() throws InterruptedException {
+
+        MetricRegistry registry = new MetricRegistry(true);
+        ExecutorMetrics metrics = new ExecutorMetrics(registry, "Test Pool", () -> 3);
+        CountDownLatch ran = new CountDownLatch(1);
+        Runnable task = metrics.wrap(ran::countDown);
+        Thread thread = new Thread(task);
+        thread.start();
+
+        Assertions.assertTrue(ran.await(5, TimeUnit.SECONDS));
+        thread.join();
+        Assertions.assertEquals(1, registry.histogram("executor.test-pool.wait").snapshot().count());
+        Assertions.assertEquals(1, registry.histogram("executor.test-pool.run").snapshot().count());
+        Assertions.assertEquals(3, ((Gauge) registry.getMetrics().get("executor.test-pool.queued")).get());
+
+        metrics.close();
+        Assertions.assertFalse(registry.getMetrics().containsKey("executor.test-pool.queued"));
+        registry.setEnabled(false);
+        Assertions.assertSame(task, metrics.wrap(task));
+    }
+
+    @Test
+    void mbeanTest() throws Exception {
+
+        MetricRegistry registry = new MetricRegistry(true);
+        registry.counter("test.count").add(7);
+        registry.histogram("test.latency").record(1000);
+        ObjectName name = new ObjectName("com.projecki.fusion:type=MetricRegistryTest");
+        registry.registerMBean(name.toString());
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            Assertions.assertEquals(7L, server.getAttribute(name, "test.count"));
+            Assertions.assertEquals(1L, server.getAttribute(name, "test.latency.count"));
+            Assertions.assertEquals(1000L, server.getAttribute(name, "test.latency.max"));
+            Assertions.assertTrue(Arrays.stream(server.getMBeanInfo(name).getAttributes())
+                    .map(MBeanAttributeInfo::getName)
+                    .anyMatch("test.latency.p99"::equals));
+
+            server.setAttribute(name, new Attribute("Enabled", false));
+            Assertions.assertFalse(registry.isEnabled());
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            Assertions.assertEquals(0L, server.getAttribute(name, "test.count"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+}
@@ -2,6 +2,10 @@ package com.projecki.fusion.object;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 
@@ -40,4 +44,30 @@ public class ModularObjectTest {
         object.remove(RunnableModule.class);
         assertNull(object.get(RunnableModule.class));
     }
+
+    @Test
+    public void testListener() {
+        TestObject object = new TestObject();
+        List<Module> added = new ArrayList<>(), removed = new ArrayList<>();
+        object.addModuleListener(new ModuleListener<Module>() {
+
+            @Override
+            public void onAdd(Module module) {
+                added.add(module);
+            }
+
+            @Override
+            public void onRemove(Module module) {
+                removed.add(module);
+            }
+        });
+
+        object.initialize();
+        assertEquals(object.modules(), added);
+        Module module = object.get(RunnableModule.class);
+        object.remove(RunnableModule.class);
+        assertEquals(List.of(module), removed);
+        object.destroy();
+        assertEquals(added.size(), removed.size());
+    }
 }
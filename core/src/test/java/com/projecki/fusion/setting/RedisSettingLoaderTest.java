@@ -0,0 +1,161 @@
+package com.projecki.fusion.setting;
+
+import com.projecki.fusion.message.memory.InMemoryMessageClient;
+import com.projecki.fusion.setting.impl.PlayerVisibilitySetting;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class RedisSettingLoaderTest {
+
+    private RedisServer server;
+    private RedisClient redisClient;
+    private RedisAsyncCommands<String, String> commands;
+
+    @BeforeAll
+    void startRedis() throws Exception {
+        int port = freePort();
+        server = new RedisServer(port);
+        server.start();
+        redisClient = RedisClient.create("redis://localhost:" + port);
+        commands = redisClient.connect().async();
+    }
+
+    @AfterAll
+    void stopRedis() throws Exception {
+        redisClient.shutdown();
+        server.stop();
+    }
+
+    @Test
+    void handOffTest() {
+
+        UUID id = UUID.randomUUID();
+        MemorySettingLoader backing = new MemorySettingLoader();
+        InMemoryMessageClient.Cluster cluster = new InMemoryMessageClient.Cluster();
+        RedisSettingLoader leaving = this.create(backing, cluster);
+        RedisSettingLoader joining = this.create(backing, cluster);
+
+        leaving.load(id).join();
+        leaving.setSetting(id, PlayerVisibilitySetting.NONE);
+        leaving.handOff(id).join();
+        Assertions.assertNull(leaving.getSetting(id, PlayerVisibilitySetting.class, null));
+
+        joining.load(id).join();
+        Assertions.assertEquals(PlayerVisibilitySetting.NONE, joining.getSetting(id, PlayerVisibilitySetting.class, null));
+        // only the first load and the save reached the other loader
+        Assertions.assertEquals(1, backing.loads.get());
+        Assertions.assertEquals(Map.of("player_visibility", "none"), backing.stored.get(id));
+        Assertions.assertEquals(new RedisSettingLoader.CacheStats(1, 0), joining.getCacheStats());
+    }
+
+    @Test
+    void emptyHandOffTest() {
+
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        MemorySettingLoader backing = new MemorySettingLoader();
+        RedisSettingLoader loader = this.create(backing, new InMemoryMessageClient.Cluster());
+
+        // cached even though the player has no settings
+        loader.handOff(first).join();
+        loader.load(List.of(first, second)).join();
+        Assertions.assertEquals(new RedisSettingLoader.CacheStats(1, 1), loader.getCacheStats());
+        Assertions.assertEquals(1, backing.loads.get());
+    }
+
+    @Test
+    void invalidateTest() throws InterruptedException {
+
+        UUID id = UUID.randomUUID();
+        MemorySettingLoader backing = new MemorySettingLoader();
+        backing.stored.put(id, Map.of("player_visibility", "all"));
+        InMemoryMessageClient.Cluster cluster = new InMemoryMessageClient.Cluster();
+        RedisSettingLoader first = this.create(backing, cluster);
+        RedisSettingLoader second = this.create(backing, cluster);
+
+        first.load(id).join();
+        first.handOff(id).join();
+        first.load(id).join();
+        second.load(id).join();
+        first.setSetting(id, PlayerVisibilitySetting.NONE);
+        first.save(id).join();
+
+        // removed from redis, and loaded again from the other loader by the second server
+        Assertions.assertEquals(0L, commands.exists("player-settings:" + id).toCompletableFuture().join());
+        for (int i = 0; i < 100 && second.getSetting(id, PlayerVisibilitySetting.class, null) != PlayerVisibilitySetting.NONE; i++) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(PlayerVisibilitySetting.NONE, second.getSetting(id, PlayerVisibilitySetting.class, null));
+        Assertions.assertEquals(2, backing.loads.get());
+    }
+
+    @Test
+    void invalidateUnloadedTest() {
+
+        UUID id = UUID.randomUUID();
+        MemorySettingLoader backing = new MemorySettingLoader();
+        InMemoryMessageClient.Cluster cluster = new InMemoryMessageClient.Cluster();
+        RedisSettingLoader first = this.create(backing, cluster);
+        RedisSettingLoader second = this.create(backing, cluster);
+
+        first.load(id).join();
+        first.setSetting(id, PlayerVisibilitySetting.NONE);
+        first.save(id).join();
+
+        // not loaded by the second server, so it is not loaded there now either
+        Assertions.assertNull(second.getSetting(id, PlayerVisibilitySetting.class, null));
+        Assertions.assertFalse(second.isLoaded(id));
+        Assertions.assertEquals(1, backing.loads.get());
+    }
+
+    private RedisSettingLoader create(SettingLoader backing, InMemoryMessageClient.Cluster cluster) {
+        InMemoryMessageClient client = new InMemoryMessageClient(cluster);
+        client.setBinaryCodec(true);
+        return new RedisSettingLoader(backing, commands, client, Duration.ofSeconds(30));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static final class MemorySettingLoader extends SettingLoader {
+
+        private final Map<UUID, Map<String, String>> stored = new ConcurrentHashMap<>();
+        private final AtomicInteger loads = new AtomicInteger();
+
+        @Override
+        protected CompletableFuture<Map<String, String>> loadImpl(UUID parentId) {
+            loads.incrementAndGet();
+            return CompletableFuture.completedFuture(stored.getOrDefault(parentId, Map.of()));
+        }
+
+        @Override
+        protected CompletableFuture<Void> saveImpl(UUID parentId, Map<String, String> toSave) {
+            stored.merge(parentId, toSave, (a, b) -> {
+                Map<String, String> merged = new ConcurrentHashMap<>(a);
+                merged.putAll(b);
+                return merged;
+            });
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
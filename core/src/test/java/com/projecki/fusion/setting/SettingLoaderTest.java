@@ -0,0 +1,129 @@
+package com.projecki.fusion.setting;
+
+import com.projecki.fusion.setting.impl.PlayerVisibilitySetting;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class SettingLoaderTest {
+
+    private final UUID id = new UUID(0, 1);
+
+    @Test
+    void saveChangedTest() {
+
+        MemorySettingLoader loader = new MemorySettingLoader(Map.of("player_visibility", "all"));
+        loader.load(id).join();
+        Assertions.assertEquals(PlayerVisibilitySetting.ALL, loader.getSetting(id, PlayerVisibilitySetting.class, null));
+
+        // loaded and unchanged settings are not written
+        loader.save(id).join();
+        loader.setSetting(id, PlayerVisibilitySetting.ALL);
+        loader.save(id).join();
+        Assertions.assertEquals(List.of(), loader.saved);
+
+        loader.setSetting(id, PlayerVisibilitySetting.NONE);
+        loader.save(id).join();
+        loader.save(id).join();
+        Assertions.assertEquals(List.of(Map.of("player_visibility", "none")), loader.saved);
+        Assertions.assertEquals(new SettingLoader.Stats(1, 1, 3), loader.getStats());
+    }
+
+    @Test
+    void failureRetryTest() {
+
+        MemorySettingLoader loader = new MemorySettingLoader(Map.of());
+        loader.fail = true;
+        loader.setSetting(id, PlayerVisibilitySetting.NONE);
+        Assertions.assertTrue(loader.save(id).isCompletedExceptionally());
+
+        loader.fail = false;
+        loader.save(id).join();
+        Assertions.assertEquals(List.of(Map.of("player_visibility", "none")), loader.saved);
+    }
+
+    @Test
+    void failureAfterUnloadTest() {
+
+        MemorySettingLoader loader = new MemorySettingLoader(Map.of("player_visibility", "all"));
+        loader.load(id).join();
+        loader.pending = new CompletableFuture<>();
+        loader.setSetting(id, PlayerVisibilitySetting.NONE);
+        CompletableFuture<Void> save = loader.save(id);
+        loader.unload(id);
+        loader.pending.completeExceptionally(new IllegalStateException("test"));
+        Assertions.assertTrue(save.isCompletedExceptionally());
+
+        // the failed setting is not saved over the settings loaded after it
+        loader.pending = null;
+        loader.load(id).join();
+        loader.setSetting(id, PlayerVisibilitySetting.ALL);
+        loader.save(id).join();
+        Assertions.assertEquals(List.of(), loader.saved);
+    }
+
+    @Test
+    void concurrentBulkLoadTest() {
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            MemorySettingLoader loader = new MemorySettingLoader(Map.of("player_visibility", "none"));
+            loader.executor = executor;
+            List<List<UUID>> groups = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+
+                List<UUID> ids = new ArrayList<>();
+                for (int j = 0; j < 250; j++) {
+                    ids.add(UUID.randomUUID());
+                }
+                groups.add(ids);
+            }
+
+            // every group is put into the local table from another thread at once
+            CompletableFuture.allOf(groups.stream().map(loader::load).toArray(CompletableFuture[]::new)).join();
+            groups.forEach(ids -> ids.forEach(parentId -> Assertions.assertEquals(PlayerVisibilitySetting.NONE,
+                    loader.getSetting(parentId, PlayerVisibilitySetting.class, null))));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static final class MemorySettingLoader extends SettingLoader {
+
+        private final Map<String, String> stored;
+        private final List<Map<String, String>> saved = new ArrayList<>();
+        private boolean fail;
+        private CompletableFuture<Void> pending;
+        private ExecutorService executor;
+
+        private MemorySettingLoader(Map<String, String> stored) {
+            this.stored = stored;
+        }
+
+        @Override
+        protected CompletableFuture<Map<String, String>> loadImpl(UUID parentId) {
+            return executor != null ?
+                    CompletableFuture.supplyAsync(() -> stored, executor) :
+                    CompletableFuture.completedFuture(stored);
+        }
+
+        @Override
+        protected CompletableFuture<Void> saveImpl(UUID parentId, Map<String, String> toSave) {
+            if (pending != null) {
+                return pending;
+            }
+            if (fail) {
+                return CompletableFuture.failedFuture(new IllegalStateException("test"));
+            }
+            saved.add(toSave);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
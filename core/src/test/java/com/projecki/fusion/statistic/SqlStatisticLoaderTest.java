@@ -0,0 +1,28 @@
+package com.projecki.fusion.statistic;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class SqlStatisticLoaderTest {
+
+    @Test
+    void deltaInsertTest() {
+        Assertions.assertEquals("INSERT INTO breakout (uuid, played, eliminated) VALUES (UNHEX(?), ?, ?), (UNHEX(?), ?, ?)"
+                        + " ON DUPLICATE KEY UPDATE played=played+VALUES(played), eliminated=eliminated+VALUES(eliminated);",
+                SqlStatisticLoader.getInsert("breakout", false, List.of("played", "eliminated"), 2));
+    }
+
+    @Test
+    void setInsertTest() {
+        Assertions.assertEquals("INSERT INTO breakout (uuid, played) VALUES (UNHEX(?), ?) ON DUPLICATE KEY UPDATE played=VALUES(played);",
+                SqlStatisticLoader.getInsert("breakout", true, List.of("played"), 1));
+    }
+
+    @Test
+    void retrieveTest() {
+        Assertions.assertEquals("SELECT * FROM breakout WHERE uuid IN (UNHEX(?), UNHEX(?), UNHEX(?));",
+                SqlStatisticLoader.getRetrieve("breakout", 3));
+    }
+}
@@ -0,0 +1,156 @@
+package com.projecki.fusion.statistic;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.ref.Reference;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Compares incrementing statistics in a {@link StatisticStore} against the
+ * {@link HashBasedTable} it replaced, with 1,000 players and 200 statistics.
+ * Running {@link #main} first prints the heap each of them uses when every
+ * statistic of every player is set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatisticStoreBenchmark {
+
+    private static final int PLAYERS = 1000;
+    private static final TestStatistic[] STATISTICS = TestStatistic.values();
+
+    private UUID[] players;
+    private Table<UUID, StatisticType, Long> table;
+    private StatisticStore store;
+
+    public static void main(String[] args) throws RunnerException {
+        System.out.printf("table: %,d bytes%n", footprint(StatisticStoreBenchmark::fillTable));
+        System.out.printf("store: %,d bytes%n", footprint(StatisticStoreBenchmark::fillStore));
+        new Runner(new OptionsBuilder().include(StatisticStoreBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setUp() {
+        this.players = players();
+        this.table = fillTable();
+        this.store = fillStore();
+    }
+
+    @Benchmark
+    public Long tableIncrement() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        UUID player = players[random.nextInt(PLAYERS)];
+        TestStatistic statistic = STATISTICS[random.nextInt(STATISTICS.length)];
+        // what StatisticLoader#incrementStatistic did before
+        Long value = table.get(player, statistic);
+        return table.put(player, statistic, (value == null ? 0 : value) + 1);
+    }
+
+    @Benchmark
+    public long storeIncrement() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return store.increment(players[random.nextInt(PLAYERS)], STATISTICS[random.nextInt(STATISTICS.length)], 1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long storeIncrementContended() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return store.increment(players[random.nextInt(PLAYERS)], STATISTICS[random.nextInt(STATISTICS.length)], 1);
+    }
+
+    private static UUID[] players() {
+        UUID[] players = new UUID[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            players[i] = new UUID(0, i);
+        }
+        return players;
+    }
+
+    private static Table<UUID, StatisticType, Long> fillTable() {
+        Table<UUID, StatisticType, Long> table = HashBasedTable.create();
+        for (UUID player : players()) {
+            for (TestStatistic statistic : STATISTICS) {
+                // above the Long cache, as most real statistics are
+                table.put(player, statistic, 1000L + statistic.ordinal());
+            }
+        }
+        return table;
+    }
+
+    private static StatisticStore fillStore() {
+        StatisticStore store = new StatisticStore();
+        for (UUID player : players()) {
+            for (TestStatistic statistic : STATISTICS) {
+                store.set(player, statistic, 1000L + statistic.ordinal());
+            }
+        }
+        return store;
+    }
+
+    private static long footprint(Supplier<Object> fill) {
+        long before = usedHeap();
+        Object filled = fill.get();
+        long after = usedHeap();
+        Reference.reachabilityFence(filled);
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    enum TestStatistic implements StatisticType {
+        S0, S1, S2, S3, S4, S5, S6, S7, S8, S9,
+        S10, S11, S12, S13, S14, S15, S16, S17, S18, S19,
+        S20, S21, S22, S23, S24, S25, S26, S27, S28, S29,
+        S30, S31, S32, S33, S34, S35, S36, S37, S38, S39,
+        S40, S41, S42, S43, S44, S45, S46, S47, S48, S49,
+        S50, S51, S52, S53, S54, S55, S56, S57, S58, S59,
+        S60, S61, S62, S63, S64, S65, S66, S67, S68, S69,
+        S70, S71, S72, S73, S74, S75, S76, S77, S78, S79,
+        S80, S81, S82, S83, S84, S85, S86, S87, S88, S89,
+        S90, S91, S92, S93, S94, S95, S96, S97, S98, S99,
+        S100, S101, S102, S103, S104, S105, S106, S107, S108, S109,
+        S110, S111, S112, S113, S114, S115, S116, S117, S118, S119,
+        S120, S121, S122, S123, S124, S125, S126, S127, S128, S129,
+        S130, S131, S132, S133, S134, S135, S136, S137, S138, S139,
+        S140, S141, S142, S143, S144, S145, S146, S147, S148, S149,
+        S150, S151, S152, S153, S154, S155, S156, S157, S158, S159,
+        S160, S161, S162, S163, S164, S165, S166, S167, S168, S169,
+        S170, S171, S172, S173, S174, S175, S176, S177, S178, S179,
+        S180, S181, S182, S183, S184, S185, S186, S187, S188, S189,
+        S190, S191, S192, S193, S194, S195, S196, S197, S198, S199;
+
+        @Override
+        public String getId() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.projecki.fusion.statistic;
+
+import com.projecki.fusion.statistic.impl.BreakoutStatistic;
+import com.projecki.fusion.statistic.impl.NetworkWideStatistic;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+public class StatisticStoreTest {
+
+    private final UUID id = new UUID(0, 1);
+
+    @Test
+    void setAndIncrementTest() {
+
+        StatisticStore store = new StatisticStore();
+        Assertions.assertEquals(OptionalLong.empty(), store.get(id, BreakoutStatistic.PLAYED));
+
+        store.set(id, BreakoutStatistic.PLAYED, 5);
+        Assertions.assertEquals(7, store.increment(id, BreakoutStatistic.PLAYED, 2));
+        Assertions.assertEquals(-1, store.increment(id, BreakoutStatistic.DOORS_KNOCKED, -1));
+        Assertions.assertEquals(OptionalLong.of(7), store.get(id, BreakoutStatistic.PLAYED));
+        Assertions.assertEquals(OptionalLong.empty(), store.get(id, BreakoutStatistic.SURVIVED));
+        Assertions.assertEquals(OptionalLong.empty(), store.get(id, NetworkWideStatistic.PLAY_TIME));
+    }
+
+    @Test
+    void snapshotTest() {
+
+        StatisticStore store = new StatisticStore();
+        store.set(id, BreakoutStatistic.PLAYED, 1);
+        store.increment(id, BreakoutStatistic.ELIMINATED, 3);
+        store.set(id, NetworkWideStatistic.PLAY_TIME, 100);
+
+        // only statistics that are set, and only of the given type
+        Assertions.assertEquals(Map.of("played", 1L, "eliminated", 3L), store.snapshot(id, BreakoutStatistic.class));
+        Assertions.assertEquals(Map.of("play_time", 100L), store.snapshot(id, NetworkWideStatistic.class));
+        Assertions.assertEquals(Map.of(), store.snapshot(new UUID(0, 2), BreakoutStatistic.class));
+
+        store.remove(id);
+        Assertions.assertEquals(0, store.size());
+        Assertions.assertEquals(Map.of(), store.snapshot(id, BreakoutStatistic.class));
+    }
+
+    @Test
+    void concurrentIncrementTest() throws InterruptedException {
+
+        StatisticStore store = new StatisticStore();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 100000; j++) {
+                    store.increment(id, BreakoutStatistic.values()[j % 3], 1);
+                }
+            });
+            threads[i].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long total = store.snapshot(id, BreakoutStatistic.class).values().stream().mapToLong(Long::longValue).sum();
+        Assertions.assertEquals(400000, total);
+    }
+}
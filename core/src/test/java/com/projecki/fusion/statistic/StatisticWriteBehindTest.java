@@ -0,0 +1,207 @@
+package com.projecki.fusion.statistic;
+
+import com.projecki.fusion.metrics.MetricRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class StatisticWriteBehindTest {
+
+    private final UUID first = new UUID(0, 1);
+    private final UUID second = new UUID(0, 2);
+    private final List<StatisticWriteBehind.Batch> written = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService scheduler;
+
+    @BeforeEach
+    void setUp() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void mergeDeltasTest() {
+
+        StatisticWriteBehind writeBehind = this.create(written::add, 100, 100);
+        writeBehind.increment(first, "breakout", "played", 1);
+        writeBehind.increment(first, "breakout", "played", 2);
+        writeBehind.increment(first, "breakout", "eliminated", 1);
+        writeBehind.increment(second, "breakout", "played", 1);
+        writeBehind.increment(second, "breakout", "played", 0);
+        Assertions.assertEquals(3, writeBehind.pending());
+        writeBehind.flush().join();
+
+        Assertions.assertEquals(1, written.size());
+        StatisticWriteBehind.Batch batch = written.get(0);
+        Assertions.assertFalse(batch.absolute());
+        Assertions.assertEquals(List.of("eliminated", "played"), batch.columns());
+        Assertions.assertEquals(2, batch.rows().size());
+        for (StatisticWriteBehind.Row row : batch.rows()) {
+            // columns a player did not change are written as 0
+            long[] expected = row.id().equals(first) ? new long[] { 1, 3 } : new long[] { 0, 1 };
+            Assertions.assertArrayEquals(expected, row.values());
+        }
+
+        Assertions.assertEquals(0, writeBehind.pending());
+        Assertions.assertEquals(2, writeBehind.getStats().rows());
+        writeBehind.close();
+    }
+
+    @Test
+    void setReplacesDeltaTest() {
+
+        StatisticWriteBehind writeBehind = this.create(written::add, 100, 100);
+        writeBehind.increment(first, "breakout", "played", 5);
+        writeBehind.set(first, "breakout", Map.of("played", 10L));
+        writeBehind.increment(first, "breakout", "played", 1);
+        writeBehind.increment(first, "disasters", "played", 1);
+        writeBehind.flush().join();
+
+        Assertions.assertEquals(2, written.size());
+        StatisticWriteBehind.Batch set = written.get(0);
+        Assertions.assertEquals("breakout", set.namespace());
+        Assertions.assertTrue(set.absolute());
+        Assertions.assertArrayEquals(new long[] { 11 }, set.rows().get(0).values());
+        Assertions.assertFalse(written.get(1).absolute());
+        writeBehind.close();
+    }
+
+    @Test
+    void batchSizeTest() {
+
+        StatisticWriteBehind writeBehind = this.create(written::add, 2, 100);
+        for (int i = 0; i < 5; i++) {
+            writeBehind.increment(new UUID(1, i), "breakout", "played", 1);
+        }
+        writeBehind.flush().join();
+
+        Assertions.assertEquals(3, written.size());
+        Assertions.assertEquals(5, written.stream().mapToInt(batch -> batch.rows().size()).sum());
+        writeBehind.close();
+    }
+
+    @Test
+    void maxPendingTest() {
+
+        StatisticWriteBehind writeBehind = this.create(written::add, 100, 2);
+        writeBehind.increment(first, "breakout", "played", 1);
+        writeBehind.increment(second, "breakout", "played", 1);
+        // full, so the first two are written before the third is added
+        writeBehind.increment(new UUID(0, 3), "breakout", "played", 1);
+
+        Assertions.assertEquals(1, written.size());
+        Assertions.assertEquals(1, writeBehind.pending());
+        writeBehind.close();
+    }
+
+    @Test
+    void fullDropsTest() {
+
+        List<Runnable> tasks = new CopyOnWriteArrayList<>();
+        StatisticWriteBehind writeBehind = StatisticWriteBehind.builder(written::add)
+                .interval(Duration.ofHours(1))
+                .maxPending(2)
+                .scheduler(scheduler)
+                .executor(tasks::add)
+                .metrics(new MetricRegistry(true))
+                .build();
+
+        writeBehind.increment(first, "breakout", "played", 1);
+        writeBehind.increment(second, "breakout", "played", 1);
+        // full and the flush has not run, so the new statistic is dropped instead of waiting
+        writeBehind.increment(new UUID(0, 3), "breakout", "played", 1);
+        writeBehind.increment(first, "breakout", "played", 1);
+
+        Assertions.assertEquals(1, tasks.size());
+        Assertions.assertEquals(2, writeBehind.pending());
+        Assertions.assertEquals(1, writeBehind.getStats().dropped());
+
+        tasks.forEach(Runnable::run);
+        Assertions.assertArrayEquals(new long[] { 2 }, written.get(0).rows().stream()
+                .filter(row -> row.id().equals(first)).findFirst().orElseThrow().values());
+    }
+
+    @Test
+    void failureRetryTest() {
+
+        AtomicBoolean fail = new AtomicBoolean(true);
+        StatisticWriteBehind writeBehind = this.create(batch -> {
+            if (fail.get()) {
+                throw new IllegalStateException("test");
+            }
+            written.add(batch);
+        }, 100, 100);
+
+        writeBehind.increment(first, "breakout", "played", 1);
+        Assertions.assertTrue(writeBehind.flush().isCompletedExceptionally());
+        writeBehind.increment(first, "breakout", "played", 2);
+        Assertions.assertEquals(1, writeBehind.getStats().failures());
+
+        fail.set(false);
+        writeBehind.flush().join();
+        Assertions.assertArrayEquals(new long[] { 3 }, written.get(0).rows().get(0).values());
+        writeBehind.close();
+    }
+
+    @Test
+    void partialFailureTest() {
+
+        AtomicBoolean fail = new AtomicBoolean(true);
+        StatisticWriteBehind writeBehind = this.create(batch -> {
+            if (fail.get() && batch.namespace().equals("disasters")) {
+                throw new IllegalStateException("test");
+            }
+            written.add(batch);
+        }, 100, 100);
+
+        writeBehind.increment(first, "breakout", "played", 1);
+        writeBehind.increment(first, "disasters", "played", 2);
+        Assertions.assertTrue(writeBehind.flush().isCompletedExceptionally());
+        Assertions.assertEquals(1, written.size());
+        Assertions.assertEquals(1, writeBehind.pending());
+
+        // the breakout delta was written, so only the disasters delta is written again
+        fail.set(false);
+        writeBehind.flush().join();
+        Assertions.assertEquals(2, written.size());
+        Assertions.assertEquals("disasters", written.get(1).namespace());
+        Assertions.assertArrayEquals(new long[] { 2 }, written.get(1).rows().get(0).values());
+        writeBehind.close();
+    }
+
+    @Test
+    void closeTest() {
+
+        StatisticWriteBehind writeBehind = this.create(written::add, 100, 100);
+        writeBehind.increment(first, "breakout", "played", 1);
+        Assertions.assertTrue(writeBehind.close(5, TimeUnit.SECONDS));
+
+        Assertions.assertEquals(1, written.size());
+        Assertions.assertThrows(IllegalStateException.class, () -> writeBehind.increment(first, "breakout", "played", 1));
+    }
+
+    private StatisticWriteBehind create(StatisticWriteBehind.Writer writer, int batchSize, int maxPending) {
+        return StatisticWriteBehind.builder(writer)
+                .interval(Duration.ofHours(1))
+                .batchSize(batchSize)
+                .maxPending(maxPending)
+                .scheduler(scheduler)
+                .executor(Runnable::run)
+                .metrics(new MetricRegistry(true))
+                .build();
+    }
+}
@@ -0,0 +1,171 @@
+package com.projecki.fusion.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+public class KeyedValueCacheTest {
+
+    private ScheduledExecutorService scheduler;
+
+    @BeforeEach
+    void setUp() {
+        this.scheduler = Executors.newScheduledThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void batchLoadTest() throws Exception {
+
+        List<Set<String>> batches = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        KeyedValueCache<String, Integer> cache = KeyedValueCache.<String, Integer>builder(keys -> {
+                    batches.add(Set.copyOf(keys));
+                    return release.thenApply(v -> lengths(keys));
+                })
+                .interval(Duration.ofHours(1))
+                .scheduler(scheduler)
+                .executor(Runnable::run)
+                .build();
+
+        Assertions.assertNull(cache.get("a"));
+        awaitTrue(() -> batches.size() == 1);
+        // requested while the first batch is loading, so both are loaded in the next one
+        cache.get("bb");
+        cache.get("ccc");
+        release.complete(null);
+        awaitTrue(() -> cache.get("ccc") != null);
+
+        Assertions.assertEquals(2, batches.size());
+        Assertions.assertEquals(Set.of("bb", "ccc"), batches.get(1));
+        Assertions.assertEquals(1, cache.get("a"));
+        Assertions.assertEquals(2, cache.get("bb"));
+        Assertions.assertEquals(3, cache.get("ccc", -1));
+        Assertions.assertEquals(3, cache.getStats().loaded());
+        cache.close();
+    }
+
+    @Test
+    void expireAfterAccessTest() throws Exception {
+
+        KeyedValueCache<String, Integer> cache = KeyedValueCache.<String, Integer>builder(keys -> CompletableFuture.completedFuture(lengths(keys)))
+                .interval(Duration.ofMillis(10))
+                .expireAfterAccess(Duration.ofMillis(50))
+                .scheduler(scheduler)
+                .executor(Runnable::run)
+                .build();
+
+        cache.get("unused");
+        cache.get("used");
+        for (int i = 0; i < 20; i++) {
+            Thread.sleep(10);
+            cache.get("used");
+        }
+
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertEquals(4, cache.get("used"));
+        Assertions.assertEquals(1, cache.getStats().evictions());
+        cache.close();
+    }
+
+    @Test
+    void maxKeysTest() throws Exception {
+
+        KeyedValueCache<String, Integer> cache = KeyedValueCache.<String, Integer>builder(keys -> CompletableFuture.completedFuture(lengths(keys)))
+                .interval(Duration.ofHours(1))
+                .maxKeys(2)
+                .scheduler(scheduler)
+                .executor(Runnable::run)
+                .build();
+
+        cache.get("a");
+        Thread.sleep(5);
+        cache.get("b");
+        Thread.sleep(5);
+        cache.get("a");
+        cache.get("c");
+
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertEquals(1, cache.getStats().evictions());
+        awaitTrue(() -> cache.get("a") != null && cache.get("c") != null);
+        cache.close();
+    }
+
+    @Test
+    void refreshFailureTest() throws Exception {
+
+        AtomicInteger executions = new AtomicInteger();
+        KeyedValueCache<String, Integer> cache = KeyedValueCache.<String, Integer>builder(keys -> CompletableFuture.completedFuture(lengths(keys)))
+                .interval(Duration.ofMillis(10))
+                .scheduler(scheduler)
+                .executor(command -> {
+                    // fails outside of the loader, which would stop the refresh task
+                    if (executions.incrementAndGet() <= 3) {
+                        throw new IllegalStateException("failed to execute");
+                    }
+
+                    command.run();
+                })
+                .build();
+
+        cache.get("a");
+        awaitTrue(() -> cache.get("a") != null);
+        Assertions.assertEquals(1, cache.get("a"));
+        cache.close();
+    }
+
+    @Test
+    void closeTest() throws Exception {
+
+        AtomicInteger calls = new AtomicInteger();
+        KeyedValueCache<String, Integer> cache = KeyedValueCache.<String, Integer>builder(keys -> {
+                    calls.incrementAndGet();
+                    return CompletableFuture.completedFuture(lengths(keys));
+                })
+                .interval(Duration.ofMillis(10))
+                .scheduler(scheduler)
+                .executor(Runnable::run)
+                .build();
+
+        cache.get("a");
+        awaitTrue(() -> cache.get("a") != null);
+        cache.close();
+        Thread.sleep(20); // a refresh may have started just before closing
+        int closedAt = calls.get();
+        Thread.sleep(100);
+        Assertions.assertEquals(closedAt, calls.get());
+        Assertions.assertNull(cache.get("a"));
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    private static Map<String, Integer> lengths(Set<String> keys) {
+        Map<String, Integer> values = new HashMap<>();
+        keys.forEach(key -> values.put(key, key.length()));
+        return values;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+}
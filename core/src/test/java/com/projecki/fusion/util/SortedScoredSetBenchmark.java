@@ -0,0 +1,106 @@
+package com.projecki.fusion.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures updating scores, looking up ranks and reading ranges of a
+ * {@link SortedScoredSet} with 10 thousand and 1 million members, like
+ * a leaderboard. The {@code contended} group reads ranks while another
+ * thread keeps updating scores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SortedScoredSetBenchmark {
+
+    @Param({ "10000", "1000000" })
+    private int members;
+
+    private SortedScoredSet<Integer> set;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SortedScoredSetBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setUp() {
+        this.set = new SortedScoredSet<>();
+        SplittableRandom random = new SplittableRandom(0);
+        for (int i = 0; i < members; i++) {
+            set.put(i, random.nextInt(members));
+        }
+    }
+
+    @Benchmark
+    public int put() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return set.put(random.nextInt(members), random.nextInt(members));
+    }
+
+    @Benchmark
+    public Optional<Integer> rank() {
+        return set.getRank(ThreadLocalRandom.current().nextInt(members));
+    }
+
+    @Benchmark
+    public Optional<Integer> get() {
+        return set.get(ThreadLocalRandom.current().nextInt(members));
+    }
+
+    @Benchmark
+    public List<Integer> top10() {
+        return set.getRange(0, 10);
+    }
+
+    @Benchmark
+    public List<Integer> rangeByRank() {
+        int from = ThreadLocalRandom.current().nextInt(members - 10);
+        return set.getRange(from, from + 10);
+    }
+
+    @Benchmark
+    public List<Integer> rangeByScore() {
+        // about 10 members, as the scores are spread over as many values as there are members
+        int max = ThreadLocalRandom.current().nextInt(members);
+        return set.getRangeByScore(max, max - 9);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public Optional<Integer> contendedRank() {
+        return set.getRank(ThreadLocalRandom.current().nextInt(members));
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public int contendedPut() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return set.put(random.nextInt(members), random.nextInt(members));
+    }
+}
@@ -0,0 +1,167 @@
+package com.projecki.fusion.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SortedScoredSetTest {
+
+    @Test
+    void orderTest() {
+
+        SortedScoredSet<String> set = new SortedScoredSet<>();
+        Assertions.assertEquals(0, set.put("b", 5));
+        Assertions.assertEquals(0, set.put("a", 10));
+        Assertions.assertEquals(2, set.put("c", 5)); // ties keep the order they were put in
+        Assertions.assertEquals(3, set.put("d", -1));
+
+        Assertions.assertEquals(List.of("a", "b", "c", "d"), set.getAll());
+        Assertions.assertEquals(Optional.of("a"), set.getHighest());
+        Assertions.assertEquals(Optional.of("d"), set.getLowest());
+        Assertions.assertEquals(Optional.of("c"), set.get(2));
+        Assertions.assertEquals(Optional.empty(), set.get(4));
+        Assertions.assertEquals(List.of("b", "c"), new ArrayList<>(set.getAllOfScore(5)));
+        Assertions.assertEquals(-1, set.put(null, 1));
+    }
+
+    @Test
+    void updateTest() {
+
+        SortedScoredSet<String> set = new SortedScoredSet<>();
+        set.put("a", 1);
+        set.put("b", 2);
+        set.put("c", 3);
+        Assertions.assertEquals(0, set.put("a", 4));
+
+        Assertions.assertEquals(3, set.size());
+        Assertions.assertEquals(Optional.of(4), set.getScore("a"));
+        Assertions.assertEquals(Optional.of(0), set.getRank("a"));
+        Assertions.assertEquals(Optional.of(2), set.getRank("b"));
+        Assertions.assertEquals(Optional.empty(), set.getRank("z"));
+    }
+
+    @Test
+    void removeTest() {
+
+        SortedScoredSet<Integer> set = new SortedScoredSet<>();
+        for (int i = 0; i < 10; i++) {
+            set.put(i, i);
+        }
+
+        Assertions.assertTrue(set.remove((Integer) 9));
+        Assertions.assertFalse(set.remove((Integer) 9));
+        Assertions.assertEquals(Optional.of(8), set.remove(0));
+        Assertions.assertEquals(Optional.empty(), set.remove(8));
+        Assertions.assertTrue(set.removeIf(i -> i % 2 == 0));
+        Assertions.assertEquals(List.of(7, 5, 3, 1), set.getAll());
+        Assertions.assertFalse(set.contains(2));
+
+        set.clear();
+        Assertions.assertTrue(set.isEmpty());
+        Assertions.assertEquals(Optional.empty(), set.getHighest());
+    }
+
+    @Test
+    void rangeTest() {
+
+        SortedScoredSet<Integer> set = new SortedScoredSet<>();
+        for (int i = 0; i < 100; i++) {
+            set.put(i, i / 2);
+        }
+
+        Assertions.assertEquals(List.of(98, 99, 96), set.getRange(0, 3));
+        Assertions.assertEquals(List.of(0, 1), set.getRange(98, 200));
+        Assertions.assertEquals(List.of(), set.getRange(50, 50));
+        Assertions.assertEquals(List.of(20, 21, 18, 19), set.getRangeByScore(10, 9));
+        Assertions.assertEquals(List.of(), set.getRangeByScore(9, 10));
+    }
+
+    @Test
+    void randomTest() {
+
+        Random random = new Random(0);
+        SortedScoredSet<Integer> set = new SortedScoredSet<>();
+        Map<Integer, Integer> scores = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+
+            int item = random.nextInt(2000);
+            if (random.nextInt(4) == 0) {
+                Assertions.assertEquals(scores.remove(item) != null, set.remove((Integer) item));
+            } else {
+                int score = random.nextInt(100);
+                scores.put(item, score);
+                set.put(item, score);
+            }
+        }
+
+        List<Integer> all = set.getAll();
+        Assertions.assertEquals(scores.size(), set.size());
+        Assertions.assertEquals(all, iterate(set));
+        for (int i = 0; i < all.size(); i++) {
+
+            Integer item = all.get(i);
+            Assertions.assertEquals(Optional.of(i), set.getRank(item));
+            Assertions.assertEquals(Optional.of(item), set.get(i));
+            Assertions.assertEquals(scores.get(item), set.getScore(item).orElseThrow());
+            if (i > 0) {
+                Assertions.assertTrue(scores.get(all.get(i - 1)) >= scores.get(item));
+            }
+        }
+
+        List<Integer> expected = new ArrayList<>(all);
+        expected.removeIf(item -> scores.get(item) > 60 || scores.get(item) < 40);
+        Assertions.assertEquals(expected, set.getRangeByScore(60, 40));
+        Assertions.assertEquals(all.subList(100, 200), set.getRange(100, 200));
+        Assertions.assertEquals(all.stream().max(Comparator.comparing(scores::get)).map(scores::get),
+                set.getHighest().map(scores::get));
+    }
+
+    @Test
+    void concurrentReadTest() throws InterruptedException {
+
+        SortedScoredSet<Integer> set = new SortedScoredSet<>();
+        for (int i = 0; i < 1000; i++) {
+            set.put(i, i);
+        }
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        Thread reader = new Thread(() -> {
+            try {
+                while (done.getCount() > 0) {
+                    // an update is never seen half done
+                    List<Integer> all = set.getAll();
+                    Assertions.assertEquals(1000, all.size());
+                    Assertions.assertTrue(set.getRank(500).isPresent());
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        reader.start();
+
+        Random random = new Random(0);
+        for (int i = 0; i < 50000; i++) {
+            set.put(random.nextInt(1000), random.nextInt());
+        }
+        done.countDown();
+        reader.join(TimeUnit.SECONDS.toMillis(5));
+        Assertions.assertNull(failure.get());
+    }
+
+    private static <T> List<T> iterate(SortedScoredSet<T> set) {
+        List<T> items = new ArrayList<>();
+        set.forEach(items::add);
+        return items;
+    }
+}
@@ -0,0 +1,130 @@
+package com.projecki.fusion.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ValueCacheTest {
+
+    private ScheduledExecutorService scheduler;
+
+    @BeforeEach
+    void setUp() {
+        this.scheduler = Executors.newScheduledThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void nonBlockingLoadTest() throws Exception {
+
+        CompletableFuture<Integer> pending = new CompletableFuture<>();
+        ValueCache<Integer> cache = ValueCache.<Integer>builder(() -> pending)
+                .interval(Duration.ofMillis(50))
+                .scheduler(scheduler)
+                .executor(Runnable::run)
+                .build();
+
+        Assertions.assertNull(cache.getValue());
+        Assertions.assertEquals(-1, cache.getValue(-1));
+        pending.complete(7);
+        Assertions.assertEquals(7, cache.whenLoaded().get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(7, cache.getValue());
+        cache.close();
+    }
+
+    @Test
+    void coalesceTest() throws Exception {
+
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<Integer> pending = new CompletableFuture<>();
+        ValueCache<Integer> cache = ValueCache.<Integer>builder(() -> {
+                    calls.incrementAndGet();
+                    return pending;
+                })
+                .interval(Duration.ofHours(1))
+                .scheduler(scheduler)
+                .executor(Runnable::run)
+                .build();
+
+        CompletableFuture<Integer> first = cache.refresh();
+        Assertions.assertSame(first, cache.refresh());
+        pending.complete(1);
+        Assertions.assertEquals(1, first.get(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(1, calls.get());
+        Assertions.assertEquals(1, cache.getStats().refreshes());
+        cache.close();
+    }
+
+    @Test
+    void staleWhileRefreshingTest() throws Exception {
+
+        AtomicInteger calls = new AtomicInteger();
+        CompletableFuture<Integer> slow = new CompletableFuture<>();
+        ValueCache<Integer> cache = ValueCache.<Integer>builder(() ->
+                        calls.incrementAndGet() == 1 ? CompletableFuture.completedFuture(1) : slow)
+                .interval(Duration.ofMillis(20))
+                .jitter(0)
+                .scheduler(scheduler)
+                .executor(Runnable::run)
+                .build();
+
+        Assertions.assertEquals(1, cache.whenLoaded().get(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        // the second refresh has not finished, so the old value is kept
+        Assertions.assertEquals(2, calls.get());
+        Assertions.assertEquals(1, cache.getValue());
+        slow.complete(2);
+        Assertions.assertEquals(2, cache.getValue());
+        cache.close();
+    }
+
+    @Test
+    void failureKeepsValueTest() throws Exception {
+
+        AtomicInteger calls = new AtomicInteger();
+        ValueCache<Integer> cache = ValueCache.<Integer>builder(() -> calls.incrementAndGet() == 1 ?
+                        CompletableFuture.completedFuture(1) :
+                        CompletableFuture.failedFuture(new IllegalStateException("test")))
+                .interval(Duration.ofMillis(10))
+                .scheduler(scheduler)
+                .executor(Runnable::run)
+                .build();
+
+        Assertions.assertEquals(1, cache.whenLoaded().get(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        Assertions.assertEquals(1, cache.getValue());
+        Assertions.assertTrue(cache.getStats().failures() > 0);
+        cache.close();
+    }
+
+    @Test
+    void closeTest() throws Exception {
+
+        AtomicInteger calls = new AtomicInteger();
+        ValueCache<Integer> cache = ValueCache.<Integer>builder(() -> CompletableFuture.completedFuture(calls.incrementAndGet()))
+                .interval(Duration.ofMillis(10))
+                .scheduler(scheduler)
+                .executor(Runnable::run)
+                .build();
+
+        cache.whenLoaded().get(5, TimeUnit.SECONDS);
+        cache.close();
+        Thread.sleep(20); // a refresh may have started just before closing
+        int closedAt = calls.get();
+        Thread.sleep(100);
+        Assertions.assertEquals(closedAt, calls.get());
+        Assertions.assertTrue(cache.refresh().isCompletedExceptionally());
+    }
+}
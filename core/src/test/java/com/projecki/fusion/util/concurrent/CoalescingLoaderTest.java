@@ -0,0 +1,94 @@
+package com.projecki.fusion.util.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class CoalescingLoaderTest {
+
+    private final List<Set<Integer>> batches = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService scheduler;
+
+    @BeforeEach
+    void setUp() {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void coalesceTest() {
+
+        CoalescingLoader<Integer, String> loader = this.create(this::load, Duration.ofMillis(50), 100);
+        CompletableFuture<String> first = loader.load(1);
+        CompletableFuture<String> again = loader.load(1);
+        Map<Integer, CompletableFuture<String>> more = loader.loadAll(List.of(2, 3));
+
+        Assertions.assertSame(first, again);
+        Assertions.assertEquals("1", first.join());
+        Assertions.assertEquals("3", more.get(3).join());
+        Assertions.assertEquals(List.of(Set.of(1, 2, 3)), batches);
+        Assertions.assertEquals(1, loader.getStats().batches());
+    }
+
+    @Test
+    void batchSizeTest() {
+
+        CoalescingLoader<Integer, String> loader = this.create(this::load, Duration.ofHours(1), 2);
+        Map<Integer, CompletableFuture<String>> futures = loader.loadAll(List.of(1, 2, 3, 4, 5));
+
+        // full, so loaded without waiting for the window to end
+        futures.forEach((key, future) -> Assertions.assertEquals(String.valueOf(key), future.join()));
+        Assertions.assertEquals(List.of(Set.of(1, 2), Set.of(3, 4), Set.of(5)), batches);
+    }
+
+    @Test
+    void missingAndFailureTest() {
+
+        CoalescingLoader<Integer, String> missing = this.create(keys -> CompletableFuture.completedFuture(Map.of()), Duration.ZERO, 10);
+        Assertions.assertNull(missing.load(1).join());
+        CoalescingLoader<Integer, String> empty = this.create(keys -> CompletableFuture.completedFuture(null), Duration.ZERO, 10);
+        Assertions.assertNull(empty.load(1).join());
+
+        CoalescingLoader<Integer, String> failing = this.create(keys -> {
+            throw new IllegalStateException("test");
+        }, Duration.ZERO, 10);
+        CompletableFuture<String> future = failing.load(1);
+        CompletionException e = Assertions.assertThrows(CompletionException.class, future::join);
+        Assertions.assertTrue(e.getCause() instanceof IllegalStateException);
+
+        CoalescingLoader<Integer, String> noStage = this.create(keys -> null, Duration.ZERO, 10);
+        e = Assertions.assertThrows(CompletionException.class, noStage.load(1)::join);
+        Assertions.assertTrue(e.getCause() instanceof NullPointerException);
+    }
+
+    private CompletableFuture<Map<Integer, String>> load(Set<Integer> keys) {
+        batches.add(keys);
+        return CompletableFuture.completedFuture(keys.stream().collect(Collectors.toMap(Function.identity(), String::valueOf)));
+    }
+
+    private CoalescingLoader<Integer, String> create(Function<Set<Integer>, CompletableFuture<Map<Integer, String>>> function,
+                                                     Duration window, int batchSize) {
+        return CoalescingLoader.<Integer, String>builder(function::apply)
+                .window(window)
+                .batchSize(batchSize)
+                .scheduler(scheduler)
+                .build();
+    }
+}
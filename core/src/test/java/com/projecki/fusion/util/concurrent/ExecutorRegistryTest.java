@@ -0,0 +1,89 @@
+package com.projecki.fusion.util.concurrent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ExecutorRegistryTest {
+
+    @Test
+    void blockWhenFullTest() throws InterruptedException {
+
+        AtomicInteger completed = new AtomicInteger();
+        ExecutorRegistry registry = new ExecutorRegistry(new ExecutorConfig(1, 1, 1));
+        // more than the queue can hold, so the submitting thread waits for space
+        for (int i = 0; i < 10000; i++) {
+            registry.io().execute(completed::incrementAndGet);
+        }
+
+        Assertions.assertTrue(registry.shutdown(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(10000, completed.get());
+    }
+
+    @Test
+    void callerRunsWhenFullTest() throws InterruptedException {
+
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorRegistry registry = new ExecutorRegistry(new ExecutorConfig(1, 1, 1));
+        registry.cpu().execute(() -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+
+        Assertions.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        AtomicInteger callerRuns = new AtomicInteger();
+        Thread caller = Thread.currentThread();
+        for (int i = 0; i < 2000; i++) {
+            registry.cpu().execute(() -> {
+                if (Thread.currentThread() == caller) {
+                    callerRuns.incrementAndGet();
+                }
+            });
+        }
+
+        Assertions.assertEquals(2000 - new ExecutorConfig().getCpuQueue(), callerRuns.get());
+        release.countDown();
+        Assertions.assertTrue(registry.shutdown(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void dedicatedThreadTest() throws InterruptedException {
+
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorRegistry registry = new ExecutorRegistry(new ExecutorConfig(1, 1, 1));
+        Thread thread = registry.newThread("Test Loop", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+
+        Assertions.assertTrue(thread.isDaemon());
+        Assertions.assertEquals("Test Loop", thread.getName());
+        Assertions.assertEquals(1, registry.getThreads().size());
+        release.countDown();
+        thread.join(5000);
+        Assertions.assertTrue(registry.getThreads().isEmpty());
+        Assertions.assertTrue(registry.shutdown(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void shutdownCancelsDelayedTest() throws InterruptedException {
+
+        AtomicInteger runs = new AtomicInteger();
+        ExecutorRegistry registry = new ExecutorRegistry(new ExecutorConfig(1, 1, 1));
+        registry.scheduled().schedule(runs::incrementAndGet, 1, TimeUnit.HOURS);
+        registry.scheduled().scheduleAtFixedRate(runs::incrementAndGet, 1, 1, TimeUnit.HOURS);
+        Assertions.assertTrue(registry.shutdown(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, runs.get());
+        Assertions.assertTrue(registry.getPools().values().stream().allMatch(ExecutorService::isTerminated));
+    }
+}
@@ -0,0 +1,82 @@
+package com.projecki.fusion.util.concurrent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time from submitting a task to a {@link NonBlockingExecutor}
+ * until the task has run, with the same 25 millisecond period as the GUI
+ * executor. A {@link Executors#newFixedThreadPool fixed thread pool} is
+ * measured as the baseline.
+ * <p>
+ * When {@code idle} is set, the threads are given time to park before
+ * each task, as they would between two clicks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NonBlockingExecutorBenchmark {
+
+    @Param({ "nonBlocking", "threadPool" })
+    private String executor;
+
+    @Param({ "1", "4" })
+    private int threads;
+
+    @Param({ "false", "true" })
+    private boolean idle;
+
+    private ExecutorService service;
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(NonBlockingExecutorBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @Setup
+    public void setUp() {
+        this.service = executor.equals("nonBlocking") ?
+                new NonBlockingExecutor("Benchmark", 25, threads) :
+                Executors.newFixedThreadPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.shutdownNow();
+    }
+
+    @Setup(Level.Invocation)
+    public void pause() throws InterruptedException {
+        if (idle) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Benchmark
+    public Object submitToRun() {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        service.execute(() -> future.complete(Boolean.TRUE));
+        return future.join();
+    }
+}
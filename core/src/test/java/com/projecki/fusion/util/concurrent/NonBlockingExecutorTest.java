@@ -0,0 +1,81 @@
+package com.projecki.fusion.util.concurrent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class NonBlockingExecutorTest {
+
+    @Test
+    void wakeUpTest() throws InterruptedException {
+
+        // the period is far longer than the test may take, so a task
+        // only runs in time if adding it wakes the parked thread
+        NonBlockingExecutor executor = new NonBlockingExecutor("Test", TimeUnit.MINUTES.toMillis(1));
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(50); // let the thread park
+            CountDownLatch latch = new CountDownLatch(1);
+            executor.execute(latch::countDown);
+            Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS), "task was not run");
+        }
+
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void multipleThreadsTest() throws InterruptedException {
+
+        int threads = 4;
+        NonBlockingExecutor executor = new NonBlockingExecutor("Test", TimeUnit.MINUTES.toMillis(1), threads);
+        CountDownLatch running = new CountDownLatch(threads);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < threads; i++) {
+            executor.execute(() -> {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        Assertions.assertTrue(running.await(5, TimeUnit.SECONDS), "tasks did not run in parallel");
+        release.countDown();
+
+        AtomicInteger count = new AtomicInteger();
+        for (int i = 0; i < 10_000; i++) {
+            executor.execute(count::incrementAndGet);
+        }
+
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(10_000, count.get());
+    }
+
+    @Test
+    void shutdownNowTest() throws InterruptedException {
+
+        NonBlockingExecutor executor = new NonBlockingExecutor("Test", 25);
+        CountDownLatch running = new CountDownLatch(1);
+        executor.execute(() -> {
+            running.countDown();
+            try {
+                Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            } catch (InterruptedException ignored) {
+            }
+        });
+
+        Assertions.assertTrue(running.await(5, TimeUnit.SECONDS));
+        Runnable pending = () -> {};
+        executor.execute(pending);
+        Assertions.assertEquals(List.of(pending), executor.shutdownNow());
+        Assertions.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(executor.isTerminated());
+    }
+}
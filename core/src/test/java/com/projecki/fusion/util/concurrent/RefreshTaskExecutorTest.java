@@ -0,0 +1,206 @@
+package com.projecki.fusion.util.concurrent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class RefreshTaskExecutorTest {
+
+    private static final long PERIOD = TimeUnit.MILLISECONDS.toNanos(5);
+
+    @Test
+    void activeTest() throws InterruptedException {
+
+        AtomicBoolean active = new AtomicBoolean(true);
+        RefreshTaskExecutor executor = new RefreshTaskExecutor(PERIOD);
+        Thread thread = new Thread(executor);
+        thread.start();
+        try {
+            CountDownLatch latch = new CountDownLatch(3);
+            RefreshTask task = new RefreshTask(PERIOD, latch::countDown);
+            executor.schedule(task, active::get);
+            Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS), "scheduled task did not run");
+
+            active.set(false);
+            Thread.sleep(50);
+            long runs = task.getStats().runs();
+            Thread.sleep(50);
+            Assertions.assertEquals(runs, task.getStats().runs(), "inactive task still ran");
+            Assertions.assertEquals(0, executor.getStats().scheduled());
+            Assertions.assertTrue(task.getStats().maxDrift() >= 0);
+        } finally {
+            executor.shutdown();
+            thread.join();
+        }
+    }
+
+    @Test
+    void removeTest() throws InterruptedException {
+
+        RefreshTaskExecutor executor = new RefreshTaskExecutor(PERIOD);
+        Thread thread = new Thread(executor);
+        thread.start();
+        try {
+            AtomicInteger count = new AtomicInteger();
+            RefreshTask task = new RefreshTask(PERIOD, count::incrementAndGet);
+            executor.schedule(task);
+            while (count.get() < 3) {
+                Thread.sleep(5);
+            }
+
+            executor.remove(task);
+            Thread.sleep(50);
+            int runs = count.get();
+            Thread.sleep(50);
+            Assertions.assertEquals(runs, count.get(), "removed task still ran");
+            Assertions.assertEquals(0, executor.getStats().scheduled());
+            Assertions.assertFalse(task.isCancelled());
+
+            executor.schedule(task);
+            while (count.get() < runs + 3) {
+                Thread.sleep(5);
+            }
+        } finally {
+            executor.shutdown();
+            thread.join();
+        }
+    }
+
+    @Test
+    void combinedTest() throws InterruptedException {
+
+        RefreshTaskExecutor executor = new RefreshTaskExecutor(PERIOD);
+        Thread thread = new Thread(executor);
+        thread.start();
+        try {
+            CountDownLatch latch1 = new CountDownLatch(1), latch2 = new CountDownLatch(1);
+            RefreshTask task = new CombinedRefreshTask(
+                    new RefreshTask(TimeUnit.MINUTES.toNanos(1), latch1::countDown),
+                    new RefreshTask(TimeUnit.MINUTES.toNanos(2), latch2::countDown));
+            executor.schedule(task);
+            task.reschedule(0);
+            Assertions.assertTrue(latch1.await(5, TimeUnit.SECONDS), "rescheduled first task did not run");
+            Assertions.assertTrue(latch2.await(5, TimeUnit.SECONDS), "rescheduled second task did not run");
+            Assertions.assertEquals(1, task.getStats().runs());
+        } finally {
+            executor.shutdown();
+            thread.join();
+        }
+    }
+
+    @Test
+    void scheduleTest() throws InterruptedException {
+
+        RefreshTaskExecutor executor = new RefreshTaskExecutor(PERIOD);
+        Thread thread = new Thread(executor);
+        thread.start();
+        try {
+            AtomicInteger count = new AtomicInteger();
+            RefreshTask task = new RefreshTask(PERIOD, count::incrementAndGet);
+            executor.schedule(task);
+            while (count.get() < 3) {
+                Thread.sleep(5);
+            }
+
+            task.cancel();
+            Thread.sleep(50);
+            int runs = count.get();
+            Thread.sleep(50);
+            Assertions.assertEquals(runs, count.get(), "cancelled task still ran");
+            Assertions.assertEquals(0, executor.getStats().scheduled());
+
+            CountDownLatch latch = new CountDownLatch(1);
+            RefreshTask slow = new RefreshTask(TimeUnit.MINUTES.toNanos(1), latch::countDown);
+            executor.schedule(slow);
+            slow.reschedule(0);
+            Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS), "rescheduled task did not run");
+        } finally {
+            executor.shutdown();
+            thread.join();
+        }
+    }
+
+    @Test
+    void refreshableTest() throws InterruptedException {
+
+        AtomicBoolean attached = new AtomicBoolean(true), active = new AtomicBoolean(true);
+        AtomicReference<RefreshTask> current = new AtomicReference<>();
+        Refreshable refreshable = current::get;
+        RefreshTaskExecutor executor = new RefreshTaskExecutor(PERIOD);
+        Thread thread = new Thread(executor);
+        thread.start();
+        try {
+            // scheduled before it has a task
+            executor.schedule(refreshable, attached::get, active::get);
+            AtomicInteger first = new AtomicInteger();
+            current.set(new RefreshTask(PERIOD, first::incrementAndGet));
+            executor.schedule(refreshable, attached::get, active::get);
+            while (first.get() < 3) {
+                Thread.sleep(5);
+            }
+            // replaced without being scheduled again
+            AtomicInteger second = new AtomicInteger();
+            current.set(new RefreshTask(PERIOD, second::incrementAndGet));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (second.get() < 3) {
+                Assertions.assertTrue(System.nanoTime() < deadline, "replaced task did not run");
+                Thread.sleep(5);
+            }
+
+            int runs = first.get();
+            Thread.sleep(50);
+            Assertions.assertEquals(runs, first.get(), "replaced task still ran");
+
+            active.set(false);
+            Thread.sleep(50);
+            runs = second.get();
+            Thread.sleep(50);
+            Assertions.assertEquals(runs, second.get(), "inactive task still ran");
+            Assertions.assertEquals(1, executor.getStats().scheduled());
+
+            active.set(true);
+            executor.schedule(refreshable, attached::get, active::get);
+            while (second.get() < runs + 3) {
+                Thread.sleep(5);
+            }
+
+            attached.set(false);
+            Thread.sleep(50);
+            Assertions.assertEquals(0, executor.getStats().scheduled());
+        } finally {
+            executor.shutdown();
+            thread.join();
+        }
+    }
+
+    @Test
+    void executeOverrideTest() throws InterruptedException {
+
+        AtomicInteger searches = new AtomicInteger();
+        RefreshTaskExecutor executor = new RefreshTaskExecutor(PERIOD) {
+
+            @Override
+            protected void execute(long currentTime) {
+                searches.incrementAndGet();
+                super.execute(currentTime);
+            }
+        };
+
+        Thread thread = new Thread(executor);
+        thread.start();
+        try {
+            CountDownLatch latch = new CountDownLatch(3);
+            executor.schedule(new RefreshTask(PERIOD, latch::countDown));
+            Assertions.assertTrue(latch.await(5, TimeUnit.SECONDS), "scheduled task did not run");
+            Assertions.assertTrue(searches.get() >= 3);
+        } finally {
+            executor.shutdown();
+            thread.join();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.projecki.fusion.util.concurrent;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class StripedExecutorTest {
+
+    @Test
+    void orderedPerKeyTest() throws InterruptedException {
+
+        Map<String, List<Integer>> results = new ConcurrentHashMap<>();
+        StripedExecutor executor = new StripedExecutor("Test", 4, 1024, StripedExecutor.OverflowPolicy.BLOCK);
+        for (int i = 0; i < 1000; i++) {
+            int value = i;
+            String key = "channel-" + i % 8;
+            executor.execute(key, () -> results.computeIfAbsent(key, k -> new ArrayList<>()).add(value));
+        }
+
+        executor.close();
+        Assertions.assertEquals(8, results.size());
+        results.values().forEach(values -> {
+            Assertions.assertEquals(125, values.size());
+            for (int i = 1; i < values.size(); i++) {
+                Assertions.assertTrue(values.get(i - 1) < values.get(i), "out of order: " + values);
+            }
+        });
+        Assertions.assertEquals(1000, executor.getStats().completed());
+    }
+
+    @Test
+    void dropOldestTest() throws InterruptedException {
+
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        StripedExecutor executor = new StripedExecutor("Test", 1, 2, StripedExecutor.OverflowPolicy.DROP_OLDEST);
+        executor.execute("key", () -> {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+
+        Assertions.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 5; i++) {
+            executor.execute("key", () -> {
+            });
+        }
+
+        Assertions.assertEquals(2, executor.getQueueDepths()[0]);
+        Assertions.assertEquals(3, executor.getStats().dropped());
+        release.countDown();
+        executor.close();
+    }
+
+    @Test
+    void closeDrainsTest() {
+
+        AtomicBoolean interrupted = new AtomicBoolean();
+        List<Integer> results = new CopyOnWriteArrayList<>();
+        StripedExecutor executor = new StripedExecutor("Test", 1, 16, StripedExecutor.OverflowPolicy.BLOCK);
+        executor.execute("key", () -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+        });
+        for (int i = 0; i < 10; i++) {
+            int value = i;
+            executor.execute("key", () -> results.add(value));
+        }
+
+        executor.close();
+        Assertions.assertFalse(interrupted.get());
+        Assertions.assertEquals(10, results.size());
+
+        // dropped instead of throwing on the submitting thread
+        executor.execute("key", () -> results.add(-1));
+        Assertions.assertEquals(10, results.size());
+        Assertions.assertEquals(1, executor.getStats().dropped());
+    }
+
+    @Test
+    void closeRaceTest() throws InterruptedException {
+
+        for (int i = 0; i < 200; i++) {
+
+            StripedExecutor executor = new StripedExecutor("Test", 1, 16, StripedExecutor.OverflowPolicy.BLOCK);
+            CountDownLatch started = new CountDownLatch(1);
+            Thread submitter = new Thread(() -> {
+                started.countDown();
+                for (int j = 0; j < 1000; j++) {
+                    executor.execute("key", () -> {});
+                }
+            });
+
+            submitter.start();
+            started.await();
+            executor.close();
+            submitter.join();
+            // every task offered while closing either ran or was dropped, none are left behind
+            StripedExecutor.Stats stats = executor.getStats();
+            Assertions.assertEquals(0, stats.queued());
+            Assertions.assertEquals(1000, stats.completed() + stats.dropped());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.projecki.fusion.util.concurrent;
+
+import com.projecki.fusion.util.concurrent.TimingWheel.Timeout;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TimingWheelTest {
+
+    @Test
+    void deadlineTest() {
+
+        // deadlines across every wheel, including past the largest one
+        TimingWheel<Long> wheel = new TimingWheel<>(10, 0);
+        Random random = new Random(42);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            long deadline = (long) Math.pow(10, random.nextDouble() * 9);
+            deadlines.add(deadline);
+            wheel.schedule(deadline, deadline);
+        }
+
+        List<Long> handled = new ArrayList<>();
+        for (long time = 0; wheel.size() > 0; time += 1 + random.nextInt(1_000_000)) {
+
+            long currentTime = time;
+            wheel.advance(currentTime, timeout -> {
+                Assertions.assertTrue(timeout.deadline() <= currentTime, "handled before deadline");
+                Assertions.assertTrue(timeout.deadline() > currentTime - 1_000_010, "handled late");
+                handled.add(timeout.value());
+            });
+        }
+
+        deadlines.sort(null);
+        handled.sort(null);
+        Assertions.assertEquals(deadlines, handled);
+    }
+
+    @Test
+    void cancelTest() {
+
+        TimingWheel<String> wheel = new TimingWheel<>(1, 0);
+        Timeout<String> first = wheel.schedule("first", 100);
+        Timeout<String> second = wheel.schedule("second", 100_000);
+        Assertions.assertEquals(2, wheel.size());
+        Assertions.assertTrue(wheel.cancel(second));
+        Assertions.assertFalse(wheel.cancel(second));
+        Assertions.assertFalse(second.isScheduled());
+
+        List<String> handled = new ArrayList<>();
+        wheel.advance(200_000, timeout -> handled.add(timeout.value()));
+        Assertions.assertEquals(List.of("first"), handled);
+        Assertions.assertFalse(first.isScheduled());
+        Assertions.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void rescheduleTest() {
+
+        TimingWheel<String> wheel = new TimingWheel<>(1, 0);
+        Timeout<String> timeout = wheel.schedule("task", 5000);
+        wheel.reschedule(timeout, 10);
+
+        List<Long> handled = new ArrayList<>();
+        wheel.advance(10, t -> {
+            handled.add(t.deadline());
+            wheel.reschedule(t, t.deadline() + 10); // run again like a periodic task
+        });
+        wheel.advance(20, t -> handled.add(t.deadline()));
+        Assertions.assertEquals(List.of(10L, 20L), handled);
+        Assertions.assertEquals(0, wheel.size());
+    }
+}
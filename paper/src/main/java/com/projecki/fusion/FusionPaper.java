@@ -6,6 +6,7 @@ import com.comphenix.protocol.ProtocolManager;
 import com.destroystokyo.paper.profile.PlayerProfile;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.projecki.fusion.chat.pipeline.ChatPipeline;
+import com.projecki.fusion.command.MetricsCommand;
 import com.projecki.fusion.command.party.PartyCommand;
 import com.projecki.fusion.config.PaperHermesConfig;
 import com.projecki.fusion.config.PaperLocalYamlConfig;
@@ -58,7 +59,11 @@ import com.projecki.fusion.util.NameResolver;
 import com.projecki.fusion.util.NetworkChat;
 import com.projecki.fusion.util.PlayerHeadCreator;
 import com.projecki.fusion.util.SkinResolver;
+import com.projecki.fusion.util.concurrent.ExecutorConfig;
+import com.projecki.fusion.util.concurrent.ExecutorRegistry;
+import com.projecki.fusion.util.concurrent.InstrumentedThreadPoolExecutor;
 import com.projecki.fusion.util.concurrent.RefreshTaskExecutor;
+import com.projecki.fusion.util.concurrent.StripedExecutor;
 import com.projecki.fusion.util.teleport.BungeeServerTransport;
 import io.lettuce.core.RedisClient;
 import io.lettuce.core.RedisURI;
@@ -75,6 +80,7 @@ import org.bukkit.scheduler.BukkitRunnable;
 
 import java.io.File;
 import java.time.Duration;
+import java.time.temporal.ChronoUnit;
 import java.util.Optional;
 import java.util.concurrent.*;
 import java.util.logging.Level;
@@ -134,6 +140,9 @@ public class FusionPaper extends JavaPlugin {
     private final PaperLocalYamlConfig<SqlConfig> sqlConfigLoader =
             new PaperLocalYamlConfig<>(SqlConfig.class, this, "sql.yml");
 
+    private final PaperLocalYamlConfig<ExecutorConfig> executorConfigLoader =
+            new PaperLocalYamlConfig<>(ExecutorConfig.class, this, "executors.yml");
+
     private final PaperLocalYamlConfig<RedisConfig> redisConfigLoader =
             new PaperLocalYamlConfig<>(RedisConfig.class, this, "redis.yml");
     private RedisConfig redisConfig;
@@ -160,6 +169,16 @@ public class FusionPaper extends JavaPlugin {
     @Override
     public void onLoad() {
         PaperBootstrap.bootstrap();
+        // the shared pools are set up first as everything else may use them
+        ExecutorConfig executorConfig = new ExecutorConfig();
+        try {
+            executorConfig = executorConfigLoader.loadConfig().get().orElse(executorConfig);
+        } catch (InterruptedException | ExecutionException e) {
+            getLogger().log(Level.SEVERE, "Could not load the executor config, using the defaults", e);
+        }
+
+        FusionCore.setExecutors(new ExecutorRegistry(executorConfig));
+
         protocolManager = ProtocolLibrary.getProtocolManager();
         users = new PaperUsers();
         GUIManager.initialize(this);
@@ -215,9 +234,19 @@ public class FusionPaper extends JavaPlugin {
             redisCommands = redisClient.connect().async();
             redisPubSubCommands = redisClient.connectPubSub().async();
 
-            messageClient = new RedisMessageClient(redisCommands, redisPubSubCommands);
+            messageClient = new RedisMessageClient(redisClient, RedisMessageClient.DEFAULT_BATCH_SIZE,
+                    Duration.of(redisConfig.getMessageLatencyMicros(), ChronoUnit.MICROS));
+            messageClient.setBinaryCodec(redisConfig.isBinaryMessages());
+            messageClient.setLoopback(redisConfig.isLoopback());
+            if (redisConfig.getCompressionThreshold() > 0) {
+                messageClient.setCompression(redisConfig.getCompressionThreshold(), null);
+            }
+
+            messageClient.setDispatchExecutor(new StripedExecutor("Message Dispatch", 4, 1024, StripedExecutor.OverflowPolicy.CALLER_RUNS));
+            NetworkChat.Receiver networkChatReceiver = new NetworkChat.Receiver(this);
+            NetworkChat.setTargetedRouting(redisConfig.isTargetedChat());
             messageClient.subscribe(NetworkChat.CHANNEL);
-            messageClient.registerMessageListener(new NetworkChat.Receiver(this));
+            messageClient.registerMessageListener(networkChatReceiver);
 
             // Player info storage
             playerStorage = new RedisPlayerStorage(redisCommands);
@@ -229,6 +258,7 @@ public class FusionPaper extends JavaPlugin {
             ServerInfo.get(this, serverInfoConfig).thenAccept(possibleServerInfo ->
                     possibleServerInfo.ifPresentOrElse(s -> {
                         serverInfo = s;
+                        networkChatReceiver.listenOnServerChannel(messageClient, serverInfo.getServerName());
 
                         // run all this once we get the finished server info
                         serverDataStorage.storeInfo(new BasicServerData(serverInfo.getServerName(),
@@ -266,10 +296,15 @@ public class FusionPaper extends JavaPlugin {
         // commands
         commandManager = new PaperCommandManager(this);
         commandManager.registerCommand(new PartyCommand(commandManager));
+        commandManager.registerCommand(new MetricsCommand(FusionCore.getMetrics()));
 
-        // setup shared executor service
-        databaseExecutorService = new ThreadPoolExecutor(1, 6, 30, TimeUnit.SECONDS,
-                new LinkedBlockingQueue<>());
+        // setup database executor service, which runs work in the order it was
+        // submitted and never blocks the submitter, as it is used from the main thread
+        var databaseExecutor = new InstrumentedThreadPoolExecutor("Fusion Database", 1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), FusionCore.getExecutors().threadFactory("Fusion Database"),
+                new ThreadPoolExecutor.AbortPolicy());
+        databaseExecutor.allowCoreThreadTimeOut(true);
+        databaseExecutorService = databaseExecutor;
 
         // name resolver
         var nameStorage = new NameResolver.RedisNameResolverStorage(redisCommands);
@@ -298,8 +333,7 @@ public class FusionPaper extends JavaPlugin {
 
         // user manager
         this.userTaskExecutor = new UserTaskExecutor(users);
-        this.userTaskThread = new Thread(userTaskExecutor, "User Refresh");
-        this.userTaskThread.start();
+        this.userTaskThread = FusionCore.getExecutors().newThread("User Refresh", userTaskExecutor);
         getServer().getPluginManager().registerEvents(users, this);
 
         // register glow enchantment
@@ -359,13 +393,19 @@ public class FusionPaper extends JavaPlugin {
                 e.printStackTrace();
             }
         }
+        // write the statistics that are still pending while the database executor is running
+        if (statisticLoader != null)
+            statisticLoader.close();
+
         // safely shutdown database executor
         Bukkit.getLogger().info("Awaiting database threads to finish... (This may take up to 10 minutes)");
         boolean successful = false;
 
         try {
+            long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(10);
             databaseExecutorService.shutdown();
-            successful = databaseExecutorService.awaitTermination(10, TimeUnit.MINUTES);
+            successful = databaseExecutorService.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS) &&
+                    FusionCore.getExecutors().shutdown(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
         } catch (InterruptedException e) {
             e.printStackTrace();
         } finally {
@@ -382,6 +422,9 @@ public class FusionPaper extends JavaPlugin {
         if (sqlConnectionPool != null) // could be null if not configured correctly on enable
             sqlConnectionPool.shutdown();
 
+        if (messageClient != null)
+            messageClient.shutdown();
+
         if (redisClient != null) // could be null if not configured correctly on enable
             redisClient.shutdown();
 
@@ -569,6 +612,9 @@ public class FusionPaper extends JavaPlugin {
      * It's important to use this service for database operations as when the server stops,
      * it will wait on the main thread to ensure all submitted database transactions are
      * completed so that there is no data lost when saving data near a server stop.
+     * <p>
+     * This runs on a single thread, separate from the shared {@link ExecutorRegistry#io() IO pool},
+     * so work runs in the order it was submitted and submitting never blocks.
      *
      * @return shared {@link ExecutorService} for data operations
      */
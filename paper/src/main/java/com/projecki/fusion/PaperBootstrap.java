@@ -14,12 +14,12 @@ import java.util.stream.Stream;
 public final class PaperBootstrap {
 
     /**
-     * Call {@link Bootstrap#bootstrap(ClassLoader...)} using the
+     * Call {@link FusionBootstrap#bootstrap(ClassLoader...)} using the
      * {@link PluginClassLoader class loaders} from all {@link Plugin plugins}
      * that are currently available via {@link PluginManager#getPlugins()}.
      */
     public static void bootstrap() {
-        Bootstrap.bootstrap(
+        FusionBootstrap.bootstrap(
                 Stream.of(Bukkit.getPluginManager().getPlugins())
                         .map(Plugin::getClass)
                         .map(Class::getClassLoader)
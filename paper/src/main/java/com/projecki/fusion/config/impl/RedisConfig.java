@@ -6,6 +6,11 @@ public class RedisConfig {
     private int port;
     private String password;
     private int database;
+    private boolean binaryMessages;
+    private int compressionThreshold;
+    private long messageLatencyMicros = 500;
+    private boolean targetedChat;
+    private boolean loopback;
 
     public RedisConfig() {}
 
@@ -31,4 +36,24 @@ public class RedisConfig {
     public String getPassword() {
         return password;
     }
+
+    public boolean isBinaryMessages() {
+        return binaryMessages;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public long getMessageLatencyMicros() {
+        return messageLatencyMicros;
+    }
+
+    public boolean isTargetedChat() {
+        return targetedChat;
+    }
+
+    public boolean isLoopback() {
+        return loopback;
+    }
 }
@@ -15,7 +15,7 @@ public class PaperCurrencyPlaceholder extends PlaceholderExpansion {
             return "INVALID_CURRENCY";
         }
 
-        long amount = FusionPaper.getPlayerCurrencyCache().getCachedBalance(currency, player.getUniqueId()).orElse(-1L);
+        long amount = FusionPaper.getPlayerCurrencyCache().getCachedBalance(currency, player.getUniqueId(), -1L);
         return currency.format(amount);
     }
 
@@ -5,6 +5,7 @@ import com.projecki.fusion.network.PlayerStorage;
 import com.projecki.fusion.network.redis.RedisPlayerStorage;
 import com.projecki.fusion.server.BasicServerData;
 import com.projecki.fusion.server.ServerDataStorage;
+import com.projecki.fusion.util.KeyedValueCache;
 import com.projecki.fusion.util.ValueCache;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import org.bukkit.Bukkit;
@@ -14,17 +15,29 @@ import org.jetbrains.annotations.NotNull;
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public class PlayerCountPlaceholder extends PlaceholderExpansion {
 
     private final PlayerStorage playerStorage = new RedisPlayerStorage(FusionPaper.getRedisCommands());
-    private final ValueCache<Long> networkCount = ValueCache.create(Duration.ofMillis(500), playerStorage::getPlayerCount);
+    private final ValueCache<Long> networkCount = ValueCache.builder(playerStorage::getPlayerCount)
+            .interval(Duration.ofMillis(500))
+            .name("network-player-count")
+            .build();
 
-    private final Map<String, ValueCache<Integer>> playerCounts = new HashMap<>();
+    // the counts of every requested server are refreshed together in one batch
+    private final KeyedValueCache<String, Integer> playerCounts;
     private final ServerDataStorage serverDataStorage;
 
     public PlayerCountPlaceholder(ServerDataStorage serverDataStorage) {
         this.serverDataStorage = serverDataStorage;
+        this.playerCounts = KeyedValueCache.<String, Integer>builder(this::loadPlayerCounts)
+                .interval(Duration.ofMillis(500))
+                .expireAfterAccess(Duration.ofMinutes(1))
+                .maxKeys(256)
+                .name("server-player-count")
+                .build();
     }
 
     @Override
@@ -48,29 +61,26 @@ public class PlayerCountPlaceholder extends PlaceholderExpansion {
 
         switch (params.toLowerCase()) {
             case "all" -> {
-                return String.valueOf(networkCount.getValue());
+                Long count = networkCount.getValue();
+                return count != null ? String.valueOf(count) : "...";
             }
             case "here" -> {
                 return String.valueOf(Bukkit.getOnlinePlayers().size());
             }
             default -> {
-                var cache = playerCounts.get(params);
-
-                // if there is no player count cache for this server, we need to make one
-                if (cache == null) {
-                    @NotNull String finalParams = params;
-                    cache = ValueCache.create(Duration.ofMillis(500),
-                            () -> serverDataStorage.getInfo(finalParams, BasicServerData.class)
-                                    .thenApply(opt -> opt.flatMap(BasicServerData::getPlayerCount))
-                                    .thenApply(opt -> opt.orElse(-1)));
-                    playerCounts.put(params, cache);
-                    return "...";
-                } else {
-                    return String.valueOf(cache.getValue());
-                }
-
-
+                // servers that are not cached yet are loaded in the background
+                Integer count = playerCounts.get(params);
+                return count != null ? String.valueOf(count) : "...";
             }
         }
     }
+
+    private CompletableFuture<Map<String, Integer>> loadPlayerCounts(Set<String> servers) {
+        return serverDataStorage.getInfo(servers, BasicServerData.class)
+                .thenApply(data -> {
+                    Map<String, Integer> counts = new HashMap<>();
+                    data.forEach((server, opt) -> counts.put(server, opt.flatMap(BasicServerData::getPlayerCount).orElse(-1)));
+                    return counts;
+                });
+    }
 }
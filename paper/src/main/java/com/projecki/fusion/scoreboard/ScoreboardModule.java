@@ -1,6 +1,7 @@
 package com.projecki.fusion.scoreboard;
 
 import com.projecki.fusion.user.PaperUserModule;
+import com.projecki.fusion.user.UserTaskExecutor;
 import com.projecki.fusion.util.concurrent.CombinedRefreshTask;
 import com.projecki.fusion.util.concurrent.RefreshTask;
 import com.projecki.fusion.util.concurrent.Refreshable;
@@ -24,7 +25,8 @@ public class ScoreboardModule extends PaperUserModule implements Refreshable {
 
     /**
      * Set the specified {@link RefreshTask} combining it with
-     * the current {@link #refreshTask()}, if one is present.
+     * the current {@link #refreshTask()}, if one is present,
+     * and have the {@link UserTaskExecutor} pick it up.
      *
      * @param refreshTask The {@link RefreshTask} to set.
      */
@@ -32,6 +34,9 @@ public class ScoreboardModule extends PaperUserModule implements Refreshable {
         this.refreshTask = this.refreshTask != null ?
                 new CombinedRefreshTask(this.refreshTask, refreshTask) :
                 refreshTask;
+        if (this.object() != null) { // otherwise picked up once added
+            UserTaskExecutor.schedule(this.object(), this);
+        }
     }
 
     /**
@@ -662,6 +662,7 @@ public class GUI implements Refreshable {
                 Bukkit.getLogger().warning("Task in unopened GUI: " + this.getClass().getSimpleName());
             }
         });
+        GUIManager.INSTANCE.schedule(menu);
         return this;
     }
 
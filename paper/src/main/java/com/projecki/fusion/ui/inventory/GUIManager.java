@@ -5,7 +5,9 @@ import com.comphenix.protocol.PacketType.Play.Server;
 import com.comphenix.protocol.ProtocolManager;
 import com.comphenix.protocol.events.*;
 import com.comphenix.protocol.injector.GamePhase;
+import com.projecki.fusion.FusionCore;
 import com.projecki.fusion.ui.inventory.icon.Icon;
+import com.projecki.fusion.ui.inventory.icon.IconAccess;
 import com.projecki.fusion.util.concurrent.NonBlockingExecutor;
 import com.projecki.fusion.util.concurrent.RefreshTask;
 import com.projecki.fusion.util.concurrent.RefreshTaskExecutor;
@@ -22,13 +24,16 @@ import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.util.NumberConversions;
+import org.jetbrains.annotations.ApiStatus.Internal;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
@@ -42,6 +47,7 @@ import static com.google.common.base.Preconditions.checkState;
 public class GUIManager implements WindowManager<GUIMenu>, PacketListener {
 
     static GUIManager INSTANCE;
+    private static final long TASK_PERIOD = TimeUnit.MILLISECONDS.toNanos(50);
 
     /**
      * Initialize the {@link GUIManager} singleton instance.
@@ -81,6 +87,38 @@ public class GUIManager implements WindowManager<GUIMenu>, PacketListener {
         }
     }
 
+    /**
+     * Schedule the current tasks of the given {@link Icon} to
+     * run for as long as it is shown in an open menu. This
+     * method is for internal use only.
+     *
+     * @param icon The icon to schedule the tasks of.
+     */
+    @Internal
+    public static void schedule(Icon icon) {
+
+        GUIManager manager = INSTANCE;
+        if (manager != null) {
+            manager.scheduleIcon(icon);
+        }
+    }
+
+    /**
+     * Stop running the refresh task of the given {@link Icon}
+     * once it is no longer shown in any menu. This method is
+     * for internal use only.
+     *
+     * @param icon The icon to stop the refresh task of.
+     */
+    @Internal
+    public static void unschedule(Icon icon) {
+
+        GUIManager manager = INSTANCE;
+        if (manager != null) {
+            manager.taskExecutor.remove(icon.refreshTask());
+        }
+    }
+
     private final Plugin plugin;
     private final ListeningWhitelist clientbound, serverbound;
     private final AtomicInteger containerId = new AtomicInteger(1);
@@ -88,7 +126,7 @@ public class GUIManager implements WindowManager<GUIMenu>, PacketListener {
 
     private final Thread taskThread;
     private final RefreshTaskExecutor taskExecutor;
-    private final Executor executor = new NonBlockingExecutor("GUI Actions", 25);
+    private final Executor executor = new NonBlockingExecutor(FusionCore.getExecutors().threadFactory("GUI Actions"), 25);
 
     private GUIManager(Plugin plugin) {
         this.plugin = plugin;
@@ -114,9 +152,8 @@ public class GUIManager implements WindowManager<GUIMenu>, PacketListener {
                         Client.ITEM_NAME, // ServerboundRenameItemPacket
                         Client.CLOSE_WINDOW // ServerboundContainerClosePacket
                 ).build();
-        this.taskExecutor = new GUITaskExecutor(this);
-        this.taskThread = new Thread(taskExecutor, "GUI Refresh");
-        this.taskThread.start();
+        this.taskExecutor = new RefreshTaskExecutor("GUI Refresh", TASK_PERIOD);
+        this.taskThread = FusionCore.getExecutors().newThread("GUI Refresh", taskExecutor);
     }
 
     /**
@@ -198,7 +235,29 @@ public class GUIManager implements WindowManager<GUIMenu>, PacketListener {
         if (previous != null) {
             // Cleanup the previous menu if it is present
             previous.window().cleanup();
+            this.unschedule(previous);
         }
+        // The menu may have been created with its tasks before it was opened
+        this.schedule(menu);
+        this.scheduleIcon(menu.cursor());
+        for (Icon icon : menu.icons()) {
+
+            if (icon != null) {
+                this.scheduleIcon(icon);
+            }
+        }
+    }
+
+    /**
+     * Schedule the current task of the {@link GUI} of the
+     * given menu to run for as long as the menu is open.
+     *
+     * @param menu The menu to schedule the task of.
+     */
+    void schedule(GUIMenu menu) {
+        GUI gui = menu.gui();
+        RefreshTask task = gui.refreshTask();
+        this.taskExecutor.schedule(task, () -> gui.refreshTask() == task && this.isCached(menu));
     }
 
     /**
@@ -209,47 +268,34 @@ public class GUIManager implements WindowManager<GUIMenu>, PacketListener {
      */
     @Override
     public void clear(Player player) {
-        this.menus.remove(player.getUniqueId());
+        this.unschedule(this.menus.remove(player.getUniqueId()));
     }
 
-    private static final class GUITaskExecutor extends RefreshTaskExecutor {
+    private void scheduleIcon(Icon icon) {
+        RefreshTask refreshTask = icon.refreshTask();
+        RefreshTask errorTask = icon.errorTask();
+        this.taskExecutor.schedule(refreshTask, () -> icon.refreshTask() == refreshTask &&
+                IconAccess.isShown(icon, this::isCached));
+        // Error tasks only run once, so they do not need to be shown
+        this.taskExecutor.schedule(errorTask, () -> icon.errorTask() == errorTask);
+    }
 
-        private static final long PERIOD = ONE_MILLIS * 50;
-        private final GUIManager manager;
-        private final Object refreshLock = new Object();
+    private void unschedule(@Nullable WindowEntry<GUIMenu> entry) {
 
-        GUITaskExecutor(GUIManager manager) {
-            super(PERIOD);
-            this.manager = manager;
+        if (entry != null) {
+            this.taskExecutor.remove(entry.window().gui().refreshTask());
         }
+    }
 
-        @Override
-        protected void execute(long currentTime) {
-
-            for (WindowEntry<GUIMenu> entry : manager.menus.values()) {
-
-                RefreshTask guiTask = entry.window().gui().refreshTask();
-                if (guiTask != null && guiTask.shouldRun(currentTime)) {
-                    guiTask.execute(currentTime);
-                }
-
-                for (Icon icon : entry.window().icons()) {
-
-                    if (icon != null) {
+    private boolean isCached(GUIMenu menu) {
 
-                        RefreshTask iconTask = icon.refreshTask();
-                        if (iconTask != null && iconTask.shouldRun(currentTime)) {
-                            iconTask.execute(currentTime);
-                        }
-
-                        RefreshTask errorTask = icon.errorTask();
-                        if (errorTask != null && errorTask.shouldRun(currentTime)) {
-                            errorTask.execute(currentTime);
-                        }
-                    }
-                }
-            }
+        Player player = menu.player();
+        if (player == null) {
+            return false;
         }
+
+        WindowEntry<GUIMenu> entry = menus.get(player.getUniqueId());
+        return entry != null && entry.window() == menu;
     }
 
     private record MenuListener(GUIManager manager) implements Listener {
@@ -287,6 +333,7 @@ public class GUIManager implements WindowManager<GUIMenu>, PacketListener {
 
             Player player = event.getPlayer();
             WindowEntry<GUIMenu> entry = manager.menus.remove(player.getUniqueId());
+            manager.unschedule(entry);
             if (entry != null) {
                 manager.execute(() -> {
                     try {
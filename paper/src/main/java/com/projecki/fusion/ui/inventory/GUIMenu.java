@@ -232,6 +232,7 @@ public class GUIMenu implements Window {
         IconAccess.removeListener(icons[slot], icon, this, slot);
         this.icons[slot] = icon;
         IconAccess.addListener(icon, this, slot);
+        this.schedule(icon);
         this.update(slot);
     }
 
@@ -291,6 +292,7 @@ public class GUIMenu implements Window {
             IconAccess.removeListener(display[slot], icon, this, slot);
             display[slot] = icon;
             IconAccess.addListener(icon, this, slot);
+            this.schedule(icon);
         }
 
         this.update(true, offset + length);
@@ -571,6 +573,19 @@ public class GUIMenu implements Window {
         }, 4L);
     }
 
+    /**
+     * Schedule the tasks of an icon that was set
+     * while this menu is open.
+     *
+     * @param icon The icon that was set.
+     */
+    private void schedule(Icon icon) {
+
+        if (icon != null && this.player != null) {
+            GUIManager.schedule(icon);
+        }
+    }
+
     /**
      * Cleanup this GUI after it has been closed
      * cancelling tasks etc.
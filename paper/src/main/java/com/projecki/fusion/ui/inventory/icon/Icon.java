@@ -3,6 +3,7 @@ package com.projecki.fusion.ui.inventory.icon;
 import com.destroystokyo.paper.profile.PlayerProfile;
 import com.projecki.fusion.item.ItemBuilder;
 import com.projecki.fusion.ui.inventory.GUI;
+import com.projecki.fusion.ui.inventory.GUIManager;
 import com.projecki.fusion.ui.inventory.GUIMenu;
 import com.projecki.fusion.ui.inventory.icon.click.Action;
 import com.projecki.fusion.ui.inventory.icon.click.Click;
@@ -251,6 +252,7 @@ public class Icon implements WindowIcon, Erroneous, Refreshable {
             this.errorItem = null;
             this.sendUpdate();
         });
+        GUIManager.schedule(this);
     }
 
     /**
@@ -532,6 +534,7 @@ public class Icon implements WindowIcon, Erroneous, Refreshable {
                 this.item(item);
             }
         });
+        GUIManager.schedule(this);
         return this;
     }
 
@@ -575,6 +578,7 @@ public class Icon implements WindowIcon, Erroneous, Refreshable {
                 this.errorItem = null;
                 this.sendUpdate();
             });
+            GUIManager.schedule(this);
         }
     }
 
@@ -1,6 +1,7 @@
 package com.projecki.fusion.ui.inventory.icon;
 
 import com.projecki.fusion.ui.inventory.GUI;
+import com.projecki.fusion.ui.inventory.GUIManager;
 import com.projecki.fusion.ui.inventory.GUIMenu;
 import com.projecki.fusion.ui.inventory.icon.click.Click;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
@@ -9,6 +10,8 @@ import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.ApiStatus.Internal;
 
+import java.util.function.Predicate;
+
 /**
  * @since April 09, 2022
  * @author Andavin
@@ -91,8 +94,36 @@ public final class IconAccess {
                 IntSet slots = icon.itemUpdateListeners.get(menu);
                 if (slots != null && slots.remove(slot) && slots.isEmpty()) {
                     icon.itemUpdateListeners.remove(menu);
+                    if (icon.itemUpdateListeners.isEmpty()) {
+                        GUIManager.unschedule(icon);
+                    }
                 }
             }
         }
     }
+
+    /**
+     * Determine whether the given icon is shown in any of the
+     * menus that match the predicate. This method is for internal
+     * use only.
+     *
+     * @param icon The icon to check.
+     * @param open The predicate of whether a menu is open.
+     * @return If the icon is shown in an open menu.
+     */
+    @Internal
+    public static boolean isShown(Icon icon, Predicate<GUIMenu> open) {
+
+        synchronized (icon.mutex) {
+            // Usually only the one menu that the icon is in
+            for (GUIMenu menu : icon.itemUpdateListeners.keySet()) {
+
+                if (open.test(menu)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
 }
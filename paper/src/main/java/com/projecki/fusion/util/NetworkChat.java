@@ -1,12 +1,17 @@
 package com.projecki.fusion.util;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.projecki.fusion.FusionPaper;
 import com.projecki.fusion.message.MessageClient;
 import com.projecki.fusion.redis.pubsub.message.impl.chat.BroadcastMessageCrossServer;
 import com.projecki.fusion.redis.pubsub.message.impl.chat.MessagePlayerCrossServer;
 import net.kyori.adventure.text.Component;
+import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 
+import java.time.Duration;
+import java.util.Locale;
 import java.util.UUID;
 import java.util.logging.Level;
 
@@ -15,6 +20,38 @@ public class NetworkChat {
 
     public static final String CHANNEL = "network-chat";
 
+    // the server each player was last seen on, to avoid a lookup for every message
+    private static final Cache<UUID, String> PLAYER_SERVERS = CacheBuilder.newBuilder()
+            .concurrencyLevel(2)
+            .maximumSize(5000)
+            .expireAfterWrite(Duration.ofSeconds(10))
+            .build();
+    private static volatile boolean targeted;
+
+    /**
+     * Get the channel that messages for a specific server are sent on
+     * when {@link #setTargetedRouting(boolean) targeted routing} is enabled.
+     *
+     * @param serverName The name of the server.
+     * @return The channel for the server.
+     */
+    public static String getServerChannel(String serverName) {
+        return CHANNEL + ':' + serverName.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Set whether messages for specific players or servers should only be sent
+     * to the servers they are for, instead of to every server on the network.
+     * <p>
+     * This should only be enabled once every server listens on its
+     * {@link #getServerChannel(String) server channel}.
+     *
+     * @param targeted If messages should be routed to specific servers.
+     */
+    public static void setTargetedRouting(boolean targeted) {
+        NetworkChat.targeted = targeted;
+    }
+
     /**
      * <b>If you do not have access to the UUID, use the NameResolver to get it</b>
      *
@@ -24,7 +61,34 @@ public class NetworkChat {
      * @param message The message to send
      */
     public static void sendToPlayer(UUID target, Component message) {
-        FusionPaper.getMessageClient().send(CHANNEL, new MessagePlayerCrossServer(target, message));
+
+        MessagePlayerCrossServer crossServer = new MessagePlayerCrossServer(target, message);
+        if (!targeted) {
+            FusionPaper.getMessageClient().send(CHANNEL, crossServer);
+            return;
+        }
+
+        Player player = Bukkit.getPlayer(target);
+        if (player != null) {
+            player.sendMessage(message);
+            return;
+        }
+
+        String server = PLAYER_SERVERS.getIfPresent(target);
+        if (server != null) {
+            FusionPaper.getMessageClient().send(getServerChannel(server), crossServer);
+            return;
+        }
+
+        FusionPaper.getPlayerStorage().getPlayerServer(target).whenComplete((found, e) -> {
+
+            if (e != null || found.isEmpty()) {
+                FusionPaper.getMessageClient().send(CHANNEL, crossServer); // let every server check
+            } else {
+                PLAYER_SERVERS.put(target, found.get());
+                FusionPaper.getMessageClient().send(getServerChannel(found.get()), crossServer);
+            }
+        });
     }
 
     /**
@@ -34,7 +98,16 @@ public class NetworkChat {
      * @param servers The servers to broadcast to
      */
     public static void broadcastToServers(Component message, String... servers) {
-        FusionPaper.getMessageClient().send(CHANNEL, new BroadcastMessageCrossServer(message, servers));
+
+        BroadcastMessageCrossServer broadcast = new BroadcastMessageCrossServer(message, servers);
+        if (!targeted || servers.length == 0) {
+            FusionPaper.getMessageClient().send(CHANNEL, broadcast);
+            return;
+        }
+
+        for (String server : servers) {
+            FusionPaper.getMessageClient().send(getServerChannel(server), broadcast);
+        }
     }
 
 
@@ -55,7 +128,31 @@ public class NetworkChat {
             this.fusionPaper = fusionPaper;
         }
 
-        @MessageClient.MessageListener
+        /**
+         * Subscribe to the {@link #getServerChannel(String) channel} for this server
+         * and listen for the messages that are routed to it.
+         *
+         * @param messageClient The client to subscribe with.
+         * @param serverName The name of this server.
+         */
+        public void listenOnServerChannel(MessageClient messageClient, String serverName) {
+            String channel = getServerChannel(serverName);
+            messageClient.subscribe(channel);
+            messageClient.registerMessageListener(MessagePlayerCrossServer.class, channel, this::onRoutedMessage);
+            messageClient.registerMessageListener(BroadcastMessageCrossServer.class, channel, this::onBroadcast);
+        }
+
+        private void onRoutedMessage(String channel, MessagePlayerCrossServer message) {
+
+            Player player = fusionPaper.getServer().getPlayer(message.getTargetUUID());
+            if (player != null) {
+                player.sendMessage(message.getMessage());
+            } else { // they moved before it arrived, so let every server check
+                FusionPaper.getMessageClient().send(CHANNEL, message);
+            }
+        }
+
+        @MessageClient.MessageListener(channels = CHANNEL)
         public void onMessage(String channel, MessagePlayerCrossServer message) {
             Player player = fusionPaper.getServer().getPlayer(message.getTargetUUID());
             if (player != null) {
@@ -63,7 +160,7 @@ public class NetworkChat {
             }
         }
 
-        @MessageClient.MessageListener
+        @MessageClient.MessageListener(channels = CHANNEL)
         public void onBroadcast(String channel, BroadcastMessageCrossServer message) {
             FusionPaper.getServerInfo().ifPresentOrElse(serverInfo -> {
                 if (message.getServers().length == 0) {
@@ -0,0 +1,148 @@
+package com.projecki.fusion.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An annotation processor that writes an index of the supertypes of
+ * every class that is compiled to {@link #INDEX_FILE}, so that subtypes
+ * can be found at runtime without scanning the classpath.
+ * <p>
+ * Each line of the index is the binary name of a compiled type followed
+ * by the binary names of all of its supertypes, separated by spaces.
+ * <p>
+ * When only some classes are recompiled, the entries for the other
+ * classes are kept from the existing index.
+ */
+@SupportedAnnotationTypes("*")
+public class ClassIndexProcessor extends AbstractProcessor {
+
+    /**
+     * The path of the index in the class output.
+     */
+    public static final String INDEX_FILE = "META-INF/fusion/class.index";
+
+    private final Map<String, Set<String>> index = new TreeMap<>();
+    private boolean loaded;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+
+        if (!loaded) {
+            this.loaded = true;
+            this.readExisting();
+        }
+
+        for (Element element : roundEnv.getRootElements()) {
+            this.index(element);
+        }
+
+        if (roundEnv.processingOver()) {
+            this.write();
+        }
+
+        return false; // never claim annotations from other processors
+    }
+
+    private void index(Element element) {
+
+        if (!(element instanceof TypeElement type)) {
+            return;
+        }
+
+        Set<String> supertypes = new LinkedHashSet<>();
+        this.collectSupertypes(type.asType(), supertypes);
+        index.put(this.binaryName(type), supertypes);
+        for (Element enclosed : type.getEnclosedElements()) {
+            this.index(enclosed);
+        }
+    }
+
+    private void collectSupertypes(TypeMirror type, Set<String> supertypes) {
+
+        for (TypeMirror supertype : processingEnv.getTypeUtils().directSupertypes(type)) {
+
+            if (supertype.getKind() != TypeKind.DECLARED) {
+                continue;
+            }
+
+            TypeElement element = (TypeElement) ((DeclaredType) supertype).asElement();
+            String name = this.binaryName(element);
+            if (!name.equals("java.lang.Object") && supertypes.add(name)) {
+                this.collectSupertypes(supertype, supertypes);
+            }
+        }
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+
+    private void readExisting() {
+
+        try {
+            FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_FILE);
+            try (Reader reader = file.openReader(true); BufferedReader buffered = new BufferedReader(reader)) {
+
+                String line;
+                while ((line = buffered.readLine()) != null) {
+
+                    String[] names = line.trim().split(" ");
+                    if (!names[0].isEmpty() && processingEnv.getElementUtils().getTypeElement(names[0].replace('$', '.')) != null) {
+                        // only keep classes that still exist, recompiled classes are replaced
+                        index.put(names[0], new LinkedHashSet<>(Arrays.asList(names).subList(1, names.length)));
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // there is no existing index
+        }
+    }
+
+    private void write() {
+
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_FILE);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+
+                for (Map.Entry<String, Set<String>> entry : index.entrySet()) {
+                    writer.write(entry.getKey());
+                    for (String supertype : entry.getValue()) {
+                        writer.write(' ');
+                        writer.write(supertype);
+                    }
+
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write " + INDEX_FILE + ": " + e);
+        }
+    }
+}
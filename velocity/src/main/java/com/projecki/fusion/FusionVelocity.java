@@ -31,9 +31,12 @@ import com.projecki.fusion.transport.NetworkTransportListener;
 import com.projecki.fusion.transport.SeamlessConnectListener;
 import com.projecki.fusion.util.NameResolver;
 import com.projecki.fusion.util.SkinResolver;
+import com.projecki.fusion.util.concurrent.ExecutorRegistry;
+import com.projecki.fusion.util.concurrent.StripedExecutor;
 import com.projecki.fusion.voting.VoteEndpointStorage;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
 import com.velocitypowered.api.plugin.Dependency;
 import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
@@ -47,11 +50,10 @@ import io.lettuce.core.pubsub.api.async.RedisPubSubAsyncCommands;
 import java.net.InetSocketAddress;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.time.temporal.ChronoUnit;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -106,28 +108,38 @@ public class FusionVelocity {
 
         // loading is done in constructor
         configLoader = new LocalYamlPluginConfig<>(VelocityConfig.class, this, dataDir, "config.yml");
-        configLoader.loadConfig().thenAccept(o -> {
-            if (o.isPresent()) {
-                config = o.get();
-                RedisURI redisURI = RedisURI.builder()
-                        .withHost(config.getRedisAddress())
-                        .withPort(Integer.parseInt(config.getRedisPort()))
-                        .withPassword(config.getRedisPassword())
-                        .withTimeout(Duration.ofSeconds(10)).build();
-
-                redisClient = RedisClient.create(redisURI);
-                redisCommands = redisClient.connect().async();
-                redisPubSubCommands = redisClient.connectPubSub().async();
-                messageClient = new RedisMessageClient(redisCommands, redisPubSubCommands);
-
-                messageClient.subscribe(CommonRedisChannels.SERVER_LOOKUP_CHANNEL.getChannel());
-
-                organization = config.getOrganization();
-            } else {
-                getLogger().log(Level.SEVERE, "Config not available");
-                getProxyServer().shutdown();
+        // the local config is read right away, so that the shared pools
+        // are set here before anything else may use them
+        Optional<VelocityConfig> configOpt = configLoader.loadConfig().join();
+        if (configOpt.isPresent()) {
+            config = configOpt.get();
+            FusionCore.setExecutors(new ExecutorRegistry(config.getExecutors()));
+            RedisURI redisURI = RedisURI.builder()
+                    .withHost(config.getRedisAddress())
+                    .withPort(Integer.parseInt(config.getRedisPort()))
+                    .withPassword(config.getRedisPassword())
+                    .withTimeout(Duration.ofSeconds(10)).build();
+
+            redisClient = RedisClient.create(redisURI);
+            redisCommands = redisClient.connect().async();
+            redisPubSubCommands = redisClient.connectPubSub().async();
+            messageClient = new RedisMessageClient(redisClient, RedisMessageClient.DEFAULT_BATCH_SIZE,
+                    Duration.of(config.getMessageLatencyMicros(), ChronoUnit.MICROS));
+            messageClient.setBinaryCodec(config.isBinaryMessages());
+            messageClient.setLoopback(config.isLoopback());
+            if (config.getCompressionThreshold() > 0) {
+                messageClient.setCompression(config.getCompressionThreshold(), null);
             }
-        });
+
+            messageClient.setDispatchExecutor(new StripedExecutor("Message Dispatch", 4, 1024, StripedExecutor.OverflowPolicy.CALLER_RUNS));
+
+            messageClient.subscribe(CommonRedisChannels.SERVER_LOOKUP_CHANNEL.getChannel());
+
+            organization = config.getOrganization();
+        } else {
+            getLogger().log(Level.SEVERE, "Config not available");
+            getProxyServer().shutdown();
+        }
 
         // motd config loading
         var motdLoader = new VelocityHermesConfig<>(JacksonSerializer.ofYaml(MotdConfig.class),
@@ -161,8 +173,7 @@ public class FusionVelocity {
         var serverRegistry = new ServerRegistry(proxyServer, logger, redisCommands, messageClient, this);
 
         // name resolving
-        httpExecutorService = new ThreadPoolExecutor(1, 3, 30, TimeUnit.SECONDS,
-                new LinkedBlockingQueue<>());
+        httpExecutorService = FusionCore.getExecutors().io();
 
         var nameStorage = new NameResolver.RedisNameResolverStorage(redisCommands);
         nameResolver = new NameResolver(httpExecutorService, nameStorage);
@@ -177,6 +188,7 @@ public class FusionVelocity {
         commandManager.registerCommand(new RestartingCommand(commandManager, this, proxyServer));
         commandManager.registerCommand(new FindCommand(commandManager, proxyServer, playerStorage, nameResolver));
         commandManager.registerCommand(new JoinCommand(commandManager, proxyServer, playerStorage, nameResolver));
+        commandManager.registerCommand(new MetricsCommand(FusionCore.getMetrics()));
 
         // we only need to register this command if ForceResourcePacks is on the proxy
         if (proxyServer.getPluginManager().isLoaded("forceresourcepacks")) {
@@ -211,6 +223,17 @@ public class FusionVelocity {
         new VoteEndpointStorage(redisCommands, Logger.getGlobal(), config.getProxyId(), config.getVotifierPort());
     }
 
+    @Subscribe
+    public void onProxyShutdown(ProxyShutdownEvent event) {
+
+        // publish the messages that are still batched and finish dispatching received ones
+        if (messageClient != null)
+            messageClient.shutdown();
+
+        if (redisClient != null) // could be null if the config was not available
+            redisClient.shutdown();
+    }
+
     /**
      * Store all servers in redis for ProCommonPaper to do lookups
      * for server names.
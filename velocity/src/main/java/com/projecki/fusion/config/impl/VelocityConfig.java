@@ -1,11 +1,17 @@
 package com.projecki.fusion.config.impl;
 
+import com.projecki.fusion.util.concurrent.ExecutorConfig;
+
 public class VelocityConfig {
 
     // redis config
     private String redisAddress;
     private String redisPort;
     private String redisPassword;
+    private boolean binaryMessages;
+    private int compressionThreshold;
+    private long messageLatencyMicros = 500;
+    private boolean loopback;
 
     // multi-proxy
     private String proxyId;
@@ -15,6 +21,9 @@ public class VelocityConfig {
 
     private String organization = "none";
 
+    // shared thread pools
+    private ExecutorConfig executors = new ExecutorConfig();
+
     public VelocityConfig() {}
 
     public String getRedisAddress() {
@@ -29,6 +38,22 @@ public class VelocityConfig {
         return redisPassword;
     }
 
+    public boolean isBinaryMessages() {
+        return binaryMessages;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public long getMessageLatencyMicros() {
+        return messageLatencyMicros;
+    }
+
+    public boolean isLoopback() {
+        return loopback;
+    }
+
     public String getProxyId() {
         return proxyId;
     }
@@ -40,4 +65,8 @@ public class VelocityConfig {
     public String getOrganization() {
         return organization;
     }
+
+    public ExecutorConfig getExecutors() {
+        return executors;
+    }
 }
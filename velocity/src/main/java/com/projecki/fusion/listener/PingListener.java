@@ -15,7 +15,11 @@ public class PingListener {
     private final MotdContainer motdContainer;
 
     public PingListener(PlayerStorage playerStorage, MotdContainer motdContainer) {
-        playerCountCache = ValueCache.create(Duration.ofMillis(500), playerStorage::getPlayerCount);
+        playerCountCache = ValueCache.builder(playerStorage::getPlayerCount)
+                .interval(Duration.ofMillis(500))
+                .initialValue(0L)
+                .name("ping-player-count")
+                .build();
         this.motdContainer = motdContainer;
     }
 
@@ -24,7 +28,7 @@ public class PingListener {
         event.setPing(
                 event.getPing().asBuilder()
                         .description(motdContainer.getMotd())
-                        .onlinePlayers((playerCountCache.getValue().intValue()))
+                        .onlinePlayers(playerCountCache.getValue(0L).intValue())
                         .build()
         );
     }